@@ -0,0 +1,13 @@
+package com.jureg.wheelbase_server.follow.dto;
+
+// Number of followers and of followed users of a user
+public record FollowCounts(
+		
+		long followers,
+		long following
+		
+) {
+	
+	public static final FollowCounts ZERO = new FollowCounts(0, 0);
+	
+}
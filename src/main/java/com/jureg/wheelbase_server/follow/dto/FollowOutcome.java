@@ -0,0 +1,12 @@
+package com.jureg.wheelbase_server.follow.dto;
+
+// What a batch follow / unfollow did for one target: the errors of the single endpoints, as values
+public enum FollowOutcome {
+	FOLLOWED,
+	UNFOLLOWED,
+	ALREADY_FOLLOWING,
+	NOT_FOLLOWING,
+	CANNOT_FOLLOW_YOURSELF,
+	CANNOT_UNFOLLOW_YOURSELF,
+	USER_NOT_FOUND
+}
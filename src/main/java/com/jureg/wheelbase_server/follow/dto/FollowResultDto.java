@@ -0,0 +1,12 @@
+package com.jureg.wheelbase_server.follow.dto;
+
+import java.util.UUID;
+
+public record FollowResultDto(
+		
+		UUID followedId,
+		FollowOutcome outcome
+		
+) {
+	
+}
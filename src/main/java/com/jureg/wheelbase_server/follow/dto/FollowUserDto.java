@@ -0,0 +1,24 @@
+package com.jureg.wheelbase_server.follow.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+// The user on the other side of a follow, with the time of the follow (position of the row in a page)
+public record FollowUserDto(
+		
+		UUID id,
+		String username,
+		String avatarUrl,
+		AccountType accountType,
+		Instant followedAt
+		
+) {
+	
+	public UserSummaryDto toSummaryDto() {
+		return new UserSummaryDto(id, username, avatarUrl, accountType);
+	}
+	
+}
@@ -0,0 +1,14 @@
+package com.jureg.wheelbase_server.follow.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A follower of a user, with the time of the follow (position of the row in a page)
+public record FollowerRefDto(
+		
+		UUID followerId,
+		Instant followedAt
+		
+) {
+	
+}
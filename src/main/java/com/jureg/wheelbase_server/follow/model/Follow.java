@@ -21,17 +21,23 @@ import lombok.NoArgsConstructor;
 @IdClass(FollowId.class)
 public class Follow {
 	
+	// Named, so that a follow of an unknown user is told apart from the rejected insert
+	public static final String FOLLOWER_FOREIGN_KEY = "follows_follower_id_fkey";
+	public static final String FOLLOWED_FOREIGN_KEY = "follows_followed_id_fkey";
+	
 	@Id
 	@ManyToOne
-	@JoinColumn(name = "follower_id")
+	@JoinColumn(name = "follower_id", foreignKey = @ForeignKey(name = FOLLOWER_FOREIGN_KEY))
 	private User follower;
 	
 	@Id
 	@ManyToOne
-	@JoinColumn(name = "followed_id")
+	@JoinColumn(name = "followed_id", foreignKey = @ForeignKey(name = FOLLOWED_FOREIGN_KEY))
 	private User followed;
 	
+	// The key of the followers and following pages, never null (V15)
 	@Builder.Default
+	@Column(nullable = false)
 	private Instant createdAt = Instant.now();
 
 }
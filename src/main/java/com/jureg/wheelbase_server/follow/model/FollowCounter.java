@@ -0,0 +1,34 @@
+package com.jureg.wheelbase_server.follow.model;
+
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One slot of the follower / following counters of a user, the counts of a user are the sums over its slots
+// A follow adds to a random slot: the writes to a popular user are spread over several rows instead of queuing on one
+@Data
+@Entity
+@Table(name = "user_follow_counters")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(FollowCounterId.class)
+public class FollowCounter {
+
+	@Id
+	private UUID userId;
+
+	@Id
+	private int slot;
+
+	@Column(nullable = false)
+	private long followers;
+
+	@Column(nullable = false)
+	private long following;
+
+}
@@ -0,0 +1,164 @@
+package com.jureg.wheelbase_server.follow.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.follow.model.FollowCounter;
+import com.jureg.wheelbase_server.follow.model.FollowCounterId;
+
+// Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
+// The writes are native upserts: a slot row is created by the first follow landing on it, then added to in place
+// Rows are always written by increasing user ID, so two transactions never wait on each other's rows in a cycle
+@Repository
+public interface FollowCounterRepository extends JpaRepository<FollowCounter, FollowCounterId> {
+
+	// Always one row, zeros for a user without any slot
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowCounts(coalesce(sum(c.followers), 0L), coalesce(sum(c.following), 0L))
+		from FollowCounter c
+		where c.userId = :userId
+		""")
+	FollowCounts sumByUserId(@Param("userId") UUID userId);
+
+	// -------------------------------------------------------------
+	// Follow / unfollow
+	// -------------------------------------------------------------
+	// One statement for both sides of the edge: the following count of the follower, the followers count of the followed user
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO user_follow_counters (user_id, slot, followers, following)
+		SELECT * FROM (VALUES
+			(CAST(:followerId AS uuid), :followerSlot, CAST(0 AS bigint), CAST(:delta AS bigint)),
+			(CAST(:followedId AS uuid), :followedSlot, CAST(:delta AS bigint), CAST(0 AS bigint))
+		) AS deltas (user_id, slot, followers, following)
+		ORDER BY user_id
+		ON CONFLICT (user_id, slot) DO UPDATE
+		SET followers = user_follow_counters.followers + EXCLUDED.followers,
+			following = user_follow_counters.following + EXCLUDED.following
+		""")
+	int addFollow(@Param("followerId") UUID followerId, @Param("followerSlot") int followerSlot,
+			@Param("followedId") UUID followedId, @Param("followedSlot") int followedSlot,
+			@Param("delta") long delta);
+
+	// Batch version: the follower gets the whole delta at once, each followed user its own row
+	// The followed IDs are read from the users table (the follows of the batch have just been written or removed)
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO user_follow_counters (user_id, slot, followers, following)
+		SELECT * FROM (
+			SELECT u.id AS user_id, :followedSlot AS slot, CAST(:delta AS bigint) AS followers, CAST(0 AS bigint) AS following
+			FROM users u WHERE u.id IN (:followedIds)
+			UNION ALL
+			SELECT CAST(:followerId AS uuid), :followerSlot, CAST(0 AS bigint), CAST(:delta AS bigint) * count(*)
+			FROM users u WHERE u.id IN (:followedIds)
+		) AS deltas
+		ORDER BY user_id
+		ON CONFLICT (user_id, slot) DO UPDATE
+		SET followers = user_follow_counters.followers + EXCLUDED.followers,
+			following = user_follow_counters.following + EXCLUDED.following
+		""")
+	int addFollows(@Param("followerId") UUID followerId, @Param("followerSlot") int followerSlot,
+			@Param("followedIds") Collection<UUID> followedIds, @Param("followedSlot") int followedSlot,
+			@Param("delta") long delta);
+
+	// Purge of a deleted user, a chunk of its follows at a time: each removed follow is uncounted on the other side,
+	// in the same statement (one less follower for each user it followed, one less followed user for each follower)
+	// Returns the number of follows removed, below the limit once there are none left
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		WITH removed AS (
+			DELETE FROM follows
+			WHERE follower_id = :userId
+			AND followed_id IN (SELECT followed_id FROM follows WHERE follower_id = :userId LIMIT :limit)
+			RETURNING followed_id
+		)
+		INSERT INTO user_follow_counters (user_id, slot, followers, following)
+		SELECT followed_id, :slot, -1, 0 FROM removed
+		ORDER BY followed_id
+		ON CONFLICT (user_id, slot) DO UPDATE
+		SET followers = user_follow_counters.followers + EXCLUDED.followers,
+			following = user_follow_counters.following + EXCLUDED.following
+		""")
+	int purgeFollowing(@Param("userId") UUID userId, @Param("slot") int slot, @Param("limit") int limit);
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		WITH removed AS (
+			DELETE FROM follows
+			WHERE followed_id = :userId
+			AND follower_id IN (SELECT follower_id FROM follows WHERE followed_id = :userId LIMIT :limit)
+			RETURNING follower_id
+		)
+		INSERT INTO user_follow_counters (user_id, slot, followers, following)
+		SELECT follower_id, :slot, 0, -1 FROM removed
+		ORDER BY follower_id
+		ON CONFLICT (user_id, slot) DO UPDATE
+		SET followers = user_follow_counters.followers + EXCLUDED.followers,
+			following = user_follow_counters.following + EXCLUDED.following
+		""")
+	int purgeFollowers(@Param("userId") UUID userId, @Param("slot") int slot, @Param("limit") int limit);
+
+	@Modifying
+	@Query("delete from FollowCounter c where c.userId = :userId")
+	int deleteAllByUserId(@Param("userId") UUID userId);
+
+	// -------------------------------------------------------------
+	// Reconciliation
+	// -------------------------------------------------------------
+	// Keyset batches of the users, by ID
+	@Query("select u.id from User u order by u.id")
+	List<UUID> findUserIds(Limit limit);
+	@Query("select u.id from User u where u.id > :afterId order by u.id")
+	List<UUID> findUserIdsAfter(@Param("afterId") UUID afterId, Limit limit);
+
+	// The users of the batch whose slots do not add up to their follows
+	@Query(nativeQuery = true, value = """
+		SELECT u.id FROM users u
+		WHERE u.id IN (:userIds)
+		AND ((SELECT count(*) FROM follows f WHERE f.followed_id = u.id)
+				<> (SELECT coalesce(sum(c.followers), 0) FROM user_follow_counters c WHERE c.user_id = u.id)
+			OR (SELECT count(*) FROM follows f WHERE f.follower_id = u.id)
+				<> (SELECT coalesce(sum(c.following), 0) FROM user_follow_counters c WHERE c.user_id = u.id))
+		ORDER BY u.id
+		""")
+	List<UUID> findDrifted(@Param("userIds") List<UUID> userIds);
+
+	// Every slot of the users, so that lockSlots() holds back all their follows and unfollows
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO user_follow_counters (user_id, slot, followers, following)
+		SELECT u.id, s.slot, 0, 0 FROM users u CROSS JOIN generate_series(0, :slots - 1) AS s (slot)
+		WHERE u.id IN (:userIds)
+		ORDER BY u.id, s.slot
+		ON CONFLICT (user_id, slot) DO NOTHING
+		""")
+	int createSlots(@Param("userIds") List<UUID> userIds, @Param("slots") int slots);
+
+	// A follow committing meanwhile is either counted by repair() (committed before the lock), or adds to the repaired slots
+	@Query(nativeQuery = true, value = """
+		SELECT c.user_id FROM user_follow_counters c
+		WHERE c.user_id IN (:userIds)
+		ORDER BY c.user_id, c.slot
+		FOR UPDATE
+		""")
+	List<UUID> lockSlots(@Param("userIds") List<UUID> userIds);
+
+	// The true counts go to slot 0, the other slots start over from zero
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		UPDATE user_follow_counters c
+		SET followers = CASE WHEN c.slot = 0 THEN (SELECT count(*) FROM follows f WHERE f.followed_id = c.user_id) ELSE 0 END,
+			following = CASE WHEN c.slot = 0 THEN (SELECT count(*) FROM follows f WHERE f.follower_id = c.user_id) ELSE 0 END
+		WHERE c.user_id IN (:userIds)
+		""")
+	int repair(@Param("userIds") List<UUID> userIds);
+
+}
@@ -1,11 +1,19 @@
 package com.jureg.wheelbase_server.follow.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.jureg.wheelbase_server.follow.dto.FollowUserDto;
+import com.jureg.wheelbase_server.follow.dto.FollowerRefDto;
 import com.jureg.wheelbase_server.follow.model.Follow;
 import com.jureg.wheelbase_server.follow.model.FollowId;
 import com.jureg.wheelbase_server.user.model.User;
@@ -19,5 +27,110 @@ public interface FollowRepository extends JpaRepository<Follow, FollowId> {
 	List<Follow> findByFollower(User user);
 	List<Follow> findByFollowed(User user);
 	
-	void deleteByFollowerIdAndFollowedId(UUID followerId, UUID followedId);
+	// findByFollowed a page at a time, IDs only (fan-out of a post to the timelines): oldest follow first,
+	// the next page starts strictly after the last row of the previous one, served by the (followed, created_at, follower) index
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowerRefDto(f.follower.id, f.createdAt)
+		from Follow f
+		where f.followed.id = :followedId
+		order by f.createdAt, f.follower.id
+		""")
+	List<FollowerRefDto> findFollowerRefs(@Param("followedId") UUID followedId, Limit limit);
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowerRefDto(f.follower.id, f.createdAt)
+		from Follow f
+		where f.followed.id = :followedId
+		and (f.createdAt, f.follower.id) > (:afterCreatedAt, :afterFollowerId)
+		order by f.createdAt, f.follower.id
+		""")
+	List<FollowerRefDto> findFollowerRefsAfter(@Param("followedId") UUID followedId,
+			@Param("afterCreatedAt") Instant afterCreatedAt,
+			@Param("afterFollowerId") UUID afterFollowerId,
+			Limit limit);
+	
+	// Keyset pages of the followers / following of a user, newest first, ties broken by the other user ID
+	// The next page starts strictly after the last row of the previous one: served by the (user, created_at, other user) indexes
+	// Projected with a single join: no Follow nor User entity, so none of their EAGER associations is loaded
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowUserDto(u.id, u.username, u.avatarUrl, u.accountType, f.createdAt)
+		from Follow f join f.follower u
+		where f.followed.id = :userId
+		order by f.createdAt desc, f.follower.id desc
+		""")
+	List<FollowUserDto> findFollowers(@Param("userId") UUID userId, Limit limit);
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowUserDto(u.id, u.username, u.avatarUrl, u.accountType, f.createdAt)
+		from Follow f join f.follower u
+		where f.followed.id = :userId
+		and (f.createdAt, f.follower.id) < (:afterCreatedAt, :afterId)
+		order by f.createdAt desc, f.follower.id desc
+		""")
+	List<FollowUserDto> findFollowersAfter(@Param("userId") UUID userId,
+			@Param("afterCreatedAt") Instant afterCreatedAt,
+			@Param("afterId") UUID afterId,
+			Limit limit);
+	
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowUserDto(u.id, u.username, u.avatarUrl, u.accountType, f.createdAt)
+		from Follow f join f.followed u
+		where f.follower.id = :userId
+		order by f.createdAt desc, f.followed.id desc
+		""")
+	List<FollowUserDto> findFollowing(@Param("userId") UUID userId, Limit limit);
+	@Query("""
+		select new com.jureg.wheelbase_server.follow.dto.FollowUserDto(u.id, u.username, u.avatarUrl, u.accountType, f.createdAt)
+		from Follow f join f.followed u
+		where f.follower.id = :userId
+		and (f.createdAt, f.followed.id) < (:afterCreatedAt, :afterId)
+		order by f.createdAt desc, f.followed.id desc
+		""")
+	List<FollowUserDto> findFollowingAfter(@Param("userId") UUID userId,
+			@Param("afterCreatedAt") Instant afterCreatedAt,
+			@Param("afterId") UUID afterId,
+			Limit limit);
+	
+	// -------------------------------------------------------------
+	// Follow / unfollow
+	// -------------------------------------------------------------
+	// One statement each, without loading the users nor the follow: the outcome is read from the returned row
+	// No row is returned when the follow already exists, or when one of the users is deleted (still there until purged)
+	// A user missing altogether fails on the foreign key of its column
+	@Query(nativeQuery = true, value = """
+		INSERT INTO follows (follower_id, followed_id, created_at)
+		SELECT CAST(:followerId AS uuid), CAST(:followedId AS uuid), CAST(:createdAt AS timestamptz)
+		WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id IN (:followerId, :followedId) AND u.deleted_at IS NOT NULL)
+		ON CONFLICT (follower_id, followed_id) DO NOTHING
+		RETURNING followed_id
+		""")
+	Optional<UUID> insertIfAbsent(@Param("followerId") UUID followerId,
+			@Param("followedId") UUID followedId,
+			@Param("createdAt") Instant createdAt);
+	
+	// No row returned when there was nothing to delete
+	@Query(nativeQuery = true, value = """
+		DELETE FROM follows
+		WHERE follower_id = :followerId AND followed_id = :followedId
+		RETURNING followed_id
+		""")
+	Optional<UUID> deleteIfPresent(@Param("followerId") UUID followerId, @Param("followedId") UUID followedId);
+	
+	// Batch versions: one multi-row statement for every target, returning the follows actually created / removed
+	// The targets are read from the users table, so an unknown or deleted ID is skipped instead of failing the whole batch
+	@Query(nativeQuery = true, value = """
+		INSERT INTO follows (follower_id, followed_id, created_at)
+		SELECT CAST(:followerId AS uuid), u.id, CAST(:createdAt AS timestamptz) FROM users u
+		WHERE u.id IN (:followedIds) AND u.deleted_at IS NULL
+		ORDER BY u.id
+		ON CONFLICT (follower_id, followed_id) DO NOTHING
+		RETURNING followed_id
+		""")
+	List<UUID> insertAllIfAbsent(@Param("followerId") UUID followerId,
+			@Param("followedIds") Collection<UUID> followedIds,
+			@Param("createdAt") Instant createdAt);
+	@Query(nativeQuery = true, value = """
+		DELETE FROM follows
+		WHERE follower_id = :followerId AND followed_id IN (:followedIds)
+		RETURNING followed_id
+		""")
+	List<UUID> deleteAllIfPresent(@Param("followerId") UUID followerId, @Param("followedIds") Collection<UUID> followedIds);
 }
@@ -0,0 +1,191 @@
+package com.jureg.wheelbase_server.follow.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.follow.repository.FollowCounterRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Keeps the follower / following counts of each user, so a profile shows them without counting the follows
+// The counters change in the transaction of the follow: both commit, or neither does
+// Each change lands on a random slot of the user, a read sums the slots
+// A periodic job repairs the users whose slots no longer add up to their follows (rows changed by hand, a bug), batch by batch
+@Service
+public class FollowCounterService {
+
+	private final FollowCounterRepository followCounterRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final int slots;
+	private final int batchSize;
+
+	private final Counter repairedUsers;
+
+	/**
+	 * @param The repository of the counter slots
+	 * @param The transaction manager (one transaction per reconciliation batch)
+	 * @param The number of slots per user
+	 * @param The number of users checked per reconciliation batch
+	 * @param The registry of the reconciliation metrics
+	 */
+	public FollowCounterService(FollowCounterRepository followCounterRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${user.follows.counters.slots:8}") int slots,
+			@Value("${user.follows.counters.reconcile-batch-size:1000}") int batchSize,
+			MeterRegistry meterRegistry) {
+		this.followCounterRepository = followCounterRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.slots = slots;
+		this.batchSize = batchSize;
+		this.repairedUsers = Counter.builder("user.follows.counters.repaired")
+				.description("Users whose follow counters did not add up to their follows, and were repaired")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	/**
+	 * Return the follower / following counts of a user
+	 * @param The user ID
+	 * @return The counts (zeros for an unknown user)
+	 */
+	@Transactional(readOnly = true)
+	public FollowCounts getCounts(UUID userId) {
+		return followCounterRepository.sumByUserId(userId);
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	/**
+	 * Count a new follow, in the transaction that creates it
+	 * @param The follower user ID
+	 * @param The followed user ID
+	 */
+	@Transactional
+	public void recordFollow(UUID followerId, UUID followedId) {
+		followCounterRepository.addFollow(followerId, randomSlot(), followedId, randomSlot(), 1);
+	}
+
+	/**
+	 * Count a removed follow, in the transaction that deletes it
+	 * @param The follower user ID
+	 * @param The followed user ID
+	 */
+	@Transactional
+	public void recordUnfollow(UUID followerId, UUID followedId) {
+		followCounterRepository.addFollow(followerId, randomSlot(), followedId, randomSlot(), -1);
+	}
+
+	/**
+	 * Count the follows created by a batch, in one statement
+	 * @param The follower user ID
+	 * @param The followed user IDs (not empty)
+	 */
+	@Transactional
+	public void recordFollows(UUID followerId, Collection<UUID> followedIds) {
+		followCounterRepository.addFollows(followerId, randomSlot(), followedIds, randomSlot(), 1);
+	}
+
+	/**
+	 * Count the follows removed by a batch, in one statement
+	 * @param The follower user ID
+	 * @param The followed user IDs (not empty)
+	 */
+	@Transactional
+	public void recordUnfollows(UUID followerId, Collection<UUID> followedIds) {
+		followCounterRepository.addFollows(followerId, randomSlot(), followedIds, randomSlot(), -1);
+	}
+
+	// -------------------------------------------------------------
+	// Purge of a deleted user
+	// -------------------------------------------------------------
+	/**
+	 * Remove a chunk of the follows of a deleted user (as a follower), uncounting them on the followed users
+	 * @param The deleted user ID
+	 * @param The maximum number of follows to remove
+	 * @return The number of follows removed (below the limit once there are none left)
+	 */
+	@Transactional
+	public int purgeFollowing(UUID userId, int limit) {
+		return followCounterRepository.purgeFollowing(userId, randomSlot(), limit);
+	}
+
+	/**
+	 * Remove a chunk of the follows of a deleted user (as a followed user), uncounting them on the followers
+	 * @param The deleted user ID
+	 * @param The maximum number of follows to remove
+	 * @return The number of follows removed (below the limit once there are none left)
+	 */
+	@Transactional
+	public int purgeFollowers(UUID userId, int limit) {
+		return followCounterRepository.purgeFollowers(userId, randomSlot(), limit);
+	}
+
+	/**
+	 * Drop the counters of a deleted user, once its follows are purged
+	 * @param The deleted user ID
+	 */
+	@Transactional
+	public void deleteCounters(UUID userId) {
+		followCounterRepository.deleteAllByUserId(userId);
+	}
+
+	// -------------------------------------------------------------
+	// Reconciliation
+	// -------------------------------------------------------------
+	/**
+	 * Go through every user, batch by batch, and repair the counters that drifted from the follows
+	 * Each batch is its own transaction: the follows of the batch users wait for its repairs only, not for the whole run
+	 */
+	@Scheduled(fixedDelayString = "${user.follows.counters.reconcile-interval:1h}", initialDelayString = "${user.follows.counters.reconcile-interval:1h}")
+	public void reconcile() {
+		UUID afterId = null;
+		while (true) {
+			List<UUID> userIds = afterId == null
+					? followCounterRepository.findUserIds(Limit.of(batchSize))
+					: followCounterRepository.findUserIdsAfter(afterId, Limit.of(batchSize));
+			if (userIds.isEmpty()) {
+				return;
+			}
+			transactionTemplate.executeWithoutResult(status -> reconcileBatch(userIds));
+			if (userIds.size() < batchSize) {
+				return;
+			}
+			afterId = userIds.get(userIds.size() - 1);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// The drift is looked for without locks, the drifted users only are locked and repaired
+	private void reconcileBatch(List<UUID> userIds) {
+		List<UUID> drifted = followCounterRepository.findDrifted(userIds);
+		if (drifted.isEmpty()) {
+			return;
+		}
+		followCounterRepository.createSlots(drifted, slots);
+		followCounterRepository.lockSlots(drifted);
+		followCounterRepository.repair(drifted);
+		repairedUsers.increment(drifted.size());
+	}
+
+	private int randomSlot() {
+		return ThreadLocalRandom.current().nextInt(slots);
+	}
+
+}
@@ -1,11 +1,20 @@
 package com.jureg.wheelbase_server.follow.service;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.jureg.wheelbase_server.follow.dto.FollowOutcome;
+import com.jureg.wheelbase_server.follow.dto.FollowResultDto;
 import com.jureg.wheelbase_server.follow.model.Follow;
 import com.jureg.wheelbase_server.follow.repository.FollowRepository;
 import com.jureg.wheelbase_server.shared.api.exception.AlreadyFollowingException;
@@ -14,8 +23,8 @@ import com.jureg.wheelbase_server.shared.api.exception.CannotUnfollowYourselfExc
 import com.jureg.wheelbase_server.shared.api.exception.NotFollowingUserException;
 import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
 import com.jureg.wheelbase_server.shared.security.SecurityUtils;
-import com.jureg.wheelbase_server.user.model.User;
 import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.security.AuthorizationCache;
 
 @Service
 @Transactional
@@ -23,11 +32,17 @@ public class FollowService {
 	
 	private final UserRepository userRepository;
 	private final FollowRepository followRepository;
+	private final AuthorizationCache authorizationCache;
+	private final FollowCounterService followCounterService;
 	
 	public FollowService(UserRepository userRepository,
-			FollowRepository followRepository) {
+			FollowRepository followRepository,
+			AuthorizationCache authorizationCache,
+			FollowCounterService followCounterService) {
 		this.userRepository = userRepository;
 		this.followRepository = followRepository;
+		this.authorizationCache = authorizationCache;
+		this.followCounterService = followCounterService;
 	}
 
 	// -------------------------------------------------------------
@@ -39,20 +54,22 @@ public class FollowService {
 		if (currentUserId.equals(followedId)) {
 			throw new CannotFollowYourselfException();
 		}
-		// Check if user is already following this user
-		if (followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)) {
+		// No pre-check queries: the primary key tells an existing follow, the foreign keys an unknown user
+		boolean inserted;
+		try {
+			inserted = followRepository.insertIfAbsent(currentUserId, followedId, Instant.now()).isPresent();
+		} catch (DataIntegrityViolationException e) {
+			throw toUserNotFound(e);
+		}
+		if (!inserted) {
+			// Nothing inserted: the follow was already there, or one of the users is deleted
+			if (!findExistingUsers(currentUserId, Set.of(followedId)).contains(followedId)) {
+				throw new UserNotFoundException("Followed user not found");
+			}
 			throw new AlreadyFollowingException();
 		}
-		// Fetch users
-		User follower = userRepository.findById(currentUserId).orElseThrow(() -> new UserNotFoundException("Follower user not found"));
-		User followed = userRepository.findById(followedId).orElseThrow(() -> new UserNotFoundException("Followed user not found"));
-		// Set the follow
-		Follow follow = new Follow();
-		follow.setFollower(follower);
-		follow.setFollowed(followed);
-		follow.setCreatedAt(Instant.now());
-		// Save the follow in database
-		followRepository.save(follow);
+		followCounterService.recordFollow(currentUserId, followedId);
+		authorizationCache.invalidateFollow(currentUserId, followedId);
 	}
 	public void unfollowUser(UUID followedId) {
 		UUID currentUserId = SecurityUtils.getCurrentUserId();
@@ -60,14 +77,106 @@ public class FollowService {
 		if (currentUserId.equals(followedId)) {
 			throw new CannotUnfollowYourselfException();
 		}
-		// Fetch users
-		userRepository.findById(currentUserId).orElseThrow(() -> new UserNotFoundException("Follower user not found"));
-		userRepository.findById(followedId).orElseThrow(() -> new UserNotFoundException("Followed user not found"));
-		// Check if user is already following this user
-		if (!followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)) {
+		// Delete first: the users are only looked up to explain a follow that was not there
+		if (followRepository.deleteIfPresent(currentUserId, followedId).isEmpty()) {
+			if (!userRepository.existsById(currentUserId)) {
+				throw new UserNotFoundException("Follower user not found");
+			}
+			if (!userRepository.existsById(followedId)) {
+				throw new UserNotFoundException("Followed user not found");
+			}
 			throw new NotFollowingUserException();
 		}
-		followRepository.deleteByFollowerIdAndFollowedId(currentUserId, followedId);
+		followCounterService.recordUnfollow(currentUserId, followedId);
+		authorizationCache.invalidateFollow(currentUserId, followedId);
+	}
+	
+	// -------------------------------------------------------------
+	// Follow / Unfollow users (batch)
+	// -------------------------------------------------------------
+	/**
+	 * Follow several users at once: one lookup of the users, one insert of the follows, one update of the counters
+	 * @param The IDs of the users to follow (a repeated ID is answered once)
+	 * @return The outcome for each user, in the order of the request
+	 */
+	public List<FollowResultDto> followUsers(List<UUID> followedIds) {
+		UUID currentUserId = SecurityUtils.getCurrentUserId();
+		Set<UUID> targets = new LinkedHashSet<>(followedIds);
+		// The follower and every target in one IN query
+		Set<UUID> existing = findExistingUsers(currentUserId, targets);
+		List<UUID> toFollow = targets.stream()
+				.filter(id -> !id.equals(currentUserId) && existing.contains(id))
+				.toList();
+		Set<UUID> followed = toFollow.isEmpty()
+				? Set.of()
+				: Set.copyOf(followRepository.insertAllIfAbsent(currentUserId, toFollow, Instant.now()));
+		if (!followed.isEmpty()) {
+			followCounterService.recordFollows(currentUserId, followed);
+			followed.forEach(id -> authorizationCache.invalidateFollow(currentUserId, id));
+		}
+		return targets.stream()
+				.map(id -> new FollowResultDto(id, id.equals(currentUserId) ? FollowOutcome.CANNOT_FOLLOW_YOURSELF
+						: !existing.contains(id) ? FollowOutcome.USER_NOT_FOUND
+						: followed.contains(id) ? FollowOutcome.FOLLOWED
+						: FollowOutcome.ALREADY_FOLLOWING))
+				.toList();
+	}
+	
+	/**
+	 * Unfollow several users at once: one delete of the follows, one update of the counters
+	 * The users are only looked up (in one IN query) to explain the targets that were not followed
+	 * @param The IDs of the users to unfollow (a repeated ID is answered once)
+	 * @return The outcome for each user, in the order of the request
+	 */
+	public List<FollowResultDto> unfollowUsers(List<UUID> followedIds) {
+		UUID currentUserId = SecurityUtils.getCurrentUserId();
+		Set<UUID> targets = new LinkedHashSet<>(followedIds);
+		List<UUID> toUnfollow = targets.stream()
+				.filter(id -> !id.equals(currentUserId))
+				.toList();
+		Set<UUID> unfollowed = toUnfollow.isEmpty()
+				? Set.of()
+				: Set.copyOf(followRepository.deleteAllIfPresent(currentUserId, toUnfollow));
+		if (!unfollowed.isEmpty()) {
+			followCounterService.recordUnfollows(currentUserId, unfollowed);
+			unfollowed.forEach(id -> authorizationCache.invalidateFollow(currentUserId, id));
+		}
+		List<UUID> notUnfollowed = toUnfollow.stream()
+				.filter(id -> !unfollowed.contains(id))
+				.toList();
+		Set<UUID> existing = notUnfollowed.isEmpty() ? Set.of() : findExistingUsers(currentUserId, notUnfollowed);
+		return targets.stream()
+				.map(id -> new FollowResultDto(id, id.equals(currentUserId) ? FollowOutcome.CANNOT_UNFOLLOW_YOURSELF
+						: unfollowed.contains(id) ? FollowOutcome.UNFOLLOWED
+						: existing.contains(id) ? FollowOutcome.NOT_FOLLOWING
+						: FollowOutcome.USER_NOT_FOUND))
+				.toList();
+	}
+	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// The targets that exist, looked up along with the follower: an unknown follower fails the whole batch
+	private Set<UUID> findExistingUsers(UUID followerId, Collection<UUID> targetIds) {
+		Set<UUID> ids = new HashSet<>(targetIds);
+		ids.add(followerId);
+		Set<UUID> existing = userRepository.findExistingIds(ids);
+		if (!existing.contains(followerId)) {
+			throw new UserNotFoundException("Follower user not found");
+		}
+		return existing;
+	}
+	
+	// Map the foreign key that rejected the insert to the user that does not exist
+	private static RuntimeException toUserNotFound(DataIntegrityViolationException e) {
+		String constraint = e.getCause() instanceof ConstraintViolationException violation ? violation.getConstraintName() : null;
+		if (Follow.FOLLOWER_FOREIGN_KEY.equalsIgnoreCase(constraint)) {
+			return new UserNotFoundException("Follower user not found");
+		}
+		if (Follow.FOLLOWED_FOREIGN_KEY.equalsIgnoreCase(constraint)) {
+			return new UserNotFoundException("Followed user not found");
+		}
+		return e;
 	}
 		
 }
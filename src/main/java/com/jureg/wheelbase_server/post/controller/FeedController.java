@@ -0,0 +1,72 @@
+package com.jureg.wheelbase_server.post.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.dto.PostResponseDto;
+import com.jureg.wheelbase_server.post.service.PostService;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
+import com.jureg.wheelbase_server.shared.security.SecurityUtils;
+import com.jureg.wheelbase_server.timeline.service.TimelineService;
+
+@RestController
+@RequestMapping("/api/feed")
+public class FeedController {
+
+	private final PostService postService;
+	private final TimelineService timelineService;
+	
+	public FeedController(PostService postService, TimelineService timelineService) {
+		this.postService = postService;
+		this.timelineService = timelineService;
+	}
+	
+	// -------------------------------------------------------------
+	// Home feed of the current user
+	// -------------------------------------------------------------
+	@GetMapping
+	public ResponseEntity<List<PostResponseDto>> getFeed(@RequestParam(required = false) CommunityType community,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit) {
+		return withNextCursor(postService.getFeed(community, cursor, limit));
+	}
+	
+	// -------------------------------------------------------------
+	// Explore feed of a community (of the current user's communities if none)
+	// -------------------------------------------------------------
+	@GetMapping("/explore")
+	public ResponseEntity<List<PostResponseDto>> getExploreFeed(@RequestParam(required = false) CommunityType community,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit) {
+		return withNextCursor(postService.getExploreFeed(community, cursor, limit));
+	}
+	
+	// -------------------------------------------------------------
+	// Rebuild the timeline of the current user from scratch
+	// -------------------------------------------------------------
+	@PostMapping("/rebuild")
+	public ResponseEntity<Void> rebuildFeed() {
+		timelineService.rebuildTimeline(SecurityUtils.getCurrentUserId());
+		return ResponseEntity.noContent().build();
+	}
+	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// The body stays a JSON array, the cursor of the next page goes in a header
+	private static <T> ResponseEntity<List<T>> withNextCursor(CursorPage<T> page) {
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (page.nextCursor() != null) {
+			response.header(CursorPage.NEXT_CURSOR_HEADER, page.nextCursor());
+		}
+		return response.body(page.items());
+	}
+	
+}
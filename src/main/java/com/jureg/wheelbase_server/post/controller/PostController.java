@@ -0,0 +1,54 @@
+package com.jureg.wheelbase_server.post.controller;
+
+import java.util.UUID;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.jureg.wheelbase_server.post.dto.PostCreateDto;
+import com.jureg.wheelbase_server.post.dto.PostResponseDto;
+import com.jureg.wheelbase_server.post.service.PostService;
+import com.jureg.wheelbase_server.post_like.service.PostLikeService;
+
+import jakarta.validation.Valid;
+
+@RestController
+@RequestMapping("/api/posts")
+public class PostController {
+
+	private final PostService postService;
+	private final PostLikeService postLikeService;
+	
+	public PostController(PostService postService, PostLikeService postLikeService) {
+		this.postService = postService;
+		this.postLikeService = postLikeService;
+	}
+	
+	// -------------------------------------------------------------
+	// Create post
+	// -------------------------------------------------------------
+	@PostMapping
+	public ResponseEntity<PostResponseDto> createPost(@Valid @RequestBody PostCreateDto dto) {
+		PostResponseDto post = postService.createPost(dto);
+		return ResponseEntity.ok(post);
+	}
+	
+	// -------------------------------------------------------------
+	// Like / Unlike post
+	// -------------------------------------------------------------
+	@PostMapping("/{id}/like")
+	public ResponseEntity<Void> likePost(@PathVariable UUID id) {
+		postLikeService.likePost(id);
+		return ResponseEntity.noContent().build();
+	}
+	@PostMapping("/{id}/unlike")
+	public ResponseEntity<Void> unlikePost(@PathVariable UUID id) {
+		postLikeService.unlikePost(id);
+		return ResponseEntity.noContent().build();
+	}
+	
+}
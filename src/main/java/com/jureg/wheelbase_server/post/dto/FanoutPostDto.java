@@ -0,0 +1,18 @@
+package com.jureg.wheelbase_server.post.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+
+// What the fan-out of a post copies to the timelines: the post, its author, its community and its creation time
+public record FanoutPostDto(
+		
+		UUID id,
+		UUID authorId,
+		CommunityType community,
+		Instant createdAt
+		
+) {
+	
+}
@@ -0,0 +1,33 @@
+package com.jureg.wheelbase_server.post.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+// A post of a feed with its author and its written like count, projected in one join
+// (its creation time is the position of the row in a page)
+public record FeedPostDto(
+		
+		UUID id,
+		UUID authorId,
+		String authorUsername,
+		String authorAvatarUrl,
+		AccountType authorAccountType,
+		UUID vehicleId,
+		CommunityType community,
+		String content,
+		Instant createdAt,
+		long likeCount
+		
+) {
+	
+	public PostResponseDto toResponseDto(List<String> imageUrls, long pendingLikes, boolean likedByMe) {
+		UserSummaryDto author = new UserSummaryDto(authorId, authorUsername, authorAvatarUrl, authorAccountType);
+		return new PostResponseDto(id, author, vehicleId, community, content, imageUrls, createdAt, Math.max(likeCount + pendingLikes, 0), likedByMe);
+	}
+	
+}
@@ -0,0 +1,22 @@
+package com.jureg.wheelbase_server.post.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public record PostCreateDto(
+		
+		@NotNull
+		UUID vehicleId,
+		
+		String content,
+		
+		@Size(max = 10)
+		List<@NotBlank String> imageUrls
+		
+) {
+
+}
@@ -0,0 +1,14 @@
+package com.jureg.wheelbase_server.post.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A post of a feed page and its position: the pages of several communities are merged on it, the next page starts after the last one
+public record PostRefDto(
+		
+		UUID id,
+		Instant createdAt
+		
+) {
+	
+}
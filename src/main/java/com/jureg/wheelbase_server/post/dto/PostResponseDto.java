@@ -0,0 +1,24 @@
+package com.jureg.wheelbase_server.post.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+
+public record PostResponseDto(
+		
+		UUID id,
+		UserSummaryDto author,
+		UUID vehicleId,
+		CommunityType community,
+		String content,
+		List<String> imageUrls,
+		Instant createdAt,
+		long likeCount,
+		boolean likedByMe
+		
+) {
+	
+}
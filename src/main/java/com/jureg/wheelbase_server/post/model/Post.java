@@ -51,6 +51,10 @@ public class Post {
 	@Builder.Default
 	private Instant createdAt = Instant.now();
 	
+	// Set on creation, cleared once the post is pushed to the timelines of the followers of its author (TimelineService)
+	@Column(nullable = false)
+	private boolean fanoutPending;
+	
 	// A post can have 0 or more images
 	@OneToMany(mappedBy = "post", cascade = CascadeType.ALL)
 	@Builder.Default
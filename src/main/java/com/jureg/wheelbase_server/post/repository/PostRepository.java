@@ -1,13 +1,90 @@
 package com.jureg.wheelbase_server.post.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import com.jureg.wheelbase_server.post_like.model.PostLike;
-import com.jureg.wheelbase_server.post_like.model.PostLikeId;
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.dto.FanoutPostDto;
+import com.jureg.wheelbase_server.post.dto.FeedPostDto;
+import com.jureg.wheelbase_server.post.dto.PostRefDto;
+import com.jureg.wheelbase_server.post.model.Post;
 
 // Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
 @Repository
-public interface PostRepository extends JpaRepository<PostLike, PostLikeId> {
+public interface PostRepository extends JpaRepository<Post, UUID> {
+
+	// -------------------------------------------------------------
+	// Home feed
+	// -------------------------------------------------------------
+	// The posts of a page, projected with their author and like count in a single join: no Post nor User entity is loaded
+	@Query("""
+		select new com.jureg.wheelbase_server.post.dto.FeedPostDto(p.id, u.id, u.username, u.avatarUrl, u.accountType,
+			p.vehicle.id, p.community, p.content, p.createdAt, coalesce(c.likes, 0L))
+		from Post p join p.author u
+		left join PostLikeCounter c on c.postId = p.id
+		where p.id in :ids
+		order by p.createdAt desc, p.id desc
+		""")
+	List<FeedPostDto> findFeedPosts(@Param("ids") Collection<UUID> ids);
+	
+	// -------------------------------------------------------------
+	// Explore feed
+	// -------------------------------------------------------------
+	// Keyset pages of the posts of a community, newest first, ties broken by the post ID: a range scan of the
+	// (community, created_at, id) index; only the posts of the public profiles (not deleted) are shown to everyone
+	@Query("""
+		select new com.jureg.wheelbase_server.post.dto.PostRefDto(p.id, p.createdAt)
+		from Post p join p.author u
+		where p.community = :community and p.createdAt is not null
+		and u.accountType = com.jureg.wheelbase_server.user.model.AccountType.PUBLIC and u.deletedAt is null
+		order by p.createdAt desc, p.id desc
+		""")
+	List<PostRefDto> findExplorePostRefs(@Param("community") CommunityType community, Limit limit);
+	@Query("""
+		select new com.jureg.wheelbase_server.post.dto.PostRefDto(p.id, p.createdAt)
+		from Post p join p.author u
+		where p.community = :community
+		and (p.createdAt, p.id) < (:afterCreatedAt, :afterId)
+		and u.accountType = com.jureg.wheelbase_server.user.model.AccountType.PUBLIC and u.deletedAt is null
+		order by p.createdAt desc, p.id desc
+		""")
+	List<PostRefDto> findExplorePostRefsAfter(@Param("community") CommunityType community,
+			@Param("afterCreatedAt") Instant afterCreatedAt,
+			@Param("afterId") UUID afterId,
+			Limit limit);
+	
+	// -------------------------------------------------------------
+	// Fan-out
+	// -------------------------------------------------------------
+	// Oldest post waiting for its fan-out, locked for it: a second instance running the worker skips it instead of waiting
+	@Query(nativeQuery = true, value = """
+		SELECT id FROM posts
+		WHERE fanout_pending
+		ORDER BY created_at
+		LIMIT 1
+		FOR UPDATE SKIP LOCKED
+		""")
+	Optional<UUID> lockNextPendingFanout();
+	
+	@Query("""
+		select new com.jureg.wheelbase_server.post.dto.FanoutPostDto(p.id, p.author.id, p.community, p.createdAt)
+		from Post p
+		where p.id = :id
+		""")
+	Optional<FanoutPostDto> findFanoutPost(@Param("id") UUID id);
+	
+	@Modifying
+	@Query(nativeQuery = true, value = "UPDATE posts SET fanout_pending = false WHERE id = :id")
+	int markFannedOut(@Param("id") UUID id);
 
 }
@@ -0,0 +1,257 @@
+package com.jureg.wheelbase_server.post.service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.dto.FeedPostDto;
+import com.jureg.wheelbase_server.post.dto.PostCreateDto;
+import com.jureg.wheelbase_server.post.dto.PostRefDto;
+import com.jureg.wheelbase_server.post.dto.PostResponseDto;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post.repository.PostRepository;
+import com.jureg.wheelbase_server.post_image.dto.PostImageUrlDto;
+import com.jureg.wheelbase_server.post_image.model.PostImage;
+import com.jureg.wheelbase_server.post_image.repository.PostImageRepository;
+import com.jureg.wheelbase_server.post_like.index.LikedPostsLookup;
+import com.jureg.wheelbase_server.post_like.service.PostLikeCounterService;
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
+import com.jureg.wheelbase_server.shared.api.exception.VehicleNotFoundException;
+import com.jureg.wheelbase_server.shared.security.SecurityUtils;
+import com.jureg.wheelbase_server.timeline.dto.TimelinePostRefDto;
+import com.jureg.wheelbase_server.timeline.repository.TimelineRepository;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.service.RequestUserLoader;
+import com.jureg.wheelbase_server.vehicle.repository.VehicleRepository;
+
+@Service
+@Transactional
+public class PostService {
+
+	// Same order as the database: newest first, then the greatest ID (uuid is compared as unsigned bytes, unlike UUID.compareTo)
+	private static final Comparator<PostRefDto> NEWEST_FIRST = Comparator.comparing(PostRefDto::createdAt)
+			.thenComparing(PostRefDto::id, (a, b) -> {
+				int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+				return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+			})
+			.reversed();
+
+	private final PostRepository postRepository;
+	private final PostImageRepository postImageRepository;
+	private final TimelineRepository timelineRepository;
+	private final VehicleRepository vehicleRepository;
+	private final RequestUserLoader userLoader;
+	private final PostLikeCounterService postLikeCounterService;
+	private final LikedPostsLookup likedPostsLookup;
+	private final int defaultFeedLimit;
+	private final int maxFeedLimit;
+
+	public PostService(PostRepository postRepository,
+			PostImageRepository postImageRepository,
+			TimelineRepository timelineRepository,
+			VehicleRepository vehicleRepository,
+			RequestUserLoader userLoader,
+			PostLikeCounterService postLikeCounterService,
+			LikedPostsLookup likedPostsLookup,
+			@Value("${post.feed.default-limit:20}") int defaultFeedLimit,
+			@Value("${post.feed.max-limit:50}") int maxFeedLimit) {
+		this.postRepository = postRepository;
+		this.postImageRepository = postImageRepository;
+		this.timelineRepository = timelineRepository;
+		this.vehicleRepository = vehicleRepository;
+		this.userLoader = userLoader;
+		this.postLikeCounterService = postLikeCounterService;
+		this.likedPostsLookup = likedPostsLookup;
+		this.defaultFeedLimit = defaultFeedLimit;
+		this.maxFeedLimit = maxFeedLimit;
+	}
+
+	// -------------------------------------------------------------
+	// Create post
+	// -------------------------------------------------------------
+	/**
+	 * Create a post of the current user about one of its vehicles
+	 * The post is pushed to the timelines of the followers afterwards, by TimelineService
+	 * @param The post to create
+	 * @return The created post
+	 */
+	public PostResponseDto createPost(PostCreateDto dto) {
+		UUID currentUserId = SecurityUtils.getCurrentUserId();
+		// A post lives in the community of its vehicle
+		CommunityType community = vehicleRepository.findCommunityByIdAndOwnerId(dto.vehicleId(), currentUserId)
+				.orElseThrow(() -> new VehicleNotFoundException());
+		User author = userLoader.findById(currentUserId).orElseThrow(() -> new UserNotFoundException());
+
+		Post post = Post.builder()
+				.author(author)
+				.vehicle(vehicleRepository.getReferenceById(dto.vehicleId()))
+				.community(community)
+				.content(dto.content())
+				.fanoutPending(true)
+				.build();
+		List<String> imageUrls = dto.imageUrls() == null ? List.of() : dto.imageUrls();
+		for (String imageUrl : imageUrls) {
+			post.getImages().add(PostImage.builder().post(post).imageUrl(imageUrl).build());
+		}
+		postRepository.save(post);
+
+		UserSummaryDto authorSummary = new UserSummaryDto(author.getId(), author.getUsername(), author.getAvatarUrl(), author.getAccountType());
+		return new PostResponseDto(post.getId(), authorSummary, dto.vehicleId(), community, post.getContent(), imageUrls, post.getCreatedAt(), 0, false);
+	}
+
+	// -------------------------------------------------------------
+	// Home feed
+	// -------------------------------------------------------------
+	/**
+	 * Return a page of the home feed of the current user: the posts of the users it follows, newest first
+	 * Read from its timeline, with the posts of the celebrities it follows merged in (TimelineRepository)
+	 * @param The community of the posts, null for all of them
+	 * @param The cursor of the page, null for the first one
+	 * @param The page size, capped (default if null)
+	 * @return The page of posts, with the cursor of the next page
+	 */
+	@Transactional(readOnly = true)
+	public CursorPage<PostResponseDto> getFeed(CommunityType community, String cursor, Integer limit) {
+		UUID currentUserId = SecurityUtils.getCurrentUserId();
+		int pageSize = feedPageSize(limit);
+		FeedPosition after = cursor == null ? null : decodeFeedCursor(cursor);
+		// One more row tells if there is a next page
+		List<TimelinePostRefDto> postRefs;
+		if (community == null) {
+			postRefs = after == null
+					? timelineRepository.findPostRefs(currentUserId, pageSize + 1)
+					: timelineRepository.findPostRefsAfter(currentUserId, after.createdAt(), after.postId(), pageSize + 1);
+		} else {
+			postRefs = after == null
+					? timelineRepository.findPostRefsInCommunity(currentUserId, community.name(), pageSize + 1)
+					: timelineRepository.findPostRefsInCommunityAfter(currentUserId, community.name(), after.createdAt(), after.postId(), pageSize + 1);
+		}
+		return toFeedPage(postRefs.stream()
+				.map(postRef -> new PostRefDto(postRef.getId(), postRef.getCreatedAt()))
+				.toList(), pageSize);
+	}
+
+	// -------------------------------------------------------------
+	// Explore feed
+	// -------------------------------------------------------------
+	/**
+	 * Return a page of the explore feed: the posts of the public profiles of a community, newest first
+	 * Without a community, the feeds of the communities of the current user are merged into one
+	 * @param The community of the posts, null for the communities of the current user
+	 * @param The cursor of the page, null for the first one
+	 * @param The page size, capped (default if null)
+	 * @return The page of posts, with the cursor of the next page
+	 */
+	@Transactional(readOnly = true)
+	public CursorPage<PostResponseDto> getExploreFeed(CommunityType community, String cursor, Integer limit) {
+		int pageSize = feedPageSize(limit);
+		FeedPosition after = cursor == null ? null : decodeFeedCursor(cursor);
+		Set<CommunityType> communities = community != null
+				? Set.of(community)
+				: userLoader.findById(SecurityUtils.getCurrentUserId()).orElseThrow(() -> new UserNotFoundException()).getCommunities();
+
+		// One more row per community tells if there is a next page, wherever the page ends
+		List<List<PostRefDto>> pages = new ArrayList<>(communities.size());
+		for (CommunityType explored : communities) {
+			pages.add(after == null
+					? postRepository.findExplorePostRefs(explored, Limit.of(pageSize + 1))
+					: postRepository.findExplorePostRefsAfter(explored, after.createdAt(), after.postId(), Limit.of(pageSize + 1)));
+		}
+		return toFeedPage(mergeNewestFirst(pages, pageSize + 1), pageSize);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Position of the last post of a feed page
+	private record FeedPosition(Instant createdAt, UUID postId) {
+	}
+
+	// Head of a page being merged, and the rest of the page
+	private record PageHead(PostRefDto post, Iterator<PostRefDto> rest) {
+	}
+
+	// k-way merge of pages already sorted newest first: the heap only ever holds the head of each page
+	private static List<PostRefDto> mergeNewestFirst(List<List<PostRefDto>> pages, int limit) {
+		PriorityQueue<PageHead> heads = new PriorityQueue<>(Math.max(pages.size(), 1), Comparator.comparing(PageHead::post, NEWEST_FIRST));
+		for (List<PostRefDto> page : pages) {
+			Iterator<PostRefDto> rest = page.iterator();
+			if (rest.hasNext()) {
+				heads.add(new PageHead(rest.next(), rest));
+			}
+		}
+		List<PostRefDto> merged = new ArrayList<>(limit);
+		while (merged.size() < limit && !heads.isEmpty()) {
+			PageHead head = heads.poll();
+			merged.add(head.post());
+			if (head.rest().hasNext()) {
+				heads.add(new PageHead(head.rest().next(), head.rest()));
+			}
+		}
+		return merged;
+	}
+
+	// The positions of a page and one more: the page itself, and the images of all its posts at once
+	// The next page starts after the last position read, even if its post is no longer found (deleted since)
+	// The like counts are the written ones, plus the likes of this instance waiting for their flush
+	// "Liked by me" comes from the liker index, which reads the likers of the posts it does not hold yet in one query
+	private CursorPage<PostResponseDto> toFeedPage(List<PostRefDto> postRefs, int pageSize) {
+		boolean hasNext = postRefs.size() > pageSize;
+		List<PostRefDto> pageRefs = hasNext ? postRefs.subList(0, pageSize) : postRefs;
+		if (pageRefs.isEmpty()) {
+			return new CursorPage<>(List.of(), null);
+		}
+		List<UUID> pageIds = pageRefs.stream()
+				.map(PostRefDto::id)
+				.toList();
+
+		List<FeedPostDto> posts = postRepository.findFeedPosts(pageIds);
+		Map<UUID, List<String>> imageUrls = new HashMap<>();
+		for (PostImageUrlDto image : postImageRepository.findUrlsByPostIds(pageIds)) {
+			imageUrls.computeIfAbsent(image.postId(), postId -> new ArrayList<>()).add(image.imageUrl());
+		}
+		Set<UUID> likedPostIds = likedPostsLookup.findLikedPostIds(SecurityUtils.getCurrentUserId(), posts);
+		List<PostResponseDto> items = posts.stream()
+				.map(post -> post.toResponseDto(imageUrls.getOrDefault(post.id(), List.of()),
+						postLikeCounterService.getPendingDelta(post.id()),
+						likedPostIds.contains(post.id())))
+				.toList();
+		if (!hasNext) {
+			return new CursorPage<>(items, null);
+		}
+		PostRefDto last = pageRefs.get(pageRefs.size() - 1);
+		return new CursorPage<>(items, CursorCodec.encode(last.createdAt().toString(), last.id().toString()));
+	}
+
+	private int feedPageSize(Integer limit) {
+		return limit == null ? defaultFeedLimit : Math.min(Math.max(limit, 1), maxFeedLimit);
+	}
+
+	private static FeedPosition decodeFeedCursor(String cursor) {
+		String[] position = CursorCodec.decode(cursor, 2);
+		try {
+			return new FeedPosition(Instant.parse(position[0]), UUID.fromString(position[1]));
+		} catch (DateTimeParseException | IllegalArgumentException e) {
+			throw new InvalidCursorException();
+		}
+	}
+
+}
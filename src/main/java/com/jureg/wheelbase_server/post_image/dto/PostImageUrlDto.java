@@ -0,0 +1,13 @@
+package com.jureg.wheelbase_server.post_image.dto;
+
+import java.util.UUID;
+
+// An image of a post, without the post entity
+public record PostImageUrlDto(
+		
+		UUID postId,
+		String imageUrl
+		
+) {
+	
+}
@@ -0,0 +1,28 @@
+package com.jureg.wheelbase_server.post_image.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.jureg.wheelbase_server.post_image.dto.PostImageUrlDto;
+import com.jureg.wheelbase_server.post_image.model.PostImage;
+
+// Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
+@Repository
+public interface PostImageRepository extends JpaRepository<PostImage, UUID> {
+
+	// The images of a whole page of posts in one query, served by the post_id index
+	@Query("""
+		select new com.jureg.wheelbase_server.post_image.dto.PostImageUrlDto(i.post.id, i.imageUrl)
+		from PostImage i
+		where i.post.id in :postIds
+		order by i.post.id, i.id
+		""")
+	List<PostImageUrlDto> findUrlsByPostIds(@Param("postIds") Collection<UUID> postIds);
+
+}
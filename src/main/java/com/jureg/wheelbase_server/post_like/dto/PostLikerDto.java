@@ -0,0 +1,13 @@
+package com.jureg.wheelbase_server.post_like.dto;
+
+import java.util.UUID;
+
+// A like of a post, without the post nor the user entity
+public record PostLikerDto(
+		
+		UUID postId,
+		UUID userId
+		
+) {
+	
+}
@@ -0,0 +1,148 @@
+package com.jureg.wheelbase_server.post_like.index;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import com.jureg.wheelbase_server.post.dto.FeedPostDto;
+import com.jureg.wheelbase_server.post_like.dto.PostLikerDto;
+import com.jureg.wheelbase_server.post_like.repository.PostLikeRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Answers "liked by me" for a page of a feed from the liker index of this instance (PostLikerIndex)
+// The posts of the page not in the index are loaded in a single query, so a page costs one query cold and none warm
+// The index is kept current by the likes and unlikes of this instance, and catches up with the others when a post expires
+@Component
+public class LikedPostsLookup {
+
+	private final PostLikeRepository postLikeRepository;
+	private final PostLikerIndex index;
+	private final long maxLikersPerPost;
+
+	/**
+	 * @param The repository of the likes
+	 * @param The memory ceiling of the index
+	 * @param The time after which the likers of a post are read again
+	 * @param The number of likes above which a post is not loaded (its likers are too many to read for a page)
+	 * @param The registry of the index gauges
+	 */
+	public LikedPostsLookup(PostLikeRepository postLikeRepository,
+			@Value("${post.likes.index.max-memory:64MB}") DataSize maxMemory,
+			@Value("${post.likes.index.max-age:1m}") Duration maxAge,
+			@Value("${post.likes.index.max-likers-per-post:10000}") long maxLikersPerPost,
+			MeterRegistry meterRegistry) {
+		this.postLikeRepository = postLikeRepository;
+		this.index = new PostLikerIndex(maxMemory.toBytes(), maxAge.toNanos());
+		this.maxLikersPerPost = maxLikersPerPost;
+
+		Gauge.builder("post.likes.index.size", index, PostLikerIndex::size)
+				.description("Posts held by the liked-by-me index")
+				.register(meterRegistry);
+		Gauge.builder("post.likes.index.bytes", index, PostLikerIndex::estimatedBytes)
+				.description("Approximate heap held by the liked-by-me index")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	/**
+	 * Tell which posts of a page the user liked
+	 * @param The user ID
+	 * @param The posts of the page, with their written like count
+	 * @return The IDs of the posts liked by the user
+	 */
+	public Set<UUID> findLikedPostIds(UUID userId, List<FeedPostDto> posts) {
+		PostLikerIndex.Lookup lookup = index.lookup(userId, posts.stream().map(FeedPostDto::id).toList());
+		if (lookup.missingPostIds().isEmpty()) {
+			return lookup.likedPostIds();
+		}
+		Set<UUID> liked = new HashSet<>(lookup.likedPostIds());
+		Set<UUID> missing = new HashSet<>(lookup.missingPostIds());
+		List<UUID> toLoad = new ArrayList<>();
+		List<UUID> tooLarge = new ArrayList<>();
+		for (FeedPostDto post : posts) {
+			if (missing.contains(post.id())) {
+				(post.likeCount() > maxLikersPerPost ? tooLarge : toLoad).add(post.id());
+			}
+		}
+		if (!tooLarge.isEmpty()) {
+			liked.addAll(postLikeRepository.findLikedPostIds(userId, tooLarge));
+		}
+		if (!toLoad.isEmpty()) {
+			liked.addAll(load(userId, toLoad));
+		}
+		return liked;
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	/**
+	 * Add a like to the index once the current transaction commits, right away without one
+	 * @param The post ID
+	 * @param The user ID
+	 */
+	public void recordLike(UUID postId, UUID userId) {
+		afterCommit(() -> index.add(postId, userId));
+	}
+
+	/**
+	 * Remove a like from the index once the current transaction commits, right away without one
+	 * @param The post ID
+	 * @param The user ID
+	 */
+	public void recordUnlike(UUID postId, UUID userId) {
+		afterCommit(() -> index.remove(postId, userId));
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// The likes and unlikes committed while the likers are read are buffered by the index, then replayed on them
+	private Set<UUID> load(UUID userId, List<UUID> postIds) {
+		Map<UUID, List<UUID>> likers = new HashMap<>();
+		Set<UUID> liked = new HashSet<>();
+		index.beginLoad(postIds);
+		try {
+			for (PostLikerDto like : postLikeRepository.findLikers(postIds)) {
+				likers.computeIfAbsent(like.postId(), postId -> new ArrayList<>()).add(like.userId());
+				if (like.userId().equals(userId)) {
+					liked.add(like.postId());
+				}
+			}
+		} catch (RuntimeException e) {
+			index.cancelLoad(postIds);
+			throw e;
+		}
+		index.endLoad(postIds, likers);
+		return liked;
+	}
+
+	private static void afterCommit(Runnable change) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			change.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				change.run();
+			}
+		});
+	}
+
+}
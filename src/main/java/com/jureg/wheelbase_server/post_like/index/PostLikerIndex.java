@@ -0,0 +1,396 @@
+package com.jureg.wheelbase_server.post_like.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+// In-memory index of the likers of the posts, answering "has this user liked these posts?" without the database
+// Every liker is interned as an int slot, each post holds the set of the slots of its likers:
+// - a sorted array of slots while the post has few likers (4 bytes per liker)
+// - a bitmap over the slots once that is smaller (1 bit per slot up to the greatest one)
+// The posts are loaded on demand and kept in least recently used order: past the memory ceiling, the coldest ones go first
+// A slot counts the posts holding it: the user is forgotten with the last of them, and the slot handed out again
+// A post loaded more than "max age" ago is loaded again: the likes made on the other instances only reach this one that way
+// Every method is synchronized: a lookup reorders the posts too
+public class PostLikerIndex {
+
+	// Rough cost of a post besides its slots: map node, UUID, set and array headers
+	private static final long POST_OVERHEAD_BYTES = 120;
+	// Rough cost of an interned user: map node, UUID, boxed slot
+	private static final long USER_OVERHEAD_BYTES = 80;
+
+	private final Map<UUID, Integer> slotsByUserId = new HashMap<>();
+	// By slot: the user and the number of loaded posts it likes
+	private UUID[] userIds = new UUID[1024];
+	private int[] references = new int[1024];
+	// Reused first, so the slots stay dense and the bitmaps small
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+	private int slotCount;
+	// Access order: the eldest entry is the least recently used post
+	private final LinkedHashMap<UUID, LikerSet> likersByPostId = new LinkedHashMap<>(16, 0.75f, true);
+	// Loads in progress, with the likes and unlikes made meanwhile (replayed on the loaded sets)
+	private final Map<UUID, PendingLoad> pendingLoads = new HashMap<>();
+	private final long maxBytes;
+	private final long maxAgeNanos;
+	private long estimatedBytes;
+
+	/**
+	 * The liked posts found, and the posts the index cannot answer for (not loaded, or loaded too long ago)
+	 */
+	public record Lookup(Set<UUID> likedPostIds, List<UUID> missingPostIds) {
+	}
+
+	private record LikeChange(UUID userId, boolean liked) {
+	}
+
+	private static final class PendingLoad {
+
+		private int loaders;
+		private final List<LikeChange> changes = new ArrayList<>();
+
+	}
+
+	/**
+	 * @param The memory ceiling of the index
+	 * @param The time after which a post is loaded again, in nanoseconds
+	 */
+	public PostLikerIndex(long maxBytes, long maxAgeNanos) {
+		this.maxBytes = maxBytes;
+		this.maxAgeNanos = maxAgeNanos;
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	/**
+	 * Tell which of the posts the user liked, for the posts loaded and still fresh
+	 * @param The user ID
+	 * @param The post IDs
+	 * @return The liked posts, and the posts to load first
+	 */
+	public synchronized Lookup lookup(UUID userId, Collection<UUID> postIds) {
+		Integer slot = slotsByUserId.get(userId);
+		Set<UUID> liked = new HashSet<>();
+		List<UUID> missing = new ArrayList<>();
+		long now = System.nanoTime();
+		for (UUID postId : postIds) {
+			LikerSet likers = likersByPostId.get(postId);
+			if (likers == null || now - likers.loadedAt > maxAgeNanos) {
+				missing.add(postId);
+			} else if (slot != null && likers.contains(slot)) {
+				liked.add(postId);
+			}
+		}
+		return new Lookup(liked, missing);
+	}
+
+	// -------------------------------------------------------------
+	// Load
+	// -------------------------------------------------------------
+	/**
+	 * Start buffering the likes and unlikes of the posts, before reading their likers from the database
+	 * Every call must be followed by endLoad or cancelLoad with the same posts
+	 * @param The post IDs
+	 */
+	public synchronized void beginLoad(Collection<UUID> postIds) {
+		for (UUID postId : postIds) {
+			pendingLoads.computeIfAbsent(postId, id -> new PendingLoad()).loaders++;
+		}
+	}
+
+	/**
+	 * Add the posts with the likers read, then replay the likes and unlikes made since beginLoad
+	 * A post loaded meanwhile by another request is kept as is
+	 * @param The post IDs
+	 * @param The likers of each post (a post without likers can be left out)
+	 */
+	public synchronized void endLoad(Collection<UUID> postIds, Map<UUID, ? extends Collection<UUID>> likers) {
+		long now = System.nanoTime();
+		for (UUID postId : postIds) {
+			PendingLoad load = pendingLoads.get(postId);
+			LikerSet current = likersByPostId.get(postId);
+			if (current == null || now - current.loadedAt > maxAgeNanos) {
+				LikerSet loaded = new LikerSet(now);
+				Collection<UUID> likerIds = likers.get(postId);
+				if (likerIds != null) {
+					for (UUID userId : likerIds) {
+						apply(loaded, userId, true);
+					}
+				}
+				if (load != null) {
+					for (LikeChange change : load.changes) {
+						apply(loaded, change.userId(), change.liked());
+					}
+				}
+				putLikers(postId, loaded);
+			}
+			release(postId, load);
+		}
+		evict();
+	}
+
+	/**
+	 * Give up the load of the posts (the read failed)
+	 * @param The post IDs
+	 */
+	public synchronized void cancelLoad(Collection<UUID> postIds) {
+		for (UUID postId : postIds) {
+			release(postId, pendingLoads.get(postId));
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	/**
+	 * Record a like made on this instance (a post not loaded is left alone, it is read with the like when needed)
+	 * @param The post ID
+	 * @param The user ID
+	 */
+	public synchronized void add(UUID postId, UUID userId) {
+		change(postId, userId, true);
+	}
+
+	/**
+	 * Record an unlike made on this instance
+	 * @param The post ID
+	 * @param The user ID
+	 */
+	public synchronized void remove(UUID postId, UUID userId) {
+		change(postId, userId, false);
+	}
+
+	// -------------------------------------------------------------
+	// Size
+	// -------------------------------------------------------------
+	public synchronized int size() {
+		return likersByPostId.size();
+	}
+
+	/**
+	 * @return The number of users liking at least one loaded post
+	 */
+	public synchronized int users() {
+		return slotsByUserId.size();
+	}
+
+	/**
+	 * @return The approximate heap held by the index, interned users included
+	 */
+	public synchronized long estimatedBytes() {
+		return estimatedBytes;
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private void change(UUID postId, UUID userId, boolean liked) {
+		PendingLoad load = pendingLoads.get(postId);
+		if (load != null) {
+			load.changes.add(new LikeChange(userId, liked));
+		}
+		LikerSet likers = likersByPostId.get(postId);
+		if (likers != null) {
+			estimatedBytes -= likers.bytes();
+			apply(likers, userId, liked);
+			estimatedBytes += likers.bytes();
+			evict();
+		}
+	}
+
+	private void apply(LikerSet likers, UUID userId, boolean liked) {
+		if (liked) {
+			int slot = intern(userId);
+			if (likers.add(slot)) {
+				references[slot]++;
+			} else {
+				releaseIfUnused(slot);
+			}
+			return;
+		}
+		Integer slot = slotsByUserId.get(userId);
+		if (slot != null && likers.remove(slot)) {
+			release(slot);
+		}
+	}
+
+	private int intern(UUID userId) {
+		Integer slot = slotsByUserId.get(userId);
+		if (slot != null) {
+			return slot;
+		}
+		Integer free = freeSlots.poll();
+		int newSlot = free != null ? free : slotCount++;
+		if (newSlot == userIds.length) {
+			userIds = Arrays.copyOf(userIds, newSlot * 2);
+			references = Arrays.copyOf(references, newSlot * 2);
+		}
+		userIds[newSlot] = userId;
+		slotsByUserId.put(userId, newSlot);
+		estimatedBytes += USER_OVERHEAD_BYTES;
+		return newSlot;
+	}
+
+	private void release(int slot) {
+		references[slot]--;
+		releaseIfUnused(slot);
+	}
+
+	// A slot no post holds anymore: the user is forgotten, the slot goes back to the free ones
+	private void releaseIfUnused(int slot) {
+		if (references[slot] == 0) {
+			slotsByUserId.remove(userIds[slot]);
+			userIds[slot] = null;
+			freeSlots.push(slot);
+			estimatedBytes -= USER_OVERHEAD_BYTES;
+		}
+	}
+
+	private void putLikers(UUID postId, LikerSet likers) {
+		LikerSet previous = likersByPostId.put(postId, likers);
+		if (previous != null) {
+			drop(previous);
+		}
+		estimatedBytes += POST_OVERHEAD_BYTES + likers.bytes();
+	}
+
+	private void drop(LikerSet likers) {
+		estimatedBytes -= POST_OVERHEAD_BYTES + likers.bytes();
+		likers.forEach(this::release);
+	}
+
+	private void release(UUID postId, PendingLoad load) {
+		if (load != null && --load.loaders == 0) {
+			pendingLoads.remove(postId);
+		}
+	}
+
+	// The coldest posts first, with the users only they held
+	private void evict() {
+		Iterator<Map.Entry<UUID, LikerSet>> eldest = likersByPostId.entrySet().iterator();
+		while (estimatedBytes > maxBytes && eldest.hasNext()) {
+			LikerSet likers = eldest.next().getValue();
+			eldest.remove();
+			drop(likers);
+		}
+	}
+
+	// The slots of the likers of a post, in whichever form is smaller
+	// Slots are handed out in a row, so the likers of a popular post are dense enough for the bitmap to win
+	static final class LikerSet {
+
+		private final long loadedAt;
+		// Sorted array while sparse (null once a bitmap)
+		private int[] slots = new int[0];
+		private int size;
+		private long[] bits;
+
+		LikerSet(long loadedAt) {
+			this.loadedAt = loadedAt;
+		}
+
+		boolean contains(int slot) {
+			if (bits != null) {
+				return (slot >>> 6) < bits.length && (bits[slot >>> 6] & (1L << slot)) != 0;
+			}
+			return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+		}
+
+		// Tells if the slot was added (not there yet)
+		boolean add(int slot) {
+			if (bits != null) {
+				if ((slot >>> 6) >= bits.length) {
+					bits = Arrays.copyOf(bits, Math.max((slot >>> 6) + 1, bits.length * 2));
+				}
+				if ((bits[slot >>> 6] & (1L << slot)) != 0) {
+					return false;
+				}
+				bits[slot >>> 6] |= 1L << slot;
+				size++;
+				return true;
+			}
+			int position = Arrays.binarySearch(slots, 0, size, slot);
+			if (position >= 0) {
+				return false;
+			}
+			position = -position - 1;
+			if (size == slots.length) {
+				slots = Arrays.copyOf(slots, Math.max(4, size * 2));
+			}
+			System.arraycopy(slots, position, slots, position + 1, size - position);
+			slots[position] = slot;
+			size++;
+			// A bitmap up to the greatest slot against 4 bytes per slot
+			if (4L * size > 8L * ((slots[size - 1] >>> 6) + 1)) {
+				toBitmap();
+			}
+			return true;
+		}
+
+		// Tells if the slot was removed (was there)
+		boolean remove(int slot) {
+			if (bits != null) {
+				if ((slot >>> 6) >= bits.length || (bits[slot >>> 6] & (1L << slot)) == 0) {
+					return false;
+				}
+				bits[slot >>> 6] &= ~(1L << slot);
+				size--;
+				return true;
+			}
+			int position = Arrays.binarySearch(slots, 0, size, slot);
+			if (position < 0) {
+				return false;
+			}
+			System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+			size--;
+			return true;
+		}
+
+		void forEach(IntConsumer action) {
+			if (bits == null) {
+				for (int i = 0; i < size; i++) {
+					action.accept(slots[i]);
+				}
+				return;
+			}
+			for (int word = 0; word < bits.length; word++) {
+				for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+					action.accept((word << 6) + Long.numberOfTrailingZeros(remaining));
+				}
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		boolean isBitmap() {
+			return bits != null;
+		}
+
+		long bytes() {
+			return bits != null ? 8L * bits.length : 4L * slots.length;
+		}
+
+		private void toBitmap() {
+			bits = new long[(slots[size - 1] >>> 6) + 1];
+			for (int i = 0; i < size; i++) {
+				bits[slots[i] >>> 6] |= 1L << slots[i];
+			}
+			slots = null;
+		}
+
+	}
+
+}
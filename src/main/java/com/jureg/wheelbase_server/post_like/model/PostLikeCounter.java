@@ -0,0 +1,27 @@
+package com.jureg.wheelbase_server.post_like.model;
+
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The like count of a post, kept apart from the post: only the flushes of PostLikeCounterService write it
+// A post without any like has no row (a count of zero)
+@Data
+@Entity
+@Table(name = "post_like_counters")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostLikeCounter {
+
+	@Id
+	private UUID postId;
+
+	@Column(nullable = false)
+	private long likes;
+
+}
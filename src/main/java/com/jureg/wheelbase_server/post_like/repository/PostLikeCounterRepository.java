@@ -0,0 +1,31 @@
+package com.jureg.wheelbase_server.post_like.repository;
+
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.jureg.wheelbase_server.post_like.model.PostLikeCounter;
+
+// Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
+// Rows are always written by increasing post ID, so two flushes (two instances) never wait on each other's rows in a cycle
+@Repository
+public interface PostLikeCounterRepository extends JpaRepository<PostLikeCounter, UUID> {
+
+	// One upsert for a whole batch of deltas, passed as two arrays of the same length (a post and its delta at the same index)
+	// The posts are read from the posts table, so the delta of a post deleted meanwhile is dropped instead of failing the batch
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO post_like_counters (post_id, likes)
+		SELECT d.post_id, d.likes FROM unnest(CAST(:postIds AS uuid[]), CAST(:deltas AS bigint[])) AS d (post_id, likes)
+		JOIN posts p ON p.id = d.post_id
+		ORDER BY d.post_id
+		ON CONFLICT (post_id) DO UPDATE
+		SET likes = post_like_counters.likes + EXCLUDED.likes
+		""")
+	int addAll(@Param("postIds") UUID[] postIds, @Param("deltas") Long[] deltas);
+
+}
@@ -1,14 +1,73 @@
 package com.jureg.wheelbase_server.post_like.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post_like.dto.PostLikerDto;
+import com.jureg.wheelbase_server.post_like.model.PostLike;
+import com.jureg.wheelbase_server.post_like.model.PostLikeId;
 
 // Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
 @Repository
-public interface PostLikeRepository extends JpaRepository<Post, UUID> {
+public interface PostLikeRepository extends JpaRepository<PostLike, PostLikeId> {
+
+	// -------------------------------------------------------------
+	// Like / unlike
+	// -------------------------------------------------------------
+	// One statement each, without loading the post nor the like: the outcome is read from the returned row
+	// No row is returned when the like already exists, or when the user cannot see the post
+	// (unknown post, deleted author, private profile it does not follow), or when the user is deleted itself: its access token
+	// outlives the mark, and a like added after the purge went through the likes would be cascaded away uncounted
+	@Query(nativeQuery = true, value = """
+		INSERT INTO post_likes (post_id, user_id, created_at)
+		SELECT p.id, CAST(:userId AS uuid), CAST(:createdAt AS timestamptz) FROM posts p
+		JOIN users u ON u.id = p.author_id AND u.deleted_at IS NULL
+		WHERE p.id = :postId
+		AND (u.account_type = 'PUBLIC' OR u.id = :userId
+			OR EXISTS (SELECT 1 FROM follows f WHERE f.follower_id = :userId AND f.followed_id = u.id))
+		AND NOT EXISTS (SELECT 1 FROM users d WHERE d.id = :userId AND d.deleted_at IS NOT NULL)
+		ON CONFLICT (post_id, user_id) DO NOTHING
+		RETURNING post_id
+		""")
+	Optional<UUID> insertIfAbsent(@Param("postId") UUID postId,
+			@Param("userId") UUID userId,
+			@Param("createdAt") Instant createdAt);
+
+	// No row returned when there was nothing to delete
+	@Query(nativeQuery = true, value = """
+		DELETE FROM post_likes
+		WHERE post_id = :postId AND user_id = :userId
+		RETURNING post_id
+		""")
+	Optional<UUID> deleteIfPresent(@Param("postId") UUID postId, @Param("userId") UUID userId);
+
+	@Query("select count(l) > 0 from PostLike l where l.post.id = :postId and l.user.id = :userId")
+	boolean existsByPostIdAndUserId(@Param("postId") UUID postId, @Param("userId") UUID userId);
+
+	// -------------------------------------------------------------
+	// Liked by me
+	// -------------------------------------------------------------
+	// Every liker of a page of posts in one query, served by the primary key (post_id first): loads the liked-by-me index
+	@Query("""
+		select new com.jureg.wheelbase_server.post_like.dto.PostLikerDto(l.post.id, l.user.id)
+		from PostLike l
+		where l.post.id in :postIds
+		""")
+	List<PostLikerDto> findLikers(@Param("postIds") Collection<UUID> postIds);
+
+	// The posts liked by a user among a few, for the posts with too many likers to be loaded
+	@Query("""
+		select l.post.id from PostLike l
+		where l.user.id = :userId and l.post.id in :postIds
+		""")
+	List<UUID> findLikedPostIds(@Param("userId") UUID userId, @Param("postIds") Collection<UUID> postIds);
 
 }
@@ -0,0 +1,174 @@
+package com.jureg.wheelbase_server.post_like.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jureg.wheelbase_server.post_like.repository.PostLikeCounterRepository;
+import com.jureg.wheelbase_server.shared.config.SchedulingConfig;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+// Keeps the like counts of the posts, write-behind: a like adds to an in-memory counter of its post,
+// a periodic job writes the deltas to post_like_counters, a batch of posts per statement
+// The counter of a post is a LongAdder: the likes of a viral post are spread over several cells instead of contending on one value,
+// and the database gets one upsert per post and per flush however many likes came in between
+// The deltas not written yet are lost if the instance crashes (a shutdown flushes them): the post_likes rows stay the truth
+@Service
+public class PostLikeCounterService {
+
+	private final PostLikeCounterRepository postLikeCounterRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final int batchSize;
+
+	private final Map<UUID, PendingLikes> pending = new ConcurrentHashMap<>();
+
+	// The likes of a post counted since the last flush
+	// Retired (and dropped from the map) once a flush finds nothing to write: a like still holding it moves its delta to a new one
+	private static final class PendingLikes {
+
+		private final LongAdder delta = new LongAdder();
+		private volatile boolean retired;
+
+	}
+
+	/**
+	 * @param The repository of the counters
+	 * @param The transaction manager (one transaction per batch of posts)
+	 * @param The number of posts written per statement
+	 * @param The registry of the counter metrics
+	 */
+	public PostLikeCounterService(PostLikeCounterRepository postLikeCounterRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${post.likes.counters.flush-batch-size:1000}") int batchSize,
+			MeterRegistry meterRegistry) {
+		this.postLikeCounterRepository = postLikeCounterRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.batchSize = batchSize;
+		Gauge.builder("post.likes.counters.pending", pending, Map::size)
+				.description("Posts with likes counted in memory, waiting for the next flush")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	/**
+	 * Return the likes of a post counted by this instance and not written yet
+	 * @param The post ID
+	 * @return The delta to add to the written count (zero if none)
+	 */
+	public long getPendingDelta(UUID postId) {
+		PendingLikes likes = pending.get(postId);
+		return likes == null ? 0 : likes.delta.sum();
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	/**
+	 * Count a like (or an unlike) once the current transaction commits, right away without one
+	 * @param The post ID
+	 * @param The delta (1 for a like, -1 for an unlike)
+	 */
+	public void record(UUID postId, long delta) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			add(postId, delta);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				add(postId, delta);
+			}
+		});
+	}
+
+	// -------------------------------------------------------------
+	// Flush
+	// -------------------------------------------------------------
+	/**
+	 * Write the deltas counted since the last flush, a batch of posts per transaction (and once more on shutdown)
+	 * A batch that fails is counted back in memory, for the next flush
+	 * On the short jobs scheduler: the batch jobs must not let the deltas pile up
+	 */
+	@PreDestroy
+	@Scheduled(fixedDelayString = "${post.likes.counters.flush-interval:200ms}", initialDelayString = "${post.likes.counters.flush-interval:200ms}",
+			scheduler = SchedulingConfig.SHORT_JOBS_SCHEDULER)
+	public void flush() {
+		List<UUID> postIds = new ArrayList<>();
+		List<Long> deltas = new ArrayList<>();
+		for (Map.Entry<UUID, PendingLikes> entry : pending.entrySet()) {
+			long delta = drain(entry.getKey(), entry.getValue());
+			if (delta == 0) {
+				continue;
+			}
+			postIds.add(entry.getKey());
+			deltas.add(delta);
+			if (postIds.size() == batchSize) {
+				write(postIds, deltas);
+				postIds.clear();
+				deltas.clear();
+			}
+		}
+		if (!postIds.isEmpty()) {
+			write(postIds, deltas);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Each cell is reset as it is read (sumThenReset): a concurrent like lands before the read and is written now, or after it
+	// and is written next time, never both
+	private void add(UUID postId, long delta) {
+		PendingLikes likes = pending.computeIfAbsent(postId, id -> new PendingLikes());
+		likes.delta.add(delta);
+		if (likes.retired) {
+			// Retired by a flush meanwhile: what the flush did not drain goes to the new counter of the post
+			long moved = likes.delta.sumThenReset();
+			if (moved != 0) {
+				add(postId, moved);
+			}
+		}
+	}
+
+	// A post with nothing to write is retired: removed first, then flagged, then drained one last time
+	// A like that added to it after that last drain sees the flag (add), so its delta is drained by one side exactly
+	private long drain(UUID postId, PendingLikes likes) {
+		long delta = likes.delta.sumThenReset();
+		if (delta != 0) {
+			return delta;
+		}
+		pending.remove(postId, likes);
+		likes.retired = true;
+		return likes.delta.sumThenReset();
+	}
+
+	private void write(List<UUID> postIds, List<Long> deltas) {
+		UUID[] batchPostIds = postIds.toArray(UUID[]::new);
+		Long[] batchDeltas = deltas.toArray(Long[]::new);
+		try {
+			transactionTemplate.executeWithoutResult(status -> postLikeCounterRepository.addAll(batchPostIds, batchDeltas));
+		} catch (RuntimeException e) {
+			for (int i = 0; i < batchPostIds.length; i++) {
+				add(batchPostIds[i], batchDeltas[i]);
+			}
+			throw e;
+		}
+	}
+
+}
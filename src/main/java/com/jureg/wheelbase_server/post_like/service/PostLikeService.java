@@ -0,0 +1,64 @@
+package com.jureg.wheelbase_server.post_like.service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jureg.wheelbase_server.post_like.index.LikedPostsLookup;
+import com.jureg.wheelbase_server.post_like.repository.PostLikeRepository;
+import com.jureg.wheelbase_server.shared.api.exception.PostNotFoundException;
+import com.jureg.wheelbase_server.shared.security.SecurityUtils;
+
+@Service
+@Transactional
+public class PostLikeService {
+
+	private final PostLikeRepository postLikeRepository;
+	private final PostLikeCounterService postLikeCounterService;
+	private final LikedPostsLookup likedPostsLookup;
+
+	public PostLikeService(PostLikeRepository postLikeRepository,
+			PostLikeCounterService postLikeCounterService,
+			LikedPostsLookup likedPostsLookup) {
+		this.postLikeRepository = postLikeRepository;
+		this.postLikeCounterService = postLikeCounterService;
+		this.likedPostsLookup = likedPostsLookup;
+	}
+
+	// -------------------------------------------------------------
+	// Like / Unlike post
+	// -------------------------------------------------------------
+	/**
+	 * Like a post as the current user, liking it again changes nothing
+	 * The post row is never written: the like is counted by PostLikeCounterService once the insert commits,
+	 * and added to the liked-by-me index (LikedPostsLookup)
+	 * @param The post ID
+	 */
+	public void likePost(UUID postId) {
+		UUID currentUserId = SecurityUtils.getCurrentUserId();
+		if (postLikeRepository.insertIfAbsent(postId, currentUserId, Instant.now()).isPresent()) {
+			postLikeCounterService.record(postId, 1);
+			likedPostsLookup.recordLike(postId, currentUserId);
+			return;
+		}
+		// Nothing inserted: the like was already there, or the post is out of reach
+		if (!postLikeRepository.existsByPostIdAndUserId(postId, currentUserId)) {
+			throw new PostNotFoundException();
+		}
+	}
+
+	/**
+	 * Remove the like of the current user from a post, nothing happens if it did not like it
+	 * @param The post ID
+	 */
+	public void unlikePost(UUID postId) {
+		UUID currentUserId = SecurityUtils.getCurrentUserId();
+		if (postLikeRepository.deleteIfPresent(postId, currentUserId).isPresent()) {
+			postLikeCounterService.record(postId, -1);
+			likedPostsLookup.recordUnlike(postId, currentUserId);
+		}
+	}
+
+}
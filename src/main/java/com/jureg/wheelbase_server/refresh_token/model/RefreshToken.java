@@ -0,0 +1,41 @@
+package com.jureg.wheelbase_server.refresh_token.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Long-lived opaque token used to get new access tokens without sending the password again
+// Only a SHA-256 hash of the token is stored: a leaked table cannot be used to open sessions
+@Data
+@Entity
+@Table(name = "refresh_tokens")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshToken {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.UUID)
+	private UUID id;
+	
+	@Column(nullable = false)
+	private UUID userId;
+	
+	@Column(nullable = false, unique = true, length = 64)
+	private String tokenHash;
+	
+	@Column(nullable = false)
+	private Instant createdAt;
+	
+	@Column(nullable = false)
+	private Instant expiresAt;
+	
+	// Set when the token is rotated or the user logs out
+	private Instant revokedAt;
+
+}
@@ -0,0 +1,32 @@
+package com.jureg.wheelbase_server.refresh_token.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Access token revoked before its expiration, shared between the instances
+// Each instance loads the new rows into its in-memory revocation list, requests never read this table
+@Data
+@Entity
+@Table(name = "revoked_access_tokens")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RevokedAccessToken {
+
+	// Signature segment of the JWT
+	@Id
+	@Column(length = 64)
+	private String tokenId;
+	
+	@Column(nullable = false)
+	private Instant expiresAt;
+	
+	@Column(nullable = false)
+	private Instant revokedAt;
+
+}
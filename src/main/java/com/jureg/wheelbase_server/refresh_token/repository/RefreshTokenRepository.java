@@ -0,0 +1,42 @@
+package com.jureg.wheelbase_server.refresh_token.repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.jureg.wheelbase_server.refresh_token.model.RefreshToken;
+
+// Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
+
+	Optional<RefreshToken> findByTokenHash(String tokenHash);
+	
+	// Conditional update: when two requests rotate the same token, only one of them wins
+	@Modifying
+	@Query("update RefreshToken t set t.revokedAt = :now where t.id = :id and t.revokedAt is null")
+	int revokeIfActive(@Param("id") UUID id, @Param("now") Instant now);
+	
+	@Modifying
+	@Query("update RefreshToken t set t.revokedAt = :now where t.userId = :userId and t.revokedAt is null")
+	int revokeAllByUserId(@Param("userId") UUID userId, @Param("now") Instant now);
+	
+	// Logout: only an active token goes, a rotated one stays to detect its reuse
+	@Modifying
+	@Query("delete from RefreshToken t where t.tokenHash = :tokenHash and t.revokedAt is null")
+	int deleteActiveByTokenHash(@Param("tokenHash") String tokenHash);
+	
+	@Modifying
+	@Query("delete from RefreshToken t where t.userId = :userId")
+	int deleteAllByUserId(@Param("userId") UUID userId);
+	
+	@Modifying
+	@Query("delete from RefreshToken t where t.expiresAt < :now")
+	int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,34 @@
+package com.jureg.wheelbase_server.refresh_token.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.jureg.wheelbase_server.refresh_token.model.RevokedAccessToken;
+
+// Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
+@Repository
+public interface RevokedAccessTokenRepository extends JpaRepository<RevokedAccessToken, String> {
+
+	List<RevokedAccessToken> findByRevokedAtAfter(Instant revokedAt);
+	
+	// A single insert (save would merge the assigned ID: a select, then the insert), a token revoked twice keeps its first row
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO revoked_access_tokens (token_id, expires_at, revoked_at)
+		VALUES (:tokenId, CAST(:expiresAt AS timestamptz), CAST(:revokedAt AS timestamptz))
+		ON CONFLICT (token_id) DO NOTHING
+		""")
+	int insertIfAbsent(@Param("tokenId") String tokenId,
+			@Param("expiresAt") Instant expiresAt,
+			@Param("revokedAt") Instant revokedAt);
+	
+	@Modifying
+	@Query("delete from RevokedAccessToken t where t.expiresAt < :now")
+	int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,170 @@
+package com.jureg.wheelbase_server.refresh_token.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.refresh_token.model.RefreshToken;
+import com.jureg.wheelbase_server.refresh_token.repository.RefreshTokenRepository;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidRefreshTokenException;
+import com.jureg.wheelbase_server.shared.service.JwtService;
+import com.jureg.wheelbase_server.shared.service.VerifiedToken;
+import com.jureg.wheelbase_server.user.dto.UserAuthResponseDto;
+import com.jureg.wheelbase_server.user.mapper.UserMapper;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.service.RequestUserLoader;
+
+@Service
+@Transactional
+public class RefreshTokenService {
+
+	// 256 random bits, encoded in Base64URL
+	private static final int TOKEN_BYTES = 32;
+
+	private final SecureRandom secureRandom = new SecureRandom();
+	private final RefreshTokenRepository refreshTokenRepository;
+	private final TokenRevocationService tokenRevocationService;
+	private final RequestUserLoader userLoader;
+	private final JwtService jwtService;
+	private final UserMapper userMapper;
+	private final FollowCounterService followCounterService;
+	private final Duration refreshTokenTtl;
+
+	public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+			TokenRevocationService tokenRevocationService,
+			RequestUserLoader userLoader,
+			JwtService jwtService,
+			UserMapper userMapper,
+			FollowCounterService followCounterService,
+			@Value("${jwt.refresh-token.ttl:30d}") Duration refreshTokenTtl) {
+		this.refreshTokenRepository = refreshTokenRepository;
+		this.tokenRevocationService = tokenRevocationService;
+		this.userLoader = userLoader;
+		this.jwtService = jwtService;
+		this.userMapper = userMapper;
+		this.followCounterService = followCounterService;
+		this.refreshTokenTtl = refreshTokenTtl;
+	}
+
+	// -------------------------------------------------------------
+	// Issue
+	// -------------------------------------------------------------
+	/**
+	 * Issue a new refresh token for a user
+	 * @param The user ID
+	 * @return The opaque refresh token (only its hash is stored)
+	 */
+	public String issueToken(UUID userId) {
+		byte[] bytes = new byte[TOKEN_BYTES];
+		secureRandom.nextBytes(bytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		Instant now = Instant.now();
+		refreshTokenRepository.save(RefreshToken.builder()
+				.userId(userId)
+				.tokenHash(hash(token))
+				.createdAt(now)
+				.expiresAt(now.plus(refreshTokenTtl))
+				.build());
+		return token;
+	}
+
+	// -------------------------------------------------------------
+	// Refresh
+	// -------------------------------------------------------------
+	/**
+	 * Exchange a refresh token for a new access token and a new refresh token (the old one is revoked)
+	 * No password hashing here: a lookup by hash, a conditional update and a signature
+	 * @param The refresh token
+	 * @return The new tokens and the user
+	 */
+	@Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+	public UserAuthResponseDto refresh(String token) {
+		if (token == null || token.isBlank()) {
+			throw new InvalidRefreshTokenException();
+		}
+		RefreshToken stored = refreshTokenRepository.findByTokenHash(hash(token)).orElseThrow(() -> new InvalidRefreshTokenException());
+		Instant now = Instant.now();
+		if (stored.getRevokedAt() != null) {
+			// A rotated token is used again: it has leaked, every session of the user is closed
+			refreshTokenRepository.revokeAllByUserId(stored.getUserId(), now);
+			throw new InvalidRefreshTokenException();
+		}
+		if (!stored.getExpiresAt().isAfter(now)) {
+			throw new InvalidRefreshTokenException();
+		}
+		// Another request rotated this token in the meantime
+		if (refreshTokenRepository.revokeIfActive(stored.getId(), now) == 0) {
+			throw new InvalidRefreshTokenException();
+		}
+		User user = userLoader.findById(stored.getUserId()).orElseThrow(() -> new InvalidRefreshTokenException());
+		String refreshToken = issueToken(user.getId());
+		return new UserAuthResponseDto(jwtService.generateToken(user), refreshToken, userMapper.toResponseDto(user, followCounterService.getCounts(user.getId())));
+	}
+
+	// -------------------------------------------------------------
+	// Logout
+	// -------------------------------------------------------------
+	/**
+	 * Revoke the tokens of a session, both are optional
+	 * The refresh token is deleted rather than revoked: a revoked one used again is taken for a leak and closes every session
+	 * @param The refresh token
+	 * @param The access token
+	 */
+	public void logout(String refreshToken, String accessToken) {
+		if (refreshToken != null && !refreshToken.isBlank()) {
+			refreshTokenRepository.deleteActiveByTokenHash(hash(refreshToken));
+		}
+		if (accessToken != null && !accessToken.isBlank()) {
+			Optional<VerifiedToken> verified = jwtService.verifyToken(accessToken);
+			verified.ifPresent(token -> tokenRevocationService.revokeAccessToken(JwtService.getTokenId(accessToken), token.expiresAt()));
+		}
+	}
+
+	/**
+	 * Delete every refresh token of a user (account deletion)
+	 * @param The user ID
+	 */
+	public void deleteTokensOfUser(UUID userId) {
+		refreshTokenRepository.deleteAllByUserId(userId);
+	}
+
+	@Scheduled(fixedDelayString = "${jwt.refresh-token.cleanup-interval:1h}", initialDelayString = "${jwt.refresh-token.cleanup-interval:1h}")
+	public void deleteExpiredTokens() {
+		refreshTokenRepository.deleteExpired(Instant.now());
+	}
+
+	public Duration getRefreshTokenTtl() {
+		return refreshTokenTtl;
+	}
+
+	public Duration getAccessTokenTtl() {
+		return jwtService.getAccessTokenTtl();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// The tokens are random and long, a fast hash is enough (no need for BCrypt)
+	private static String hash(String token) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+}
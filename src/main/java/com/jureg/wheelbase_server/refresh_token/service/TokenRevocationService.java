@@ -0,0 +1,65 @@
+package com.jureg.wheelbase_server.refresh_token.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jureg.wheelbase_server.refresh_token.repository.RevokedAccessTokenRepository;
+import com.jureg.wheelbase_server.shared.config.SchedulingConfig;
+import com.jureg.wheelbase_server.shared.security.AccessTokenRevocationList;
+
+// Keeps the in-memory revocation list of every instance in sync
+// A revocation is applied locally right away, and stored so the other instances pick it up at their next synchronization
+@Service
+@Transactional
+public class TokenRevocationService {
+
+	// Rows are read again for a while, for clock differences between instances and transactions committed late
+	private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+	private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+	private final AccessTokenRevocationList revocationList;
+	private Instant lastSync = Instant.EPOCH;
+
+	public TokenRevocationService(RevokedAccessTokenRepository revokedAccessTokenRepository,
+			AccessTokenRevocationList revocationList) {
+		this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+		this.revocationList = revocationList;
+	}
+
+	// -------------------------------------------------------------
+	// Revoke
+	// -------------------------------------------------------------
+	/**
+	 * Revoke an access token on every instance
+	 * @param The token ID (signature segment of the JWT)
+	 * @param The expiration of the token
+	 */
+	public void revokeAccessToken(String tokenId, Instant expiresAt) {
+		revokedAccessTokenRepository.insertIfAbsent(tokenId, expiresAt, Instant.now());
+		revocationList.revoke(tokenId, expiresAt);
+	}
+
+	// -------------------------------------------------------------
+	// Synchronization
+	// -------------------------------------------------------------
+	// The first run (at startup) loads every revoked token not expired yet
+	// On the short jobs scheduler: the batch jobs must not delay the revocations made on the other instances
+	@Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:5s}", scheduler = SchedulingConfig.SHORT_JOBS_SCHEDULER)
+	public synchronized void synchronize() {
+		Instant now = Instant.now();
+		revokedAccessTokenRepository.findByRevokedAtAfter(lastSync.minus(SYNC_OVERLAP))
+				.forEach(token -> revocationList.revoke(token.getTokenId(), token.getExpiresAt()));
+		revocationList.advance(now);
+		lastSync = now;
+	}
+
+	@Scheduled(fixedDelayString = "${jwt.revocation.cleanup-interval:1h}", initialDelayString = "${jwt.revocation.cleanup-interval:1h}")
+	public void deleteExpiredRevocations() {
+		revokedAccessTokenRepository.deleteExpired(Instant.now());
+	}
+
+}
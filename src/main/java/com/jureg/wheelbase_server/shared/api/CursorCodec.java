@@ -0,0 +1,56 @@
+package com.jureg.wheelbase_server.shared.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+
+// Encodes the keyset position of a page (e.g. the sort key of its last row) into an opaque cursor
+// Each part is Base64URL encoded, the parts are separated by dots
+public final class CursorCodec {
+
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+	private CursorCodec() {
+	}
+
+	/**
+	 * Encode the parts of a keyset position
+	 * @param The parts, in order
+	 * @return The cursor
+	 */
+	public static String encode(String... parts) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				builder.append('.');
+			}
+			builder.append(ENCODER.encodeToString(parts[i].getBytes(StandardCharsets.UTF_8)));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Decode a cursor made by encode
+	 * @param The cursor
+	 * @param The number of parts expected
+	 * @return The parts, in order
+	 * @throws InvalidCursorException if the cursor was not made by encode with this number of parts
+	 */
+	public static String[] decode(String cursor, int expectedParts) {
+		String[] parts = cursor.split("\\.", -1);
+		if (parts.length != expectedParts) {
+			throw new InvalidCursorException();
+		}
+		try {
+			for (int i = 0; i < parts.length; i++) {
+				parts[i] = new String(DECODER.decode(parts[i]), StandardCharsets.UTF_8);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException();
+		}
+		return parts;
+	}
+
+}
@@ -1,12 +1,15 @@
 package com.jureg.wheelbase_server.shared.api;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import com.jureg.wheelbase_server.shared.api.exception.AccessDeniedException;
 import com.jureg.wheelbase_server.shared.api.exception.AlreadyFollowingException;
@@ -14,8 +17,14 @@ import com.jureg.wheelbase_server.shared.api.exception.CannotFollowYourselfExcep
 import com.jureg.wheelbase_server.shared.api.exception.CannotUnfollowYourselfException;
 import com.jureg.wheelbase_server.shared.api.exception.FieldAlreadyExistsException;
 import com.jureg.wheelbase_server.shared.api.exception.InvalidCredentialsException;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidRefreshTokenException;
 import com.jureg.wheelbase_server.shared.api.exception.NotFollowingUserException;
+import com.jureg.wheelbase_server.shared.api.exception.PasswordHashingBusyException;
+import com.jureg.wheelbase_server.shared.api.exception.PostNotFoundException;
+import com.jureg.wheelbase_server.shared.api.exception.TimelineRebuildThrottledException;
 import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
+import com.jureg.wheelbase_server.shared.api.exception.VehicleNotFoundException;
 
 import jakarta.validation.UnexpectedTypeException;
 import tools.jackson.databind.exc.InvalidFormatException;
@@ -103,6 +112,30 @@ public class GlobalExceptionHandler {
         );
     }
 
+    // Same for the enums of the query parameters (e.g. ?community=)
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleInvalidParameter(MethodArgumentTypeMismatchException ex) {
+        Class<?> type = ex.getRequiredType();
+        if (type != null && type.isEnum()) {
+            List<String> allowedValues =
+                    Arrays.stream(type.getEnumConstants())
+                          .map(Object::toString)
+                          .toList();
+
+            return Map.of(
+                "error", "Invalid enum value",
+                "field", ex.getName(),
+                "allowedValues", allowedValues
+            );
+        }
+
+        return Map.of(
+            "error", "Invalid request parameter",
+            "parameter", ex.getName()
+        );
+    }
+
 	// -------------------------------------------------------------
 	// Custom exceptions
 	// -------------------------------------------------------------
@@ -117,6 +150,18 @@ public class GlobalExceptionHandler {
     public Map<String, String> handleInvalidCredentials(InvalidCredentialsException ex) {
         return Map.of("error", ex.getMessage());
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleInvalidCursor(InvalidCursorException ex) {
+        return Map.of("error", ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    public Map<String, String> handleInvalidRefreshToken(InvalidRefreshTokenException ex) {
+        return Map.of("error", ex.getMessage());
+    }
     
     @ExceptionHandler(CannotFollowYourselfException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -154,6 +199,34 @@ public class GlobalExceptionHandler {
         return Map.of("error", ex.getMessage());
     }
 
+    @ExceptionHandler(VehicleNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> handleVehicleNotFound(VehicleNotFoundException ex) {
+        return Map.of("error", ex.getMessage());
+    }
+
+    @ExceptionHandler(PostNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> handlePostNotFound(PostNotFoundException ex) {
+        return Map.of("error", ex.getMessage());
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingBusy(PasswordHashingBusyException ex) {
+        // 503 with a Retry-After header, so clients back off instead of hammering the login
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(TimelineRebuildThrottledException.class)
+    public ResponseEntity<Map<String, String>> handleTimelineRebuildThrottled(TimelineRebuildThrottledException ex) {
+        // 429 with a Retry-After header: a rebuild reads the posts of every followed author, once in a while is enough
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
     // -------------------------------------------------------------
  	// Fallback exception
  	// -------------------------------------------------------------
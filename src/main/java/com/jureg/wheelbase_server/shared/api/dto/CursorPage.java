@@ -0,0 +1,17 @@
+package com.jureg.wheelbase_server.shared.api.dto;
+
+import java.util.List;
+
+public record CursorPage<T>(
+		
+		List<T> items,
+		
+		// Opaque cursor of the next page, null on the last page
+		String nextCursor
+		
+) {
+
+	// The list end points keep returning a JSON array, the cursor of the next page goes in this header
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+}
@@ -0,0 +1,10 @@
+package com.jureg.wheelbase_server.shared.api.exception;
+
+@SuppressWarnings("serial")
+public class InvalidCursorException extends RuntimeException {
+
+	public InvalidCursorException() {
+		super("Invalid cursor");
+	}
+	
+}
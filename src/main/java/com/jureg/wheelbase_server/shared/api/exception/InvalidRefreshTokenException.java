@@ -0,0 +1,10 @@
+package com.jureg.wheelbase_server.shared.api.exception;
+
+@SuppressWarnings("serial")
+public class InvalidRefreshTokenException extends RuntimeException {
+
+	public InvalidRefreshTokenException() {
+		super("Invalid refresh token");
+	}
+	
+}
@@ -0,0 +1,17 @@
+package com.jureg.wheelbase_server.shared.api.exception;
+
+@SuppressWarnings("serial")
+public class PasswordHashingBusyException extends RuntimeException {
+
+	private final int retryAfterSeconds;
+
+	public PasswordHashingBusyException(int retryAfterSeconds) {
+		super("Server is busy, please retry later");
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
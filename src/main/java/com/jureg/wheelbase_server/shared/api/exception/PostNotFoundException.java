@@ -0,0 +1,10 @@
+package com.jureg.wheelbase_server.shared.api.exception;
+
+@SuppressWarnings("serial")
+public class PostNotFoundException extends RuntimeException {
+
+	public PostNotFoundException() {
+        super("Post not found");
+    }
+	
+}
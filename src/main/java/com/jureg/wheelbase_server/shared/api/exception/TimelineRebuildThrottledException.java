@@ -0,0 +1,17 @@
+package com.jureg.wheelbase_server.shared.api.exception;
+
+@SuppressWarnings("serial")
+public class TimelineRebuildThrottledException extends RuntimeException {
+
+	private final long retryAfterSeconds;
+
+	public TimelineRebuildThrottledException(long retryAfterSeconds) {
+		super("Timeline was rebuilt recently, please retry later");
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
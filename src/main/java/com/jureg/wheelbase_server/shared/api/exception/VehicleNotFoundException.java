@@ -0,0 +1,14 @@
+package com.jureg.wheelbase_server.shared.api.exception;
+
+@SuppressWarnings("serial")
+public class VehicleNotFoundException extends RuntimeException {
+
+	public VehicleNotFoundException() {
+        super("Vehicle not found");
+    }
+	
+	public VehicleNotFoundException(String message) {
+		super(message);
+	}
+	
+}
@@ -0,0 +1,163 @@
+package com.jureg.wheelbase_server.shared.cache;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Small in-process cache with a maximum number of entries and a time to live
+// Meant for hot, tiny values (flags, enums, IDs) that we would otherwise query on every request
+// Metrics follow the Micrometer cache conventions: cache.gets (hit/miss), cache.evictions, cache.size
+// Every entry lives as long, so the write order is the expiration order: a put at capacity drops the head of it, the expired
+// entries then the oldest one, without ever scanning the cache
+public class BoundedTtlCache<K, V> {
+
+	private record Entry<V>(V value, long expiresAt) {
+
+		boolean isExpired(long now) {
+			return now - expiresAt >= 0;
+		}
+
+	}
+
+	private record Written<K, V>(K key, Entry<V> entry) {
+	}
+
+	private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	// Guarded by itself, reads never take it
+	// May still hold entries rewritten or removed since, dropped once they reach the head
+	private final Deque<Written<K, V>> writeOrder = new ArrayDeque<>();
+	private final int maxSize;
+	private final long ttlNanos;
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+
+	public BoundedTtlCache(String name, int maxSize, Duration ttl, MeterRegistry meterRegistry) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttl.toNanos();
+		this.hits = Counter.builder("cache.gets")
+				.tag("cache", name)
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.misses = Counter.builder("cache.gets")
+				.tag("cache", name)
+				.tag("result", "miss")
+				.register(meterRegistry);
+		this.evictions = Counter.builder("cache.evictions")
+				.tag("cache", name)
+				.register(meterRegistry);
+		Gauge.builder("cache.size", entries, Map::size)
+				.tag("cache", name)
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	/**
+	 * Return the cached value of a key
+	 * @param The key we are looking for
+	 * @return The value, or null if missing or expired
+	 */
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		if (entry.isExpired(System.nanoTime())) {
+			if (entries.remove(key, entry)) {
+				evictions.increment();
+			}
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.value();
+	}
+
+	/**
+	 * Return the cached value of a key, without counting a hit or a miss
+	 * @param The key we are looking for
+	 * @return The value, or null if missing or expired
+	 */
+	public V peek(K key) {
+		Entry<V> entry = entries.get(key);
+		return entry == null || entry.isExpired(System.nanoTime()) ? null : entry.value();
+	}
+
+	/**
+	 * Return the cached value of a key, loading (and caching) it on a miss
+	 * @param The key we are looking for
+	 * @param Function loading the value, may return null (nothing is cached then)
+	 * @return The value, or null if the loader returned null
+	 */
+	public V get(K key, Function<K, V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			if (value != null) {
+				put(key, value);
+			}
+		}
+		return value;
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	public void put(K key, V value) {
+		long now = System.nanoTime();
+		Entry<V> entry = new Entry<>(value, now + ttlNanos);
+		synchronized (writeOrder) {
+			makeRoom(key, now);
+			entries.put(key, entry);
+			writeOrder.addLast(new Written<>(key, entry));
+		}
+	}
+
+	public void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	public void invalidateIf(Predicate<K> predicate) {
+		entries.keySet().removeIf(predicate);
+	}
+
+	public void clear() {
+		synchronized (writeOrder) {
+			entries.clear();
+			writeOrder.clear();
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	// Called with the write order held: drops the expired entries, and the oldest ones while the cache is full
+	// Each put only visits what it drops, whatever the size of the cache
+	private void makeRoom(K key, long now) {
+		Written<K, V> oldest;
+		while ((oldest = writeOrder.peekFirst()) != null) {
+			Entry<V> current = entries.get(oldest.key());
+			if (current == oldest.entry() && !current.isExpired(now) && (entries.size() < maxSize || entries.containsKey(key))) {
+				return;
+			}
+			writeOrder.pollFirst();
+			if (current == oldest.entry() && entries.remove(oldest.key(), current)) {
+				evictions.increment();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package com.jureg.wheelbase_server.shared.config;
+
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+// Two schedulers, so a long batch job never holds back the short ones the other instances and the users wait on
+// - the default one (spring.task.scheduling.*): the batch jobs, username index build, purge, reconciliation, fan-out, trims
+//   and cleanups, which can each keep a thread for a while
+// - the short jobs one: the token revocation synchronization and the like counter flush, one thread each
+@Configuration(proxyBeanMethods = false)
+public class SchedulingConfig {
+
+	public static final String SHORT_JOBS_SCHEDULER = "shortJobsScheduler";
+
+	private static final int SHORT_JOBS = 2;
+
+	// Declaring a scheduler turns off the one of Spring Boot: this one replaces it, still configured by the properties
+	@Bean
+	ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+		return builder.build();
+	}
+
+	@Bean(SHORT_JOBS_SCHEDULER)
+	ThreadPoolTaskScheduler shortJobsScheduler() {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(SHORT_JOBS);
+		scheduler.setThreadNamePrefix("short-jobs-");
+		return scheduler;
+	}
+
+}
@@ -0,0 +1,193 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// In-memory list of the access tokens revoked before their expiration (logout, refresh token reuse)
+// Every authenticated request is checked against it, so the common case must not touch the database or even the exact set:
+// - a Bloom filter answers "definitely not revoked" for almost every token with a few bit reads
+// - the exact set confirms the rare positives, so a false positive never rejects a valid token
+// - a timing wheel drops each entry once its token has expired (an expired token is rejected anyway), and the filter is rebuilt
+// Tokens are identified by their signature segment, which is unique and already random: no hashing needed to spread them
+@Component
+public class AccessTokenRevocationList {
+
+	private static final int HASH_FUNCTIONS = 7;
+
+	private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+	private final Queue<String>[] wheel;
+	private final long tickMillis;
+	private final int filterBits;
+	private volatile long[] filter;
+	private long currentTick;
+
+	private final Counter filterPositives;
+	private final Counter falsePositives;
+
+	/**
+	 * @param The number of revoked tokens the Bloom filter is sized for (about 1% false positives at this count)
+	 * @param The duration of a wheel slot, entries are dropped at most this long after their expiration
+	 * @param The longest lifetime of an access token, the wheel covers it
+	 */
+	@SuppressWarnings("unchecked")
+	public AccessTokenRevocationList(@Value("${jwt.revocation.expected-entries:100000}") int expectedEntries,
+			@Value("${jwt.revocation.tick:30s}") Duration tick,
+			@Value("${jwt.access-token.ttl:15m}") Duration maxTokenLifetime,
+			MeterRegistry meterRegistry) {
+		// m = -n ln(p) / ln(2)^2 with p = 1%, rounded to whole longs
+		int bits = (int) Math.ceil(-expectedEntries * Math.log(0.01) / (Math.log(2) * Math.log(2)));
+		this.filterBits = Math.max(64, (bits + 63) / 64 * 64);
+		this.filter = new long[filterBits / 64];
+		this.tickMillis = tick.toMillis();
+		int slots = (int) (maxTokenLifetime.toMillis() / tickMillis) + 2;
+		this.wheel = new Queue[slots];
+		for (int i = 0; i < slots; i++) {
+			wheel[i] = new ConcurrentLinkedQueue<>();
+		}
+		this.currentTick = System.currentTimeMillis() / tickMillis;
+
+		this.filterPositives = Counter.builder("jwt.revocation.filter.positives")
+				.description("Tokens the Bloom filter could not clear, checked against the exact set")
+				.register(meterRegistry);
+		this.falsePositives = Counter.builder("jwt.revocation.filter.false-positives")
+				.description("Tokens the Bloom filter could not clear although they were not revoked")
+				.register(meterRegistry);
+		Gauge.builder("jwt.revocation.size", revoked, Map::size)
+				.description("Revoked access tokens not expired yet")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Check
+	// -------------------------------------------------------------
+	/**
+	 * Check if an access token has been revoked
+	 * @param The token ID (signature segment of the JWT)
+	 * @return true if revoked
+	 */
+	public boolean isRevoked(String tokenId) {
+		if (!mightContain(filter, tokenId)) {
+			return false;
+		}
+		filterPositives.increment();
+		if (revoked.containsKey(tokenId)) {
+			return true;
+		}
+		falsePositives.increment();
+		return false;
+	}
+
+	// -------------------------------------------------------------
+	// Revoke
+	// -------------------------------------------------------------
+	/**
+	 * Revoke an access token until it expires (revoking the same token twice is harmless)
+	 * @param The token ID (signature segment of the JWT)
+	 * @param The expiration of the token
+	 */
+	public synchronized void revoke(String tokenId, Instant expiresAt) {
+		if (!expiresAt.isAfter(Instant.now()) || revoked.putIfAbsent(tokenId, expiresAt) != null) {
+			return;
+		}
+		// Slot of the first tick after the expiration, a token outliving the wheel waits for another turn
+		long expirationTick = Math.max(expiresAt.toEpochMilli() / tickMillis + 1, currentTick + 1);
+		wheel[(int) (expirationTick % wheel.length)].add(tokenId);
+		long[] bits = filter;
+		add(bits, tokenId);
+		// Volatile write: the readers see the new bits
+		filter = bits;
+	}
+
+	// -------------------------------------------------------------
+	// Expiration
+	// -------------------------------------------------------------
+	/**
+	 * Move the wheel to the current time, dropping the tokens that have expired
+	 * The Bloom filter cannot forget, it is rebuilt from the remaining entries when something was dropped
+	 * @param The current time
+	 */
+	public synchronized void advance(Instant now) {
+		long targetTick = now.toEpochMilli() / tickMillis;
+		boolean dropped = false;
+		// No need to go around the wheel more than once
+		long fromTick = Math.max(currentTick + 1, targetTick - wheel.length + 1);
+		for (long tick = fromTick; tick <= targetTick; tick++) {
+			Queue<String> slot = wheel[(int) (tick % wheel.length)];
+			int pending = slot.size();
+			for (int i = 0; i < pending; i++) {
+				String tokenId = slot.poll();
+				Instant expiresAt = revoked.get(tokenId);
+				if (expiresAt == null) {
+					continue;
+				}
+				if (expiresAt.isAfter(now)) {
+					// Outlives this turn of the wheel
+					slot.add(tokenId);
+				} else {
+					revoked.remove(tokenId);
+					dropped = true;
+				}
+			}
+		}
+		currentTick = Math.max(currentTick, targetTick);
+		if (dropped) {
+			long[] rebuilt = new long[filter.length];
+			revoked.keySet().forEach(tokenId -> add(rebuilt, tokenId));
+			filter = rebuilt;
+		}
+	}
+
+	public int size() {
+		return revoked.size();
+	}
+
+	// -------------------------------------------------------------
+	// Bloom filter
+	// -------------------------------------------------------------
+	// Double hashing: the i-th bit index is h1 + i * h2
+	private void add(long[] bits, String tokenId) {
+		long h1 = hash(tokenId, 0x9E3779B97F4A7C15L);
+		long h2 = hash(tokenId, 0xC2B2AE3D27D4EB4FL) | 1;
+		for (int i = 0; i < HASH_FUNCTIONS; i++) {
+			int index = (int) Long.remainderUnsigned(h1 + i * h2, filterBits);
+			bits[index >>> 6] |= 1L << index;
+		}
+	}
+
+	private boolean mightContain(long[] bits, String tokenId) {
+		long h1 = hash(tokenId, 0x9E3779B97F4A7C15L);
+		long h2 = hash(tokenId, 0xC2B2AE3D27D4EB4FL) | 1;
+		for (int i = 0; i < HASH_FUNCTIONS; i++) {
+			int index = (int) Long.remainderUnsigned(h1 + i * h2, filterBits);
+			if ((bits[index >>> 6] & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// FNV-1a over the characters, with a final mix so short common prefixes do not cluster
+	private static long hash(String value, long seed) {
+		long hash = 0xCBF29CE484222325L ^ seed;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// Picks the BCrypt work factor (log rounds) that fits a per-hash latency budget on the current machine
+// Each extra round doubles the cost of a hash, so we measure from the minimum strength and go up while the next one still fits
+// A single timing is noisy (GC, neighbours on the host): each strength is timed several times, and the median is kept
+// The result is clamped to [min, max]: the floor is what every instance agrees on at least
+public final class BCryptStrengthCalibrator {
+
+	private static final String CALIBRATION_PASSWORD = "calibration-password";
+	// Odd, so the median is one of the timings; two outliers either way are ignored
+	private static final int MEASUREMENTS = 5;
+
+	private BCryptStrengthCalibrator() {
+	}
+
+	/**
+	 * Find the highest BCrypt strength whose hashing time fits the budget
+	 * @param The maximum time a single hash should take
+	 * @param The strength we never go below, even on a slow machine
+	 * @param The strength we never go above, even on a fast machine
+	 * @return The BCrypt strength to use
+	 */
+	public static int calibrate(Duration targetLatency, int minStrength, int maxStrength) {
+		return calibrate(targetLatency, minStrength, maxStrength, BCryptStrengthCalibrator::measure);
+	}
+
+	static int calibrate(Duration targetLatency, int minStrength, int maxStrength, IntToLongFunction measure) {
+		long budget = targetLatency.toNanos();
+		// The first hash pays for class loading and JIT, it is not counted
+		measure.applyAsLong(minStrength);
+		int strength = minStrength;
+		long elapsed = median(measure, minStrength);
+		while (strength < maxStrength && elapsed * 2 <= budget) {
+			strength++;
+			elapsed = median(measure, strength);
+		}
+		// The step up was predicted from the previous timing, the actual one may not fit
+		if (elapsed > budget && strength > minStrength) {
+			return strength - 1;
+		}
+		return strength;
+	}
+
+	private static long median(IntToLongFunction measure, int strength) {
+		long[] timings = new long[MEASUREMENTS];
+		for (int i = 0; i < MEASUREMENTS; i++) {
+			timings[i] = measure.applyAsLong(strength);
+		}
+		Arrays.sort(timings);
+		return timings[MEASUREMENTS / 2];
+	}
+
+	private static long measure(int strength) {
+		BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+		long start = System.nanoTime();
+		encoder.encode(CALIBRATION_PASSWORD);
+		return System.nanoTime() - start;
+	}
+
+}
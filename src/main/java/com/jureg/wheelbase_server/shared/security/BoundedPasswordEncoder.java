@@ -0,0 +1,202 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.jureg.wheelbase_server.shared.api.exception.PasswordHashingBusyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Runs the password hashing (BCrypt) on a dedicated bounded pool instead of the Tomcat request threads
+// During a login storm, at most "threads" hashes run at the same time and at most "queueCapacity" wait for a worker
+// Past that, we fail fast (503 + Retry-After) so the cheap endpoints keep their latency
+// "maxWait" bounds the wait for a worker only: a hash that has started is always waited for, and a request that gave up
+// before its hash started is skipped by the worker instead of being computed for nobody
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+	private final PasswordEncoder delegate;
+	private final ThreadPoolExecutor executor;
+	private final Duration maxWait;
+	private final int retryAfterSeconds;
+
+	private final Timer encodeQueueWait;
+	private final Timer matchesQueueWait;
+	private final Timer encodeDuration;
+	private final Timer matchesDuration;
+	private final Counter rejected;
+
+	public BoundedPasswordEncoder(PasswordEncoder delegate,
+			int threads,
+			int queueCapacity,
+			Duration maxWait,
+			int retryAfterSeconds,
+			MeterRegistry meterRegistry) {
+		this.delegate = delegate;
+		this.maxWait = maxWait;
+		this.retryAfterSeconds = retryAfterSeconds;
+		// AbortPolicy: a full queue throws RejectedExecutionException instead of running the hash on the caller thread
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				new HashingThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+
+		this.encodeQueueWait = queueWaitTimer(meterRegistry, "encode");
+		this.matchesQueueWait = queueWaitTimer(meterRegistry, "matches");
+		this.encodeDuration = durationTimer(meterRegistry, "encode");
+		this.matchesDuration = durationTimer(meterRegistry, "matches");
+		this.rejected = Counter.builder("password.hashing.rejected")
+				.description("Number of password hashing requests rejected because the pool was saturated")
+				.register(meterRegistry);
+		Gauge.builder("password.hashing.queue.size", executor, e -> e.getQueue().size())
+				.description("Number of password hashing requests waiting for a worker")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// PasswordEncoder
+	// -------------------------------------------------------------
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return submit(() -> delegate.encode(rawPassword), encodeQueueWait, encodeDuration);
+	}
+
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return submit(() -> delegate.matches(rawPassword, encodedPassword), matchesQueueWait, matchesDuration);
+	}
+
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		// Only parses the hash prefix, no need to go through the pool
+		return delegate.upgradeEncoding(encodedPassword);
+	}
+
+	// -------------------------------------------------------------
+	// Pool
+	// -------------------------------------------------------------
+	private <T> T submit(Callable<T> hashing, Timer queueWait, Timer duration) {
+		HashingTask<T> task = new HashingTask<>(hashing, queueWait, duration);
+		Future<T> future;
+		try {
+			future = executor.submit(task);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw new PasswordHashingBusyException(retryAfterSeconds);
+		}
+
+		try {
+			if (!task.awaitStart(maxWait) && task.abandon()) {
+				// Waited too long for a worker: give up (and free the queue slot), the client will retry
+				executor.remove((FutureTask<?>) future);
+				rejected.increment();
+				throw new PasswordHashingBusyException(retryAfterSeconds);
+			}
+			return future.get();
+		} catch (InterruptedException e) {
+			task.abandon();
+			Thread.currentThread().interrupt();
+			throw new PasswordHashingBusyException(retryAfterSeconds);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private static Timer queueWaitTimer(MeterRegistry meterRegistry, String operation) {
+		return Timer.builder("password.hashing.queue.wait")
+				.description("Time spent waiting for a password hashing worker")
+				.tag("operation", operation)
+				.register(meterRegistry);
+	}
+
+	private static Timer durationTimer(MeterRegistry meterRegistry, String operation) {
+		return Timer.builder("password.hashing.duration")
+				.description("Time spent hashing or checking a password")
+				.tag("operation", operation)
+				.register(meterRegistry);
+	}
+
+	// A hash claimed either by the worker (started) or by the caller (abandoned), whichever comes first
+	private static final class HashingTask<T> implements Callable<T> {
+
+		private static final int WAITING = 0;
+		private static final int STARTED = 1;
+		private static final int ABANDONED = 2;
+
+		private final Callable<T> hashing;
+		private final Timer queueWait;
+		private final Timer duration;
+		private final long submittedAt = System.nanoTime();
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		private HashingTask(Callable<T> hashing, Timer queueWait, Timer duration) {
+			this.hashing = hashing;
+			this.queueWait = queueWait;
+			this.duration = duration;
+		}
+
+		@Override
+		public T call() throws Exception {
+			if (!state.compareAndSet(WAITING, STARTED)) {
+				// The caller is gone: the worker moves on to the next hash
+				return null;
+			}
+			started.countDown();
+			long startedAt = System.nanoTime();
+			queueWait.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+			try {
+				return hashing.call();
+			} finally {
+				duration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		private boolean awaitStart(Duration maxWait) throws InterruptedException {
+			return started.await(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+		}
+
+		// False once the worker has started it
+		private boolean abandon() {
+			return state.compareAndSet(WAITING, ABANDONED);
+		}
+
+	}
+
+	// Daemon threads with a recognizable name in thread dumps
+	private static final class HashingThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
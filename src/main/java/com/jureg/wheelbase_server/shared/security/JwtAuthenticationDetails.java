@@ -0,0 +1,25 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import com.jureg.wheelbase_server.shared.service.AuthorizationClaims;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// Request details of a JWT authentication, with the authorization claims carried by the token (null if it had none)
+public class JwtAuthenticationDetails extends WebAuthenticationDetails {
+
+	private static final long serialVersionUID = 1L;
+
+	private final AuthorizationClaims claims;
+
+	public JwtAuthenticationDetails(HttpServletRequest request, AuthorizationClaims claims) {
+		super(request);
+		this.claims = claims;
+	}
+
+	public AuthorizationClaims getClaims() {
+		return claims;
+	}
+
+}
@@ -2,15 +2,16 @@ package com.jureg.wheelbase_server.shared.security;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.jureg.wheelbase_server.shared.service.JwtService;
+import com.jureg.wheelbase_server.shared.service.VerifiedToken;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -44,12 +45,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // Remove the "Bearer " string from header
 			final String jwt = authHeader.substring(7);
 			
-			if (jwtService.validateToken(jwt)) {
-				UUID userId = jwtService.getUserIdFromToken(jwt);
+			// Verify the token and extract the user ID in one go
+			Optional<VerifiedToken> verifiedToken = jwtService.verifyToken(jwt);
+			
+			if (verifiedToken.isPresent()) {
+				UUID userId = verifiedToken.get().userId();
 				
 				// Create authentication object
 				UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userId, null, List.of());
-				authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+				authentication.setDetails(new JwtAuthenticationDetails(request, verifiedToken.get().claims()));
 				
 				// Set authentication in SecurityContext
 				SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -1,5 +1,9 @@
 package com.jureg.wheelbase_server.shared.security;
 
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -8,15 +12,22 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
+// Transactions start before the @PreAuthorize checks (ordered 200), so the checks and the service share one persistence context
+// and a user loaded by UserSecurity is the managed entity the service then reads or updates
+@EnableTransactionManagement(order = 0)
 public class SecurityConfig {
 
 	private final JwtAuthenticationFilter jwtAuthenticationFilter;
@@ -25,9 +36,31 @@ public class SecurityConfig {
 		this.jwtAuthenticationFilter = jwtAuthenticationFilter;
 	}
 
+	// BCrypt is CPU bound: hashes run on a bounded pool, sized by default to the number of cores
+	// The BCrypt strength is calibrated at startup to fit the latency budget on this instance type (unless set explicitly)
 	@Bean
-	PasswordEncoder passwordEncoder() {
-		return new BCryptPasswordEncoder();
+	PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+			@Value("${security.password-hashing.threads:0}") int threads,
+			@Value("${security.password-hashing.queue-capacity:32}") int queueCapacity,
+			@Value("${security.password-hashing.max-wait:2s}") Duration maxWait,
+			@Value("${security.password-hashing.retry-after:1}") int retryAfterSeconds,
+			@Value("${security.password-hashing.strength:0}") int fixedStrength,
+			@Value("${security.password-hashing.target-latency:250ms}") Duration targetLatency,
+			@Value("${security.password-hashing.min-strength:10}") int minStrength,
+			@Value("${security.password-hashing.max-strength:14}") int maxStrength) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		int strength = fixedStrength > 0 ? fixedStrength : BCryptStrengthCalibrator.calibrate(targetLatency, minStrength, maxStrength);
+		Gauge.builder("password.hashing.strength", () -> strength)
+				.description("BCrypt strength used for new password hashes")
+				.register(meterRegistry);
+
+		// New hashes are stored as "{bcrypt}<hash>" with the calibrated strength
+		// Hashes stored before (no prefix) still match, and are reported by upgradeEncoding so they get rehashed on login
+		BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+		DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+		delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+		return new BoundedPasswordEncoder(delegating, poolSize, queueCapacity, maxWait, retryAfterSeconds, meterRegistry);
 	}
 
 	@Bean
@@ -54,7 +87,9 @@ public class SecurityConfig {
 	            // Public end points – POST
 	            .requestMatchers(HttpMethod.POST,
 	                "/api/users/register",
-	                "/api/users/login"
+	                "/api/users/login",
+	                "/api/users/refresh",
+	                "/api/users/logout"
 	            ).permitAll()
 
 				// All other end points require authentication
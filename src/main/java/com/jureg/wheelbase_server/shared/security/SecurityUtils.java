@@ -1,10 +1,13 @@
 package com.jureg.wheelbase_server.shared.security;
 
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.jureg.wheelbase_server.shared.service.AuthorizationClaims;
+
 public class SecurityUtils {
 
 	/**
@@ -27,5 +30,16 @@ public class SecurityUtils {
 		
 		throw new IllegalStateException("Unable to extract user ID from authentication");
 	}
+	
+	/**
+	 * Get the authorization claims carried by the access token of the current request
+	 * @return The claims, or empty if the request is not authenticated by a token carrying them
+	 */
+	public static Optional<AuthorizationClaims> getCurrentAuthorizationClaims() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication != null && authentication.getDetails() instanceof JwtAuthenticationDetails details) {
+			return Optional.ofNullable(details.getClaims());
+		}
+		return Optional.empty();
+	}
 }
-
@@ -0,0 +1,38 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+// Authorization-relevant state of the caller, embedded in the access token when it is issued
+// "acc" is the account type as a one letter code, "ver" the profile version stamp it was read at
+// The stamp grows each time the account type changes, so a decision can tell when the claims are stale
+public record AuthorizationClaims(
+
+		AccountType accountType,
+		long profileVersion
+
+) {
+
+	public static final String ACCOUNT_TYPE_CLAIM = "acc";
+	public static final String PROFILE_VERSION_CLAIM = "ver";
+
+	public String accountTypeCode() {
+		return switch (accountType) {
+			case PUBLIC -> "P";
+			case FOLLOWERS_ONLY -> "F";
+		};
+	}
+
+	/**
+	 * Decode a one letter account type code
+	 * @param The code found in the token
+	 * @return The account type, or null if the code is unknown
+	 */
+	public static AccountType accountTypeOf(char code) {
+		return switch (code) {
+			case 'P' -> AccountType.PUBLIC;
+			case 'F' -> AccountType.FOLLOWERS_ONLY;
+			default -> null;
+		};
+	}
+
+}
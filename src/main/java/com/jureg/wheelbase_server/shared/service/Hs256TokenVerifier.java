@@ -0,0 +1,313 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+// Allocation-light verifier for the tokens generated by JwtService (HS256, "sub" + "iat"/"exp" + optional "acc"/"ver" claims)
+// JJWT decodes every part of the token, builds a claims map with Jackson and allocates a lot per call
+// Here we check the signature with a per-thread Mac and scan only the claims we need, straight from the payload bytes
+// Any token that does not have the exact shape we issue is reported as unsupported, so the caller can fall back to JJWT
+public class Hs256TokenVerifier {
+
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final int SIGNATURE_LENGTH = 32;
+	// 32 bytes encoded in Base64URL without padding
+	private static final int ENCODED_SIGNATURE_LENGTH = 43;
+	private static final int UUID_LENGTH = 36;
+
+	private static final int[] BASE64_URL = new int[128];
+	static {
+		Arrays.fill(BASE64_URL, -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64_URL[alphabet.charAt(i)] = i;
+		}
+	}
+
+	// Outcome of a fast path verification
+	public record Result(boolean supported, VerifiedToken token) {
+
+		static final Result UNSUPPORTED = new Result(false, null);
+		static final Result REJECTED = new Result(true, null);
+
+	}
+
+	private final String expectedHeader;
+	private final ThreadLocal<Scratch> scratch;
+
+	/**
+	 * @param The HMAC key used to sign our tokens
+	 * @param The encoded header of the tokens we issue (everything before the first ".")
+	 */
+	public Hs256TokenVerifier(SecretKey key, String expectedHeader) {
+		this.expectedHeader = expectedHeader;
+		this.scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+	}
+
+	// -------------------------------------------------------------
+	// Verify token
+	// -------------------------------------------------------------
+	/**
+	 * Verify a token issued by JwtService
+	 * @param The JWT token we want to verify
+	 * @return UNSUPPORTED if the token is not one of ours, REJECTED if the signature or expiration is wrong, else the verified token
+	 */
+	public Result verify(String token) {
+		int headerEnd = expectedHeader.length();
+		if (token.length() <= headerEnd
+				|| token.charAt(headerEnd) != '.'
+				|| !token.startsWith(expectedHeader)) {
+			return Result.UNSUPPORTED;
+		}
+		int payloadEnd = token.indexOf('.', headerEnd + 1);
+		if (payloadEnd < 0 || token.length() - payloadEnd - 1 != ENCODED_SIGNATURE_LENGTH) {
+			return Result.UNSUPPORTED;
+		}
+
+		Scratch buffers = scratch.get();
+
+		// Check the signature of "header.payload"
+		byte[] actualSignature = buffers.actualSignature;
+		if (decode(token, payloadEnd + 1, token.length(), actualSignature) != SIGNATURE_LENGTH) {
+			return Result.UNSUPPORTED;
+		}
+		if (!buffers.sign(token, payloadEnd) || !MessageDigest.isEqual(buffers.expectedSignature, actualSignature)) {
+			return Result.REJECTED;
+		}
+
+		// Decode the payload and extract the claims we need
+		int payloadLength = buffers.decodePayload(token, headerEnd + 1, payloadEnd);
+		if (payloadLength < 0) {
+			return Result.UNSUPPORTED;
+		}
+		return parseClaims(buffers.payload, payloadLength);
+	}
+
+	// -------------------------------------------------------------
+	// Claims parsing
+	// -------------------------------------------------------------
+	// Parses the compact JSON written by JJWT: {"sub":"<uuid>","iat":<seconds>,"exp":<seconds>,"acc":"<code>","ver":<stamp>}
+	// Anything else (whitespace, escapes, other claims, duplicated claims) is left to JJWT
+	private static Result parseClaims(byte[] json, int length) {
+		UUID subject = null;
+		long expiration = -1;
+		boolean issuedAtSeen = false;
+		AccountType accountType = null;
+		long profileVersion = -1;
+
+		int i = 0;
+		if (length < 2 || json[i++] != '{') {
+			return Result.UNSUPPORTED;
+		}
+		while (true) {
+			// Claim name: all our claims are 3 characters long
+			if (i + 6 > length || json[i] != '"' || json[i + 4] != '"' || json[i + 5] != ':') {
+				return Result.UNSUPPORTED;
+			}
+			byte c1 = json[i + 1], c2 = json[i + 2], c3 = json[i + 3];
+			i += 6;
+			if (c1 == 's' && c2 == 'u' && c3 == 'b' && subject == null) {
+				if (i + UUID_LENGTH + 2 > length || json[i] != '"' || json[i + UUID_LENGTH + 1] != '"') {
+					return Result.UNSUPPORTED;
+				}
+				subject = parseUuid(json, i + 1);
+				if (subject == null) {
+					return Result.UNSUPPORTED;
+				}
+				i += UUID_LENGTH + 2;
+			} else if (c1 == 'e' && c2 == 'x' && c3 == 'p' && expiration < 0) {
+				int end = skipDigits(json, i, length);
+				if (end < 0) {
+					return Result.UNSUPPORTED;
+				}
+				expiration = parseLong(json, i, end);
+				i = end;
+			} else if (c1 == 'i' && c2 == 'a' && c3 == 't' && !issuedAtSeen) {
+				int end = skipDigits(json, i, length);
+				if (end < 0) {
+					return Result.UNSUPPORTED;
+				}
+				issuedAtSeen = true;
+				i = end;
+			} else if (c1 == 'a' && c2 == 'c' && c3 == 'c' && accountType == null) {
+				// One letter code
+				if (i + 3 > length || json[i] != '"' || json[i + 2] != '"') {
+					return Result.UNSUPPORTED;
+				}
+				accountType = AuthorizationClaims.accountTypeOf((char) json[i + 1]);
+				if (accountType == null) {
+					return Result.UNSUPPORTED;
+				}
+				i += 3;
+			} else if (c1 == 'v' && c2 == 'e' && c3 == 'r' && profileVersion < 0) {
+				int end = skipDigits(json, i, length);
+				if (end < 0) {
+					return Result.UNSUPPORTED;
+				}
+				profileVersion = parseLong(json, i, end);
+				i = end;
+			} else {
+				return Result.UNSUPPORTED;
+			}
+			if (i >= length) {
+				return Result.UNSUPPORTED;
+			}
+			if (json[i] == '}') {
+				i++;
+				break;
+			}
+			if (json[i++] != ',') {
+				return Result.UNSUPPORTED;
+			}
+		}
+		if (i != length || subject == null || expiration < 0) {
+			return Result.UNSUPPORTED;
+		}
+		// The authorization claims come together or not at all
+		if ((accountType == null) != (profileVersion < 0)) {
+			return Result.UNSUPPORTED;
+		}
+
+		Instant expiresAt = Instant.ofEpochSecond(expiration);
+		if (!Instant.now().isBefore(expiresAt)) {
+			return Result.REJECTED;
+		}
+		AuthorizationClaims claims = accountType != null ? new AuthorizationClaims(accountType, profileVersion) : null;
+		return new Result(true, new VerifiedToken(subject, expiresAt, claims));
+	}
+
+	// Returns the index after the last digit, or -1 if there are no digits or too many to fit in a long
+	private static int skipDigits(byte[] json, int from, int length) {
+		int i = from;
+		while (i < length && json[i] >= '0' && json[i] <= '9') {
+			i++;
+		}
+		return i == from || i - from > 18 ? -1 : i;
+	}
+
+	private static long parseLong(byte[] json, int from, int to) {
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			value = value * 10 + (json[i] - '0');
+		}
+		return value;
+	}
+
+	// Parses a canonical UUID (8-4-4-4-12 hexadecimal digits) without going through a String
+	private static UUID parseUuid(byte[] json, int from) {
+		long mostSignificant = 0;
+		long leastSignificant = 0;
+		int digits = 0;
+		for (int i = 0; i < UUID_LENGTH; i++) {
+			byte c = json[from + i];
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') {
+					return null;
+				}
+				continue;
+			}
+			int value = Character.digit(c, 16);
+			if (value < 0) {
+				return null;
+			}
+			if (digits < 16) {
+				mostSignificant = (mostSignificant << 4) | value;
+			} else {
+				leastSignificant = (leastSignificant << 4) | value;
+			}
+			digits++;
+		}
+		return new UUID(mostSignificant, leastSignificant);
+	}
+
+	// -------------------------------------------------------------
+	// Base64URL decoding
+	// -------------------------------------------------------------
+	// Decodes unpadded Base64URL characters into the output buffer
+	// Returns the number of bytes written, or -1 if the input is not valid, not canonical or does not fit
+	private static int decode(String source, int from, int to, byte[] out) {
+		int length = to - from;
+		if (length % 4 == 1 || (length / 4) * 3 + Math.max(0, length % 4 - 1) > out.length) {
+			return -1;
+		}
+		int written = 0;
+		int buffer = 0;
+		int bits = 0;
+		for (int i = from; i < to; i++) {
+			char c = source.charAt(i);
+			int value = c < 128 ? BASE64_URL[c] : -1;
+			if (value < 0) {
+				return -1;
+			}
+			buffer = (buffer << 6) | value;
+			bits += 6;
+			if (bits >= 8) {
+				bits -= 8;
+				out[written++] = (byte) (buffer >> bits);
+			}
+		}
+		// The unused low bits of the last character must be zero, otherwise several encodings give the same bytes
+		if ((buffer & ((1 << bits) - 1)) != 0) {
+			return -1;
+		}
+		return written;
+	}
+
+	// -------------------------------------------------------------
+	// Per-thread buffers
+	// -------------------------------------------------------------
+	// Everything a verification needs, allocated once per thread and reused
+	private static final class Scratch {
+
+		private final Mac mac;
+		private final byte[] expectedSignature = new byte[SIGNATURE_LENGTH];
+		private final byte[] actualSignature = new byte[SIGNATURE_LENGTH];
+		private byte[] signingInput = new byte[512];
+		private byte[] payload = new byte[256];
+
+		Scratch(SecretKey key) {
+			try {
+				mac = Mac.getInstance(ALGORITHM);
+				mac.init(key);
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("Unable to initialize " + ALGORITHM, e);
+			}
+		}
+
+		// Computes the HMAC of the first "length" characters of the token into expectedSignature
+		boolean sign(String token, int length) {
+			if (signingInput.length < length) {
+				signingInput = new byte[length];
+			}
+			for (int i = 0; i < length; i++) {
+				signingInput[i] = (byte) token.charAt(i);
+			}
+			try {
+				mac.update(signingInput, 0, length);
+				mac.doFinal(expectedSignature, 0);
+				return true;
+			} catch (GeneralSecurityException e) {
+				mac.reset();
+				return false;
+			}
+		}
+
+		int decodePayload(String token, int from, int to) {
+			int maxLength = (to - from) * 3 / 4 + 1;
+			if (payload.length < maxLength) {
+				payload = new byte[maxLength];
+			}
+			return decode(token, from, to, payload);
+		}
+
+	}
+
+}
@@ -1,29 +1,54 @@
 package com.jureg.wheelbase_server.shared.service;
 
+import java.time.Duration;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 import javax.crypto.SecretKey;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.jureg.wheelbase_server.shared.security.AccessTokenRevocationList;
+import com.jureg.wheelbase_server.user.model.AccountType;
 import com.jureg.wheelbase_server.user.model.User;
 
 @Service
 public class JwtService {
 	
-	// Token duration
-	private static final long EXPIRATION_MS = 1000 * 60 * 60; // 60 minutes
+	private static final String BASE64_URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
 	
 	private final SecretKey key;
+	private final JwtParser parser;
+	private final Hs256TokenVerifier fastVerifier;
+	private final VerifiedTokenCache tokenCache;
+	private final AccessTokenRevocationList revocationList;
+	private final boolean authorizationClaims;
+	// Access tokens are short-lived, clients get new ones with their refresh token
+	private final Duration accessTokenTtl;
 	
-	public JwtService(@Value("${jwt.secret}") String secretKey) {
+	public JwtService(@Value("${jwt.secret}") String secretKey,
+			VerifiedTokenCache tokenCache,
+			AccessTokenRevocationList revocationList,
+			@Value("${jwt.authorization-claims.enabled:true}") boolean authorizationClaims,
+			@Value("${jwt.access-token.ttl:15m}") Duration accessTokenTtl) {
 		this.key = Keys.hmacShaKeyFor(secretKey.getBytes());
+		// The parser is immutable and thread-safe, no need to build a new one for each token
+		this.parser = Jwts.parser().verifyWith(key).build();
+		// The fast path only handles tokens with the exact header we generate
+		String probe = Jwts.builder().subject("probe").signWith(key, Jwts.SIG.HS256).compact();
+		this.fastVerifier = new Hs256TokenVerifier(key, probe.substring(0, probe.indexOf('.')));
+		this.tokenCache = tokenCache;
+		this.revocationList = revocationList;
+		this.authorizationClaims = authorizationClaims;
+		this.accessTokenTtl = accessTokenTtl;
 	}
 	
 	// -------------------------------------------------------------
@@ -31,18 +56,112 @@ public class JwtService {
 	// -------------------------------------------------------------
 	/**
 	 * Generate a JWT for the user
+	 * When enabled, the account type and profile version of the user are embedded as compact claims
 	 * @param User we want to generate the JWT token
 	 * @return A JWT string
 	 */
 	public String generateToken(User user) {
 		Date now = new Date();
-		Date expirationDate = new Date(now.getTime() + EXPIRATION_MS);
-		return Jwts.builder()
+		Date expirationDate = new Date(now.getTime() + accessTokenTtl.toMillis());
+		JwtBuilder builder = Jwts.builder()
 				.subject(user.getId().toString())
 				.issuedAt(now)
-				.expiration(expirationDate)
-				.signWith(key, Jwts.SIG.HS256)
-				.compact();
+				.expiration(expirationDate);
+		if (authorizationClaims && user.getAccountType() != null) {
+			AuthorizationClaims claims = new AuthorizationClaims(user.getAccountType(), user.getProfileVersion());
+			builder.claim(AuthorizationClaims.ACCOUNT_TYPE_CLAIM, claims.accountTypeCode())
+					.claim(AuthorizationClaims.PROFILE_VERSION_CLAIM, claims.profileVersion());
+		}
+		return builder.signWith(key, Jwts.SIG.HS256).compact();
+	}
+	
+	// -------------------------------------------------------------
+	// Verify token
+	// -------------------------------------------------------------
+	/**
+	 * Verify a JWT and extract its subject and expiration in a single parse
+	 * Recently verified tokens are served from the cache, without any crypto or JSON parsing
+	 * Tokens we issued go through the allocation-light verifier, any other token goes through JJWT
+	 * Revoked tokens are rejected first, even if they are in the cache
+	 * @param The JWT token we want to verify
+	 * @return The verified token, or empty if the token is invalid, expired or revoked
+	 */
+	public Optional<VerifiedToken> verifyToken(String token) {
+		if (revocationList.isRevoked(getTokenId(token))) {
+			return Optional.empty();
+		}
+		Optional<VerifiedToken> cached = tokenCache.get(token);
+		if (cached.isPresent()) {
+			return cached;
+		}
+		Hs256TokenVerifier.Result result = fastVerifier.verify(token);
+		Optional<VerifiedToken> verified = result.supported() ? Optional.ofNullable(result.token()) : verifyWithJjwt(token);
+		if (verified.isPresent()) {
+			tokenCache.put(token, verified.get());
+		}
+		return verified;
+	}
+	
+	// Full JJWT verification, used for the tokens the fast path does not recognise
+	Optional<VerifiedToken> verifyWithJjwt(String token) {
+		try {
+			Claims claims = parser.parseSignedClaims(token).getPayload();
+			// The tokens we issue always expire, we do not accept the ones that don't
+			if (claims.getExpiration() == null) {
+				return Optional.empty();
+			}
+			return Optional.of(new VerifiedToken(UUID.fromString(claims.getSubject()), claims.getExpiration().toInstant(), readAuthorizationClaims(claims)));
+		} catch (Exception e) {
+			return Optional.empty();
+		}
+	}
+	
+	// Claims written by generateToken, ignored if missing or not in the expected format
+	private static AuthorizationClaims readAuthorizationClaims(Claims claims) {
+		Object code = claims.get(AuthorizationClaims.ACCOUNT_TYPE_CLAIM);
+		Object version = claims.get(AuthorizationClaims.PROFILE_VERSION_CLAIM);
+		if (!(code instanceof String accountTypeCode) || accountTypeCode.length() != 1 || !(version instanceof Number profileVersion)) {
+			return null;
+		}
+		AccountType accountType = AuthorizationClaims.accountTypeOf(accountTypeCode.charAt(0));
+		return accountType != null ? new AuthorizationClaims(accountType, profileVersion.longValue()) : null;
+	}
+	
+	// Fast path only, without cache (used to compare both paths)
+	Hs256TokenVerifier.Result verifyWithFastPath(String token) {
+		return fastVerifier.verify(token);
+	}
+	
+	// -------------------------------------------------------------
+	// Revocation
+	// -------------------------------------------------------------
+	/**
+	 * Return the ID used to revoke a token: its signature segment in canonical Base64URL, unique for each token
+	 * The last character of the segment carries unused low bits: a copy of the token with other values there
+	 * decodes to the same signature, so they are cleared for every copy to share the ID of the token issued
+	 * @param The JWT token
+	 * @return The token ID
+	 */
+	public static String getTokenId(String token) {
+		String signature = token.substring(token.lastIndexOf('.') + 1);
+		int unusedBits = switch (signature.length() % 4) {
+			case 2 -> 4;
+			case 3 -> 2;
+			default -> 0;
+		};
+		if (unusedBits == 0) {
+			return signature;
+		}
+		int last = BASE64_URL_ALPHABET.indexOf(signature.charAt(signature.length() - 1));
+		int canonical = last & -(1 << unusedBits);
+		if (last < 0 || last == canonical) {
+			return signature;
+		}
+		return signature.substring(0, signature.length() - 1) + BASE64_URL_ALPHABET.charAt(canonical);
+	}
+	
+	public Duration getAccessTokenTtl() {
+		return accessTokenTtl;
 	}
 	
 	// -------------------------------------------------------------
@@ -54,12 +173,7 @@ public class JwtService {
 	 * @return true if valid, else false
 	 */
 	public boolean validateToken(String token) {
-		try {
-			Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
-			return true;
-		} catch (Exception e) {
-			return false;
-		}
+		return verifyToken(token).isPresent();
 	}
 	
 	// -------------------------------------------------------------
@@ -71,7 +185,7 @@ public class JwtService {
 	 * @return The subject of the token (UUID)
 	 */
 	public UUID getUserIdFromToken(String token) {
-		Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+		Claims claims = parser.parseSignedClaims(token).getPayload();
 		return UUID.fromString(claims.getSubject());
 	}
 }
@@ -0,0 +1,25 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Result of a successful JWT verification
+// Contains everything the security filter needs, so the token never has to be parsed twice
+// The authorization claims are null for tokens issued without them
+public record VerifiedToken(
+
+		UUID userId,
+		Instant expiresAt,
+		AuthorizationClaims claims
+
+) {
+
+	public VerifiedToken(UUID userId, Instant expiresAt) {
+		this(userId, expiresAt, null);
+	}
+
+	public boolean isExpired(Instant now) {
+		return !now.isBefore(expiresAt);
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Bounded cache of recently verified JWTs
+// Mobile sessions send the same token on every request, so we only pay for the HMAC check and the claims parsing once per token
+// Entries are keyed by a digest of the token (the raw token is never kept in memory) and are evicted at the token expiration
+// The keys are also kept by expiration time: each put drops the expired ones from the head, so no put ever scans the whole cache
+@Component
+public class VerifiedTokenCache {
+
+	private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	});
+
+	private static final Comparator<Expiry> SOONEST_FIRST = Comparator.comparing(Expiry::expiresAt)
+			.thenComparingLong(expiry -> expiry.digest().high())
+			.thenComparingLong(expiry -> expiry.digest().low());
+
+	private final Map<TokenDigest, VerifiedToken> entries = new ConcurrentHashMap<>();
+	// May still hold keys already removed by get, dropped once they reach the head
+	private final NavigableSet<Expiry> expirations = new ConcurrentSkipListSet<>(SOONEST_FIRST);
+	private final int maxSize;
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+
+	public VerifiedTokenCache(MeterRegistry meterRegistry,
+			@Value("${jwt.cache.max-size:10000}") int maxSize) {
+		this.maxSize = maxSize;
+		this.hits = Counter.builder("jwt.cache.requests")
+				.description("Number of verified token cache lookups")
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.misses = Counter.builder("jwt.cache.requests")
+				.description("Number of verified token cache lookups")
+				.tag("result", "miss")
+				.register(meterRegistry);
+		this.evictions = Counter.builder("jwt.cache.evictions")
+				.description("Number of cached tokens removed because they expired")
+				.register(meterRegistry);
+		Gauge.builder("jwt.cache.size", entries, Map::size)
+				.description("Number of tokens currently held in the verified token cache")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Lookup
+	// -------------------------------------------------------------
+	/**
+	 * Return the verification result of a token, if it was verified recently and is not expired yet
+	 * @param The JWT token we want to look up
+	 * @return The cached verification result, or empty on a miss
+	 */
+	public Optional<VerifiedToken> get(String token) {
+		TokenDigest digest = TokenDigest.of(token);
+		VerifiedToken cached = entries.get(digest);
+		if (cached == null) {
+			misses.increment();
+			return Optional.empty();
+		}
+		// An expired token must go through the full verification again (which will reject it)
+		if (cached.isExpired(Instant.now())) {
+			if (entries.remove(digest, cached)) {
+				evictions.increment();
+			}
+			misses.increment();
+			return Optional.empty();
+		}
+		hits.increment();
+		return Optional.of(cached);
+	}
+
+	// -------------------------------------------------------------
+	// Store
+	// -------------------------------------------------------------
+	/**
+	 * Remember that a token has been verified
+	 * @param The JWT token that has been verified
+	 * @param The verification result
+	 */
+	public void put(String token, VerifiedToken verified) {
+		Instant now = Instant.now();
+		if (verified.isExpired(now)) {
+			return;
+		}
+		purgeExpired(now);
+		// Still full: the token will simply be verified again on the next request
+		if (entries.size() >= maxSize) {
+			return;
+		}
+		TokenDigest digest = TokenDigest.of(token);
+		entries.put(digest, verified);
+		expirations.add(new Expiry(verified.expiresAt(), digest));
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	// Only the expired head of the expirations is visited: each key is dropped once, whatever the size of the cache
+	private void purgeExpired(Instant now) {
+		for (Expiry soonest : expirations) {
+			if (now.isBefore(soonest.expiresAt())) {
+				return;
+			}
+			// Removed by a concurrent put otherwise
+			if (!expirations.remove(soonest)) {
+				continue;
+			}
+			VerifiedToken expired = entries.get(soonest.digest());
+			if (expired != null && expired.isExpired(now) && entries.remove(soonest.digest(), expired)) {
+				evictions.increment();
+			}
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Cache key
+	// -------------------------------------------------------------
+	private record Expiry(Instant expiresAt, TokenDigest digest) {
+	}
+
+	// First 128 bits of the SHA-256 of the token
+	private record TokenDigest(long high, long low) {
+
+		static TokenDigest of(String token) {
+			byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+			ByteBuffer buffer = ByteBuffer.wrap(hash);
+			return new TokenDigest(buffer.getLong(), buffer.getLong());
+		}
+
+	}
+
+}
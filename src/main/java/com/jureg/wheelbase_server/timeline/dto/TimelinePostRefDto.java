@@ -0,0 +1,14 @@
+package com.jureg.wheelbase_server.timeline.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A post of a home feed page and its position, the cursor of the next page is built from it
+// An interface: the timeline reads are native queries, projected by the column aliases
+public interface TimelinePostRefDto {
+
+	UUID getId();
+
+	Instant getCreatedAt();
+
+}
@@ -0,0 +1,24 @@
+package com.jureg.wheelbase_server.timeline.model;
+
+import java.util.UUID;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// An author with too many followers to push its posts to each of them: its posts are merged when a timeline is read
+// An author stays one once added, so none of its posts falls between the two paths
+@Data
+@Entity
+@Table(name = "timeline_celebrities")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TimelineCelebrity {
+
+	@Id
+	private UUID userId;
+
+}
@@ -0,0 +1,42 @@
+package com.jureg.wheelbase_server.timeline.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A post pushed to the timeline of a follower of its author (fan-out on write)
+// Its author, community and creation time are copied, so a page of a timeline is read from this table alone
+// Derived data: no foreign key, a timeline can be dropped and rebuilt from the follows and the posts at any time
+@Data
+@Entity
+@Table(name = "timeline_entries")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(TimelineEntryId.class)
+public class TimelineEntry {
+
+	@Id
+	private UUID userId;
+
+	@Id
+	private UUID postId;
+
+	@Column(nullable = false)
+	private UUID authorId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private CommunityType community;
+
+	@Column(nullable = false)
+	private Instant createdAt;
+
+}
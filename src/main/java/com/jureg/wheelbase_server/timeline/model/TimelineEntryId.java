@@ -0,0 +1,21 @@
+package com.jureg.wheelbase_server.timeline.model;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// This is the composite key for a TimelineEntry
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimelineEntryId implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private UUID userId;
+	private UUID postId;
+
+}
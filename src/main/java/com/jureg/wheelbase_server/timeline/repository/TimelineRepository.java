@@ -0,0 +1,238 @@
+package com.jureg.wheelbase_server.timeline.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.jureg.wheelbase_server.timeline.dto.TimelinePostRefDto;
+import com.jureg.wheelbase_server.timeline.model.TimelineEntry;
+import com.jureg.wheelbase_server.timeline.model.TimelineEntryId;
+
+// Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
+@Repository
+public interface TimelineRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	// Keyset pages of the home feed of a user, newest first, ties broken by the post ID
+	// The pushed posts are a range scan of the (user_id, created_at, post_id) index; an entry is skipped once its author
+	// is no longer followed, is deleted, or its post is gone (the entries are not removed with them)
+	// The posts of the followed celebrities were never pushed: at most "limit" of each are read from the posts index, then merged
+	// UNION: a post pushed before its author became a celebrity is found both ways, it is kept once
+	// Each post comes with its position: the next page starts after the last one read, whatever happens to its post since
+	@Query(nativeQuery = true, value = """
+		SELECT x.id, x.created_at AS "createdAt" FROM (
+			(SELECT t.post_id AS id, t.created_at FROM timeline_entries t
+			JOIN follows f ON f.follower_id = t.user_id AND f.followed_id = t.author_id
+			JOIN users u ON u.id = t.author_id AND u.deleted_at IS NULL
+			JOIN posts p ON p.id = t.post_id
+			WHERE t.user_id = :userId
+			ORDER BY t.created_at DESC, t.post_id DESC
+			LIMIT :limit)
+			UNION
+			(SELECT p.id, p.created_at FROM follows f
+			JOIN timeline_celebrities c ON c.user_id = f.followed_id
+			JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+			CROSS JOIN LATERAL (
+				SELECT a.id, a.created_at FROM posts a
+				WHERE a.author_id = f.followed_id AND a.created_at IS NOT NULL
+				ORDER BY a.created_at DESC, a.id DESC
+				LIMIT :limit
+			) p
+			WHERE f.follower_id = :userId)
+		) x
+		ORDER BY x.created_at DESC, x.id DESC
+		LIMIT :limit
+		""")
+	List<TimelinePostRefDto> findPostRefs(@Param("userId") UUID userId, @Param("limit") int limit);
+	@Query(nativeQuery = true, value = """
+		SELECT x.id, x.created_at AS "createdAt" FROM (
+			(SELECT t.post_id AS id, t.created_at FROM timeline_entries t
+			JOIN follows f ON f.follower_id = t.user_id AND f.followed_id = t.author_id
+			JOIN users u ON u.id = t.author_id AND u.deleted_at IS NULL
+			JOIN posts p ON p.id = t.post_id
+			WHERE t.user_id = :userId
+			AND (t.created_at, t.post_id) < (CAST(:afterCreatedAt AS timestamptz), CAST(:afterId AS uuid))
+			ORDER BY t.created_at DESC, t.post_id DESC
+			LIMIT :limit)
+			UNION
+			(SELECT p.id, p.created_at FROM follows f
+			JOIN timeline_celebrities c ON c.user_id = f.followed_id
+			JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+			CROSS JOIN LATERAL (
+				SELECT a.id, a.created_at FROM posts a
+				WHERE a.author_id = f.followed_id
+				AND (a.created_at, a.id) < (CAST(:afterCreatedAt AS timestamptz), CAST(:afterId AS uuid))
+				ORDER BY a.created_at DESC, a.id DESC
+				LIMIT :limit
+			) p
+			WHERE f.follower_id = :userId)
+		) x
+		ORDER BY x.created_at DESC, x.id DESC
+		LIMIT :limit
+		""")
+	List<TimelinePostRefDto> findPostRefsAfter(@Param("userId") UUID userId,
+			@Param("afterCreatedAt") Instant afterCreatedAt,
+			@Param("afterId") UUID afterId,
+			@Param("limit") int limit);
+
+	// The same pages, restricted to a community: the timeline branch is a range scan of the (user_id, community, created_at, post_id)
+	// index, so a page costs the same however rare the community is in the timeline
+	// The community is passed as its name: a native query does not bind an enum
+	@Query(nativeQuery = true, value = """
+		SELECT x.id, x.created_at AS "createdAt" FROM (
+			(SELECT t.post_id AS id, t.created_at FROM timeline_entries t
+			JOIN follows f ON f.follower_id = t.user_id AND f.followed_id = t.author_id
+			JOIN users u ON u.id = t.author_id AND u.deleted_at IS NULL
+			JOIN posts p ON p.id = t.post_id
+			WHERE t.user_id = :userId AND t.community = :community
+			ORDER BY t.created_at DESC, t.post_id DESC
+			LIMIT :limit)
+			UNION
+			(SELECT p.id, p.created_at FROM follows f
+			JOIN timeline_celebrities c ON c.user_id = f.followed_id
+			JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+			CROSS JOIN LATERAL (
+				SELECT a.id, a.created_at FROM posts a
+				WHERE a.author_id = f.followed_id AND a.community = :community AND a.created_at IS NOT NULL
+				ORDER BY a.created_at DESC, a.id DESC
+				LIMIT :limit
+			) p
+			WHERE f.follower_id = :userId)
+		) x
+		ORDER BY x.created_at DESC, x.id DESC
+		LIMIT :limit
+		""")
+	List<TimelinePostRefDto> findPostRefsInCommunity(@Param("userId") UUID userId, @Param("community") String community, @Param("limit") int limit);
+	@Query(nativeQuery = true, value = """
+		SELECT x.id, x.created_at AS "createdAt" FROM (
+			(SELECT t.post_id AS id, t.created_at FROM timeline_entries t
+			JOIN follows f ON f.follower_id = t.user_id AND f.followed_id = t.author_id
+			JOIN users u ON u.id = t.author_id AND u.deleted_at IS NULL
+			JOIN posts p ON p.id = t.post_id
+			WHERE t.user_id = :userId AND t.community = :community
+			AND (t.created_at, t.post_id) < (CAST(:afterCreatedAt AS timestamptz), CAST(:afterId AS uuid))
+			ORDER BY t.created_at DESC, t.post_id DESC
+			LIMIT :limit)
+			UNION
+			(SELECT p.id, p.created_at FROM follows f
+			JOIN timeline_celebrities c ON c.user_id = f.followed_id
+			JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+			CROSS JOIN LATERAL (
+				SELECT a.id, a.created_at FROM posts a
+				WHERE a.author_id = f.followed_id AND a.community = :community
+				AND (a.created_at, a.id) < (CAST(:afterCreatedAt AS timestamptz), CAST(:afterId AS uuid))
+				ORDER BY a.created_at DESC, a.id DESC
+				LIMIT :limit
+			) p
+			WHERE f.follower_id = :userId)
+		) x
+		ORDER BY x.created_at DESC, x.id DESC
+		LIMIT :limit
+		""")
+	List<TimelinePostRefDto> findPostRefsInCommunityAfter(@Param("userId") UUID userId,
+			@Param("community") String community,
+			@Param("afterCreatedAt") Instant afterCreatedAt,
+			@Param("afterId") UUID afterId,
+			@Param("limit") int limit);
+
+	// -------------------------------------------------------------
+	// Fan-out
+	// -------------------------------------------------------------
+	// One multi-row insert per page of followers; an entry already there (a fan-out run again after a crash) is kept as is
+	// The followers are read from the users table, so a deleted one still waiting for its purge is skipped
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO timeline_entries (user_id, post_id, author_id, community, created_at)
+		SELECT u.id, CAST(:postId AS uuid), CAST(:authorId AS uuid), CAST(:community AS varchar), CAST(:createdAt AS timestamptz) FROM users u
+		WHERE u.id IN (:userIds) AND u.deleted_at IS NULL
+		ORDER BY u.id
+		ON CONFLICT (user_id, post_id) DO NOTHING
+		""")
+	int insertAll(@Param("userIds") Collection<UUID> userIds,
+			@Param("postId") UUID postId,
+			@Param("authorId") UUID authorId,
+			@Param("community") String community,
+			@Param("createdAt") Instant createdAt);
+
+	// -------------------------------------------------------------
+	// Rebuild
+	// -------------------------------------------------------------
+	@Modifying
+	@Query(nativeQuery = true, value = "DELETE FROM timeline_entries WHERE user_id = :userId")
+	int deleteAllByUserId(@Param("userId") UUID userId);
+
+	// The newest "capacity" posts of the authors followed, celebrities excepted, read as a feed page is
+	// An entry already there is kept as is: a rebuild running at the same time, or a fan-out committed after the delete
+	// (the posts still waiting for their fan-out are read too), would otherwise fail the insert on the primary key
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		INSERT INTO timeline_entries (user_id, post_id, author_id, community, created_at)
+		SELECT CAST(:userId AS uuid), p.id, p.author_id, p.community, p.created_at
+		FROM follows f
+		JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+		CROSS JOIN LATERAL (
+			SELECT a.id, a.author_id, a.community, a.created_at FROM posts a
+			WHERE a.author_id = f.followed_id AND a.created_at IS NOT NULL
+			ORDER BY a.created_at DESC, a.id DESC
+			LIMIT :capacity
+		) p
+		WHERE f.follower_id = :userId
+		AND NOT EXISTS (SELECT 1 FROM timeline_celebrities c WHERE c.user_id = f.followed_id)
+		ORDER BY p.created_at DESC, p.id DESC
+		LIMIT :capacity
+		ON CONFLICT (user_id, post_id) DO NOTHING
+		""")
+	int rebuild(@Param("userId") UUID userId, @Param("capacity") int capacity);
+
+	// -------------------------------------------------------------
+	// Celebrities
+	// -------------------------------------------------------------
+	@Query(nativeQuery = true, value = "SELECT EXISTS (SELECT 1 FROM timeline_celebrities WHERE user_id = :userId)")
+	boolean isCelebrity(@Param("userId") UUID userId);
+
+	@Modifying
+	@Query(nativeQuery = true, value = "INSERT INTO timeline_celebrities (user_id) VALUES (:userId) ON CONFLICT (user_id) DO NOTHING")
+	int addCelebrity(@Param("userId") UUID userId);
+
+	// -------------------------------------------------------------
+	// Trim
+	// -------------------------------------------------------------
+	// The users with a timeline, by ID: the trim job goes through them a batch at a time
+	@Query(nativeQuery = true, value = """
+		SELECT DISTINCT e.user_id FROM timeline_entries e
+		WHERE e.user_id > :afterUserId
+		ORDER BY e.user_id
+		LIMIT :limit
+		""")
+	List<UUID> findUserIdsAfter(@Param("afterUserId") UUID afterUserId, @Param("limit") int limit);
+
+	// Keeps the newest "capacity" entries of each user: the entry at that position is found in the index, the older ones go
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		DELETE FROM timeline_entries t
+		USING (
+			SELECT u.id AS user_id, b.created_at, b.post_id FROM users u
+			CROSS JOIN LATERAL (
+				SELECT e.created_at, e.post_id FROM timeline_entries e
+				WHERE e.user_id = u.id
+				ORDER BY e.created_at DESC, e.post_id DESC
+				OFFSET :capacity
+				LIMIT 1
+			) b
+			WHERE u.id IN (:userIds)
+		) bound
+		WHERE t.user_id = bound.user_id
+		AND (t.created_at, t.post_id) <= (bound.created_at, bound.post_id)
+		""")
+	int trim(@Param("userIds") Collection<UUID> userIds, @Param("capacity") int capacity);
+
+}
@@ -0,0 +1,187 @@
+package com.jureg.wheelbase_server.timeline.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jureg.wheelbase_server.follow.dto.FollowerRefDto;
+import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.post.dto.FanoutPostDto;
+import com.jureg.wheelbase_server.post.repository.PostRepository;
+import com.jureg.wheelbase_server.shared.api.exception.TimelineRebuildThrottledException;
+import com.jureg.wheelbase_server.shared.cache.BoundedTtlCache;
+import com.jureg.wheelbase_server.timeline.repository.TimelineRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Fan-out on write: a new post is flagged (PostService), this worker pushes it to the timeline of each follower of its author,
+// a page of followers per statement, off the request that created it
+// The flag is cleared in the same transaction as the fan-out, so a post cut short (restart, crash) is pushed again on the next run
+// The authors with more followers than the threshold become celebrities: their posts are merged when a timeline is read instead
+// A user can rebuild its timeline once per cooldown (per instance): a rebuild reads up to "capacity" posts of every followed author
+@Service
+public class TimelineService {
+
+	private static final int REBUILDS_TRACKED = 10_000;
+
+	private final TimelineRepository timelineRepository;
+	private final PostRepository postRepository;
+	private final FollowRepository followRepository;
+	private final FollowCounterService followCounterService;
+	private final TransactionTemplate transactionTemplate;
+	private final int capacity;
+	private final int batchSize;
+	private final long celebrityThreshold;
+	// The users who rebuilt their timeline within the cooldown
+	private final BoundedTtlCache<UUID, Boolean> recentRebuilds;
+	private final long rebuildCooldownSeconds;
+
+	/**
+	 * @param The repository of the timelines
+	 * @param The repository of the posts (the posts waiting for their fan-out)
+	 * @param The repository of the follows (the followers to push a post to)
+	 * @param The service of the follow counters (the authors turning celebrities)
+	 * @param The transaction manager (one transaction per post)
+	 * @param The maximum number of posts kept in a timeline
+	 * @param The number of followers pushed per statement, and of timelines trimmed per statement
+	 * @param The number of followers from which the posts of an author are no longer pushed
+	 * @param The minimum time between two rebuilds of the timeline of a user
+	 * @param The meter registry (the rebuild cooldown metrics)
+	 */
+	public TimelineService(TimelineRepository timelineRepository,
+			PostRepository postRepository,
+			FollowRepository followRepository,
+			FollowCounterService followCounterService,
+			PlatformTransactionManager transactionManager,
+			@Value("${timeline.capacity:800}") int capacity,
+			@Value("${timeline.fanout.batch-size:1000}") int batchSize,
+			@Value("${timeline.celebrity-threshold:10000}") long celebrityThreshold,
+			@Value("${timeline.rebuild.cooldown:10m}") Duration rebuildCooldown,
+			MeterRegistry meterRegistry) {
+		this.timelineRepository = timelineRepository;
+		this.postRepository = postRepository;
+		this.followRepository = followRepository;
+		this.followCounterService = followCounterService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.celebrityThreshold = celebrityThreshold;
+		this.recentRebuilds = new BoundedTtlCache<>("timeline.rebuilds", REBUILDS_TRACKED, rebuildCooldown, meterRegistry);
+		this.rebuildCooldownSeconds = Math.max(1, rebuildCooldown.toSeconds());
+	}
+
+	// -------------------------------------------------------------
+	// Fan-out
+	// -------------------------------------------------------------
+	/**
+	 * Push every post waiting for its fan-out, oldest first
+	 */
+	@Scheduled(fixedDelayString = "${timeline.fanout.interval:1s}", initialDelayString = "${timeline.fanout.interval:1s}")
+	public void fanOutPendingPosts() {
+		while (Boolean.TRUE.equals(transactionTemplate.execute(status -> fanOutNextPost()))) {
+			// Next post
+		}
+	}
+
+	/**
+	 * Push the oldest post waiting for its fan-out to the timelines of the followers of its author, in the caller's transaction
+	 * @return False once no post is waiting (or the waiting ones are being pushed by another instance)
+	 */
+	public boolean fanOutNextPost() {
+		Optional<FanoutPostDto> pending = postRepository.lockNextPendingFanout().flatMap(postRepository::findFanoutPost);
+		if (pending.isEmpty()) {
+			return false;
+		}
+		FanoutPostDto post = pending.get();
+		// The posts of a celebrity are left where they are, for the reads to merge
+		if (!isCelebrity(post.authorId())) {
+			pushToFollowers(post);
+		}
+		postRepository.markFannedOut(post.id());
+		return true;
+	}
+
+	// -------------------------------------------------------------
+	// Rebuild
+	// -------------------------------------------------------------
+	/**
+	 * Build the timeline of a user again from scratch, from the posts of the authors it follows
+	 * @param The user ID
+	 * @return The number of posts in the new timeline
+	 * @throws TimelineRebuildThrottledException If the user already rebuilt it within the cooldown
+	 */
+	@Transactional
+	public int rebuildTimeline(UUID userId) {
+		if (recentRebuilds.get(userId) != null) {
+			throw new TimelineRebuildThrottledException(rebuildCooldownSeconds);
+		}
+		recentRebuilds.put(userId, Boolean.TRUE);
+		timelineRepository.deleteAllByUserId(userId);
+		return timelineRepository.rebuild(userId, capacity);
+	}
+
+	// -------------------------------------------------------------
+	// Trim
+	// -------------------------------------------------------------
+	/**
+	 * Cut every timeline back to its capacity, a batch of users per transaction
+	 * In between two runs, a timeline can hold the posts pushed since the last one on top of its capacity
+	 */
+	@Scheduled(fixedDelayString = "${timeline.trim-interval:10m}", initialDelayString = "${timeline.trim-interval:10m}")
+	public void trimTimelines() {
+		UUID after = new UUID(0, 0);
+		while (true) {
+			List<UUID> userIds = timelineRepository.findUserIdsAfter(after, batchSize);
+			if (userIds.isEmpty()) {
+				return;
+			}
+			transactionTemplate.executeWithoutResult(status -> timelineRepository.trim(userIds, capacity));
+			if (userIds.size() < batchSize) {
+				return;
+			}
+			after = userIds.get(userIds.size() - 1);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Once over the threshold, an author stays a celebrity
+	private boolean isCelebrity(UUID authorId) {
+		if (timelineRepository.isCelebrity(authorId)) {
+			return true;
+		}
+		if (followCounterService.getCounts(authorId).followers() < celebrityThreshold) {
+			return false;
+		}
+		timelineRepository.addCelebrity(authorId);
+		return true;
+	}
+
+	// A page of followers at a time: one read, then one multi-row insert
+	private void pushToFollowers(FanoutPostDto post) {
+		List<FollowerRefDto> followers = followRepository.findFollowerRefs(post.authorId(), Limit.of(batchSize));
+		while (!followers.isEmpty()) {
+			List<UUID> followerIds = followers.stream()
+					.map(FollowerRefDto::followerId)
+					.toList();
+			timelineRepository.insertAll(followerIds, post.id(), post.authorId(), post.community().name(), post.createdAt());
+			if (followers.size() < batchSize) {
+				return;
+			}
+			FollowerRefDto last = followers.get(followers.size() - 1);
+			followers = followRepository.findFollowerRefsAfter(post.authorId(), last.followedAt(), last.followerId(), Limit.of(batchSize));
+		}
+	}
+
+}
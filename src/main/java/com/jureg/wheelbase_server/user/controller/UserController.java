@@ -1,28 +1,38 @@
 package com.jureg.wheelbase_server.user.controller;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.jureg.wheelbase_server.follow.dto.FollowResultDto;
 import com.jureg.wheelbase_server.follow.service.FollowService;
+import com.jureg.wheelbase_server.refresh_token.service.RefreshTokenService;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
 import com.jureg.wheelbase_server.user.dto.UserAuthDto;
 import com.jureg.wheelbase_server.user.dto.UserAuthResponseDto;
 import com.jureg.wheelbase_server.user.dto.UserCreateDto;
+import com.jureg.wheelbase_server.user.dto.UserFollowBatchDto;
 import com.jureg.wheelbase_server.user.dto.UserFollowDto;
 import com.jureg.wheelbase_server.user.dto.UserPasswordUpdateDto;
+import com.jureg.wheelbase_server.user.dto.UserRefreshDto;
 import com.jureg.wheelbase_server.user.dto.UserResponseDto;
 import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
 import com.jureg.wheelbase_server.user.dto.UserUpdateDto;
+import com.jureg.wheelbase_server.user.service.UserSearchService;
 import com.jureg.wheelbase_server.user.service.UserService;
 
 import jakarta.validation.Valid;
@@ -31,13 +41,24 @@ import jakarta.validation.Valid;
 @RequestMapping("/api/users")
 public class UserController {
 
+	private static final String JWT_COOKIE = "jwt";
+	private static final String REFRESH_TOKEN_COOKIE = "refresh_token";
+	// The only end points reading the refresh token: the browser sends it nowhere else
+	private static final List<String> REFRESH_TOKEN_COOKIE_PATHS = List.of("/api/users/refresh", "/api/users/logout");
+
 	private final UserService userService;
 	private final FollowService followService;
+	private final RefreshTokenService refreshTokenService;
+	private final UserSearchService userSearchService;
 	
 	public UserController(UserService userService,
-			FollowService followService) {
+			FollowService followService,
+			RefreshTokenService refreshTokenService,
+			UserSearchService userSearchService) {
 		this.userService = userService;
 		this.followService = followService;
+		this.refreshTokenService = refreshTokenService;
+		this.userSearchService = userSearchService;
 	}
 	
 	// -------------------------------------------------------------
@@ -55,15 +76,35 @@ public class UserController {
 	@PostMapping("/login")
 	public ResponseEntity<UserAuthResponseDto> login(@Valid @RequestBody UserAuthDto dto) {
 		UserAuthResponseDto user = userService.authUser(dto);
-		// Generate cookie for JWT
-		ResponseCookie cookie = ResponseCookie.from("jwt", user.jwt())
-			.httpOnly(true)
-			.secure(true)
-			.path("/")
-			.maxAge(24 * 60 * 60)	// 24 hours expiration
-			.sameSite("Strict")
-			.build();
-		return ResponseEntity.ok().header("Set-Cookie", cookie.toString()).body(user);
+		return withTokenCookies(user);
+	}
+	
+	// -------------------------------------------------------------
+	// Refresh the access token
+	// -------------------------------------------------------------
+	@PostMapping("/refresh")
+	public ResponseEntity<UserAuthResponseDto> refresh(@RequestBody(required = false) UserRefreshDto dto,
+			@CookieValue(name = REFRESH_TOKEN_COOKIE, required = false) String refreshTokenCookie) {
+		String refreshToken = dto != null && dto.refreshToken() != null ? dto.refreshToken() : refreshTokenCookie;
+		UserAuthResponseDto user = refreshTokenService.refresh(refreshToken);
+		return withTokenCookies(user);
+	}
+	
+	// -------------------------------------------------------------
+	// Logout user
+	// -------------------------------------------------------------
+	@PostMapping("/logout")
+	public ResponseEntity<Void> logout(@RequestBody(required = false) UserRefreshDto dto,
+			@CookieValue(name = REFRESH_TOKEN_COOKIE, required = false) String refreshTokenCookie,
+			@CookieValue(name = JWT_COOKIE, required = false) String jwtCookie,
+			@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authHeader) {
+		String refreshToken = dto != null && dto.refreshToken() != null ? dto.refreshToken() : refreshTokenCookie;
+		String jwt = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : jwtCookie;
+		refreshTokenService.logout(refreshToken, jwt);
+		return ResponseEntity.noContent()
+				.header(HttpHeaders.SET_COOKIE, jwtCookie("", Duration.ZERO).toString())
+				.header(HttpHeaders.SET_COOKIE, refreshTokenCookies("", Duration.ZERO))
+				.build();
 	}
 	
 	// -------------------------------------------------------------
@@ -97,9 +138,11 @@ public class UserController {
 	// Search users by name
 	// -------------------------------------------------------------
 	@GetMapping
-	public ResponseEntity<List<UserSummaryDto>> searchUsersByUsername(@RequestParam(required = true) String username) {
-		List<UserSummaryDto> users = userService.searchUsersByUsername(username);
-		return ResponseEntity.ok(users);
+	public ResponseEntity<List<UserSummaryDto>> searchUsersByUsername(@RequestParam(required = true) String username,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit) {
+		CursorPage<UserSummaryDto> users = userSearchService.searchUsersByUsername(username, cursor, limit);
+		return withNextCursor(users);
 	}
 	
 	// -------------------------------------------------------------
@@ -115,17 +158,73 @@ public class UserController {
 		followService.unfollowUser(dto.followedId());
 		return ResponseEntity.noContent().build();
 	}
+	@PostMapping("/follow/batch")
+	public ResponseEntity<List<FollowResultDto>> followUsers(@Valid @RequestBody UserFollowBatchDto dto) {
+		return ResponseEntity.ok(followService.followUsers(dto.followedIds()));
+	}
+	@PostMapping("/unfollow/batch")
+	public ResponseEntity<List<FollowResultDto>> unfollowUsers(@Valid @RequestBody UserFollowBatchDto dto) {
+		return ResponseEntity.ok(followService.unfollowUsers(dto.followedIds()));
+	}
 	
 	// -------------------------------------------------------------
 	// Get followers / following user(s)
 	// -------------------------------------------------------------
 	@GetMapping("/{id}/followers")
-	public ResponseEntity<List<UserSummaryDto>> getFollowers(@PathVariable UUID id) {
-		return ResponseEntity.ok(userService.getFollowers(id));
+	public ResponseEntity<List<UserSummaryDto>> getFollowers(@PathVariable UUID id,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit) {
+		return withNextCursor(userService.getFollowers(id, cursor, limit));
 	}
 	@GetMapping("/{id}/following")
-	public ResponseEntity<List<UserSummaryDto>> getFollowing(@PathVariable UUID id) {
-		return ResponseEntity.ok(userService.getFollowing(id));
+	public ResponseEntity<List<UserSummaryDto>> getFollowing(@PathVariable UUID id,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit) {
+		return withNextCursor(userService.getFollowing(id, cursor, limit));
+	}
+	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private ResponseEntity<UserAuthResponseDto> withTokenCookies(UserAuthResponseDto user) {
+		return ResponseEntity.ok()
+				.header(HttpHeaders.SET_COOKIE, jwtCookie(user.jwt(), refreshTokenService.getAccessTokenTtl()).toString())
+				.header(HttpHeaders.SET_COOKIE, refreshTokenCookies(user.refreshToken(), refreshTokenService.getRefreshTokenTtl()))
+				.body(user);
+	}
+	
+	// The body stays a JSON array, the cursor of the next page goes in a header
+	private static <T> ResponseEntity<List<T>> withNextCursor(CursorPage<T> page) {
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (page.nextCursor() != null) {
+			response.header(CursorPage.NEXT_CURSOR_HEADER, page.nextCursor());
+		}
+		return response.body(page.items());
+	}
+	
+	// The cookie expires with the JWT
+	private static ResponseCookie jwtCookie(String value, Duration maxAge) {
+		return ResponseCookie.from(JWT_COOKIE, value)
+			.httpOnly(true)
+			.secure(true)
+			.path("/")
+			.maxAge(maxAge)
+			.sameSite("Strict")
+			.build();
+	}
+	
+	// Only sent to the refresh and logout end points: one cookie scoped to each
+	private static String[] refreshTokenCookies(String value, Duration maxAge) {
+		return REFRESH_TOKEN_COOKIE_PATHS.stream()
+			.map(path -> ResponseCookie.from(REFRESH_TOKEN_COOKIE, value)
+				.httpOnly(true)
+				.secure(true)
+				.path(path)
+				.maxAge(maxAge)
+				.sameSite("Strict")
+				.build()
+				.toString())
+			.toArray(String[]::new);
 	}
 	
 }
@@ -4,6 +4,8 @@ public record UserAuthResponseDto(
 		
 		String jwt,
 		
+		String refreshToken,
+		
 		UserResponseDto user
 		
 ) {
@@ -0,0 +1,18 @@
+package com.jureg.wheelbase_server.user.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public record UserFollowBatchDto(
+		
+		@NotEmpty
+		@Size(max = 100)
+		List<@NotNull UUID> followedIds
+		
+) {
+
+}
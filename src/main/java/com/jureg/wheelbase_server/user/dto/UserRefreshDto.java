@@ -0,0 +1,10 @@
+package com.jureg.wheelbase_server.user.dto;
+
+public record UserRefreshDto(
+		
+		// Optional, the refresh token cookie is used when missing
+		String refreshToken
+		
+) {
+
+}
@@ -14,7 +14,9 @@ public record UserResponseDto(
 		String avatarUrl,
 		String bio,
 		AccountType accountType,
-		Set<CommunityType> communities
+		Set<CommunityType> communities,
+		long followersCount,
+		long followingCount
 		
 ) {
 
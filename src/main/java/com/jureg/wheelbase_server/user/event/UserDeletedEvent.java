@@ -0,0 +1,12 @@
+package com.jureg.wheelbase_server.user.event;
+
+import java.util.UUID;
+
+// Published by UserService when a user is deleted, handled once the transaction has committed
+public record UserDeletedEvent(
+		
+		UUID userId
+		
+) {
+
+}
@@ -0,0 +1,12 @@
+package com.jureg.wheelbase_server.user.event;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+
+// Published by UserService when a user is created or updated, handled once the transaction has committed
+public record UserSavedEvent(
+		
+		UserSummaryDto user
+		
+) {
+
+}
@@ -2,6 +2,7 @@ package com.jureg.wheelbase_server.user.mapper;
 
 import org.springframework.stereotype.Component;
 
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
 import com.jureg.wheelbase_server.user.dto.UserCreateDto;
 import com.jureg.wheelbase_server.user.dto.UserResponseDto;
 import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
@@ -14,7 +15,7 @@ public class UserMapper {
 	// -------------------------------------------------------------
 	// User -> UserResponseDto
 	// -------------------------------------------------------------
-	public UserResponseDto toResponseDto(User user) {
+	public UserResponseDto toResponseDto(User user, FollowCounts counts) {
 		return new UserResponseDto(
 			user.getId(),
 			user.getUsername(),
@@ -22,7 +23,9 @@ public class UserMapper {
 			user.getAvatarUrl(),
 			user.getBio(),
 			user.getAccountType(),
-			user.getCommunities()
+			user.getCommunities(),
+			counts.followers(),
+			counts.following()
 		);
 	}
 	
@@ -0,0 +1,21 @@
+package com.jureg.wheelbase_server.user.model;
+
+// The stages of the purge of a deleted user, in order: what the other rows reference goes last
+public enum DeletionStage {
+	FOLLOWING,
+	FOLLOWERS,
+	LIKES,
+	COMMENTS,
+	IMAGES,
+	POSTS,
+	VEHICLES,
+	ACCOUNT;
+	
+	/**
+	 * Return the stage that follows this one
+	 * @return The next stage (ACCOUNT is the last one)
+	 */
+	public DeletionStage next() {
+		return this == ACCOUNT ? ACCOUNT : values()[ordinal() + 1];
+	}
+}
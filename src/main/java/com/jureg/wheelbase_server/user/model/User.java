@@ -1,11 +1,15 @@
 package com.jureg.wheelbase_server.user.model;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
 
+import org.hibernate.annotations.SQLRestriction;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.jureg.wheelbase_server.community_type.model.CommunityType;
 import com.jureg.wheelbase_server.follow.model.Follow;
@@ -22,23 +26,41 @@ import lombok.NoArgsConstructor;
 
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+	@UniqueConstraint(name = User.USERNAME_UNIQUE_CONSTRAINT, columnNames = "username_normalized"),
+	@UniqueConstraint(name = User.EMAIL_UNIQUE_CONSTRAINT, columnNames = "email_normalized")
+})
+// A deleted user is left out of every entity load and query until it is purged (native queries filter it themselves)
+@SQLRestriction("deleted_at is null")
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class User {
 	
+	public static final String USERNAME_UNIQUE_CONSTRAINT = "users_username_normalized_key";
+	public static final String EMAIL_UNIQUE_CONSTRAINT = "users_email_normalized_key";
+	
 	@Id
 	@GeneratedValue(strategy = GenerationType.UUID)
 	private UUID id;
 	
-	@Column(unique = true, nullable = false)
+	@Column(nullable = false)
 	private String username;
 	
 	@Email(message = "Invalid email format")
-	@Column(unique = true, nullable = false)
+	@Column(nullable = false)
 	private String email;
 	
+	// Lower-case copies of the username and email, kept by the persistence callbacks below
+	// Uniqueness and the case-insensitive lookups (login, registration) go through their unique indexes
+	@JsonIgnore
+	@Column(nullable = false)
+	private String usernameNormalized;
+	
+	@JsonIgnore
+	@Column(nullable = false)
+	private String emailNormalized;
+	
 	@JsonIgnore
 	@Column(nullable = false)
 	private String password;
@@ -48,9 +70,22 @@ public class User {
 	@Builder.Default
 	private AccountType accountType = AccountType.FOLLOWERS_ONLY;
 	
+	// Incremented each time the account type changes, embedded in the access tokens to detect stale claims
+	@Column(nullable = false)
+	@Builder.Default
+	private long profileVersion = 0;
+	
 	private String avatarUrl;
 	private String bio;
 	
+	// Set when the account is deleted: the user is hidden right away, its rows are purged later, stage by stage
+	@JsonIgnore
+	private Instant deletedAt;
+	
+	@JsonIgnore
+	@Enumerated(EnumType.STRING)
+	private DeletionStage deletionStage;
+	
 	// A user can have 0 or more vehicles
 	// Each vehicle has a owner defined by the "owner" field in the Vehicle class
 	@OneToMany(mappedBy = "owner", cascade = CascadeType.ALL)
@@ -84,5 +119,21 @@ public class User {
 	@OneToMany(mappedBy = "followed", cascade = CascadeType.ALL)
 	@Builder.Default
 	private Set<Follow> followers = new HashSet<>();
+	
+	@PrePersist
+	@PreUpdate
+	private void normalizeLookupKeys() {
+		usernameNormalized = normalize(username);
+		emailNormalized = normalize(email);
+	}
+	
+	/**
+	 * Normalize a username or an email for the case-insensitive lookups
+	 * @param The username or email
+	 * @return The lookup key
+	 */
+	public static String normalize(String value) {
+		return value == null ? null : value.toLowerCase(Locale.ROOT);
+	}
 
 }
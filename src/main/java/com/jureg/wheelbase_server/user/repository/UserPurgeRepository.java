@@ -0,0 +1,126 @@
+package com.jureg.wheelbase_server.user.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import com.jureg.wheelbase_server.user.model.User;
+
+// The set-based statements of the purge of the deleted users (UserPurgeService), all native:
+// the deleted users are out of reach of the entity queries, and no row is loaded to be removed
+// Each delete removes a chunk of at most "limit" rows, picked through the index of the user column
+@org.springframework.stereotype.Repository
+public interface UserPurgeRepository extends Repository<User, UUID> {
+
+	// -------------------------------------------------------------
+	// Progress
+	// -------------------------------------------------------------
+	// Oldest deletion first
+	@Query(nativeQuery = true, value = """
+		SELECT id FROM users
+		WHERE deleted_at IS NOT NULL
+		ORDER BY deleted_at
+		LIMIT :limit
+		""")
+	List<UUID> findDeletedUserIds(@Param("limit") int limit);
+
+	// Locks the user for the chunk: a second instance running the purge skips it instead of waiting
+	@Query(nativeQuery = true, value = """
+		SELECT coalesce(deletion_stage, 'FOLLOWING') FROM users
+		WHERE id = :userId AND deleted_at IS NOT NULL
+		FOR UPDATE SKIP LOCKED
+		""")
+	Optional<String> lockDeletionStage(@Param("userId") UUID userId);
+
+	@Modifying
+	@Query(nativeQuery = true, value = "UPDATE users SET deletion_stage = :stage WHERE id = :userId")
+	int updateDeletionStage(@Param("userId") UUID userId, @Param("stage") String stage);
+
+	// -------------------------------------------------------------
+	// Stages
+	// -------------------------------------------------------------
+	// The likes given by the user, then the likes received on its posts
+	// Each removed like is uncounted from its post in the same statement, one row per post (the user's own posts are purged next,
+	// their counters with them); the number of likes removed is returned
+	@Query(nativeQuery = true, value = """
+		WITH removed AS (
+			DELETE FROM post_likes
+			WHERE (post_id, user_id) IN (
+				SELECT l.post_id, l.user_id FROM post_likes l WHERE l.user_id = :userId
+				UNION ALL
+				SELECT l.post_id, l.user_id FROM posts p JOIN post_likes l ON l.post_id = p.id
+				WHERE p.author_id = :userId AND l.user_id <> :userId
+				LIMIT :limit)
+			RETURNING post_id
+		), uncounted AS (
+			INSERT INTO post_like_counters (post_id, likes)
+			SELECT r.post_id, -count(*) FROM removed r
+			JOIN posts p ON p.id = r.post_id AND p.author_id <> :userId
+			GROUP BY r.post_id
+			ORDER BY r.post_id
+			ON CONFLICT (post_id) DO UPDATE
+			SET likes = post_like_counters.likes + EXCLUDED.likes
+		)
+		SELECT CAST(count(*) AS integer) FROM removed
+		""")
+	int deleteLikes(@Param("userId") UUID userId, @Param("limit") int limit);
+
+	// The comments written by the user, then the comments received on its posts
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		DELETE FROM comments
+		WHERE id IN (
+			SELECT c.id FROM comments c WHERE c.author_id = :userId
+			UNION ALL
+			SELECT c.id FROM posts p JOIN comments c ON c.post_id = p.id
+			WHERE p.author_id = :userId AND c.author_id <> :userId
+			LIMIT :limit)
+		""")
+	int deleteComments(@Param("userId") UUID userId, @Param("limit") int limit);
+
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		DELETE FROM post_images
+		WHERE id IN (
+			SELECT i.id FROM posts p JOIN post_images i ON i.post_id = p.id
+			WHERE p.author_id = :userId
+			LIMIT :limit)
+		""")
+	int deleteImages(@Param("userId") UUID userId, @Param("limit") int limit);
+
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		DELETE FROM posts
+		WHERE id IN (SELECT id FROM posts WHERE author_id = :userId LIMIT :limit)
+		""")
+	int deletePosts(@Param("userId") UUID userId, @Param("limit") int limit);
+
+	@Modifying
+	@Query(nativeQuery = true, value = """
+		DELETE FROM vehicles
+		WHERE id IN (SELECT id FROM vehicles WHERE owner_id = :userId LIMIT :limit)
+		""")
+	int deleteVehicles(@Param("userId") UUID userId, @Param("limit") int limit);
+
+	// Last stage: what is left of the account (communities, timeline, then the user itself)
+	@Modifying
+	@Query(nativeQuery = true, value = "DELETE FROM user_communities WHERE user_id = :userId")
+	int deleteCommunities(@Param("userId") UUID userId);
+	// The timeline is kept trimmed to its capacity; the entries of the user's posts in the other timelines
+	// are skipped by the reads until the trim job drops them
+	@Modifying
+	@Query(nativeQuery = true, value = "DELETE FROM timeline_entries WHERE user_id = :userId")
+	int deleteTimeline(@Param("userId") UUID userId);
+	@Modifying
+	@Query(nativeQuery = true, value = "DELETE FROM timeline_celebrities WHERE user_id = :userId")
+	int deleteCelebrity(@Param("userId") UUID userId);
+	@Modifying
+	@Query(nativeQuery = true, value = "DELETE FROM users WHERE id = :userId AND deleted_at IS NOT NULL")
+	int deleteUser(@Param("userId") UUID userId);
+
+}
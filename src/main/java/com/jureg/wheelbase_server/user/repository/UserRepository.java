@@ -1,23 +1,88 @@
 package com.jureg.wheelbase_server.user.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
 import com.jureg.wheelbase_server.user.model.User;
 
+import jakarta.persistence.QueryHint;
+
 // Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
 	
-	Optional<User> findByUsernameIgnoreCase(String username);
-	Optional<User> findByEmailIgnoreCase(String email);
-	Optional<User> findByUsernameIgnoreCaseOrEmailIgnoreCase(String username, String email);
-	List<User> findByUsernameContainingIgnoreCase(String username);
+	// The derived IgnoreCase queries compile to upper(x) = upper(?), which no index serves
+	// The case-insensitive lookups go through the normalized columns and their unique indexes instead
+	Optional<User> findByUsernameNormalized(String usernameNormalized);
+	Optional<User> findByEmailNormalized(String emailNormalized);
+	Optional<User> findByUsernameNormalizedOrEmailNormalized(String usernameNormalized, String emailNormalized);
+	
+	// Ranked username search: exact match (0), then prefix (1), then anywhere in the name (2), by name within a rank
+	// Keyset pagination on (rank, normalized name): the page starts after the last row of the previous one
+	// Projected into the summary, so neither the users nor their communities are loaded as entities
+	@Query("""
+		select new com.jureg.wheelbase_server.user.dto.UserSummaryDto(u.id, u.username, u.avatarUrl, u.accountType)
+		from User u
+		where u.usernameNormalized like :pattern escape '\\'
+		and (case when u.usernameNormalized = :query then 0 when u.usernameNormalized like :prefix escape '\\' then 1 else 2 end > :afterRank
+			or (case when u.usernameNormalized = :query then 0 when u.usernameNormalized like :prefix escape '\\' then 1 else 2 end = :afterRank
+				and u.usernameNormalized > :afterUsername))
+		order by case when u.usernameNormalized = :query then 0 when u.usernameNormalized like :prefix escape '\\' then 1 else 2 end,
+			u.usernameNormalized
+		""")
+	List<UserSummaryDto> searchByUsername(@Param("query") String query,
+			@Param("pattern") String pattern,
+			@Param("prefix") String prefix,
+			@Param("afterRank") int afterRank,
+			@Param("afterUsername") String afterUsername,
+			Limit limit);
+	
+	// Every user as a summary, read through a cursor for the username index (to be closed, inside a transaction)
+	@Query("select new com.jureg.wheelbase_server.user.dto.UserSummaryDto(u.id, u.username, u.avatarUrl, u.accountType) from User u")
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+	Stream<UserSummaryDto> streamAllSummaries();
+	
+	// The given IDs that belong to a user, in one IN query on the primary key
+	@Query("select u.id from User u where u.id in :ids")
+	Set<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+	
+	// Compare-and-set on the hash the password was checked against: a password changed in the meantime is kept
+	@Modifying
+	@Query("update User u set u.password = :password where u.id = :id and u.password = :previousPassword")
+	int updatePassword(@Param("id") UUID id, @Param("previousPassword") String previousPassword, @Param("password") String password);
+	
+	boolean existsByUsernameNormalized(String usernameNormalized);
+	boolean existsByEmailNormalized(String emailNormalized);
+	
+	default Optional<User> findByUsernameIgnoreCase(String username) {
+		return findByUsernameNormalized(User.normalize(username));
+	}
+	default Optional<User> findByEmailIgnoreCase(String email) {
+		return findByEmailNormalized(User.normalize(email));
+	}
+	default Optional<User> findByUsernameIgnoreCaseOrEmailIgnoreCase(String username, String email) {
+		return findByUsernameNormalizedOrEmailNormalized(User.normalize(username), User.normalize(email));
+	}
 	
-	boolean existsByUsernameIgnoreCase(String username);
-	boolean existsByEmailIgnoreCase(String email);
+	default boolean existsByUsernameIgnoreCase(String username) {
+		return existsByUsernameNormalized(User.normalize(username));
+	}
+	default boolean existsByEmailIgnoreCase(String email) {
+		return existsByEmailNormalized(User.normalize(email));
+	}
 }
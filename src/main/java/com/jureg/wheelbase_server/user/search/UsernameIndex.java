@@ -0,0 +1,245 @@
+package com.jureg.wheelbase_server.user.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.User;
+
+// In-memory index of the usernames, answering the ranked search without the database
+// Every user is interned as an int slot, the structures below only hold slots:
+// - the normalized names sorted in a tree: the exact and prefix matches are a range of it, already in name order
+// - a trigram table: each trigram of a name points to the slots containing it, a "contains" query only verifies the
+//   slots of its rarest trigram
+// The trigram lists are append-only: a renamed or deleted user leaves stale slots behind, filtered out by the verification
+// and dropped when the index is rebuilt
+public class UsernameIndex {
+
+	// Rough cost of an entry besides its characters: tree and map nodes, summary, UUID
+	private static final long ENTRY_OVERHEAD_BYTES = 200;
+	private static final long SLOT_REFERENCE_BYTES = 4;
+
+	private final NavigableMap<String, Integer> slotsByName = new TreeMap<>();
+	private final Map<UUID, Integer> slotsById = new HashMap<>();
+	private final Map<Long, SlotList> slotsByTrigram = new HashMap<>();
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+	private String[] names = new String[1024];
+	private UserSummaryDto[] summaries = new UserSummaryDto[1024];
+	private int slotCount;
+	private long estimatedBytes;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	/**
+	 * Add a user, or replace it if already indexed (renamed, new avatar, new account type)
+	 * @param The user summary
+	 */
+	public void put(UserSummaryDto user) {
+		String name = User.normalize(user.username());
+		lock.writeLock().lock();
+		try {
+			Integer slot = slotsById.get(user.id());
+			if (slot != null && name.equals(names[slot])) {
+				// Same name: the trigram lists are still right
+				summaries[slot] = user;
+				return;
+			}
+			if (slot != null) {
+				removeSlot(slot);
+			}
+			// The name was freed by a user not removed from the index yet (renamed or deleted elsewhere)
+			Integer previousOwner = slotsByName.get(name);
+			if (previousOwner != null) {
+				removeSlot(previousOwner);
+			}
+			slot = allocateSlot();
+			names[slot] = name;
+			summaries[slot] = user;
+			slotsByName.put(name, slot);
+			slotsById.put(user.id(), slot);
+			for (int i = 0; i + UsernameRanking.MIN_CONTAINS_LENGTH <= name.length(); i++) {
+				slotsByTrigram.computeIfAbsent(trigram(name, i), key -> new SlotList()).add(slot);
+			}
+			estimatedBytes += ENTRY_OVERHEAD_BYTES + 4L * name.length()
+					+ SLOT_REFERENCE_BYTES * Math.max(0, name.length() - UsernameRanking.MIN_CONTAINS_LENGTH + 1);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a user (removing an unknown user is harmless)
+	 * @param The user ID
+	 */
+	public void remove(UUID userId) {
+		lock.writeLock().lock();
+		try {
+			Integer slot = slotsById.get(userId);
+			if (slot != null) {
+				removeSlot(slot);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Search
+	// -------------------------------------------------------------
+	/**
+	 * Ranked search, same contract as UserRepository.searchByUsername
+	 * @param The normalized query
+	 * @param The rank of the last row of the previous page (-1 for the first page)
+	 * @param The normalized name of the last row of the previous page
+	 * @param The maximum number of users returned
+	 * @return The users after the position, by rank then name
+	 */
+	public List<UserSummaryDto> search(String query, int afterRank, String afterUsername, int limit) {
+		List<UserSummaryDto> users = new ArrayList<>(Math.min(limit, 64));
+		lock.readLock().lock();
+		try {
+			// Exact and prefix matches: the names from the query on, while they start with it
+			if (afterRank <= UsernameRanking.RANK_PREFIX) {
+				NavigableMap<String, Integer> range = afterRank < UsernameRanking.RANK_EXACT
+						? slotsByName.tailMap(query, true)
+						: slotsByName.tailMap(afterRank == UsernameRanking.RANK_EXACT ? query : afterUsername, false);
+				for (Map.Entry<String, Integer> entry : range.entrySet()) {
+					if (users.size() == limit || !entry.getKey().startsWith(query)) {
+						break;
+					}
+					users.add(summaries[entry.getValue()]);
+				}
+			}
+			if (users.size() == limit || query.length() < UsernameRanking.MIN_CONTAINS_LENGTH) {
+				return users;
+			}
+			// Names containing the query elsewhere than at the start, the first ones in name order
+			String after = afterRank == UsernameRanking.RANK_CONTAINS ? afterUsername : null;
+			for (String name : findContaining(query, after, limit - users.size())) {
+				users.add(summaries[slotsByName.get(name)]);
+			}
+			return users;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Size
+	// -------------------------------------------------------------
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return slotsById.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The approximate heap held by the index, stale trigram slots included
+	 */
+	public long estimatedBytes() {
+		lock.readLock().lock();
+		try {
+			return estimatedBytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Called with the read lock held
+	private TreeSet<String> findContaining(String query, String afterUsername, int limit) {
+		SlotList rarest = null;
+		for (int i = 0; i + UsernameRanking.MIN_CONTAINS_LENGTH <= query.length(); i++) {
+			SlotList slots = slotsByTrigram.get(trigram(query, i));
+			if (slots == null) {
+				// No name has this trigram, none contains the query
+				return new TreeSet<>();
+			}
+			if (rarest == null || slots.size < rarest.size) {
+				rarest = slots;
+			}
+		}
+		// Only the first "limit" names are kept: a common trigram does not sort every name having it
+		// A set: a reused slot can appear twice in a list
+		TreeSet<String> matches = new TreeSet<>();
+		for (int i = 0; i < rarest.size; i++) {
+			String name = names[rarest.slots[i]];
+			if (name == null || (matches.size() == limit && name.compareTo(matches.last()) >= 0)) {
+				continue;
+			}
+			if (name.contains(query) && !name.startsWith(query) && (afterUsername == null || name.compareTo(afterUsername) > 0)
+					&& matches.add(name) && matches.size() > limit) {
+				matches.pollLast();
+			}
+		}
+		return matches;
+	}
+
+	// Called with the write lock held
+	private int allocateSlot() {
+		Integer free = freeSlots.poll();
+		if (free != null) {
+			return free;
+		}
+		if (slotCount == names.length) {
+			names = Arrays.copyOf(names, slotCount * 2);
+			summaries = Arrays.copyOf(summaries, slotCount * 2);
+		}
+		return slotCount++;
+	}
+
+	// Called with the write lock held, the trigram lists keep the slot until the next rebuild
+	private void removeSlot(int slot) {
+		String name = names[slot];
+		slotsByName.remove(name, slot);
+		slotsById.remove(summaries[slot].id());
+		names[slot] = null;
+		summaries[slot] = null;
+		freeSlots.push(slot);
+		estimatedBytes -= ENTRY_OVERHEAD_BYTES + 4L * name.length();
+	}
+
+	// Three UTF-16 characters packed in a long
+	private static long trigram(String value, int start) {
+		return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+	}
+
+	// Growable list of slots, without boxing
+	private static final class SlotList {
+
+		private int[] slots = new int[4];
+		private int size;
+
+		private void add(int slot) {
+			// The trigrams of a name are added in a row: a trigram repeated in the name is stored once
+			if (size > 0 && slots[size - 1] == slot) {
+				return;
+			}
+			if (size == slots.length) {
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			slots[size++] = slot;
+		}
+
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.jureg.wheelbase_server.user.search;
+
+// Ranking of the username search, shared by the database query and the in-memory index
+// Exact match first, then the names starting with the query, then the names containing it
+public final class UsernameRanking {
+
+	public static final int RANK_EXACT = 0;
+	public static final int RANK_PREFIX = 1;
+	public static final int RANK_CONTAINS = 2;
+
+	// Below this length a query only matches the start of the names (a "contains" search could not be narrowed by trigrams)
+	public static final int MIN_CONTAINS_LENGTH = 3;
+
+	private UsernameRanking() {
+	}
+
+	/**
+	 * Rank a matching name
+	 * @param The normalized name
+	 * @param The normalized query
+	 * @return The rank of the name
+	 */
+	public static int rank(String username, String query) {
+		if (username.equals(query)) {
+			return RANK_EXACT;
+		}
+		return username.startsWith(query) ? RANK_PREFIX : RANK_CONTAINS;
+	}
+
+	/**
+	 * Check if a rank and name come after a keyset position
+	 * @param The rank of the name
+	 * @param The normalized name
+	 * @param The rank of the position
+	 * @param The normalized name of the position
+	 * @return true if the name comes after the position
+	 */
+	public static boolean isAfter(int rank, String username, int afterRank, String afterUsername) {
+		return rank > afterRank || (rank == afterRank && username.compareTo(afterUsername) > 0);
+	}
+
+}
@@ -0,0 +1,252 @@
+package com.jureg.wheelbase_server.user.search;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.event.UserDeletedEvent;
+import com.jureg.wheelbase_server.user.event.UserSavedEvent;
+import com.jureg.wheelbase_server.user.model.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Short-lived cache of the ranked username matches, for the "m", "mu", "mus", "must" bursts of a search box
+// Each entry holds the first matches of a query, and whether they are all of them (complete, under the cap)
+// A complete entry also answers the longer queries starting with it: their matches are among its own, filtered and re-ranked
+// That holds as long as the shorter query already matched anywhere in the names (or both only match the start)
+// Eviction is by the number of matches held over all entries, the oldest first
+// Metrics follow the Micrometer cache conventions (cache.gets, cache.evictions, cache.size), plus the hits answered by a prefix
+@Component
+public class UsernameSearchCache {
+
+	private static final String NAME = "user.search";
+
+	private record Entry(List<UserSummaryDto> matches, boolean complete, long expiresAt) {
+
+		boolean isExpired(long now) {
+			return now - expiresAt >= 0;
+		}
+
+	}
+
+	// Insertion order is the age of the entries (guarded by this)
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	private final int maxMatches;
+	private final long maxHeldMatches;
+	private final long ttlNanos;
+	private long heldMatches;
+
+	private final Counter hits;
+	private final Counter prefixHits;
+	private final Counter misses;
+	private final Counter evictions;
+
+	/**
+	 * @param The number of matches kept per query, a query with more is cached incomplete
+	 * @param The number of matches held over all entries
+	 * @param The time to live of an entry
+	 * @param The registry of the cache metrics
+	 */
+	public UsernameSearchCache(@Value("${user.search.cache.max-matches:200}") int maxMatches,
+			@Value("${user.search.cache.max-held-matches:100000}") long maxHeldMatches,
+			@Value("${user.search.cache.ttl:10s}") Duration ttl,
+			MeterRegistry meterRegistry) {
+		this.maxMatches = maxMatches;
+		this.maxHeldMatches = maxHeldMatches;
+		this.ttlNanos = ttl.toNanos();
+		this.hits = Counter.builder("cache.gets")
+				.tag("cache", NAME)
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.misses = Counter.builder("cache.gets")
+				.tag("cache", NAME)
+				.tag("result", "miss")
+				.register(meterRegistry);
+		this.prefixHits = Counter.builder("user.search.cache.prefix-hits")
+				.description("Searches answered by filtering the complete matches of a shorter query (counted as hits too)")
+				.register(meterRegistry);
+		this.evictions = Counter.builder("cache.evictions")
+				.tag("cache", NAME)
+				.register(meterRegistry);
+		Gauge.builder("cache.size", this, cache -> cache.heldMatches())
+				.tag("cache", NAME)
+				.description("Matches held over all the cached queries")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	/**
+	 * Return a page of matches, from the entry of the query or from the complete entry of a shorter one
+	 * @param The normalized query
+	 * @param The rank of the last row of the previous page (-1 for the first page)
+	 * @param The normalized name of the last row of the previous page
+	 * @param The maximum number of users returned
+	 * @return The users after the position, or empty if the cache cannot tell
+	 */
+	public synchronized Optional<List<UserSummaryDto>> get(String query, int afterRank, String afterUsername, int limit) {
+		long now = System.nanoTime();
+		Entry entry = live(query, now);
+		if (entry != null) {
+			List<UserSummaryDto> page = slice(entry.matches(), query, afterRank, afterUsername, limit);
+			// An incomplete entry only knows the rows it holds
+			if (entry.complete() || page.size() == limit) {
+				hits.increment();
+				return Optional.of(page);
+			}
+		} else {
+			for (int length = query.length() - 1; length > 0 && canNarrow(length, query); length--) {
+				Entry superset = live(query.substring(0, length), now);
+				if (superset != null && superset.complete()) {
+					List<UserSummaryDto> matches = narrow(superset.matches(), query);
+					// The next keystroke can start from here
+					store(query, matches, true, now);
+					hits.increment();
+					prefixHits.increment();
+					return Optional.of(slice(matches, query, afterRank, afterUsername, limit));
+				}
+			}
+		}
+		misses.increment();
+		return Optional.empty();
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	/**
+	 * Cache the first matches of a query
+	 * @param The normalized query
+	 * @param The matches from the first one, ranked (at most getMaxMatches() are kept)
+	 * @param true if there are no other matches
+	 */
+	public synchronized void put(String query, List<UserSummaryDto> matches, boolean complete) {
+		if (matches.size() > maxMatches) {
+			matches = matches.subList(0, maxMatches);
+			complete = false;
+		}
+		store(query, List.copyOf(matches), complete, System.nanoTime());
+	}
+
+	// A created, renamed or deleted user can change any result: start over rather than guess which
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserSaved(UserSavedEvent event) {
+		clear();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserDeleted(UserDeletedEvent event) {
+		clear();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		heldMatches = 0;
+	}
+
+	public int getMaxMatches() {
+		return maxMatches;
+	}
+
+	public synchronized long heldMatches() {
+		return heldMatches;
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private Entry live(String query, long now) {
+		Entry entry = entries.get(query);
+		if (entry != null && entry.isExpired(now)) {
+			remove(query);
+			evictions.increment();
+			return null;
+		}
+		return entry;
+	}
+
+	private void store(String query, List<UserSummaryDto> matches, boolean complete, long now) {
+		remove(query);
+		entries.put(query, new Entry(matches, complete, now + ttlNanos));
+		heldMatches += matches.size();
+		makeRoom(now);
+	}
+
+	private void remove(String query) {
+		Entry removed = entries.remove(query);
+		if (removed != null) {
+			heldMatches -= removed.matches().size();
+		}
+	}
+
+	// Drops the expired entries, and if that is not enough, the oldest ones
+	private void makeRoom(long now) {
+		if (heldMatches <= maxHeldMatches) {
+			return;
+		}
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.isExpired(now)) {
+				iterator.remove();
+				heldMatches -= entry.matches().size();
+				evictions.increment();
+			}
+		}
+		iterator = entries.values().iterator();
+		while (heldMatches > maxHeldMatches && iterator.hasNext()) {
+			heldMatches -= iterator.next().matches().size();
+			iterator.remove();
+			evictions.increment();
+		}
+	}
+
+	// The matches of the query are among the ones of its first characters only if those matched anywhere in the names,
+	// or if the query itself only matches the start of the names
+	private static boolean canNarrow(int prefixLength, String query) {
+		return prefixLength >= UsernameRanking.MIN_CONTAINS_LENGTH || query.length() < UsernameRanking.MIN_CONTAINS_LENGTH;
+	}
+
+	// Keeps the matches of the longer query, ranked against it
+	private static List<UserSummaryDto> narrow(List<UserSummaryDto> superset, String query) {
+		boolean contains = query.length() >= UsernameRanking.MIN_CONTAINS_LENGTH;
+		List<UserSummaryDto> matches = new ArrayList<>();
+		for (UserSummaryDto user : superset) {
+			String name = User.normalize(user.username());
+			if (contains ? name.contains(query) : name.startsWith(query)) {
+				matches.add(user);
+			}
+		}
+		matches.sort(Comparator.comparingInt((UserSummaryDto user) -> UsernameRanking.rank(User.normalize(user.username()), query))
+				.thenComparing(user -> User.normalize(user.username())));
+		return List.copyOf(matches);
+	}
+
+	private static List<UserSummaryDto> slice(List<UserSummaryDto> matches, String query, int afterRank, String afterUsername, int limit) {
+		List<UserSummaryDto> page = new ArrayList<>(Math.min(limit, matches.size()));
+		for (UserSummaryDto user : matches) {
+			if (page.size() == limit) {
+				break;
+			}
+			String name = User.normalize(user.username());
+			if (UsernameRanking.isAfter(UsernameRanking.rank(name, query), name, afterRank, afterUsername)) {
+				page.add(user);
+			}
+		}
+		return page;
+	}
+
+}
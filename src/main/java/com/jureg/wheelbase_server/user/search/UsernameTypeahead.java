@@ -0,0 +1,172 @@
+package com.jureg.wheelbase_server.user.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.event.UserDeletedEvent;
+import com.jureg.wheelbase_server.user.event.UserSavedEvent;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Keeps the username index of this instance: built by streaming the users table, then kept current by the user events
+// The events only reach the instance that handled the change, the periodic rebuild brings the changes made by the others
+// While the index is not built, or when it outgrows its memory ceiling, the search goes to the database
+@Component
+public class UsernameTypeahead {
+
+	private final UserRepository userRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final boolean enabled;
+	private final long maxBytes;
+
+	// Null while not usable
+	private volatile UsernameIndex index;
+	// Events received while a rebuild streams the table, replayed on the new index (guarded by this)
+	private List<Object> pendingEvents;
+
+	/**
+	 * @param The repository streaming the users
+	 * @param The transaction manager (the stream needs an open transaction)
+	 * @param false to always search the database
+	 * @param The memory ceiling of the index
+	 * @param The registry of the index gauges
+	 */
+	public UsernameTypeahead(UserRepository userRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${user.search.index.enabled:true}") boolean enabled,
+			@Value("${user.search.index.max-memory:64MB}") DataSize maxMemory,
+			MeterRegistry meterRegistry) {
+		this.userRepository = userRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.enabled = enabled;
+		this.maxBytes = maxMemory.toBytes();
+
+		Gauge.builder("user.search.index.size", this, typeahead -> typeahead.index == null ? 0 : typeahead.index.size())
+				.description("Users held by the username index (0 when the search goes to the database)")
+				.register(meterRegistry);
+		Gauge.builder("user.search.index.bytes", this, typeahead -> typeahead.index == null ? 0 : typeahead.index.estimatedBytes())
+				.description("Approximate heap held by the username index")
+				.register(meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Search
+	// -------------------------------------------------------------
+	/**
+	 * Ranked search, same contract as UserRepository.searchByUsername
+	 * @param The normalized query
+	 * @param The rank of the last row of the previous page (-1 for the first page)
+	 * @param The normalized name of the last row of the previous page
+	 * @param The maximum number of users returned
+	 * @return The users, or empty if the index cannot answer (the database has to)
+	 */
+	public Optional<List<UserSummaryDto>> search(String query, int afterRank, String afterUsername, int limit) {
+		UsernameIndex current = index;
+		if (current == null) {
+			return Optional.empty();
+		}
+		return Optional.of(current.search(query, afterRank, afterUsername, limit));
+	}
+
+	// -------------------------------------------------------------
+	// User events
+	// -------------------------------------------------------------
+	// After the commit only: a rolled back change never reaches the index
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserSaved(UserSavedEvent event) {
+		apply(event);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserDeleted(UserDeletedEvent event) {
+		apply(event);
+	}
+
+	// -------------------------------------------------------------
+	// Rebuild
+	// -------------------------------------------------------------
+	/**
+	 * Build a new index from the users table and swap it in, the current one keeps answering meanwhile
+	 * Runs at startup, then periodically: it catches up with the other instances and drops the stale trigram slots
+	 */
+	@Scheduled(fixedDelayString = "${user.search.index.refresh-interval:10m}")
+	public void rebuild() {
+		if (!enabled) {
+			return;
+		}
+		synchronized (this) {
+			pendingEvents = new ArrayList<>();
+		}
+		UsernameIndex rebuilt = new UsernameIndex();
+		Boolean complete;
+		try {
+			complete = transactionTemplate.execute(status -> fill(rebuilt));
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				pendingEvents = null;
+			}
+			throw e;
+		}
+		synchronized (this) {
+			pendingEvents.forEach(event -> applyTo(rebuilt, event));
+			pendingEvents = null;
+			index = Boolean.TRUE.equals(complete) && rebuilt.estimatedBytes() <= maxBytes ? rebuilt : null;
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Stops as soon as the ceiling is exceeded, the rows streamed so far are garbage anyway
+	private boolean fill(UsernameIndex target) {
+		try (Stream<UserSummaryDto> users = userRepository.streamAllSummaries()) {
+			Iterator<UserSummaryDto> iterator = users.iterator();
+			while (iterator.hasNext()) {
+				target.put(iterator.next());
+				if (target.estimatedBytes() > maxBytes) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private synchronized void apply(Object event) {
+		if (pendingEvents != null) {
+			pendingEvents.add(event);
+		}
+		UsernameIndex current = index;
+		if (current == null) {
+			return;
+		}
+		applyTo(current, event);
+		if (current.estimatedBytes() > maxBytes) {
+			// Over the ceiling: back to the database until a rebuild fits again
+			index = null;
+		}
+	}
+
+	private static void applyTo(UsernameIndex target, Object event) {
+		if (event instanceof UserSavedEvent saved) {
+			target.put(saved.user());
+		} else if (event instanceof UserDeletedEvent deleted) {
+			target.remove(deleted.userId());
+		}
+	}
+
+}
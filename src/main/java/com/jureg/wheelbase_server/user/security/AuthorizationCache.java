@@ -0,0 +1,120 @@
+package com.jureg.wheelbase_server.user.security;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.shared.cache.BoundedTtlCache;
+import com.jureg.wheelbase_server.shared.service.AuthorizationClaims;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.service.RequestUserLoader;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Caches what the profile visibility checks need: the account type of a user, and whether a user follows another one
+// Entries are invalidated synchronously by the services changing them (follow / unfollow / account type update)
+// Each Cloud Run instance has its own cache, the TTL bounds how long another instance can serve a stale decision
+@Component
+public class AuthorizationCache {
+
+	private final RequestUserLoader userLoader;
+	private final FollowRepository followRepository;
+	// Account type of each user, with the profile version it was read at
+	private final BoundedTtlCache<UUID, AuthorizationClaims> profiles;
+	private final BoundedTtlCache<FollowEdge, Boolean> followEdges;
+
+	private record FollowEdge(UUID followerId, UUID followedId) {
+	}
+
+	public AuthorizationCache(RequestUserLoader userLoader,
+			FollowRepository followRepository,
+			MeterRegistry meterRegistry,
+			@Value("${security.authorization-cache.max-size:10000}") int maxSize,
+			@Value("${security.authorization-cache.ttl:30s}") Duration ttl) {
+		this.userLoader = userLoader;
+		this.followRepository = followRepository;
+		this.profiles = new BoundedTtlCache<>("authorization.account-types", maxSize, ttl, meterRegistry);
+		this.followEdges = new BoundedTtlCache<>("authorization.follow-edges", maxSize, ttl, meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Lookups
+	// -------------------------------------------------------------
+	/**
+	 * Return the account type of a user
+	 * On a miss the whole user is loaded through the request loader, the service handling the request reuses it
+	 * @param The user ID
+	 * @return The account type, or empty if the user does not exist
+	 */
+	public Optional<AccountType> getAccountType(UUID userId) {
+		AuthorizationClaims profile = profiles.get(userId, id -> userLoader.findById(id)
+				.map(user -> new AuthorizationClaims(user.getAccountType(), user.getProfileVersion()))
+				.orElse(null));
+		return Optional.ofNullable(profile).map(AuthorizationClaims::accountType);
+	}
+
+	/**
+	 * Refresh the cached profile of a user from the claims of one of its verified tokens
+	 * A token stamped with a newer profile version proves the cached entry is stale (e.g. changed on another instance)
+	 * Claims are never cached on their own: without a cached stamp to compare with, we cannot tell if they are stale
+	 * @param The user ID (subject of the token)
+	 * @param The authorization claims of the token
+	 */
+	public void observeClaims(UUID userId, AuthorizationClaims claims) {
+		AuthorizationClaims cached = profiles.peek(userId);
+		if (cached != null && claims.profileVersion() > cached.profileVersion()) {
+			profiles.put(userId, claims);
+		}
+	}
+
+	/**
+	 * Check if a user follows another one (both answers are cached)
+	 * @param The follower user ID
+	 * @param The followed user ID
+	 * @return true if the follow exists
+	 */
+	public boolean isFollowing(UUID followerId, UUID followedId) {
+		return followEdges.get(new FollowEdge(followerId, followedId),
+				edge -> followRepository.existsByFollowerIdAndFollowedId(edge.followerId(), edge.followedId()));
+	}
+
+	// -------------------------------------------------------------
+	// Invalidation
+	// -------------------------------------------------------------
+	// Entries are dropped right away, and again once the transaction commits
+	// (a concurrent request could have cached the old value between the two)
+	public void invalidateAccountType(UUID userId) {
+		runNowAndAfterCommit(() -> profiles.invalidate(userId));
+	}
+
+	public void invalidateFollow(UUID followerId, UUID followedId) {
+		FollowEdge edge = new FollowEdge(followerId, followedId);
+		runNowAndAfterCommit(() -> followEdges.invalidate(edge));
+	}
+
+	public void invalidateUser(UUID userId) {
+		runNowAndAfterCommit(() -> {
+			profiles.invalidate(userId);
+			followEdges.invalidateIf(edge -> edge.followerId().equals(userId) || edge.followedId().equals(userId));
+		});
+	}
+
+	private static void runNowAndAfterCommit(Runnable invalidation) {
+		invalidation.run();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					invalidation.run();
+				}
+			});
+		}
+	}
+
+}
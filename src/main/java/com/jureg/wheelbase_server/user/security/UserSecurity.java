@@ -8,56 +8,46 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
-import com.jureg.wheelbase_server.follow.repository.FollowRepository;
 import com.jureg.wheelbase_server.shared.api.exception.AccessDeniedException;
 import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
+import com.jureg.wheelbase_server.shared.security.SecurityUtils;
 import com.jureg.wheelbase_server.user.model.AccountType;
-import com.jureg.wheelbase_server.user.model.User;
-import com.jureg.wheelbase_server.user.repository.UserRepository;
 
 @Component
 public class UserSecurity {
 
-	private final UserRepository userRepository;
-	private final FollowRepository followRepository;
+	private final AuthorizationCache authorizationCache;
 	
-	public UserSecurity(UserRepository userRepository, FollowRepository followRepository) {
-        this.userRepository = userRepository;
-        this.followRepository = followRepository;
+	public UserSecurity(AuthorizationCache authorizationCache) {
+        this.authorizationCache = authorizationCache;
     }
 	
 	public boolean isUserPublicOrYourselfOrFollowed(UUID requestedUserId) {
 
-		// Fetch requested user
-        Optional<User> requestedUser = userRepository.findById(requestedUserId);
-        if (!requestedUser.isPresent()) {
+		UUID authenticatedUserId = getAuthenticatedUserId();
+
+        // If user accesses his own profile (the token is enough, the service reports a deleted user)
+        if (requestedUserId.equals(authenticatedUserId)) {
+            return true;
+        }
+
+		// Fetch requested user account type
+        Optional<AccountType> requestedAccountType = authorizationCache.getAccountType(requestedUserId);
+        if (!requestedAccountType.isPresent()) {
         	throw new UserNotFoundException();
         }
         
         // If requested user is public
-        if (requestedUser.get().getAccountType().equals(AccountType.PUBLIC)) {
+        if (requestedAccountType.get().equals(AccountType.PUBLIC)) {
         	return true;
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
-        	throw new AccessDeniedException();
-        }
-        
-        // Check principal
-        Object principal = authentication.getPrincipal();
-        if (!(principal instanceof UUID authenticatedUserId)) {
+        if (authenticatedUserId == null) {
         	throw new AccessDeniedException();
         }
-
-        // If user accesses his own profile
-        if (authenticatedUserId.equals(requestedUserId)) {
-            return true;
-        }
         
         // If user is following the requested user
-        if (followRepository.existsByFollowerIdAndFollowedId(authenticatedUserId, requestedUserId)) {
+        if (authorizationCache.isFollowing(authenticatedUserId, requestedUserId)) {
         	return true;
         }
         
@@ -68,31 +58,42 @@ public class UserSecurity {
 	
 	public boolean isUserYourself(UUID requestedUserId) {
 
-		// Fetch requested user
-        Optional<User> requestedUser = userRepository.findById(requestedUserId);
-        if (!requestedUser.isPresent()) {
-        	throw new UserNotFoundException();
+		UUID authenticatedUserId = getAuthenticatedUserId();
+
+        // If user accesses his own profile (the token is enough, the service reports a deleted user)
+        if (requestedUserId.equals(authenticatedUserId)) {
+            return true;
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		// Check requested user exists
+        if (!authorizationCache.getAccountType(requestedUserId).isPresent()) {
+        	throw new UserNotFoundException();
+        }
+        
+        // Else, user is not authorized
+        throw new AccessDeniedException();
+	}
+	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Returns the ID of the authenticated user, or null for an anonymous request
+	// The claims of the token are used on the way to refresh a stale cached profile of this user
+	private UUID getAuthenticatedUserId() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
         if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
-        	throw new AccessDeniedException();
+        	return null;
         }
         
         // Check principal
         Object principal = authentication.getPrincipal();
         if (!(principal instanceof UUID authenticatedUserId)) {
-        	throw new AccessDeniedException();
+        	return null;
         }
 
-        // If user accesses his own profile
-        if (authenticatedUserId.equals(requestedUserId)) {
-            return true;
-        }
-        
-        // Else, user is not authorized
-        throw new AccessDeniedException();
+        SecurityUtils.getCurrentAuthorizationClaims().ifPresent(claims -> authorizationCache.observeClaims(authenticatedUserId, claims));
+        return authenticatedUserId;
 	}
 	
 }
@@ -0,0 +1,85 @@
+package com.jureg.wheelbase_server.user.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import jakarta.persistence.EntityManager;
+
+// Loads each user at most once per HTTP request, so the @PreAuthorize checks and the services reuse the same row
+// The users are kept in the request attributes: outside of a request (jobs, tests), every call goes to the repository
+@Component
+public class RequestUserLoader {
+
+	private static final String USERS_ATTRIBUTE = RequestUserLoader.class.getName() + ".users";
+
+	private final UserRepository userRepository;
+	private final EntityManager entityManager;
+
+	public RequestUserLoader(UserRepository userRepository, EntityManager entityManager) {
+		this.userRepository = userRepository;
+		this.entityManager = entityManager;
+	}
+
+	/**
+	 * Return a user, loaded at most once during the current request
+	 * @param The user ID
+	 * @return The user, or empty if it does not exist (not remembered, it could be created later in the request)
+	 */
+	public Optional<User> findById(UUID id) {
+		Map<UUID, User> users = getRequestUsers();
+		if (users == null) {
+			return userRepository.findById(id);
+		}
+		User user = users.get(id);
+		if (user != null && isUsable(user)) {
+			return Optional.of(user);
+		}
+		Optional<User> loaded = userRepository.findById(id);
+		loaded.ifPresent(found -> users.put(id, found));
+		return loaded;
+	}
+
+	/**
+	 * Forget a user loaded during the current request (e.g. after deleting it)
+	 * @param The user ID
+	 */
+	public void evict(UUID id) {
+		Map<UUID, User> users = getRequestUsers();
+		if (users != null) {
+			users.remove(id);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// A user loaded by an earlier transaction of the request is detached: changes made to it would never be flushed
+	private boolean isUsable(User user) {
+		return !TransactionSynchronizationManager.isActualTransactionActive() || entityManager.contains(user);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<UUID, User> getRequestUsers() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return null;
+		}
+		Map<UUID, User> users = (Map<UUID, User>) attributes.getAttribute(USERS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		if (users == null) {
+			users = new HashMap<>();
+			attributes.setAttribute(USERS_ATTRIBUTE, users, RequestAttributes.SCOPE_REQUEST);
+		}
+		return users;
+	}
+
+}
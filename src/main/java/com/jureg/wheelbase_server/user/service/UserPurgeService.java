@@ -0,0 +1,106 @@
+package com.jureg.wheelbase_server.user.service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
+import com.jureg.wheelbase_server.user.repository.UserPurgeRepository;
+
+// Second half of an account deletion: UserService only marks the user deleted, this job removes its rows
+// Stage by stage (DeletionStage), a chunk of rows per transaction: no lock is held for long, nothing is loaded in memory
+// The stage reached is saved with each chunk, so a purge cut short (restart, crash) goes on from there on the next run
+@Service
+public class UserPurgeService {
+
+	private final UserPurgeRepository userPurgeRepository;
+	private final FollowCounterService followCounterService;
+	private final TransactionTemplate transactionTemplate;
+	private final int chunkSize;
+	private final int batchSize;
+
+	/**
+	 * @param The repository of the purge statements
+	 * @param The service of the follow counters (the follows are uncounted as they are purged)
+	 * @param The transaction manager (one transaction per chunk)
+	 * @param The maximum number of rows removed per chunk
+	 * @param The maximum number of deleted users purged per run
+	 */
+	public UserPurgeService(UserPurgeRepository userPurgeRepository,
+			FollowCounterService followCounterService,
+			PlatformTransactionManager transactionManager,
+			@Value("${user.deletion.chunk-size:1000}") int chunkSize,
+			@Value("${user.deletion.batch-size:100}") int batchSize) {
+		this.userPurgeRepository = userPurgeRepository;
+		this.followCounterService = followCounterService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.chunkSize = chunkSize;
+		this.batchSize = batchSize;
+	}
+
+	// -------------------------------------------------------------
+	// Purge
+	// -------------------------------------------------------------
+	/**
+	 * Purge the oldest deleted users, each one until its row is gone
+	 */
+	@Scheduled(fixedDelayString = "${user.deletion.purge-interval:1m}", initialDelayString = "${user.deletion.purge-interval:1m}")
+	public void purgeDeletedUsers() {
+		for (UUID userId : userPurgeRepository.findDeletedUserIds(batchSize)) {
+			purgeUser(userId);
+		}
+	}
+
+	/**
+	 * Purge a deleted user, chunk after chunk, from the stage it reached
+	 * @param The deleted user ID
+	 */
+	public void purgeUser(UUID userId) {
+		while (Boolean.TRUE.equals(transactionTemplate.execute(status -> purgeNextChunk(userId)))) {
+			// Next chunk
+		}
+	}
+
+	/**
+	 * Run one chunk of the current stage of a deleted user, in the caller's transaction
+	 * The stage moves on in the same transaction once a chunk finds fewer rows than its size
+	 * @param The deleted user ID
+	 * @return False once the user is purged (or is being purged by another instance)
+	 */
+	public boolean purgeNextChunk(UUID userId) {
+		Optional<DeletionStage> locked = userPurgeRepository.lockDeletionStage(userId).map(DeletionStage::valueOf);
+		if (locked.isEmpty()) {
+			return false;
+		}
+		DeletionStage stage = locked.get();
+		if (stage == DeletionStage.ACCOUNT) {
+			followCounterService.deleteCounters(userId);
+			userPurgeRepository.deleteCommunities(userId);
+			userPurgeRepository.deleteTimeline(userId);
+			userPurgeRepository.deleteCelebrity(userId);
+			userPurgeRepository.deleteUser(userId);
+			return false;
+		}
+		int deleted = switch (stage) {
+			case FOLLOWING -> followCounterService.purgeFollowing(userId, chunkSize);
+			case FOLLOWERS -> followCounterService.purgeFollowers(userId, chunkSize);
+			case LIKES -> userPurgeRepository.deleteLikes(userId, chunkSize);
+			case COMMENTS -> userPurgeRepository.deleteComments(userId, chunkSize);
+			case IMAGES -> userPurgeRepository.deleteImages(userId, chunkSize);
+			case POSTS -> userPurgeRepository.deletePosts(userId, chunkSize);
+			case VEHICLES -> userPurgeRepository.deleteVehicles(userId, chunkSize);
+			case ACCOUNT -> throw new IllegalStateException("The account stage has no chunks");
+		};
+		if (deleted < chunkSize) {
+			userPurgeRepository.updateDeletionStage(userId, stage.next().name());
+		}
+		return true;
+	}
+
+}
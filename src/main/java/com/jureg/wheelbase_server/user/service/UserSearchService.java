@@ -0,0 +1,125 @@
+package com.jureg.wheelbase_server.user.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.search.UsernameRanking;
+import com.jureg.wheelbase_server.user.search.UsernameSearchCache;
+import com.jureg.wheelbase_server.user.search.UsernameTypeahead;
+
+// Not transactional: a search answered by the in-memory index must not take a database connection
+@Service
+public class UserSearchService {
+
+	private final UserRepository userRepository;
+	private final UsernameTypeahead usernameTypeahead;
+	private final UsernameSearchCache searchCache;
+	private final int defaultLimit;
+	private final int maxLimit;
+
+	public UserSearchService(UserRepository userRepository,
+			UsernameTypeahead usernameTypeahead,
+			UsernameSearchCache searchCache,
+			@Value("${user.search.default-limit:20}") int defaultLimit,
+			@Value("${user.search.max-limit:50}") int maxLimit) {
+		this.userRepository = userRepository;
+		this.usernameTypeahead = usernameTypeahead;
+		this.searchCache = searchCache;
+		this.defaultLimit = defaultLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	// -------------------------------------------------------------
+	// Search users by name
+	// -------------------------------------------------------------
+	/**
+	 * Search users by name: exact match first, then names starting with the query, then names containing it
+	 * @param The searched name (case-insensitive)
+	 * @param The cursor of the page, null for the first one
+	 * @param The page size, capped (default if null)
+	 * @return The page of users, with the cursor of the next page
+	 */
+	public CursorPage<UserSummaryDto> searchUsersByUsername(String query, String cursor, Integer limit) {
+		if (query == null || query.isBlank()) {
+			return new CursorPage<>(List.of(), null);
+		}
+		String normalized = User.normalize(query.strip());
+
+		// The first page starts before the best rank
+		String[] position = cursor == null ? new String[] { "-1", "" } : CursorCodec.decode(cursor, 2);
+		int afterRank = cursor == null ? -1 : parseRank(position[0]);
+		String afterUsername = position[1];
+
+		int pageSize = limit == null ? defaultLimit : Math.min(Math.max(limit, 1), maxLimit);
+		// One more row tells if there is a next page
+		int rows = pageSize + 1;
+		List<UserSummaryDto> users = searchCache.get(normalized, afterRank, afterUsername, rows)
+				.orElseGet(() -> search(normalized, afterRank, afterUsername, rows));
+		if (users.size() <= pageSize) {
+			return new CursorPage<>(users, null);
+		}
+		users = users.subList(0, pageSize);
+		String lastUsername = User.normalize(users.get(pageSize - 1).username());
+		return new CursorPage<>(users, CursorCodec.encode(Integer.toString(UsernameRanking.rank(lastUsername, normalized)), lastUsername));
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// A first page is read up to the cache cap: when there are no more matches, the cache can answer the next keystrokes
+	private List<UserSummaryDto> search(String query, int afterRank, String afterUsername, int rows) {
+		if (afterRank >= UsernameRanking.RANK_EXACT) {
+			return searchSource(query, afterRank, afterUsername, rows);
+		}
+		int maxMatches = searchCache.getMaxMatches();
+		List<UserSummaryDto> matches = searchSource(query, afterRank, afterUsername, Math.max(rows, maxMatches + 1));
+		searchCache.put(query, matches, matches.size() <= maxMatches);
+		return matches.size() <= rows ? matches : matches.subList(0, rows);
+	}
+
+	private List<UserSummaryDto> searchSource(String query, int afterRank, String afterUsername, int rows) {
+		return usernameTypeahead.search(query, afterRank, afterUsername, rows)
+				.orElseGet(() -> searchDatabase(query, afterRank, afterUsername, rows));
+	}
+
+	private List<UserSummaryDto> searchDatabase(String query, int afterRank, String afterUsername, int rows) {
+		String prefix = escapeLike(query) + "%";
+		String pattern = query.length() < UsernameRanking.MIN_CONTAINS_LENGTH ? prefix : "%" + prefix;
+		return userRepository.searchByUsername(query, pattern, prefix, afterRank, afterUsername, Limit.of(rows));
+	}
+
+	private static int parseRank(String value) {
+		try {
+			int rank = Integer.parseInt(value);
+			if (rank < UsernameRanking.RANK_EXACT || rank > UsernameRanking.RANK_CONTAINS) {
+				throw new InvalidCursorException();
+			}
+			return rank;
+		} catch (NumberFormatException e) {
+			throw new InvalidCursorException();
+		}
+	}
+
+	// The query is matched literally: the LIKE wildcards it contains are escaped
+	private static String escapeLike(String value) {
+		StringBuilder builder = new StringBuilder(value.length() + 4);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == '\\') {
+				builder.append('\\');
+			}
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+
+}
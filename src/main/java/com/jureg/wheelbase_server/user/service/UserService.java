@@ -1,18 +1,34 @@
 package com.jureg.wheelbase_server.user.service;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.follow.dto.FollowUserDto;
 import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.refresh_token.service.RefreshTokenService;
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
 import com.jureg.wheelbase_server.shared.api.exception.FieldAlreadyExistsException;
 import com.jureg.wheelbase_server.shared.api.exception.InvalidCredentialsException;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+import com.jureg.wheelbase_server.shared.api.exception.PasswordHashingBusyException;
 import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
 import com.jureg.wheelbase_server.shared.service.JwtService;
 import com.jureg.wheelbase_server.user.dto.UserAuthResponseDto;
@@ -22,9 +38,13 @@ import com.jureg.wheelbase_server.user.dto.UserPasswordUpdateDto;
 import com.jureg.wheelbase_server.user.dto.UserResponseDto;
 import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
 import com.jureg.wheelbase_server.user.dto.UserUpdateDto;
+import com.jureg.wheelbase_server.user.event.UserDeletedEvent;
+import com.jureg.wheelbase_server.user.event.UserSavedEvent;
 import com.jureg.wheelbase_server.user.mapper.UserMapper;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
 import com.jureg.wheelbase_server.user.model.User;
 import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.security.AuthorizationCache;
 
 @Service
 @Transactional
@@ -35,34 +55,67 @@ public class UserService {
 	private final PasswordEncoder passwordEncoder;
 	private final JwtService jwtService;
 	private final FollowRepository followRepository;
+	private final FollowCounterService followCounterService;
+	private final AuthorizationCache authorizationCache;
+	private final RequestUserLoader userLoader;
+	private final RefreshTokenService refreshTokenService;
+	private final ApplicationEventPublisher eventPublisher;
+	// The password hashing can wait for a worker then take a few hundred milliseconds: the methods hashing a password run
+	// without a transaction, and only read and write in these short ones, so a login storm does not drain the connection pool
+	private final TransactionTemplate readTransaction;
+	private final TransactionTemplate writeTransaction;
+	private final int defaultFollowsLimit;
+	private final int maxFollowsLimit;
 	
 	public UserService(UserRepository userRepository,
 			UserMapper userMapper,
 			PasswordEncoder passwordEncoder,
 			JwtService jwtService,
-			FollowRepository followRepository) {
+			FollowRepository followRepository,
+			FollowCounterService followCounterService,
+			AuthorizationCache authorizationCache,
+			RequestUserLoader userLoader,
+			RefreshTokenService refreshTokenService,
+			ApplicationEventPublisher eventPublisher,
+			PlatformTransactionManager transactionManager,
+			@Value("${user.follows.default-limit:20}") int defaultFollowsLimit,
+			@Value("${user.follows.max-limit:100}") int maxFollowsLimit) {
 		this.userRepository = userRepository;
 		this.userMapper = userMapper;
 		this.passwordEncoder = passwordEncoder;
 		this.jwtService = jwtService;
 		this.followRepository = followRepository;
+		this.followCounterService = followCounterService;
+		this.authorizationCache = authorizationCache;
+		this.userLoader = userLoader;
+		this.refreshTokenService = refreshTokenService;
+		this.eventPublisher = eventPublisher;
+		this.readTransaction = new TransactionTemplate(transactionManager);
+		this.readTransaction.setReadOnly(true);
+		this.writeTransaction = new TransactionTemplate(transactionManager);
+		this.defaultFollowsLimit = defaultFollowsLimit;
+		this.maxFollowsLimit = maxFollowsLimit;
 	}
 	
 	// -------------------------------------------------------------
 	// Create
 	// -------------------------------------------------------------
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public UserResponseDto createUser(UserCreateDto dto) {
-		if (userRepository.existsByEmailIgnoreCase(dto.email())) {
-			throw new FieldAlreadyExistsException("Email");
-		}
-		if (userRepository.existsByUsernameIgnoreCase(dto.username())) {
-			throw new FieldAlreadyExistsException("Username");
-		}
 		User newUser = userMapper.toEntity(dto);
-		// Hash password
+		// Hash password, before the transaction
 		newUser.setPassword(passwordEncoder.encode(dto.password()));
-		userRepository.save(newUser);
-		return userMapper.toResponseDto(newUser);
+		// No pre-check queries: the unique indexes reject a taken username or email in the same insert
+		try {
+			writeTransaction.executeWithoutResult(status -> {
+				userRepository.saveAndFlush(newUser);
+				eventPublisher.publishEvent(new UserSavedEvent(userMapper.toSummaryDto(newUser)));
+			});
+		} catch (DataIntegrityViolationException e) {
+			throw toFieldAlreadyExists(e);
+		}
+		// Nobody follows a new user yet
+		return userMapper.toResponseDto(newUser, FollowCounts.ZERO);
 	}
 	
 	// -------------------------------------------------------------
@@ -71,15 +124,8 @@ public class UserService {
 	@Transactional(readOnly = true)
 	@PreAuthorize("@userSecurity.isUserPublicOrYourselfOrFollowed(#id)")
 	public UserResponseDto getUserById(UUID id) {
-		User user = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException());
-		return userMapper.toResponseDto(user);
-	}
-	@Transactional(readOnly = true)
-	public List<UserSummaryDto> searchUsersByUsername(String query) {
-		if (query == null || query.isBlank()) {
-			return List.of();
-		}
-		return userRepository.findByUsernameContainingIgnoreCase(query).stream().map(userMapper::toSummaryDto).collect(Collectors.toList());
+		User user = userLoader.findById(id).orElseThrow(() -> new UserNotFoundException());
+		return userMapper.toResponseDto(user, followCounterService.getCounts(id));
 	}
 	
 	// -------------------------------------------------------------
@@ -87,13 +133,8 @@ public class UserService {
 	// -------------------------------------------------------------
 	@PreAuthorize("@userSecurity.isUserYourself(#id)")
 	public UserResponseDto updateUser(UUID id, UserUpdateDto dto) {
-		User existing = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException());
+		User existing = userLoader.findById(id).orElseThrow(() -> new UserNotFoundException());
 		if (dto.username() != null) {
-			// Check if new user name already exists
-			boolean newUsernameTaken = userRepository.findByUsernameIgnoreCase(dto.username()).isPresent();
-			if (newUsernameTaken) {
-				throw new FieldAlreadyExistsException("Username");
-			}
 			existing.setUsername(dto.username());
 		}
 		if (dto.avatarUrl() != null) {
@@ -102,75 +143,179 @@ public class UserService {
 		if (dto.bio() != null) {
 			existing.setBio(dto.bio());
 		}
-		if (dto.accountType() != null) {
+		if (dto.accountType() != null && dto.accountType() != existing.getAccountType()) {
 			existing.setAccountType(dto.accountType());
+			// The profile visibility decisions depend on the account type, the tokens issued before now carry a stale stamp
+			existing.setProfileVersion(existing.getProfileVersion() + 1);
+			authorizationCache.invalidateAccountType(id);
 		}
 		if (dto.communities() != null) {
 			existing.setCommunities(dto.communities());
 		}
-		return userMapper.toResponseDto(existing);
+		// No pre-check query: the unique index rejects a taken username, even the one of a deleted user not purged yet
+		if (dto.username() != null) {
+			try {
+				userRepository.saveAndFlush(existing);
+			} catch (DataIntegrityViolationException e) {
+				throw toFieldAlreadyExists(e);
+			}
+		}
+		// The search index holds the summary fields
+		if (dto.username() != null || dto.avatarUrl() != null || dto.accountType() != null) {
+			eventPublisher.publishEvent(new UserSavedEvent(userMapper.toSummaryDto(existing)));
+		}
+		return userMapper.toResponseDto(existing, followCounterService.getCounts(id));
 	}
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void changePassword(UUID id, UserPasswordUpdateDto dto) {
-		User existing = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException());
+		User existing = readTransaction.execute(status -> userLoader.findById(id)).orElseThrow(() -> new UserNotFoundException());
 		// Check if old password matches
 		if (!passwordEncoder.matches(dto.oldPassword(), existing.getPassword())) {
 			throw new InvalidCredentialsException();		
 		}
 		// Hash password
-		existing.setPassword(passwordEncoder.encode(dto.newPassword()));
+		String password = passwordEncoder.encode(dto.newPassword());
+		// The password changed since it was checked: the old password given may not be the current one anymore
+		if (writeTransaction.execute(status -> userRepository.updatePassword(id, existing.getPassword(), password)) == 0) {
+			throw new InvalidCredentialsException();
+		}
 	}
 	
 	// -------------------------------------------------------------
 	// Delete
 	// -------------------------------------------------------------
 	public void deleteUser(UUID id) {
-		User user = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException());
-		userRepository.delete(user);
+		User user = userLoader.findById(id).orElseThrow(() -> new UserNotFoundException());
+		refreshTokenService.deleteTokensOfUser(id);
+		// Only marked here: hidden from now on, its rows are purged in the background (UserPurgeService)
+		user.setDeletedAt(Instant.now());
+		user.setDeletionStage(DeletionStage.FOLLOWING);
+		userLoader.evict(id);
+		authorizationCache.invalidateUser(id);
+		eventPublisher.publishEvent(new UserDeletedEvent(id));
 	}
 	
 	// -------------------------------------------------------------
 	// Authenticate user
 	// -------------------------------------------------------------
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public UserAuthResponseDto authUser(UserAuthDto dto) {
 		// Check if user exists
-		User user = userRepository.findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail())
+		User user = readTransaction.execute(status -> userRepository.findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail()))
 				.orElseThrow(() -> new UserNotFoundException());
 		// Check if password matches
 		if (!passwordEncoder.matches(dto.password(), user.getPassword())) {
 			throw new InvalidCredentialsException();
 		}
-		// Generate a JWT
+		// Upgrade the stored hash if it was made with an older encoding or a lower strength
+		// We know the clear password only here, so this is the only place we can do it
+		rehashPasswordIfNeeded(user, dto.password());
+		// Generate a short-lived JWT, and a refresh token to get the next ones without the password
 		String jwt = jwtService.generateToken(user);
-		return new UserAuthResponseDto(jwt, userMapper.toResponseDto(user));
+		String refreshToken = refreshTokenService.issueToken(user.getId());
+		return new UserAuthResponseDto(jwt, refreshToken, userMapper.toResponseDto(user, followCounterService.getCounts(user.getId())));
+	}
+	
+	private void rehashPasswordIfNeeded(User user, String rawPassword) {
+		if (!passwordEncoder.upgradeEncoding(user.getPassword())) {
+			return;
+		}
+		try {
+			String password = passwordEncoder.encode(rawPassword);
+			// Left as is if the password changed in the meantime
+			writeTransaction.executeWithoutResult(status -> userRepository.updatePassword(user.getId(), user.getPassword(), password));
+		} catch (PasswordHashingBusyException e) {
+			// The login already succeeded, we will upgrade the hash on a next login
+		}
 	}
 	
 	// -------------------------------------------------------------
 	// Get followers / following user(s)
 	// -------------------------------------------------------------
-	public List<UserSummaryDto> getFollowers(UUID userId) {
-		User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException());
-		return followRepository.findByFollowed(user)
-				.stream()
-				.map(Follow::getFollower)
-				.map(userMapper::toSummaryDto)
-				.collect(Collectors.toList());
+	/**
+	 * Return a page of the followers of a user, newest first
+	 * @param The user ID
+	 * @param The cursor of the page, null for the first one
+	 * @param The page size, capped (default if null)
+	 * @return The page of followers, with the cursor of the next page
+	 */
+	@Transactional(readOnly = true)
+	public CursorPage<UserSummaryDto> getFollowers(UUID userId, String cursor, Integer limit) {
+		userLoader.findById(userId).orElseThrow(() -> new UserNotFoundException());
+		int pageSize = followsPageSize(limit);
+		// One more row tells if there is a next page
+		List<FollowUserDto> follows;
+		if (cursor == null) {
+			follows = followRepository.findFollowers(userId, Limit.of(pageSize + 1));
+		} else {
+			FollowPosition after = decodeFollowCursor(cursor);
+			follows = followRepository.findFollowersAfter(userId, after.createdAt(), after.userId(), Limit.of(pageSize + 1));
+		}
+		return toFollowsPage(follows, pageSize);
 	}
-	public List<UserSummaryDto> getFollowing(UUID userId) {
-		User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException());
-		return followRepository.findByFollower(user)
-				.stream()
-				.map(Follow::getFollowed)
-				.map(userMapper::toSummaryDto)
-				.collect(Collectors.toList());
+	/**
+	 * Return a page of the users followed by a user, newest first
+	 * @param The user ID
+	 * @param The cursor of the page, null for the first one
+	 * @param The page size, capped (default if null)
+	 * @return The page of followed users, with the cursor of the next page
+	 */
+	@Transactional(readOnly = true)
+	public CursorPage<UserSummaryDto> getFollowing(UUID userId, String cursor, Integer limit) {
+		userLoader.findById(userId).orElseThrow(() -> new UserNotFoundException());
+		int pageSize = followsPageSize(limit);
+		List<FollowUserDto> follows;
+		if (cursor == null) {
+			follows = followRepository.findFollowing(userId, Limit.of(pageSize + 1));
+		} else {
+			FollowPosition after = decodeFollowCursor(cursor);
+			follows = followRepository.findFollowingAfter(userId, after.createdAt(), after.userId(), Limit.of(pageSize + 1));
+		}
+		return toFollowsPage(follows, pageSize);
+	}
+	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Position of the last row of a follows page: when the follow was made, and the user on the other side
+	private record FollowPosition(Instant createdAt, UUID userId) {
+	}
+	
+	private int followsPageSize(Integer limit) {
+		return limit == null ? defaultFollowsLimit : Math.min(Math.max(limit, 1), maxFollowsLimit);
+	}
+	
+	private static CursorPage<UserSummaryDto> toFollowsPage(List<FollowUserDto> follows, int pageSize) {
+		List<FollowUserDto> page = follows.size() > pageSize ? follows.subList(0, pageSize) : follows;
+		List<UserSummaryDto> users = page.stream()
+				.map(FollowUserDto::toSummaryDto)
+				.toList();
+		if (follows.size() <= pageSize) {
+			return new CursorPage<>(users, null);
+		}
+		FollowUserDto last = page.get(pageSize - 1);
+		return new CursorPage<>(users, CursorCodec.encode(last.followedAt().toString(), last.id().toString()));
+	}
+	
+	private static FollowPosition decodeFollowCursor(String cursor) {
+		String[] position = CursorCodec.decode(cursor, 2);
+		try {
+			return new FollowPosition(Instant.parse(position[0]), UUID.fromString(position[1]));
+		} catch (DateTimeParseException | IllegalArgumentException e) {
+			throw new InvalidCursorException();
+		}
+	}
+	
+	// Map the unique index that rejected the write to the field the client has to change
+	private static RuntimeException toFieldAlreadyExists(DataIntegrityViolationException e) {
+		String constraint = e.getCause() instanceof ConstraintViolationException violation ? violation.getConstraintName() : null;
+		if (User.EMAIL_UNIQUE_CONSTRAINT.equalsIgnoreCase(constraint)) {
+			return new FieldAlreadyExistsException("Email");
+		}
+		if (User.USERNAME_UNIQUE_CONSTRAINT.equalsIgnoreCase(constraint)) {
+			return new FieldAlreadyExistsException("Username");
+		}
+		return e;
 	}
 	
 }
-
-
-
-
-
-
-
-
-
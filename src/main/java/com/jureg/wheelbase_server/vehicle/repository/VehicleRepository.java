@@ -1,14 +1,22 @@
 package com.jureg.wheelbase_server.vehicle.repository;
 
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
 import com.jureg.wheelbase_server.vehicle.model.Vehicle;
 
 // Extending the JpaRepository allows for CRUD operations, pagination and utilities functions
 @Repository
 public interface VehicleRepository extends JpaRepository<Vehicle, UUID> {
 
+	// The community of a vehicle of the given owner, without loading the vehicle (a post only references it)
+	@Query("select v.community from Vehicle v where v.id = :id and v.owner.id = :ownerId")
+	Optional<CommunityType> findCommunityByIdAndOwnerId(@Param("id") UUID id, @Param("ownerId") UUID ownerId);
+
 }
@@ -0,0 +1,100 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import com.jureg.wheelbase_server.user.model.User;
+
+// Lower-case copies of the username and email, kept by the application (User.normalize)
+// The case-insensitive uniqueness moves to them: "Alice" and "alice" can no longer both register
+// A Java migration so the existing rows get the very keys the application computes: the lower() of the database follows its
+// locale, not Locale.ROOT, and both differ beyond ASCII
+// Users already registered under names equal but for the case stop the migration, to be renamed or merged by hand first
+public class V5__User_lookup_keys extends BaseJavaMigration {
+
+	private static final int BATCH_SIZE = 1000;
+	// Enough examples for the error message to point the way
+	private static final int REPORTED_DUPLICATES = 20;
+
+	@Override
+	public void migrate(Context context) throws Exception {
+		Connection connection = context.getConnection();
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ALTER TABLE public.users ADD COLUMN username_normalized character varying(255)");
+			statement.execute("ALTER TABLE public.users ADD COLUMN email_normalized character varying(255)");
+		}
+
+		backfill(connection);
+		failOnDuplicates(connection, "username");
+		failOnDuplicates(connection, "email");
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ALTER TABLE public.users ALTER COLUMN username_normalized SET NOT NULL");
+			statement.execute("ALTER TABLE public.users ALTER COLUMN email_normalized SET NOT NULL");
+
+			statement.execute("ALTER TABLE public.users DROP CONSTRAINT users_username_key");
+			statement.execute("ALTER TABLE public.users DROP CONSTRAINT users_email_key");
+
+			statement.execute("ALTER TABLE public.users ADD CONSTRAINT users_username_normalized_key UNIQUE (username_normalized)");
+			statement.execute("ALTER TABLE public.users ADD CONSTRAINT users_email_normalized_key UNIQUE (email_normalized)");
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Streams the users (a cursor, the migration runs in a transaction) and writes their keys in batches
+	private static void backfill(Connection connection) throws Exception {
+		try (PreparedStatement select = connection.prepareStatement("SELECT id, username, email FROM public.users");
+				PreparedStatement update = connection.prepareStatement(
+						"UPDATE public.users SET username_normalized = ?, email_normalized = ? WHERE id = ?")) {
+			select.setFetchSize(BATCH_SIZE);
+			int pending = 0;
+			try (ResultSet users = select.executeQuery()) {
+				while (users.next()) {
+					update.setString(1, User.normalize(users.getString("username")));
+					update.setString(2, User.normalize(users.getString("email")));
+					update.setObject(3, users.getObject("id"));
+					update.addBatch();
+					if (++pending == BATCH_SIZE) {
+						update.executeBatch();
+						pending = 0;
+					}
+				}
+			}
+			if (pending > 0) {
+				update.executeBatch();
+			}
+		}
+	}
+
+	private static void failOnDuplicates(Connection connection, String column) throws Exception {
+		String query = """
+			SELECT string_agg(%1$s, ', ' ORDER BY %1$s)
+			FROM public.users
+			GROUP BY %1$s_normalized
+			HAVING count(*) > 1
+			ORDER BY %1$s_normalized
+			LIMIT %2$d
+			""".formatted(column, REPORTED_DUPLICATES);
+		List<String> duplicates = new ArrayList<>();
+		try (Statement statement = connection.createStatement(); ResultSet groups = statement.executeQuery(query)) {
+			while (groups.next()) {
+				duplicates.add("[" + groups.getString(1) + "]");
+			}
+		}
+		if (!duplicates.isEmpty()) {
+			throw new FlywayException("Users share the same " + column + " but for the case, rename them before migrating"
+					+ " (first " + REPORTED_DUPLICATES + " groups at most): " + String.join(" ", duplicates));
+		}
+	}
+
+}
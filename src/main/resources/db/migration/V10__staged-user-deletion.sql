@@ -0,0 +1,12 @@
+--
+-- Staged account deletion (UserPurgeService)
+-- A deleted user is hidden at once (deleted_at), its rows are then purged chunk by chunk, stage by stage
+-- The stage reached is stored with the user, so a purge interrupted by a restart goes on from there
+--
+
+ALTER TABLE public.users ADD COLUMN deleted_at timestamp(6) with time zone;
+ALTER TABLE public.users ADD COLUMN deletion_stage character varying(255);
+ALTER TABLE public.users ADD CONSTRAINT users_deletion_stage_check CHECK (((deletion_stage)::text = ANY ((ARRAY['FOLLOWING'::character varying, 'FOLLOWERS'::character varying, 'LIKES'::character varying, 'COMMENTS'::character varying, 'IMAGES'::character varying, 'POSTS'::character varying, 'VEHICLES'::character varying, 'ACCOUNT'::character varying])::text[])));
+
+-- The users waiting to be purged, oldest deletion first (the live users are not indexed)
+CREATE INDEX users_deleted_at_idx ON public.users USING btree (deleted_at) WHERE deleted_at IS NOT NULL;
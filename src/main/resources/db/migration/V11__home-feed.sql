@@ -0,0 +1,8 @@
+--
+-- Home feed (PostRepository.findFeedPostIds / findFeedPostIdsAfter): the newest posts of each followed author
+-- Ordered by (created_at, ID) within an author: each author is a short range scan of this index, read backwards
+--
+
+DROP INDEX public.posts_author_id_created_at_idx;
+
+CREATE INDEX posts_author_id_created_at_id_idx ON public.posts USING btree (author_id, created_at, id);
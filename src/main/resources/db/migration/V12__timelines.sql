@@ -0,0 +1,44 @@
+--
+-- Fan-out on write (TimelineService): a new post is pushed to a bounded timeline per follower of its author
+-- The posts still to push are flagged, so the worker picks them up again after a restart
+-- The authors with too many followers (timeline_celebrities) are not pushed, their posts are merged when a timeline is read
+--
+
+ALTER TABLE public.posts ADD COLUMN fanout_pending boolean DEFAULT false NOT NULL;
+
+-- The posts waiting for their fan-out, oldest first (the posts already pushed are not indexed)
+CREATE INDEX posts_fanout_pending_created_at_idx ON public.posts USING btree (created_at) WHERE fanout_pending;
+
+CREATE TABLE public.timeline_entries (
+    user_id uuid NOT NULL,
+    post_id uuid NOT NULL,
+    author_id uuid NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    CONSTRAINT timeline_entries_pkey PRIMARY KEY (user_id, post_id)
+);
+
+-- Keyset pages of a timeline, newest first: a range scan of this index, read backwards
+CREATE INDEX timeline_entries_user_id_created_at_post_id_idx ON public.timeline_entries USING btree (user_id, created_at, post_id);
+
+CREATE TABLE public.timeline_celebrities (
+    user_id uuid NOT NULL,
+    CONSTRAINT timeline_celebrities_pkey PRIMARY KEY (user_id)
+);
+
+-- Every timeline starts with the newest posts of the authors followed (up to timeline.capacity, 800 by default)
+INSERT INTO public.timeline_entries (user_id, post_id, author_id, created_at)
+SELECT u.id, t.id, t.author_id, t.created_at
+FROM public.users u
+CROSS JOIN LATERAL (
+    SELECT p.id, p.author_id, p.created_at
+    FROM public.follows f
+    CROSS JOIN LATERAL (
+        SELECT a.id, a.author_id, a.created_at FROM public.posts a
+        WHERE a.author_id = f.followed_id AND a.created_at IS NOT NULL
+        ORDER BY a.created_at DESC, a.id DESC
+        LIMIT 800
+    ) p
+    WHERE f.follower_id = u.id
+    ORDER BY p.created_at DESC, p.id DESC
+    LIMIT 800
+) t;
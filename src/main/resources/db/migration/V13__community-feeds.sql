@@ -0,0 +1,20 @@
+--
+-- Feeds of a single community: the home feed filtered on it (TimelineRepository.findPostIdsInCommunity),
+-- and the explore feed of every public post of a community (PostRepository.findExplorePostRefs)
+-- The community leads each index after the user: a page is a range scan of one community, read backwards
+--
+
+-- The community of the post is copied to the timelines, as its author and creation time are
+ALTER TABLE public.timeline_entries ADD COLUMN community character varying(255);
+
+UPDATE public.timeline_entries t SET community = p.community FROM public.posts p WHERE p.id = t.post_id;
+
+-- The entries of the posts removed since their fan-out
+DELETE FROM public.timeline_entries WHERE community IS NULL;
+
+ALTER TABLE public.timeline_entries ALTER COLUMN community SET NOT NULL;
+ALTER TABLE public.timeline_entries ADD CONSTRAINT timeline_entries_community_check CHECK (((community)::text = ANY ((ARRAY['CAR'::character varying, 'MOTORBIKE'::character varying])::text[])));
+
+CREATE INDEX timeline_entries_user_id_community_created_at_post_id_idx ON public.timeline_entries USING btree (user_id, community, created_at, post_id);
+
+CREATE INDEX posts_community_created_at_id_idx ON public.posts USING btree (community, created_at, id);
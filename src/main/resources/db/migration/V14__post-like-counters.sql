@@ -0,0 +1,15 @@
+--
+-- Like counts of the posts (PostLikeCounterService): a like is counted in memory, the deltas are written here in batches
+-- A row per liked post, out of the posts table: the flushes never update a post row, whatever the number of likes it gets
+-- The likes already there are counted once
+--
+
+CREATE TABLE public.post_like_counters (
+    post_id uuid NOT NULL,
+    likes bigint NOT NULL,
+    CONSTRAINT post_like_counters_pkey PRIMARY KEY (post_id),
+    CONSTRAINT post_like_counters_post_id_fkey FOREIGN KEY (post_id) REFERENCES public.posts(id) ON DELETE CASCADE
+);
+
+INSERT INTO public.post_like_counters (post_id, likes)
+SELECT l.post_id, count(*) FROM public.post_likes l GROUP BY l.post_id;
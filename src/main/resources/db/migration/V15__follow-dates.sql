@@ -0,0 +1,9 @@
+--
+-- The keyset pages of the followers and following lists, and the fan-out of a post to the followers, page on follows.created_at
+-- A follow without a date broke them (a null cursor, a row-value comparison matching nothing): the column is now required
+-- The follows of unknown date are dated at the epoch, so they come last, as the oldest ones; their order within is kept by the user IDs
+--
+
+UPDATE public.follows SET created_at = TIMESTAMPTZ '1970-01-01 00:00:00+00' WHERE created_at IS NULL;
+
+ALTER TABLE public.follows ALTER COLUMN created_at SET NOT NULL;
@@ -0,0 +1,6 @@
+--
+-- Version stamp of the authorization-relevant fields of a user (account type)
+-- Embedded in the access tokens, so stale claims can be detected
+--
+
+ALTER TABLE public.users ADD COLUMN profile_version bigint DEFAULT 0 NOT NULL;
@@ -0,0 +1,29 @@
+--
+-- Refresh tokens (only their SHA-256 hash is stored)
+--
+
+CREATE TABLE public.refresh_tokens (
+    id uuid NOT NULL,
+    user_id uuid NOT NULL,
+    token_hash character varying(64) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    expires_at timestamp(6) with time zone NOT NULL,
+    revoked_at timestamp(6) with time zone,
+    CONSTRAINT refresh_tokens_pkey PRIMARY KEY (id),
+    CONSTRAINT refresh_tokens_token_hash_key UNIQUE (token_hash)
+);
+
+CREATE INDEX refresh_tokens_user_id_idx ON public.refresh_tokens USING btree (user_id);
+
+--
+-- Access tokens revoked before their expiration, loaded by each instance into its in-memory revocation list
+--
+
+CREATE TABLE public.revoked_access_tokens (
+    token_id character varying(64) NOT NULL,
+    expires_at timestamp(6) with time zone NOT NULL,
+    revoked_at timestamp(6) with time zone NOT NULL,
+    CONSTRAINT revoked_access_tokens_pkey PRIMARY KEY (token_id)
+);
+
+CREATE INDEX revoked_access_tokens_revoked_at_idx ON public.revoked_access_tokens USING btree (revoked_at);
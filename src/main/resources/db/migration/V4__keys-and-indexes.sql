@@ -0,0 +1,69 @@
+--
+-- Duplicates
+-- Without keys, a follow or a like could be written twice: only one row of each is kept for the primary keys below
+--
+
+DELETE FROM public.follows a USING public.follows b WHERE a.ctid > b.ctid AND a.follower_id = b.follower_id AND a.followed_id = b.followed_id;
+DELETE FROM public.post_likes a USING public.post_likes b WHERE a.ctid > b.ctid AND a.post_id = b.post_id AND a.user_id = b.user_id;
+
+--
+-- Primary keys
+-- The composite keys of follows and post_likes match their @IdClass, and serve the lookups by their leading column
+--
+
+ALTER TABLE public.users ADD CONSTRAINT users_pkey PRIMARY KEY (id);
+ALTER TABLE public.vehicle_brands ADD CONSTRAINT vehicle_brands_pkey PRIMARY KEY (id);
+ALTER TABLE public.vehicles ADD CONSTRAINT vehicles_pkey PRIMARY KEY (id);
+ALTER TABLE public.posts ADD CONSTRAINT posts_pkey PRIMARY KEY (id);
+ALTER TABLE public.post_images ADD CONSTRAINT post_images_pkey PRIMARY KEY (id);
+ALTER TABLE public.comments ADD CONSTRAINT comments_pkey PRIMARY KEY (id);
+ALTER TABLE public.follows ADD CONSTRAINT follows_pkey PRIMARY KEY (follower_id, followed_id);
+ALTER TABLE public.post_likes ADD CONSTRAINT post_likes_pkey PRIMARY KEY (post_id, user_id);
+
+--
+-- Unique constraints (declared on the entities)
+--
+
+ALTER TABLE public.users ADD CONSTRAINT users_username_key UNIQUE (username);
+ALTER TABLE public.users ADD CONSTRAINT users_email_key UNIQUE (email);
+ALTER TABLE public.vehicle_brands ADD CONSTRAINT vehicle_brands_name_key UNIQUE (name);
+
+--
+-- Foreign keys
+-- Deleting a user or a post removes what belongs to it, like the JPA cascades do
+-- Every referencing column is indexed below, so a cascade never scans the child table
+--
+
+ALTER TABLE public.user_communities ADD CONSTRAINT user_communities_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.follows ADD CONSTRAINT follows_follower_id_fkey FOREIGN KEY (follower_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.follows ADD CONSTRAINT follows_followed_id_fkey FOREIGN KEY (followed_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.vehicles ADD CONSTRAINT vehicles_owner_id_fkey FOREIGN KEY (owner_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.vehicles ADD CONSTRAINT vehicles_brand_id_fkey FOREIGN KEY (brand_id) REFERENCES public.vehicle_brands(id) ON DELETE SET NULL;
+ALTER TABLE public.posts ADD CONSTRAINT posts_author_id_fkey FOREIGN KEY (author_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.posts ADD CONSTRAINT posts_vehicle_id_fkey FOREIGN KEY (vehicle_id) REFERENCES public.vehicles(id) ON DELETE CASCADE;
+ALTER TABLE public.post_images ADD CONSTRAINT post_images_post_id_fkey FOREIGN KEY (post_id) REFERENCES public.posts(id) ON DELETE CASCADE;
+ALTER TABLE public.post_likes ADD CONSTRAINT post_likes_post_id_fkey FOREIGN KEY (post_id) REFERENCES public.posts(id) ON DELETE CASCADE;
+ALTER TABLE public.post_likes ADD CONSTRAINT post_likes_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.comments ADD CONSTRAINT comments_post_id_fkey FOREIGN KEY (post_id) REFERENCES public.posts(id) ON DELETE CASCADE;
+ALTER TABLE public.comments ADD CONSTRAINT comments_author_id_fkey FOREIGN KEY (author_id) REFERENCES public.users(id) ON DELETE CASCADE;
+ALTER TABLE public.refresh_tokens ADD CONSTRAINT refresh_tokens_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+--
+-- Access-path indexes
+--
+
+-- EAGER communities of every loaded user
+CREATE INDEX user_communities_user_id_idx ON public.user_communities USING btree (user_id);
+-- Followers of a user, newest first (follows_pkey serves the following side)
+CREATE INDEX follows_followed_id_created_at_idx ON public.follows USING btree (followed_id, created_at);
+-- Posts of a user, newest first
+CREATE INDEX posts_author_id_created_at_idx ON public.posts USING btree (author_id, created_at);
+CREATE INDEX posts_vehicle_id_idx ON public.posts USING btree (vehicle_id);
+-- Comments of a post, in order
+CREATE INDEX comments_post_id_created_at_idx ON public.comments USING btree (post_id, created_at);
+CREATE INDEX comments_author_id_idx ON public.comments USING btree (author_id);
+CREATE INDEX post_images_post_id_idx ON public.post_images USING btree (post_id);
+-- Likes of a user (post_likes_pkey serves the likes of a post)
+CREATE INDEX post_likes_user_id_idx ON public.post_likes USING btree (user_id);
+CREATE INDEX vehicles_owner_id_idx ON public.vehicles USING btree (owner_id);
+CREATE INDEX vehicles_brand_id_idx ON public.vehicles USING btree (brand_id);
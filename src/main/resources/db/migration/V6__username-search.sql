@@ -0,0 +1,9 @@
+--
+-- Username search (UserRepository.searchByUsername)
+-- The trigram index serves both LIKE '%query%' and the LIKE 'query%' of short queries, even when the pattern is a bind parameter
+-- Names starting with the query carry the leading-blank trigrams of their first letters, so short prefixes stay selective
+--
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+
+CREATE INDEX users_username_normalized_trgm_idx ON public.users USING gin (username_normalized public.gin_trgm_ops);
@@ -0,0 +1,7 @@
+--
+-- Byte order for the normalized usernames
+-- The search pages are cut on (rank, username_normalized): the in-memory index and the result cache compare the names in Java,
+-- so the database has to sort them the same way (the default collation weighs the punctuation last: "johna" < "john_b", the other way round in Java)
+--
+
+ALTER TABLE public.users ALTER COLUMN username_normalized TYPE character varying(255) COLLATE "C";
@@ -0,0 +1,9 @@
+--
+-- Keyset pages of the followers and following lists (FollowRepository.findFollowersAfter / findFollowingAfter)
+-- Ordered by (created_at, other user ID) within a user: each page is a range scan of these indexes, read backwards
+--
+
+DROP INDEX public.follows_followed_id_created_at_idx;
+
+CREATE INDEX follows_followed_id_created_at_follower_id_idx ON public.follows USING btree (followed_id, created_at, follower_id);
+CREATE INDEX follows_follower_id_created_at_followed_id_idx ON public.follows USING btree (follower_id, created_at, followed_id);
@@ -0,0 +1,18 @@
+--
+-- Follower / following counters of each user, spread over several slots (FollowCounterRepository)
+-- A user's counts are the sums over its slots, the existing follows are counted into slot 0
+--
+
+CREATE TABLE public.user_follow_counters (
+    user_id uuid NOT NULL,
+    slot integer NOT NULL,
+    followers bigint NOT NULL,
+    following bigint NOT NULL,
+    CONSTRAINT user_follow_counters_pkey PRIMARY KEY (user_id, slot)
+);
+
+INSERT INTO public.user_follow_counters (user_id, slot, followers, following)
+SELECT u.id, 0,
+    (SELECT count(*) FROM public.follows f WHERE f.followed_id = u.id),
+    (SELECT count(*) FROM public.follows f WHERE f.follower_id = u.id)
+FROM public.users u;
@@ -0,0 +1,185 @@
+package com.jureg.wheelbase_server.follow.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Testcontainers
+class FollowCounterRepositoryTest {
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private FollowCounterRepository followCounterRepository;
+	@Autowired
+	private FollowRepository followRepository;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// -------------------------------------------------------------
+	// Follow / unfollow
+	// -------------------------------------------------------------
+	@Test
+	void givenFollowsOnSeveralSlots_whenSumByUserId_thenSlotsAddedUp() {
+		UUID john = UUID.randomUUID();
+		UUID alice = UUID.randomUUID();
+		UUID mark = UUID.randomUUID();
+
+		// John and Mark follow Alice, on different slots
+		followCounterRepository.addFollow(john, 0, alice, 1, 1);
+		followCounterRepository.addFollow(mark, 2, alice, 3, 1);
+		// John follows Alice again after an unfollow, on the slots already used
+		followCounterRepository.addFollow(john, 0, alice, 3, -1);
+		followCounterRepository.addFollow(john, 0, alice, 1, 1);
+
+		assertThat(followCounterRepository.sumByUserId(alice)).isEqualTo(new FollowCounts(2, 0));
+		assertThat(followCounterRepository.sumByUserId(john)).isEqualTo(new FollowCounts(0, 1));
+		assertThat(followCounterRepository.sumByUserId(mark)).isEqualTo(new FollowCounts(0, 1));
+		// A slot row per user and slot written to
+		assertThat(followCounterRepository.count()).isEqualTo(4);
+	}
+
+	@Test
+	void givenBatchOfFollows_whenAddFollows_thenFollowerCountedOncePerUser() {
+		User john = createUser("John");
+		User alice = createUser("Alice");
+		User mark = createUser("Mark");
+
+		followCounterRepository.addFollows(john.getId(), 0, List.of(alice.getId(), mark.getId()), 1, 1);
+		followCounterRepository.addFollows(john.getId(), 2, List.of(mark.getId()), 1, -1);
+
+		assertThat(followCounterRepository.sumByUserId(john.getId())).isEqualTo(new FollowCounts(0, 1));
+		assertThat(followCounterRepository.sumByUserId(alice.getId())).isEqualTo(new FollowCounts(1, 0));
+		assertThat(followCounterRepository.sumByUserId(mark.getId())).isEqualTo(FollowCounts.ZERO);
+	}
+
+	@Test
+	void givenUserWithoutSlots_whenSumByUserId_thenZeros() {
+		assertThat(followCounterRepository.sumByUserId(UUID.randomUUID())).isEqualTo(FollowCounts.ZERO);
+	}
+
+	@Test
+	void givenDeletedUser_whenPurgingFollowsInChunks_thenCounterpartsUncounted() {
+		User john = createUser("John");
+		User alice = createUser("Alice");
+		User mark = createUser("Mark");
+		User patrick = createUser("Patrick");
+		// John follows Alice and Mark, Patrick follows John
+		follow(john, alice);
+		follow(john, mark);
+		follow(patrick, john);
+
+		// One follow per chunk, until a chunk finds nothing left
+		assertThat(followCounterRepository.purgeFollowing(john.getId(), 3, 1)).isEqualTo(1);
+		assertThat(followCounterRepository.purgeFollowing(john.getId(), 3, 1)).isEqualTo(1);
+		assertThat(followCounterRepository.purgeFollowing(john.getId(), 3, 1)).isZero();
+		assertThat(followCounterRepository.purgeFollowers(john.getId(), 3, 1)).isEqualTo(1);
+		assertThat(followCounterRepository.purgeFollowers(john.getId(), 3, 1)).isZero();
+		followCounterRepository.deleteAllByUserId(john.getId());
+
+		assertThat(followRepository.count()).isZero();
+		assertThat(followCounterRepository.sumByUserId(alice.getId())).isEqualTo(FollowCounts.ZERO);
+		assertThat(followCounterRepository.sumByUserId(mark.getId())).isEqualTo(FollowCounts.ZERO);
+		assertThat(followCounterRepository.sumByUserId(patrick.getId())).isEqualTo(FollowCounts.ZERO);
+		assertThat(followCounterRepository.sumByUserId(john.getId())).isEqualTo(FollowCounts.ZERO);
+	}
+
+	// -------------------------------------------------------------
+	// Reconciliation
+	// -------------------------------------------------------------
+	@Test
+	void givenDriftedCounters_whenReconciling_thenRepairedInBatches() {
+		User john = createUser("John");
+		User alice = createUser("Alice");
+		User mark = createUser("Mark");
+		User patrick = createUser("Patrick");
+		follow(john, alice);
+		// Follows missed by the counters, and counts without any follow
+		followRepository.saveAndFlush(new Follow(mark, alice, Instant.now()));
+		followRepository.saveAndFlush(new Follow(alice, mark, Instant.now()));
+		followCounterRepository.addFollow(patrick.getId(), 3, john.getId(), 2, 5);
+
+		// Two users per batch: the keyset goes over two batches
+		FollowCounterService followCounterService = new FollowCounterService(followCounterRepository, transactionManager, 4, 2, new SimpleMeterRegistry());
+		followCounterService.reconcile();
+
+		assertThat(followCounterRepository.sumByUserId(alice.getId())).isEqualTo(new FollowCounts(2, 1));
+		assertThat(followCounterRepository.sumByUserId(john.getId())).isEqualTo(new FollowCounts(0, 1));
+		assertThat(followCounterRepository.sumByUserId(mark.getId())).isEqualTo(new FollowCounts(1, 1));
+		assertThat(followCounterRepository.sumByUserId(patrick.getId())).isEqualTo(FollowCounts.ZERO);
+		// Nothing left to repair
+		List<UUID> userIds = List.of(john.getId(), alice.getId(), mark.getId(), patrick.getId());
+		assertThat(followCounterRepository.findDrifted(userIds)).isEmpty();
+	}
+
+	@Test
+	void givenCountersInLine_whenFindDrifted_thenNone() {
+		User john = createUser("John");
+		User alice = createUser("Alice");
+		follow(john, alice);
+
+		assertThat(followCounterRepository.findDrifted(List.of(john.getId(), alice.getId()))).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Follows and counts, as FollowService does
+	private void follow(User follower, User followed) {
+		followRepository.saveAndFlush(new Follow(follower, followed, Instant.now()));
+		followCounterRepository.addFollow(follower.getId(), 0, followed.getId(), 0, 1);
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		user.setCommunities(Set.of(CommunityType.CAR));
+		return userRepository.saveAndFlush(user);
+	}
+
+}
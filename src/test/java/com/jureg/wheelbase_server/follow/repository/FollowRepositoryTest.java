@@ -1,15 +1,21 @@
 package com.jureg.wheelbase_server.follow.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -17,6 +23,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.dto.FollowUserDto;
 import com.jureg.wheelbase_server.follow.model.Follow;
 import com.jureg.wheelbase_server.user.repository.UserRepository;
 import com.jureg.wheelbase_server.user.model.User;
@@ -80,6 +87,48 @@ class FollowRepositoryTest {
 		assertThat(followsFromFollowed.get(0).getFollowed().getId()).isEqualTo(followed.getId());
 	}
 	
+	// -------------------------------------------------------------
+	// Pages of follows
+	// -------------------------------------------------------------
+	@Test
+	void givenFollowers_whenFindFollowersPages_thenNewestFirstWithoutOverlap() {
+		User followed = createUser("Alice");
+		Instant followedAt = Instant.parse("2026-01-01T10:00:00Z");
+		User first = createUser("John");
+		User second = createUser("Mark");
+		User third = createUser("Tom");
+		followRepository.saveAndFlush(new Follow(first, followed, followedAt));
+		followRepository.saveAndFlush(new Follow(second, followed, followedAt.plusSeconds(1)));
+		followRepository.saveAndFlush(new Follow(third, followed, followedAt.plusSeconds(2)));
+		
+		List<FollowUserDto> firstPage = followRepository.findFollowers(followed.getId(), Limit.of(2));
+		assertThat(firstPage).extracting(FollowUserDto::username).containsExactly("Tom", "Mark");
+		assertThat(firstPage.get(0).followedAt()).isEqualTo(followedAt.plusSeconds(2));
+		
+		FollowUserDto last = firstPage.get(1);
+		List<FollowUserDto> nextPage = followRepository.findFollowersAfter(followed.getId(), last.followedAt(), last.id(), Limit.of(2));
+		assertThat(nextPage).extracting(FollowUserDto::id).containsExactly(first.getId());
+	}
+	
+	@Test
+	void givenFollowsMadeAtTheSameTime_whenFindFollowingPages_thenTiesBrokenById() {
+		User follower = createUser("John");
+		Instant followedAt = Instant.parse("2026-01-01T10:00:00Z");
+		for (String username : List.of("Alice", "Mark", "Tom")) {
+			followRepository.saveAndFlush(new Follow(follower, createUser(username), followedAt));
+		}
+		
+		List<FollowUserDto> firstPage = followRepository.findFollowing(follower.getId(), Limit.of(2));
+		FollowUserDto last = firstPage.get(1);
+		List<FollowUserDto> nextPage = followRepository.findFollowingAfter(follower.getId(), last.followedAt(), last.id(), Limit.of(2));
+		
+		// Every followed user exactly once over the two pages
+		assertThat(firstPage).hasSize(2);
+		assertThat(nextPage).hasSize(1);
+		assertThat(Stream.concat(firstPage.stream(), nextPage.stream()).map(FollowUserDto::username))
+				.containsExactlyInAnyOrder("Alice", "Mark", "Tom");
+	}
+	
 	// -------------------------------------------------------------
 	// Follow exists
 	// -------------------------------------------------------------
@@ -102,21 +151,101 @@ class FollowRepositoryTest {
 		assertThat(exists).isFalse();
 	}
 	
+	// -------------------------------------------------------------
+	// Follow
+	// -------------------------------------------------------------
+	@Test
+	void givenNoFollow_whenInsertIfAbsent_thenInsertedAndReturned() {
+		User follower = createUser("John");
+		User followed = createUser("Alice");
+		
+		assertThat(followRepository.insertIfAbsent(follower.getId(), followed.getId(), Instant.now())).contains(followed.getId());
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(follower.getId(), followed.getId())).isTrue();
+	}
+	
+	@Test
+	void givenExistingFollow_whenInsertIfAbsent_thenNothingReturned() {
+		User follower = createUser("John");
+		User followed = createUser("Alice");
+		Instant followedAt = Instant.parse("2024-01-01T00:00:00Z");
+		
+		followRepository.saveAndFlush(new Follow(follower, followed, followedAt));
+		assertThat(followRepository.insertIfAbsent(follower.getId(), followed.getId(), Instant.now())).isEmpty();
+		// The existing follow is left as it was
+		assertThat(followRepository.findFollowing(follower.getId(), Limit.of(2)))
+				.extracting(FollowUserDto::followedAt)
+				.containsExactly(followedAt);
+	}
+	
+	@Test
+	void givenUnknownFollowedUser_whenInsertIfAbsent_thenForeignKeyNamed() {
+		User follower = createUser("John");
+		
+		assertThatThrownBy(() -> followRepository.insertIfAbsent(follower.getId(), UUID.randomUUID(), Instant.now()))
+				.isInstanceOf(DataIntegrityViolationException.class)
+				.cause()
+				.isInstanceOfSatisfying(ConstraintViolationException.class,
+						violation -> assertThat(violation.getConstraintName()).isEqualToIgnoringCase(Follow.FOLLOWED_FOREIGN_KEY));
+	}
+	
+	@Test
+	void givenUnknownFollowerUser_whenInsertIfAbsent_thenForeignKeyNamed() {
+		User followed = createUser("Alice");
+		
+		assertThatThrownBy(() -> followRepository.insertIfAbsent(UUID.randomUUID(), followed.getId(), Instant.now()))
+				.isInstanceOf(DataIntegrityViolationException.class)
+				.cause()
+				.isInstanceOfSatisfying(ConstraintViolationException.class,
+						violation -> assertThat(violation.getConstraintName()).isEqualToIgnoringCase(Follow.FOLLOWER_FOREIGN_KEY));
+	}
+	
+	@Test
+	void givenMixedTargets_whenInsertAllIfAbsent_thenNewFollowsReturned() {
+		User follower = createUser("John");
+		User alice = createUser("Alice");
+		User mark = createUser("Mark");
+		
+		followRepository.saveAndFlush(new Follow(follower, alice, Instant.now()));
+		List<UUID> inserted = followRepository.insertAllIfAbsent(follower.getId(), List.of(alice.getId(), mark.getId(), UUID.randomUUID()), Instant.now());
+		
+		// Alice was already followed, the unknown ID is skipped
+		assertThat(inserted).containsExactly(mark.getId());
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(follower.getId(), mark.getId())).isTrue();
+	}
+	
 	// -------------------------------------------------------------
 	// Unfollow
 	// -------------------------------------------------------------
 	@Test
-	void givenFollowerIdAndFollowedId_whenDelete_thenShouldDelete() {
+	void givenMixedTargets_whenDeleteAllIfPresent_thenRemovedFollowsReturned() {
+		User follower = createUser("John");
+		User alice = createUser("Alice");
+		User mark = createUser("Mark");
+		
+		followRepository.saveAndFlush(new Follow(follower, alice, Instant.now()));
+		List<UUID> deleted = followRepository.deleteAllIfPresent(follower.getId(), List.of(alice.getId(), mark.getId()));
+		
+		assertThat(deleted).containsExactly(alice.getId());
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(follower.getId(), alice.getId())).isFalse();
+	}
+	
+	@Test
+	void givenFollowerIdAndFollowedId_whenDeleteIfPresent_thenDeletedAndReturned() {
 		User follower = createUser("John");
 		User followed = createUser("Alice");
 		
 		followRepository.saveAndFlush(new Follow(follower, followed, Instant.now()));
-		followRepository.deleteByFollowerIdAndFollowedId(follower.getId(), followed.getId());
+		assertThat(followRepository.deleteIfPresent(follower.getId(), followed.getId())).contains(followed.getId());
 		
-		List<Follow> followsFromFollower = followRepository.findByFollower(follower);
-		assertThat(followsFromFollower).hasSize(0);
-		List<Follow> followsFromFollowed = followRepository.findByFollower(follower);
-		assertThat(followsFromFollowed).hasSize(0);
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(follower.getId(), followed.getId())).isFalse();
+	}
+	
+	@Test
+	void givenNoFollow_whenDeleteIfPresent_thenNothingReturned() {
+		User follower = createUser("John");
+		User followed = createUser("Alice");
+		
+		assertThat(followRepository.deleteIfPresent(follower.getId(), followed.getId())).isEmpty();
 	}
 	
 	// -------------------------------------------------------------
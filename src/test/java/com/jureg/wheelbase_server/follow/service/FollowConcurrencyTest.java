@@ -0,0 +1,165 @@
+package com.jureg.wheelbase_server.follow.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.shared.api.exception.AlreadyFollowingException;
+import com.jureg.wheelbase_server.shared.api.exception.NotFollowingUserException;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+// Many requests for the same follow at once: exactly one of them creates (or removes) it, the others get the usual error
+@SpringBootTest(properties = {
+		"jwt.secret=mysupersecretkeymysupersecretkey123456",
+		"jwt.revocation.sync-interval=1h",
+		"user.search.index.enabled=false"
+})
+@Testcontainers
+class FollowConcurrencyTest {
+
+	private static final int THREADS = 16;
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@Autowired
+	private FollowService followService;
+	@Autowired
+	private FollowCounterService followCounterService;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private User follower;
+	private User followed;
+
+	@BeforeEach
+	void setup() {
+		// Clean DB
+		jdbcTemplate.execute("TRUNCATE follows, user_follow_counters, user_communities, users CASCADE");
+		// Create users
+		follower = saveUser("John");
+		followed = saveUser("Alice");
+	}
+
+	// -------------------------------------------------------------
+	// Follow / Unfollow
+	// -------------------------------------------------------------
+	@Test
+	void givenManyThreads_whenFollowingTheSameUser_thenOneFollowCounted() throws Exception {
+		List<Throwable> outcomes = runConcurrently(() -> followService.followUser(followed.getId()));
+
+		// One follow created, every other request told it already exists
+		assertThat(outcomes).filteredOn(outcome -> outcome == null).hasSize(1);
+		assertThat(outcomes).filteredOn(outcome -> outcome != null).hasSize(THREADS - 1)
+				.allSatisfy(outcome -> assertThat(outcome).isInstanceOf(AlreadyFollowingException.class));
+		assertThat(countFollows()).isEqualTo(1);
+		assertThat(followCounterService.getCounts(followed.getId())).isEqualTo(new FollowCounts(1, 0));
+		assertThat(followCounterService.getCounts(follower.getId())).isEqualTo(new FollowCounts(0, 1));
+	}
+
+	@Test
+	void givenManyThreads_whenUnfollowingTheSameUser_thenOneUnfollowCounted() throws Exception {
+		runAs(follower, () -> followService.followUser(followed.getId()));
+
+		List<Throwable> outcomes = runConcurrently(() -> followService.unfollowUser(followed.getId()));
+
+		// One follow removed, every other request told there is nothing to remove
+		assertThat(outcomes).filteredOn(outcome -> outcome == null).hasSize(1);
+		assertThat(outcomes).filteredOn(outcome -> outcome != null).hasSize(THREADS - 1)
+				.allSatisfy(outcome -> assertThat(outcome).isInstanceOf(NotFollowingUserException.class));
+		assertThat(countFollows()).isZero();
+		assertThat(followCounterService.getCounts(followed.getId())).isEqualTo(FollowCounts.ZERO);
+		assertThat(followCounterService.getCounts(follower.getId())).isEqualTo(FollowCounts.ZERO);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Releases every thread at once, and returns what each call threw (null when it succeeded)
+	private List<Throwable> runConcurrently(Runnable call) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Throwable>> futures = new ArrayList<>();
+		try {
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					try {
+						runAs(follower, call);
+						return null;
+					} catch (RuntimeException e) {
+						return e;
+					}
+				}));
+			}
+			start.countDown();
+			List<Throwable> outcomes = new ArrayList<>();
+			for (Future<Throwable> future : futures) {
+				outcomes.add(future.get(30, TimeUnit.SECONDS));
+			}
+			return outcomes;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void runAs(User user, Runnable call) {
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		context.setAuthentication(new UsernamePasswordAuthenticationToken(user.getId(), null, List.of()));
+		SecurityContextHolder.setContext(context);
+		try {
+			call.run();
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
+
+	private long countFollows() {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM follows", Long.class);
+	}
+
+	private User saveUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		return userRepository.save(user);
+	}
+
+}
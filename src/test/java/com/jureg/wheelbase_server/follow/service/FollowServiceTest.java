@@ -3,25 +3,32 @@ package com.jureg.wheelbase_server.follow.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.jureg.wheelbase_server.follow.dto.FollowOutcome;
+import com.jureg.wheelbase_server.follow.dto.FollowResultDto;
 import com.jureg.wheelbase_server.follow.model.Follow;
 import com.jureg.wheelbase_server.follow.repository.FollowRepository;
 import com.jureg.wheelbase_server.shared.api.exception.AlreadyFollowingException;
@@ -29,8 +36,8 @@ import com.jureg.wheelbase_server.shared.api.exception.CannotFollowYourselfExcep
 import com.jureg.wheelbase_server.shared.api.exception.CannotUnfollowYourselfException;
 import com.jureg.wheelbase_server.shared.api.exception.NotFollowingUserException;
 import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
-import com.jureg.wheelbase_server.user.model.User;
 import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.security.AuthorizationCache;
 
 @ExtendWith(MockitoExtension.class)
 class FollowServiceTest {
@@ -39,6 +46,10 @@ class FollowServiceTest {
 	private UserRepository userRepository;
 	@Mock
 	private FollowRepository followRepository;
+	@Mock
+	private AuthorizationCache authorizationCache;
+	@Mock
+	private FollowCounterService followCounterService;
 	
 	@InjectMocks
 	private FollowService followService;
@@ -63,22 +74,18 @@ class FollowServiceTest {
 	void givenUserId_whenFollowUser_thenSuccess() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
-		
-		User followed = new User();
-		followed.setId(followedId);
-		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(follower));
-		when(userRepository.findById(followedId)).thenReturn(Optional.of(followed));
-		when(followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)).thenReturn(false);
+		when(followRepository.insertIfAbsent(eq(currentUserId), eq(followedId), any())).thenReturn(Optional.of(followedId));
 		
 		// Check that the follow action works
 		followService.followUser(followedId);
 		
-		// Make sure the "save" function from followRepository has been called once
-		verify(followRepository).save(any(Follow.class));
+		// Make sure the users were not loaded
+		verifyNoInteractions(userRepository);
+		// Make sure both sides of the follow are counted
+		verify(followCounterService).recordFollow(currentUserId, followedId);
+		// Make sure the cached follow decision has been dropped
+		verify(authorizationCache).invalidateFollow(currentUserId, followedId);
 	}
 	
 	@Test
@@ -95,58 +102,75 @@ class FollowServiceTest {
 	void givenUserId_whenAlreadyFollow_thenException() {
 		UUID followedId = UUID.randomUUID();
 		
-		// Mock the repositories
-		when(followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)).thenReturn(true);
+		// Mock the repositories: the insert hits the primary key, no row is returned
+		when(followRepository.insertIfAbsent(eq(currentUserId), eq(followedId), any())).thenReturn(Optional.empty());
+		when(userRepository.findExistingIds(Set.of(currentUserId, followedId))).thenReturn(Set.of(currentUserId, followedId));
 		
 		AlreadyFollowingException exception = assertThrows(AlreadyFollowingException.class, () -> followService.followUser(followedId));
 		
 		// Check we got the right error message
 		assertEquals("Already following this user", exception.getMessage());
-		// Make sure the repository was never used
-		verifyNoInteractions(userRepository);
-		// Make sure the "save" function from followRepository has been never called
-		verify(followRepository, never()).save(any());
+		// Make sure nothing was counted nor invalidated
+		verifyNoInteractions(followCounterService, authorizationCache);
 	}
 	
 	@Test
-	void givenUserId_whenFollowerNotFound_thenException() {
+	void givenUserId_whenFollowedDeleted_thenException() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
+		// Mock the repositories: the followed user is waiting for its purge, nothing is inserted
+		when(followRepository.insertIfAbsent(eq(currentUserId), eq(followedId), any())).thenReturn(Optional.empty());
+		when(userRepository.findExistingIds(Set.of(currentUserId, followedId))).thenReturn(Set.of(currentUserId));
 		
-		User followed = new User();
-		followed.setId(followedId);
+		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> followService.followUser(followedId));
+		
+		// Check we got the right error message
+		assertEquals("Followed user not found", exception.getMessage());
+		verifyNoInteractions(followCounterService);
+	}
+	
+	@Test
+	void givenUserId_whenFollowerNotFound_thenException() {
+		UUID followedId = UUID.randomUUID();
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
-		when(followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)).thenReturn(false);
+		when(followRepository.insertIfAbsent(eq(currentUserId), eq(followedId), any()))
+				.thenThrow(foreignKeyViolation(Follow.FOLLOWER_FOREIGN_KEY));
 		
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> followService.followUser(followedId));
 		
 		// Check we got the right error message
 		assertEquals("Follower user not found", exception.getMessage());
+		verifyNoInteractions(followCounterService);
 	}
 	
 	@Test
 	void givenUserId_whenFollowedNotFound_thenException() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
-		
-		User followed = new User();
-		followed.setId(followedId);
-		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(follower));
-		when(userRepository.findById(followedId)).thenReturn(Optional.empty());
-		when(followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)).thenReturn(false);
+		when(followRepository.insertIfAbsent(eq(currentUserId), eq(followedId), any()))
+				.thenThrow(foreignKeyViolation(Follow.FOLLOWED_FOREIGN_KEY));
 		
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> followService.followUser(followedId));
 		
 		// Check we got the right error message
 		assertEquals("Followed user not found", exception.getMessage());
+		verifyNoInteractions(followCounterService);
+	}
+	
+	@Test
+	void givenUnknownConstraint_whenFollow_thenViolationRethrown() {
+		UUID followedId = UUID.randomUUID();
+		
+		// Mock the repositories
+		DataIntegrityViolationException violation = foreignKeyViolation("some_other_constraint");
+		when(followRepository.insertIfAbsent(eq(currentUserId), eq(followedId), any())).thenThrow(violation);
+		
+		DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> followService.followUser(followedId));
+		
+		// Check the violation was not hidden behind a not found
+		assertEquals(violation, exception);
 	}
 	
 	// -------------------------------------------------------------
@@ -156,24 +180,18 @@ class FollowServiceTest {
 	void givenUserId_whenUnfollow_thenSuccess() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
-		
-		User followed = new User();
-		followed.setId(followedId);
-		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(follower));
-		when(userRepository.findById(followedId)).thenReturn(Optional.of(followed));
-		when(followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)).thenReturn(true);
+		when(followRepository.deleteIfPresent(currentUserId, followedId)).thenReturn(Optional.of(followedId));
 		
 		// Check that the unfollow action works
 		followService.unfollowUser(followedId);
 		
-		// Make sure the "existsByFollowerIdAndFollowedId" function from followRepository has been called once
-		verify(followRepository).existsByFollowerIdAndFollowedId(currentUserId, followedId);
-		// Make sure the "deleteByFollowerIdAndFollowedId" function from followRepository has been called once
-		verify(followRepository).deleteByFollowerIdAndFollowedId(currentUserId, followedId);
+		// Make sure the users were not loaded
+		verifyNoInteractions(userRepository);
+		// Make sure both sides of the follow are uncounted
+		verify(followCounterService).recordUnfollow(currentUserId, followedId);
+		// Make sure the cached follow decision has been dropped
+		verify(authorizationCache).invalidateFollow(currentUserId, followedId);
 	}
 	
 	@Test
@@ -190,73 +208,155 @@ class FollowServiceTest {
 	void givenUserId_whenUnfollowNotFollowing_thenException() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
-		
-		User followed = new User();
-		followed.setId(followedId);
-		
 		// Mock the repositories
-		when(followRepository.existsByFollowerIdAndFollowedId(currentUserId, followedId)).thenReturn(false);
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(follower));
-		when(userRepository.findById(followedId)).thenReturn(Optional.of(followed));
+		when(followRepository.deleteIfPresent(currentUserId, followedId)).thenReturn(Optional.empty());
+		when(userRepository.existsById(currentUserId)).thenReturn(true);
+		when(userRepository.existsById(followedId)).thenReturn(true);
 		
 		NotFollowingUserException exception = assertThrows(NotFollowingUserException.class, () -> followService.unfollowUser(followedId));
 		
 		// Check we got the right error message
 		assertEquals("Not following this user", exception.getMessage());
-		// Make sure the "deleteByFollowerIdAndFollowedId" function from followRepository has been never called
-		verify(followRepository, never()).deleteByFollowerIdAndFollowedId(any(), any());
+		// Make sure nothing was uncounted nor invalidated
+		verifyNoInteractions(followCounterService, authorizationCache);
 	}
 	
 	@Test
 	void givenUserId_whenUnfollowFollowerNotFound_thenException() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
-		
-		User followed = new User();
-		followed.setId(followedId);
-		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(followRepository.deleteIfPresent(currentUserId, followedId)).thenReturn(Optional.empty());
+		when(userRepository.existsById(currentUserId)).thenReturn(false);
 		
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> followService.unfollowUser(followedId));
 		
 		// Check we got the right error message
 		assertEquals("Follower user not found", exception.getMessage());
+		verify(userRepository, never()).existsById(followedId);
 	}
 	
 	@Test
 	void givenUserId_whenUnfollowFollowedNotFound_thenException() {
 		UUID followedId = UUID.randomUUID();
 		
-		User follower = new User();
-		follower.setId(currentUserId);
-		
-		User followed = new User();
-		followed.setId(followedId);
-		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(follower));
-		when(userRepository.findById(followedId)).thenReturn(Optional.empty());
+		when(followRepository.deleteIfPresent(currentUserId, followedId)).thenReturn(Optional.empty());
+		when(userRepository.existsById(currentUserId)).thenReturn(true);
+		when(userRepository.existsById(followedId)).thenReturn(false);
 		
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> followService.unfollowUser(followedId));
 		
 		// Check we got the right error message
 		assertEquals("Followed user not found", exception.getMessage());
 	}
+	
+	// -------------------------------------------------------------
+	// Follow / Unfollow users (batch)
+	// -------------------------------------------------------------
+	@Test
+	void givenMixedTargets_whenFollowUsers_thenOutcomePerTarget() {
+		UUID newId = UUID.randomUUID();
+		UUID alreadyFollowedId = UUID.randomUUID();
+		UUID unknownId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(userRepository.findExistingIds(Set.of(currentUserId, newId, alreadyFollowedId, unknownId)))
+				.thenReturn(Set.of(currentUserId, newId, alreadyFollowedId));
+		when(followRepository.insertAllIfAbsent(eq(currentUserId), eq(List.of(newId, alreadyFollowedId)), any()))
+				.thenReturn(List.of(newId));
+		
+		// A repeated ID is answered once, in the order of the request
+		List<FollowResultDto> results = followService.followUsers(List.of(newId, alreadyFollowedId, currentUserId, unknownId, newId));
+		
+		assertEquals(List.of(
+				new FollowResultDto(newId, FollowOutcome.FOLLOWED),
+				new FollowResultDto(alreadyFollowedId, FollowOutcome.ALREADY_FOLLOWING),
+				new FollowResultDto(currentUserId, FollowOutcome.CANNOT_FOLLOW_YOURSELF),
+				new FollowResultDto(unknownId, FollowOutcome.USER_NOT_FOUND)), results);
+		// Make sure only the created follow is counted and invalidated
+		verify(followCounterService).recordFollows(currentUserId, Set.of(newId));
+		verify(authorizationCache).invalidateFollow(currentUserId, newId);
+		verify(authorizationCache, never()).invalidateFollow(currentUserId, alreadyFollowedId);
+	}
+	
+	@Test
+	void givenOnlyUnknownTargets_whenFollowUsers_thenNothingWritten() {
+		UUID unknownId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(userRepository.findExistingIds(Set.of(currentUserId, unknownId))).thenReturn(Set.of(currentUserId));
+		
+		List<FollowResultDto> results = followService.followUsers(List.of(unknownId));
+		
+		assertEquals(List.of(new FollowResultDto(unknownId, FollowOutcome.USER_NOT_FOUND)), results);
+		// Make sure nothing was inserted nor counted
+		verifyNoInteractions(followRepository, followCounterService);
+	}
+	
+	@Test
+	void givenUnknownFollower_whenFollowUsers_thenException() {
+		UUID followedId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(userRepository.findExistingIds(Set.of(currentUserId, followedId))).thenReturn(Set.of(followedId));
+		
+		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> followService.followUsers(List.of(followedId)));
+		
+		// Check we got the right error message
+		assertEquals("Follower user not found", exception.getMessage());
+		verifyNoInteractions(followRepository, followCounterService);
+	}
+	
+	@Test
+	void givenMixedTargets_whenUnfollowUsers_thenOutcomePerTarget() {
+		UUID followedId = UUID.randomUUID();
+		UUID notFollowedId = UUID.randomUUID();
+		UUID unknownId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(followRepository.deleteAllIfPresent(currentUserId, List.of(followedId, notFollowedId, unknownId)))
+				.thenReturn(List.of(followedId));
+		when(userRepository.findExistingIds(Set.of(currentUserId, notFollowedId, unknownId)))
+				.thenReturn(Set.of(currentUserId, notFollowedId));
+		
+		List<FollowResultDto> results = followService.unfollowUsers(List.of(followedId, notFollowedId, unknownId, currentUserId));
+		
+		assertEquals(List.of(
+				new FollowResultDto(followedId, FollowOutcome.UNFOLLOWED),
+				new FollowResultDto(notFollowedId, FollowOutcome.NOT_FOLLOWING),
+				new FollowResultDto(unknownId, FollowOutcome.USER_NOT_FOUND),
+				new FollowResultDto(currentUserId, FollowOutcome.CANNOT_UNFOLLOW_YOURSELF)), results);
+		// Make sure only the removed follow is uncounted and invalidated
+		verify(followCounterService).recordUnfollows(currentUserId, Set.of(followedId));
+		verify(authorizationCache).invalidateFollow(currentUserId, followedId);
+	}
+	
+	@Test
+	void givenEveryTargetFollowed_whenUnfollowUsers_thenUsersNotLookedUp() {
+		UUID firstId = UUID.randomUUID();
+		UUID secondId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(followRepository.deleteAllIfPresent(currentUserId, List.of(firstId, secondId))).thenReturn(List.of(secondId, firstId));
+		
+		List<FollowResultDto> results = followService.unfollowUsers(List.of(firstId, secondId));
+		
+		assertEquals(List.of(
+				new FollowResultDto(firstId, FollowOutcome.UNFOLLOWED),
+				new FollowResultDto(secondId, FollowOutcome.UNFOLLOWED)), results);
+		verify(followCounterService).recordUnfollows(currentUserId, Set.of(firstId, secondId));
+		verifyNoInteractions(userRepository);
+	}
+	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// As translated by the repository proxy: the Hibernate violation, with the constraint name, as the cause
+	private static DataIntegrityViolationException foreignKeyViolation(String constraint) {
+		ConstraintViolationException cause = new ConstraintViolationException("violates foreign key constraint",
+				new SQLException("violates foreign key constraint", "23503"), constraint);
+		return new DataIntegrityViolationException("could not execute statement", cause);
+	}
 
-}
-
-
-
-
-
-
-
-
-
-
-
+}
\ No newline at end of file
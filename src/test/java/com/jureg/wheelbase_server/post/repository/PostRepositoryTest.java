@@ -0,0 +1,162 @@
+package com.jureg.wheelbase_server.post.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.dto.FeedPostDto;
+import com.jureg.wheelbase_server.post.dto.PostRefDto;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post_like.model.PostLikeCounter;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@Testcontainers
+class PostRepositoryTest {
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private PostRepository postRepository;
+	@Autowired
+	private EntityManager entityManager;
+
+	private final Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+	private User alice;
+	private User mark;
+
+	@BeforeEach
+	void setup() {
+		alice = createUser("Alice");
+		mark = createUser("Mark");
+	}
+
+	// -------------------------------------------------------------
+	// Home feed
+	// -------------------------------------------------------------
+	@Test
+	void givenPostIds_whenFindFeedPosts_thenProjectedWithAuthor() {
+		Post older = createPost(alice, 2);
+		Post newer = createPost(mark, 1);
+		// Only the newer post was ever liked
+		entityManager.persist(new PostLikeCounter(newer.getId(), 3));
+		entityManager.flush();
+
+		List<FeedPostDto> posts = postRepository.findFeedPosts(List.of(older.getId(), newer.getId()));
+
+		assertThat(posts).extracting(FeedPostDto::id).containsExactly(newer.getId(), older.getId());
+		assertThat(posts.get(0).authorUsername()).isEqualTo("Mark");
+		assertThat(posts.get(0).vehicleId()).isEqualTo(newer.getVehicle().getId());
+		assertThat(posts.get(0).createdAt()).isEqualTo(newer.getCreatedAt());
+		assertThat(posts).extracting(FeedPostDto::likeCount).containsExactly(3L, 0L);
+	}
+
+	// -------------------------------------------------------------
+	// Explore feed
+	// -------------------------------------------------------------
+	@Test
+	void givenPublicAndPrivateAuthors_whenFindExplorePostRefs_thenPublicPostsOfCommunity() {
+		alice.setAccountType(AccountType.PUBLIC);
+		mark.setAccountType(AccountType.PUBLIC);
+		User patrick = createUser("Patrick");
+		patrick.setAccountType(AccountType.FOLLOWERS_ONLY);
+		Post alice1 = createPost(alice, 4);
+		Post mark1 = createPost(mark, 3);
+		createPost(mark, 2, CommunityType.MOTORBIKE);
+		createPost(patrick, 1);
+		Post alice2 = createPost(alice, 1);
+
+		// Neither the other community, nor the posts of a profile shown to its followers only
+		assertThat(postRepository.findExplorePostRefs(CommunityType.CAR, Limit.of(10)))
+				.extracting(PostRefDto::id)
+				.containsExactly(alice2.getId(), mark1.getId(), alice1.getId());
+		assertThat(postRepository.findExplorePostRefsAfter(CommunityType.CAR, alice2.getCreatedAt(), alice2.getId(), Limit.of(1)))
+				.containsExactly(new PostRefDto(mark1.getId(), mark1.getCreatedAt()));
+	}
+
+	@Test
+	void givenDeletedAuthor_whenFindExplorePostRefs_thenPostsHidden() {
+		alice.setAccountType(AccountType.PUBLIC);
+		mark.setAccountType(AccountType.PUBLIC);
+		Post alicePost = createPost(alice, 2);
+		createPost(mark, 1);
+		mark.setDeletedAt(now);
+		mark.setDeletionStage(DeletionStage.FOLLOWING);
+		entityManager.flush();
+
+		assertThat(postRepository.findExplorePostRefs(CommunityType.CAR, Limit.of(10)))
+				.extracting(PostRefDto::id)
+				.containsExactly(alicePost.getId());
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// A post written the given number of minutes ago
+	private Post createPost(User author, int minutesAgo) {
+		return createPost(author, minutesAgo, CommunityType.CAR);
+	}
+
+	private Post createPost(User author, int minutesAgo, CommunityType community) {
+		Vehicle vehicle = Vehicle.builder().owner(author).community(community).model("Clio").build();
+		entityManager.persist(vehicle);
+		Post post = Post.builder()
+				.author(author)
+				.vehicle(vehicle)
+				.community(community)
+				.content("My car")
+				.createdAt(now.minus(minutesAgo, ChronoUnit.MINUTES))
+				.build();
+		entityManager.persist(post);
+		entityManager.flush();
+		return post;
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		entityManager.persist(user);
+		return user;
+	}
+
+}
@@ -0,0 +1,290 @@
+package com.jureg.wheelbase_server.post.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.repository.Query;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import com.jureg.wheelbase_server.timeline.repository.TimelineRepository;
+
+// The home feed of a user following 1,000 authors (10 of them celebrities), among 10,000 authors of 100 posts each (1M posts),
+// schema built by the Flyway migrations
+// Sample time mode: JMH reports the percentiles, the p99 of feedFirstPage / feedNextPage is the figure to keep under 50 ms
+// - joinAll: a plain join of the follows and the posts, every post of every followed author is read and sorted for each page
+// - mergeOnReadFirstPage / mergeOnReadNextPage: no timeline, at most a page of posts read per followed author
+//   from the (author_id, created_at, id) index
+// - feedFirstPage / feedNextPage: TimelineRepository.findPostRefs / findPostRefsAfter, their SQL read from the @Query of the
+//   repository (so the figure follows the production query), a range of the viewer's timeline, merged with at most a page of posts
+//   per followed celebrity
+// Needs Docker. Run it with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.jureg.wheelbase_server.post.service.FeedBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FeedBenchmark {
+
+	private static final int AUTHORS = 10_000;
+	private static final int FOLLOWED_AUTHORS = 1_000;
+	private static final int POSTS_PER_AUTHOR = 100;
+	private static final int CELEBRITIES = 10;
+	private static final int TIMELINE_CAPACITY = 800;
+	private static final int PAGE_SIZE = 20;
+
+	private static final String JOIN_ALL_SQL = """
+		SELECT p.id FROM follows f
+		JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+		JOIN posts p ON p.author_id = f.followed_id
+		WHERE f.follower_id = ?
+		ORDER BY p.created_at DESC, p.id DESC
+		LIMIT ?
+		""";
+
+	private static final String MERGE_ON_READ_FIRST_PAGE_SQL = """
+		SELECT p.id FROM follows f
+		JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+		CROSS JOIN LATERAL (
+			SELECT a.id, a.created_at FROM posts a
+			WHERE a.author_id = f.followed_id
+			ORDER BY a.created_at DESC, a.id DESC
+			LIMIT ?
+		) p
+		WHERE f.follower_id = ?
+		ORDER BY p.created_at DESC, p.id DESC
+		LIMIT ?
+		""";
+
+	private static final String MERGE_ON_READ_NEXT_PAGE_SQL = """
+		SELECT p.id FROM follows f
+		JOIN users u ON u.id = f.followed_id AND u.deleted_at IS NULL
+		CROSS JOIN LATERAL (
+			SELECT a.id, a.created_at FROM posts a
+			WHERE a.author_id = f.followed_id
+			AND (a.created_at, a.id) < (CAST(? AS timestamptz), CAST(? AS uuid))
+			ORDER BY a.created_at DESC, a.id DESC
+			LIMIT ?
+		) p
+		WHERE f.follower_id = ?
+		ORDER BY p.created_at DESC, p.id DESC
+		LIMIT ?
+		""";
+
+	// Named parameters of a repository query, turned into JDBC ones (the queries cast with CAST, never with ::)
+	private static final Pattern NAMED_PARAMETER = Pattern.compile(":(\\w+)");
+
+	private PostgreSQLContainer<?> postgres;
+	private Connection connection;
+	private PreparedStatement joinAll;
+	private PreparedStatement mergeOnReadFirstPage;
+	private PreparedStatement mergeOnReadNextPage;
+	private PreparedStatement feedFirstPage;
+	private PreparedStatement feedNextPage;
+	private UUID viewerId;
+	// Position of the last post of the fifth page
+	private Timestamp afterCreatedAt;
+	private UUID afterId;
+
+	// The SQL of a repository query with positional parameters, and the names of the parameters in their order
+	private record RepositoryQuery(String sql, List<String> parameters) {
+
+		static RepositoryQuery of(String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
+			String value = TimelineRepository.class.getMethod(methodName, parameterTypes).getAnnotation(Query.class).value();
+			List<String> parameters = new ArrayList<>();
+			StringBuilder sql = new StringBuilder();
+			Matcher matcher = NAMED_PARAMETER.matcher(value);
+			while (matcher.find()) {
+				parameters.add(matcher.group(1));
+				matcher.appendReplacement(sql, "?");
+			}
+			matcher.appendTail(sql);
+			return new RepositoryQuery(sql.toString(), parameters);
+		}
+
+	}
+
+	@SuppressWarnings("resource")
+	@Setup
+	public void setup() throws SQLException, NoSuchMethodException {
+		// The migrations assign the tables to the "postgres" role
+		postgres = new PostgreSQLContainer<>("postgres:18")
+				.withDatabaseName("wheelbase")
+				.withUsername("postgres")
+				.withPassword("test");
+		postgres.start();
+		Flyway.configure().dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).load().migrate();
+
+		connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+		try (Statement statement = connection.createStatement()) {
+			// The authors and the viewer
+			statement.execute("""
+				INSERT INTO public.users (id, account_type, email, email_normalized, password, username, username_normalized, profile_version)
+				SELECT gen_random_uuid(), 'PUBLIC', 'Author' || i || '@test.com', 'author' || i || '@test.com', 'hashed-password', 'Author' || i, 'author' || i, 0
+				FROM generate_series(0, %d) i
+				""".formatted(AUTHORS));
+			statement.execute("""
+				INSERT INTO public.vehicles (id, owner_id, community, model)
+				SELECT gen_random_uuid(), id, 'CAR', 'Clio' FROM public.users
+				""");
+			// Each author posts at its own pace, the posts of all the authors interleave
+			statement.execute("""
+				INSERT INTO public.posts (id, author_id, vehicle_id, community, content, created_at)
+				SELECT gen_random_uuid(), v.owner_id, v.id, 'CAR', 'My car',
+					now() - (k * 60 + abs(hashtext(v.id::text)) %% 3600) * interval '1 minute'
+				FROM public.vehicles v
+				CROSS JOIN generate_series(1, %d) k
+				""".formatted(POSTS_PER_AUTHOR));
+			// The viewer (author 0) follows the first authors
+			statement.execute("""
+				INSERT INTO public.follows (follower_id, followed_id, created_at)
+				SELECT (SELECT id FROM public.users WHERE username_normalized = 'author0'), id, now()
+				FROM public.users WHERE username_normalized <> 'author0'
+				ORDER BY id
+				LIMIT %d
+				""".formatted(FOLLOWED_AUTHORS));
+			// A few of them turned celebrities, the posts of the others pushed to the viewer's timeline (what a rebuild does)
+			statement.execute("""
+				INSERT INTO public.timeline_celebrities (user_id)
+				SELECT followed_id FROM public.follows ORDER BY followed_id LIMIT %d
+				""".formatted(CELEBRITIES));
+			statement.execute("""
+				INSERT INTO public.timeline_entries (user_id, post_id, author_id, community, created_at)
+				SELECT f.follower_id, p.id, p.author_id, p.community, p.created_at
+				FROM public.follows f
+				CROSS JOIN LATERAL (
+					SELECT a.id, a.author_id, a.community, a.created_at FROM public.posts a
+					WHERE a.author_id = f.followed_id
+					ORDER BY a.created_at DESC, a.id DESC
+					LIMIT %1$d
+				) p
+				WHERE NOT EXISTS (SELECT 1 FROM public.timeline_celebrities c WHERE c.user_id = f.followed_id)
+				ORDER BY p.created_at DESC, p.id DESC
+				LIMIT %1$d
+				""".formatted(TIMELINE_CAPACITY));
+			statement.execute("ANALYZE");
+			try (ResultSet resultSet = statement.executeQuery("SELECT id FROM public.users WHERE username_normalized = 'author0'")) {
+				resultSet.next();
+				viewerId = resultSet.getObject(1, UUID.class);
+			}
+		}
+		joinAll = connection.prepareStatement(JOIN_ALL_SQL);
+		mergeOnReadFirstPage = connection.prepareStatement(MERGE_ON_READ_FIRST_PAGE_SQL);
+		mergeOnReadNextPage = connection.prepareStatement(MERGE_ON_READ_NEXT_PAGE_SQL);
+
+		// Walk the first pages to get a cursor deeper in the feed
+		try (PreparedStatement position = connection.prepareStatement("""
+				SELECT p.created_at, p.id FROM follows f JOIN posts p ON p.author_id = f.followed_id
+				WHERE f.follower_id = ?
+				ORDER BY p.created_at DESC, p.id DESC
+				OFFSET ? LIMIT 1
+				""")) {
+			position.setObject(1, viewerId);
+			position.setInt(2, 5 * PAGE_SIZE - 1);
+			try (ResultSet resultSet = position.executeQuery()) {
+				resultSet.next();
+				afterCreatedAt = resultSet.getTimestamp(1);
+				afterId = resultSet.getObject(2, UUID.class);
+			}
+		}
+
+		// Bound once, the benchmarks only run them
+		Map<String, Object> values = Map.of("userId", viewerId, "limit", PAGE_SIZE + 1, "afterCreatedAt", afterCreatedAt, "afterId", afterId);
+		feedFirstPage = prepare(RepositoryQuery.of("findPostRefs", UUID.class, int.class), values);
+		feedNextPage = prepare(RepositoryQuery.of("findPostRefsAfter", UUID.class, Instant.class, UUID.class, int.class), values);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		connection.close();
+		postgres.stop();
+	}
+
+	@Benchmark
+	public int joinAll() throws SQLException {
+		joinAll.setObject(1, viewerId);
+		joinAll.setInt(2, PAGE_SIZE + 1);
+		return count(joinAll);
+	}
+
+	@Benchmark
+	public int mergeOnReadFirstPage() throws SQLException {
+		mergeOnReadFirstPage.setInt(1, PAGE_SIZE + 1);
+		mergeOnReadFirstPage.setObject(2, viewerId);
+		mergeOnReadFirstPage.setInt(3, PAGE_SIZE + 1);
+		return count(mergeOnReadFirstPage);
+	}
+
+	@Benchmark
+	public int mergeOnReadNextPage() throws SQLException {
+		mergeOnReadNextPage.setTimestamp(1, afterCreatedAt);
+		mergeOnReadNextPage.setObject(2, afterId);
+		mergeOnReadNextPage.setInt(3, PAGE_SIZE + 1);
+		mergeOnReadNextPage.setObject(4, viewerId);
+		mergeOnReadNextPage.setInt(5, PAGE_SIZE + 1);
+		return count(mergeOnReadNextPage);
+	}
+
+	@Benchmark
+	public int feedFirstPage() throws SQLException {
+		return count(feedFirstPage);
+	}
+
+	@Benchmark
+	public int feedNextPage() throws SQLException {
+		return count(feedNextPage);
+	}
+
+	private PreparedStatement prepare(RepositoryQuery query, Map<String, Object> values) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(query.sql());
+		for (int i = 0; i < query.parameters().size(); i++) {
+			statement.setObject(i + 1, values.get(query.parameters().get(i)));
+		}
+		return statement;
+	}
+
+	private static int count(PreparedStatement statement) throws SQLException {
+		int rows = 0;
+		try (ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				rows++;
+			}
+		}
+		return rows;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(FeedBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,320 @@
+package com.jureg.wheelbase_server.post.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.dto.FeedPostDto;
+import com.jureg.wheelbase_server.post.dto.PostCreateDto;
+import com.jureg.wheelbase_server.post.dto.PostRefDto;
+import com.jureg.wheelbase_server.post.dto.PostResponseDto;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post.repository.PostRepository;
+import com.jureg.wheelbase_server.post_image.dto.PostImageUrlDto;
+import com.jureg.wheelbase_server.post_image.model.PostImage;
+import com.jureg.wheelbase_server.post_image.repository.PostImageRepository;
+import com.jureg.wheelbase_server.post_like.index.LikedPostsLookup;
+import com.jureg.wheelbase_server.post_like.service.PostLikeCounterService;
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+import com.jureg.wheelbase_server.shared.api.exception.VehicleNotFoundException;
+import com.jureg.wheelbase_server.timeline.dto.TimelinePostRefDto;
+import com.jureg.wheelbase_server.timeline.repository.TimelineRepository;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.service.RequestUserLoader;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+import com.jureg.wheelbase_server.vehicle.repository.VehicleRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PostServiceTest {
+
+	@Mock
+	private PostRepository postRepository;
+	@Mock
+	private PostImageRepository postImageRepository;
+	@Mock
+	private TimelineRepository timelineRepository;
+	@Mock
+	private VehicleRepository vehicleRepository;
+	@Mock
+	private RequestUserLoader userLoader;
+	@Mock
+	private PostLikeCounterService postLikeCounterService;
+	@Mock
+	private LikedPostsLookup likedPostsLookup;
+
+	private PostService postService;
+
+	private UUID currentUserId;
+
+	@BeforeEach
+	void setup() {
+		// Pages of 2 posts, 3 at most
+		postService = new PostService(postRepository, postImageRepository, timelineRepository, vehicleRepository, userLoader, postLikeCounterService, likedPostsLookup, 2, 3);
+		currentUserId = UUID.randomUUID();
+
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		context.setAuthentication(
+			new UsernamePasswordAuthenticationToken(currentUserId, null, List.of())
+		);
+		SecurityContextHolder.setContext(context);
+	}
+
+	// -------------------------------------------------------------
+	// Create post
+	// -------------------------------------------------------------
+	@Test
+	void givenOwnVehicle_whenCreatePost_thenSavedPendingFanout() {
+		UUID vehicleId = UUID.randomUUID();
+		User author = new User();
+		author.setId(currentUserId);
+		author.setUsername("John");
+		Vehicle vehicle = Vehicle.builder().id(vehicleId).build();
+		when(vehicleRepository.findCommunityByIdAndOwnerId(vehicleId, currentUserId)).thenReturn(Optional.of(CommunityType.MOTORBIKE));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(author));
+		when(vehicleRepository.getReferenceById(vehicleId)).thenReturn(vehicle);
+
+		PostResponseDto post = postService.createPost(new PostCreateDto(vehicleId, "My bike", List.of("https://images.test/1.jpg")));
+
+		ArgumentCaptor<Post> saved = ArgumentCaptor.forClass(Post.class);
+		verify(postRepository).save(saved.capture());
+		// Waiting for its fan-out, in the community of its vehicle
+		assertThat(saved.getValue().isFanoutPending()).isTrue();
+		assertThat(saved.getValue().getCommunity()).isEqualTo(CommunityType.MOTORBIKE);
+		assertThat(saved.getValue().getImages()).extracting(PostImage::getImageUrl).containsExactly("https://images.test/1.jpg");
+		assertThat(post.author().username()).isEqualTo("John");
+		assertThat(post.imageUrls()).containsExactly("https://images.test/1.jpg");
+	}
+
+	@Test
+	void givenVehicleOfAnotherUser_whenCreatePost_thenException() {
+		UUID vehicleId = UUID.randomUUID();
+		when(vehicleRepository.findCommunityByIdAndOwnerId(vehicleId, currentUserId)).thenReturn(Optional.empty());
+
+		assertThrows(VehicleNotFoundException.class, () -> postService.createPost(new PostCreateDto(vehicleId, "My car", null)));
+		verify(postRepository, never()).save(any());
+	}
+
+	// -------------------------------------------------------------
+	// Home feed
+	// -------------------------------------------------------------
+	@Test
+	void givenMorePostsThanPage_whenGetFeed_thenPageWithImagesAndCursor() {
+		FeedPostDto newest = feedPost(Instant.parse("2026-01-03T10:00:00Z"));
+		FeedPostDto older = feedPost(Instant.parse("2026-01-02T10:00:00Z"));
+		List<UUID> pageIds = List.of(newest.id(), older.id());
+		// One more post than the page size: there is a next page
+		when(timelineRepository.findPostRefs(currentUserId, 3)).thenReturn(List.of(timelineRef(newest), timelineRef(older),
+				timelineRef(UUID.randomUUID(), Instant.parse("2026-01-01T10:00:00Z"))));
+		when(postRepository.findFeedPosts(pageIds)).thenReturn(List.of(newest, older));
+		when(postImageRepository.findUrlsByPostIds(pageIds)).thenReturn(List.of(
+				new PostImageUrlDto(newest.id(), "https://images.test/1.jpg"),
+				new PostImageUrlDto(newest.id(), "https://images.test/2.jpg")));
+
+		CursorPage<PostResponseDto> page = postService.getFeed(null, null, null);
+
+		assertThat(page.items()).extracting(PostResponseDto::id).containsExactly(newest.id(), older.id());
+		assertThat(page.items().get(0).imageUrls()).containsExactly("https://images.test/1.jpg", "https://images.test/2.jpg");
+		assertThat(page.items().get(1).imageUrls()).isEmpty();
+		assertThat(page.items().get(0).author().id()).isEqualTo(newest.authorId());
+		// The cursor points at the last post of the page
+		assertThat(CursorCodec.decode(page.nextCursor(), 2)).containsExactly(older.createdAt().toString(), older.id().toString());
+	}
+
+	@Test
+	void givenLikesWaitingForFlush_whenGetFeed_thenAddedToWrittenCount() {
+		FeedPostDto post = feedPost(Instant.parse("2026-01-01T10:00:00Z"), 5);
+		when(timelineRepository.findPostRefs(currentUserId, 3)).thenReturn(List.of(timelineRef(post)));
+		when(postRepository.findFeedPosts(List.of(post.id()))).thenReturn(List.of(post));
+		when(postLikeCounterService.getPendingDelta(post.id())).thenReturn(2L);
+
+		CursorPage<PostResponseDto> page = postService.getFeed(null, null, null);
+
+		assertThat(page.items()).extracting(PostResponseDto::likeCount).containsExactly(7L);
+	}
+
+	@Test
+	void givenPostLikedByCurrentUser_whenGetFeed_thenFlagged() {
+		FeedPostDto liked = feedPost(Instant.parse("2026-01-02T10:00:00Z"));
+		FeedPostDto other = feedPost(Instant.parse("2026-01-01T10:00:00Z"));
+		when(timelineRepository.findPostRefs(currentUserId, 3)).thenReturn(List.of(timelineRef(liked), timelineRef(other)));
+		when(postRepository.findFeedPosts(List.of(liked.id(), other.id()))).thenReturn(List.of(liked, other));
+		when(likedPostsLookup.findLikedPostIds(currentUserId, List.of(liked, other))).thenReturn(Set.of(liked.id()));
+
+		CursorPage<PostResponseDto> page = postService.getFeed(null, null, null);
+
+		assertThat(page.items()).extracting(PostResponseDto::likedByMe).containsExactly(true, false);
+	}
+
+	@Test
+	void givenCursor_whenGetFeed_thenPageAfterIt() {
+		Instant createdAt = Instant.parse("2026-01-02T10:00:00Z");
+		UUID postId = UUID.randomUUID();
+		FeedPostDto post = feedPost(Instant.parse("2026-01-01T10:00:00Z"));
+		when(timelineRepository.findPostRefsAfter(currentUserId, createdAt, postId, 3)).thenReturn(List.of(timelineRef(post)));
+		when(postRepository.findFeedPosts(List.of(post.id()))).thenReturn(List.of(post));
+
+		CursorPage<PostResponseDto> page = postService.getFeed(null, CursorCodec.encode(createdAt.toString(), postId.toString()), null);
+
+		assertThat(page.items()).extracting(PostResponseDto::id).containsExactly(post.id());
+		// Last page
+		assertThat(page.nextCursor()).isNull();
+	}
+
+	@Test
+	void givenPostsGoneSinceIdQuery_whenGetFeed_thenCursorAfterLastPosition() {
+		FeedPostDto newest = feedPost(Instant.parse("2026-01-03T10:00:00Z"));
+		UUID goneId = UUID.randomUUID();
+		Instant goneCreatedAt = Instant.parse("2026-01-02T10:00:00Z");
+		when(timelineRepository.findPostRefs(currentUserId, 3)).thenReturn(List.of(timelineRef(newest), timelineRef(goneId, goneCreatedAt),
+				timelineRef(UUID.randomUUID(), Instant.parse("2026-01-01T10:00:00Z"))));
+		// Every post of the page deleted in between the two queries
+		when(postRepository.findFeedPosts(List.of(newest.id(), goneId))).thenReturn(List.of());
+
+		CursorPage<PostResponseDto> page = postService.getFeed(null, null, null);
+
+		assertThat(page.items()).isEmpty();
+		// The feed goes on after the last position of the page, not after the last post found
+		assertThat(CursorCodec.decode(page.nextCursor(), 2)).containsExactly(goneCreatedAt.toString(), goneId.toString());
+	}
+
+	@Test
+	void givenLimitOverMax_whenGetFeed_thenCapped() {
+		when(timelineRepository.findPostRefs(currentUserId, 4)).thenReturn(List.of());
+
+		postService.getFeed(null, null, 1000);
+
+		verify(timelineRepository).findPostRefs(currentUserId, 4);
+	}
+
+	@Test
+	void givenNoPost_whenGetFeed_thenEmptyPageWithoutLookup() {
+		when(timelineRepository.findPostRefs(currentUserId, 3)).thenReturn(List.of());
+
+		CursorPage<PostResponseDto> page = postService.getFeed(null, null, null);
+
+		assertThat(page.items()).isEmpty();
+		assertThat(page.nextCursor()).isNull();
+		verifyNoInteractions(postImageRepository);
+	}
+
+	@Test
+	void givenCommunity_whenGetFeed_thenCommunityTimeline() {
+		when(timelineRepository.findPostRefsInCommunity(currentUserId, "MOTORBIKE", 3)).thenReturn(List.of());
+
+		postService.getFeed(CommunityType.MOTORBIKE, null, null);
+
+		verify(timelineRepository).findPostRefsInCommunity(currentUserId, "MOTORBIKE", 3);
+		verify(timelineRepository, never()).findPostRefs(any(), anyInt());
+	}
+
+	@Test
+	void givenMalformedCursor_whenGetFeed_thenException() {
+		String cursor = CursorCodec.encode("not-a-date", UUID.randomUUID().toString());
+
+		assertThrows(InvalidCursorException.class, () -> postService.getFeed(null, cursor, null));
+		verifyNoInteractions(timelineRepository, postRepository, postImageRepository);
+	}
+
+	@Test
+	void givenCursorWithWrongParts_whenGetFeed_thenException() {
+		assertThrows(InvalidCursorException.class, () -> postService.getFeed(null, "abc", null));
+	}
+
+	// -------------------------------------------------------------
+	// Explore feed
+	// -------------------------------------------------------------
+	@Test
+	void givenUserInSeveralCommunities_whenGetExploreFeed_thenMergedNewestFirst() {
+		User user = new User();
+		user.setCommunities(Set.of(CommunityType.CAR, CommunityType.MOTORBIKE));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(user));
+		Instant tied = Instant.parse("2026-01-02T10:00:00Z");
+		// Same time: the greatest ID first, as unsigned bytes (the database order), although it is negative for UUID.compareTo
+		PostRefDto car1 = new PostRefDto(UUID.fromString("ffffffff-0000-0000-0000-000000000000"), tied);
+		PostRefDto bike1 = new PostRefDto(UUID.fromString("7fffffff-0000-0000-0000-000000000000"), tied);
+		PostRefDto car2 = new PostRefDto(UUID.randomUUID(), Instant.parse("2026-01-01T10:00:00Z"));
+		PostRefDto bike2 = new PostRefDto(UUID.randomUUID(), Instant.parse("2025-12-31T10:00:00Z"));
+		when(postRepository.findExplorePostRefs(CommunityType.CAR, Limit.of(3))).thenReturn(List.of(car1, car2));
+		when(postRepository.findExplorePostRefs(CommunityType.MOTORBIKE, Limit.of(3))).thenReturn(List.of(bike1, bike2));
+		// The page is cut after two posts, the third one only tells there is a next page
+		List<UUID> pageIds = List.of(car1.id(), bike1.id());
+		when(postRepository.findFeedPosts(pageIds)).thenReturn(List.of());
+
+		postService.getExploreFeed(null, null, null);
+
+		verify(postRepository).findFeedPosts(pageIds);
+	}
+
+	@Test
+	void givenCommunity_whenGetExploreFeed_thenOnlyItAfterCursor() {
+		Instant createdAt = Instant.parse("2026-01-02T10:00:00Z");
+		UUID postId = UUID.randomUUID();
+		when(postRepository.findExplorePostRefsAfter(CommunityType.MOTORBIKE, createdAt, postId, Limit.of(3))).thenReturn(List.of());
+
+		CursorPage<PostResponseDto> page = postService.getExploreFeed(CommunityType.MOTORBIKE, CursorCodec.encode(createdAt.toString(), postId.toString()), null);
+
+		assertThat(page.items()).isEmpty();
+		assertThat(page.nextCursor()).isNull();
+		// The communities of the user are not needed
+		verifyNoInteractions(userLoader, postImageRepository);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static TimelinePostRefDto timelineRef(FeedPostDto post) {
+		return timelineRef(post.id(), post.createdAt());
+	}
+
+	private static TimelinePostRefDto timelineRef(UUID id, Instant createdAt) {
+		return new TimelinePostRefDto() {
+
+			@Override
+			public UUID getId() {
+				return id;
+			}
+
+			@Override
+			public Instant getCreatedAt() {
+				return createdAt;
+			}
+
+		};
+	}
+
+	private static FeedPostDto feedPost(Instant createdAt) {
+		return feedPost(createdAt, 0);
+	}
+
+	private static FeedPostDto feedPost(Instant createdAt, long likeCount) {
+		return new FeedPostDto(UUID.randomUUID(), UUID.randomUUID(), "John", null, AccountType.PUBLIC,
+				UUID.randomUUID(), CommunityType.CAR, "My car", createdAt, likeCount);
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.jureg.wheelbase_server.post_like.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.dto.FeedPostDto;
+import com.jureg.wheelbase_server.post_like.dto.PostLikerDto;
+import com.jureg.wheelbase_server.post_like.repository.PostLikeRepository;
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class LikedPostsLookupTest {
+
+	@Mock
+	private PostLikeRepository postLikeRepository;
+
+	private LikedPostsLookup likedPostsLookup;
+
+	private UUID john;
+	private UUID alice;
+
+	@BeforeEach
+	void setup() {
+		// Posts of more than 100 likes are not loaded
+		likedPostsLookup = new LikedPostsLookup(postLikeRepository, DataSize.ofMegabytes(1), Duration.ofHours(1), 100, new SimpleMeterRegistry());
+		john = UUID.randomUUID();
+		alice = UUID.randomUUID();
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	@Test
+	void givenColdPage_whenFindLikedPostIds_thenLoadedOnceThenAnsweredFromIndex() {
+		FeedPostDto liked = feedPost(2);
+		FeedPostDto other = feedPost(1);
+		List<UUID> postIds = List.of(liked.id(), other.id());
+		when(postLikeRepository.findLikers(postIds)).thenReturn(List.of(
+				new PostLikerDto(liked.id(), john),
+				new PostLikerDto(liked.id(), alice),
+				new PostLikerDto(other.id(), alice)));
+
+		assertThat(likedPostsLookup.findLikedPostIds(john, List.of(liked, other))).containsExactly(liked.id());
+		// Warm: no query, for any viewer
+		assertThat(likedPostsLookup.findLikedPostIds(john, List.of(liked, other))).containsExactly(liked.id());
+		assertThat(likedPostsLookup.findLikedPostIds(alice, List.of(liked, other))).containsExactlyInAnyOrder(liked.id(), other.id());
+		verify(postLikeRepository, times(1)).findLikers(any());
+	}
+
+	@Test
+	void givenPostWithTooManyLikes_whenFindLikedPostIds_thenQueriedForTheViewerOnly() {
+		FeedPostDto viral = feedPost(500);
+		FeedPostDto small = feedPost(0);
+		when(postLikeRepository.findLikedPostIds(john, List.of(viral.id()))).thenReturn(List.of(viral.id()));
+		when(postLikeRepository.findLikers(List.of(small.id()))).thenReturn(List.of());
+
+		assertThat(likedPostsLookup.findLikedPostIds(john, List.of(viral, small))).containsExactly(viral.id());
+		verify(postLikeRepository, never()).findLikers(List.of(viral.id(), small.id()));
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	@Test
+	void givenLoadedPost_whenLikeCommitted_thenLikedWithoutQuery() {
+		FeedPostDto post = feedPost(0);
+		when(postLikeRepository.findLikers(List.of(post.id()))).thenReturn(List.of());
+		assertThat(likedPostsLookup.findLikedPostIds(john, List.of(post))).isEmpty();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			likedPostsLookup.recordLike(post.id(), john);
+
+			// Not committed yet
+			assertThat(likedPostsLookup.findLikedPostIds(john, List.of(post))).isEmpty();
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertThat(likedPostsLookup.findLikedPostIds(john, List.of(post))).containsExactly(post.id());
+		likedPostsLookup.recordUnlike(post.id(), john);
+		assertThat(likedPostsLookup.findLikedPostIds(john, List.of(post))).isEmpty();
+		verify(postLikeRepository, times(1)).findLikers(any());
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static FeedPostDto feedPost(long likeCount) {
+		return new FeedPostDto(UUID.randomUUID(), UUID.randomUUID(), "John", null, AccountType.PUBLIC,
+				UUID.randomUUID(), CommunityType.CAR, "My car", Instant.now(), likeCount);
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.jureg.wheelbase_server.post_like.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PostLikerIndexTest {
+
+	private static final long ONE_HOUR = 3_600_000_000_000L;
+
+	private PostLikerIndex index;
+	private UUID john;
+	private UUID alice;
+	private UUID post;
+	private UUID otherPost;
+
+	@BeforeEach
+	void setupIndex() {
+		index = new PostLikerIndex(1 << 20, ONE_HOUR);
+		john = UUID.randomUUID();
+		alice = UUID.randomUUID();
+		post = UUID.randomUUID();
+		otherPost = UUID.randomUUID();
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	@Test
+	void givenLoadedPosts_whenLookup_thenLikedOnesFound() {
+		load(Map.of(post, List.of(john, alice), otherPost, List.of(alice)), post, otherPost);
+
+		PostLikerIndex.Lookup lookup = index.lookup(john, List.of(post, otherPost));
+
+		assertThat(lookup.likedPostIds()).containsExactly(post);
+		assertThat(lookup.missingPostIds()).isEmpty();
+	}
+
+	@Test
+	void givenPostNotLoaded_whenLookup_thenMissing() {
+		load(Map.of(), post);
+
+		PostLikerIndex.Lookup lookup = index.lookup(john, List.of(post, otherPost));
+
+		// A post loaded without likers is an answer too
+		assertThat(lookup.likedPostIds()).isEmpty();
+		assertThat(lookup.missingPostIds()).containsExactly(otherPost);
+	}
+
+	@Test
+	void givenPostLoadedTooLongAgo_whenLookup_thenMissing() throws InterruptedException {
+		// Expires after a nanosecond
+		index = new PostLikerIndex(1 << 20, 1);
+		load(Map.of(post, List.of(john)), post);
+		Thread.sleep(1);
+
+		assertThat(index.lookup(john, List.of(post)).missingPostIds()).containsExactly(post);
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	@Test
+	void givenLoadedPost_whenAddThenRemove_thenApplied() {
+		load(Map.of(post, List.of(alice)), post);
+
+		index.add(post, john);
+		assertThat(index.lookup(john, List.of(post)).likedPostIds()).containsExactly(post);
+
+		index.remove(post, john);
+		assertThat(index.lookup(john, List.of(post)).likedPostIds()).isEmpty();
+		assertThat(index.lookup(alice, List.of(post)).likedPostIds()).containsExactly(post);
+	}
+
+	@Test
+	void givenPostNotLoaded_whenAdd_thenStillMissing() {
+		index.add(post, john);
+
+		assertThat(index.lookup(john, List.of(post)).missingPostIds()).containsExactly(post);
+		assertThat(index.size()).isZero();
+	}
+
+	@Test
+	void givenLoadInProgress_whenLikesChange_thenReplayedOnLoadedPost() {
+		index.beginLoad(List.of(post));
+		// Committed after the likers were read: the read saw Alice's like, not John's, and not Alice's unlike
+		index.add(post, john);
+		index.remove(post, alice);
+		index.endLoad(List.of(post), Map.of(post, List.of(alice)));
+
+		assertThat(index.lookup(john, List.of(post)).likedPostIds()).containsExactly(post);
+		assertThat(index.lookup(alice, List.of(post)).likedPostIds()).isEmpty();
+	}
+
+	@Test
+	void givenCancelledLoad_whenLookup_thenStillMissing() {
+		index.beginLoad(List.of(post));
+		index.cancelLoad(List.of(post));
+		index.add(post, john);
+
+		assertThat(index.lookup(john, List.of(post)).missingPostIds()).containsExactly(post);
+	}
+
+	// -------------------------------------------------------------
+	// Memory
+	// -------------------------------------------------------------
+	@Test
+	void givenOverCeiling_whenLoad_thenLeastRecentlyUsedEvicted() {
+		// A ceiling of two posts liked by John
+		load(Map.of(post, List.of(john), otherPost, List.of(john)), post, otherPost);
+		long twoPosts = index.estimatedBytes();
+		index = new PostLikerIndex(twoPosts, ONE_HOUR);
+		load(Map.of(post, List.of(john)), post);
+		load(Map.of(otherPost, List.of(john)), otherPost);
+		// Read again: the first post is now the most recently used
+		index.lookup(john, List.of(post));
+
+		UUID third = UUID.randomUUID();
+		load(Map.of(third, List.of(john)), third);
+
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.estimatedBytes()).isEqualTo(twoPosts);
+		assertThat(index.lookup(john, List.of(post, otherPost, third)).missingPostIds()).containsExactly(otherPost);
+	}
+
+	@Test
+	void givenMoreDistinctLikersThanCeiling_whenLoad_thenRecentPostsKept() {
+		// A ceiling of a few posts, for a thousand posts liked by as many distinct users each
+		load(Map.of(post, List.of(john, alice, UUID.randomUUID())), post);
+		long onePost = index.estimatedBytes();
+		index = new PostLikerIndex(4 * onePost, ONE_HOUR);
+		List<UUID> recent = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			UUID postId = UUID.randomUUID();
+			load(Map.of(postId, List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID())), postId);
+			recent.add(postId);
+		}
+
+		// The users of the evicted posts are forgotten with them: the index keeps serving the recent posts
+		assertThat(index.size()).isEqualTo(4);
+		assertThat(index.users()).isEqualTo(12);
+		assertThat(index.estimatedBytes()).isLessThanOrEqualTo(4 * onePost);
+		assertThat(index.lookup(john, recent.subList(996, 1000)).missingPostIds()).isEmpty();
+	}
+
+	@Test
+	void givenUserOfEvictedPost_whenLikesAgain_thenSlotReused() {
+		load(Map.of(post, List.of(john)), post);
+		long onePost = index.estimatedBytes();
+		index = new PostLikerIndex(onePost, ONE_HOUR);
+		load(Map.of(post, List.of(john)), post);
+		load(Map.of(otherPost, List.of(alice)), otherPost);
+
+		// John left with the first post, Alice took his slot
+		assertThat(index.users()).isEqualTo(1);
+		assertThat(index.lookup(alice, List.of(otherPost)).likedPostIds()).containsExactly(otherPost);
+		assertThat(index.lookup(john, List.of(otherPost)).likedPostIds()).isEmpty();
+	}
+
+	@Test
+	void givenPostOverCeilingAlone_whenLoad_thenIndexEmptied() {
+		index = new PostLikerIndex(100, ONE_HOUR);
+		load(Map.of(post, List.of(john, alice)), post);
+
+		assertThat(index.size()).isZero();
+		assertThat(index.estimatedBytes()).isZero();
+		assertThat(index.lookup(john, List.of(post)).missingPostIds()).containsExactly(post);
+	}
+
+	// -------------------------------------------------------------
+	// Liker set
+	// -------------------------------------------------------------
+	@Test
+	void givenFewScatteredSlots_whenAdd_thenSortedArray() {
+		PostLikerIndex.LikerSet likers = new PostLikerIndex.LikerSet(0);
+		likers.add(5000);
+		likers.add(12);
+		likers.add(700);
+		likers.add(12);
+
+		assertThat(likers.isBitmap()).isFalse();
+		assertThat(likers.size()).isEqualTo(3);
+		assertThat(likers.contains(700)).isTrue();
+		assertThat(likers.contains(701)).isFalse();
+	}
+
+	@Test
+	void givenDenseSlots_whenAdd_thenBitmap() {
+		PostLikerIndex.LikerSet likers = new PostLikerIndex.LikerSet(0);
+		for (int slot = 0; slot < 1000; slot += 3) {
+			likers.add(slot);
+		}
+
+		assertThat(likers.isBitmap()).isTrue();
+		assertThat(likers.size()).isEqualTo(334);
+		// 1000 slots in 16 words, instead of 334 ints
+		assertThat(likers.bytes()).isEqualTo(8 * 16);
+		assertThat(likers.contains(999)).isTrue();
+		assertThat(likers.contains(998)).isFalse();
+
+		likers.remove(999);
+		likers.add(100_000);
+		assertThat(likers.contains(999)).isFalse();
+		assertThat(likers.contains(100_000)).isTrue();
+		assertThat(likers.size()).isEqualTo(334);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private void load(Map<UUID, List<UUID>> likers, UUID... postIds) {
+		List<UUID> ids = List.of(postIds);
+		index.beginLoad(ids);
+		index.endLoad(ids, likers);
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.jureg.wheelbase_server.post_like.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post_like.model.PostLikeCounter;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@Testcontainers
+class PostLikeCounterRepositoryTest {
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private PostLikeCounterRepository postLikeCounterRepository;
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void givenDeltas_whenAddAll_thenCreatedThenAddedTo() {
+		User alice = createUser("Alice");
+		Post post1 = createPost(alice);
+		Post post2 = createPost(alice);
+
+		assertThat(postLikeCounterRepository.addAll(new UUID[] { post1.getId(), post2.getId() }, new Long[] { 3L, 1L })).isEqualTo(2);
+		assertThat(postLikeCounterRepository.addAll(new UUID[] { post1.getId() }, new Long[] { -1L })).isEqualTo(1);
+		entityManager.clear();
+
+		assertThat(postLikeCounterRepository.findById(post1.getId())).map(PostLikeCounter::getLikes).contains(2L);
+		assertThat(postLikeCounterRepository.findById(post2.getId())).map(PostLikeCounter::getLikes).contains(1L);
+	}
+
+	@Test
+	void givenDeletedPost_whenAddAll_thenItsDeltaDropped() {
+		Post post = createPost(createUser("Alice"));
+		UUID deletedPostId = UUID.randomUUID();
+
+		assertThat(postLikeCounterRepository.addAll(new UUID[] { deletedPostId, post.getId() }, new Long[] { 5L, 1L })).isEqualTo(1);
+		assertThat(postLikeCounterRepository.existsById(deletedPostId)).isFalse();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private Post createPost(User author) {
+		Vehicle vehicle = Vehicle.builder().owner(author).community(CommunityType.CAR).model("Clio").build();
+		entityManager.persist(vehicle);
+		Post post = Post.builder()
+				.author(author)
+				.vehicle(vehicle)
+				.community(CommunityType.CAR)
+				.content("My car")
+				.createdAt(Instant.now())
+				.build();
+		entityManager.persist(post);
+		entityManager.flush();
+		return post;
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		entityManager.persist(user);
+		return user;
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.jureg.wheelbase_server.post_like.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post_like.dto.PostLikerDto;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@Testcontainers
+class PostLikeRepositoryTest {
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private PostLikeRepository postLikeRepository;
+	@Autowired
+	private EntityManager entityManager;
+
+	private final Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+	private User john;
+	private User alice;
+	private User mark;
+
+	@BeforeEach
+	void setup() {
+		john = createUser("John", AccountType.FOLLOWERS_ONLY);
+		alice = createUser("Alice", AccountType.PUBLIC);
+		mark = createUser("Mark", AccountType.FOLLOWERS_ONLY);
+		entityManager.flush();
+	}
+
+	// -------------------------------------------------------------
+	// Like
+	// -------------------------------------------------------------
+	@Test
+	void givenPublicPost_whenInsertIfAbsent_thenInsertedOnce() {
+		Post post = createPost(alice);
+
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now)).contains(post.getId());
+		// Liked again: nothing inserted
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now)).isEmpty();
+		assertThat(postLikeRepository.existsByPostIdAndUserId(post.getId(), john.getId())).isTrue();
+	}
+
+	@Test
+	void givenPrivateAuthor_whenInsertIfAbsent_thenOnlyFollowersAndAuthor() {
+		Post post = createPost(mark);
+
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now)).isEmpty();
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), mark.getId(), now)).contains(post.getId());
+		entityManager.persist(new Follow(john, mark, now));
+		entityManager.flush();
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now)).contains(post.getId());
+	}
+
+	@Test
+	void givenDeletedAuthorOrUnknownPost_whenInsertIfAbsent_thenNothingInserted() {
+		Post post = createPost(alice);
+		alice.setDeletedAt(now);
+		alice.setDeletionStage(DeletionStage.FOLLOWING);
+		entityManager.flush();
+
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now)).isEmpty();
+		assertThat(postLikeRepository.insertIfAbsent(UUID.randomUUID(), john.getId(), now)).isEmpty();
+		assertThat(postLikeRepository.existsByPostIdAndUserId(post.getId(), john.getId())).isFalse();
+	}
+
+	@Test
+	void givenDeletedLiker_whenInsertIfAbsent_thenNothingInserted() {
+		Post post = createPost(alice);
+		// Marked for deletion, its access token is still valid
+		john.setDeletedAt(now);
+		john.setDeletionStage(DeletionStage.ACCOUNT);
+		entityManager.flush();
+
+		assertThat(postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now)).isEmpty();
+		assertThat(postLikeRepository.existsByPostIdAndUserId(post.getId(), john.getId())).isFalse();
+	}
+
+	// -------------------------------------------------------------
+	// Unlike
+	// -------------------------------------------------------------
+	@Test
+	void givenLike_whenDeleteIfPresent_thenDeletedOnce() {
+		Post post = createPost(alice);
+		postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now);
+
+		assertThat(postLikeRepository.deleteIfPresent(post.getId(), john.getId())).contains(post.getId());
+		assertThat(postLikeRepository.deleteIfPresent(post.getId(), john.getId())).isEmpty();
+		assertThat(postLikeRepository.existsByPostIdAndUserId(post.getId(), john.getId())).isFalse();
+	}
+
+	// -------------------------------------------------------------
+	// Liked by me
+	// -------------------------------------------------------------
+	@Test
+	void givenLikes_whenFindLikers_thenEveryLikerOfThePosts() {
+		Post post = createPost(alice);
+		Post otherPost = createPost(alice);
+		Post notAsked = createPost(alice);
+		postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now);
+		postLikeRepository.insertIfAbsent(post.getId(), alice.getId(), now);
+		postLikeRepository.insertIfAbsent(notAsked.getId(), john.getId(), now);
+
+		assertThat(postLikeRepository.findLikers(List.of(post.getId(), otherPost.getId())))
+				.containsExactlyInAnyOrder(new PostLikerDto(post.getId(), john.getId()), new PostLikerDto(post.getId(), alice.getId()));
+	}
+
+	@Test
+	void givenLikes_whenFindLikedPostIds_thenOnlyThoseOfTheUser() {
+		Post post = createPost(alice);
+		Post otherPost = createPost(alice);
+		postLikeRepository.insertIfAbsent(post.getId(), john.getId(), now);
+		postLikeRepository.insertIfAbsent(otherPost.getId(), alice.getId(), now);
+
+		assertThat(postLikeRepository.findLikedPostIds(john.getId(), List.of(post.getId(), otherPost.getId())))
+				.containsExactly(post.getId());
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private Post createPost(User author) {
+		Vehicle vehicle = Vehicle.builder().owner(author).community(CommunityType.CAR).model("Clio").build();
+		entityManager.persist(vehicle);
+		Post post = Post.builder()
+				.author(author)
+				.vehicle(vehicle)
+				.community(CommunityType.CAR)
+				.content("My car")
+				.createdAt(now)
+				.build();
+		entityManager.persist(post);
+		entityManager.flush();
+		return post;
+	}
+
+	private User createUser(String username, AccountType accountType) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		user.setAccountType(accountType);
+		entityManager.persist(user);
+		return user;
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.jureg.wheelbase_server.post_like.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.jureg.wheelbase_server.post_like.repository.PostLikeCounterRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class PostLikeCounterServiceTest {
+
+	private static final int THREADS = 8;
+
+	@Mock
+	private PostLikeCounterRepository postLikeCounterRepository;
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private PostLikeCounterService postLikeCounterService;
+
+	// What the flushes wrote, per post
+	private final Map<UUID, Long> written = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void setup() {
+		// Batches of 2 posts
+		postLikeCounterService = new PostLikeCounterService(postLikeCounterRepository, transactionManager, 2, new SimpleMeterRegistry());
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	@Test
+	void givenLikesOutsideTransaction_whenRecord_thenPendingRightAway() {
+		UUID postId = UUID.randomUUID();
+
+		postLikeCounterService.record(postId, 1);
+		postLikeCounterService.record(postId, 1);
+		postLikeCounterService.record(postId, -1);
+
+		assertThat(postLikeCounterService.getPendingDelta(postId)).isEqualTo(1);
+		assertThat(postLikeCounterService.getPendingDelta(UUID.randomUUID())).isZero();
+	}
+
+	@Test
+	void givenLikeInTransaction_whenRecord_thenPendingOnceCommitted() {
+		UUID postId = UUID.randomUUID();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			postLikeCounterService.record(postId, 1);
+
+			assertThat(postLikeCounterService.getPendingDelta(postId)).isZero();
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertThat(postLikeCounterService.getPendingDelta(postId)).isEqualTo(1);
+	}
+
+	// -------------------------------------------------------------
+	// Flush
+	// -------------------------------------------------------------
+	@Test
+	void givenLikesOnSeveralPosts_whenFlush_thenDeltasWrittenInBatches() {
+		recordWrites();
+		UUID post1 = UUID.randomUUID();
+		UUID post2 = UUID.randomUUID();
+		UUID post3 = UUID.randomUUID();
+		UUID netZero = UUID.randomUUID();
+		postLikeCounterService.record(post1, 1);
+		postLikeCounterService.record(post1, 1);
+		postLikeCounterService.record(post2, 1);
+		postLikeCounterService.record(post3, -1);
+		// Liked then unliked: nothing to write
+		postLikeCounterService.record(netZero, 1);
+		postLikeCounterService.record(netZero, -1);
+
+		postLikeCounterService.flush();
+
+		// 3 posts in batches of 2
+		verify(postLikeCounterRepository, times(2)).addAll(any(), any());
+		assertThat(written).containsOnly(Map.entry(post1, 2L), Map.entry(post2, 1L), Map.entry(post3, -1L));
+		assertThat(postLikeCounterService.getPendingDelta(post1)).isZero();
+	}
+
+	@Test
+	void givenIdlePost_whenFlush_thenNoStatement() {
+		postLikeCounterService.record(UUID.randomUUID(), 1);
+		postLikeCounterService.flush();
+
+		// The post is idle from now on: retired without a statement
+		postLikeCounterService.flush();
+		postLikeCounterService.flush();
+
+		verify(postLikeCounterRepository, times(1)).addAll(any(), any());
+	}
+
+	@Test
+	void givenFailingBatch_whenFlush_thenDeltasKeptForNextFlush() {
+		UUID postId = UUID.randomUUID();
+		postLikeCounterService.record(postId, 1);
+		doThrow(new QueryTimeoutException("Timeout")).when(postLikeCounterRepository).addAll(any(), any());
+
+		assertThrows(QueryTimeoutException.class, () -> postLikeCounterService.flush());
+
+		assertThat(postLikeCounterService.getPendingDelta(postId)).isEqualTo(1);
+	}
+
+	@Test
+	void givenConcurrentLikesAndFlushes_whenAllDone_thenEveryLikeWrittenOnce() throws Exception {
+		recordWrites();
+		// Two hot posts, liked from every thread while the flushes drain (and retire) their counters
+		List<UUID> postIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+		int likesPerThread = 20_000;
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean liking = new AtomicBoolean(true);
+		try {
+			List<Future<?>> likers = new ArrayList<>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				likers.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < likesPerThread; i++) {
+						postLikeCounterService.record(postIds.get(i % 2), 1);
+					}
+					return null;
+				}));
+			}
+			Future<?> flusher = executor.submit(() -> {
+				start.await();
+				while (liking.get()) {
+					postLikeCounterService.flush();
+				}
+				return null;
+			});
+			start.countDown();
+			for (Future<?> liker : likers) {
+				liker.get(30, TimeUnit.SECONDS);
+			}
+			liking.set(false);
+			flusher.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		postLikeCounterService.flush();
+
+		long likesPerPost = (long) THREADS * likesPerThread / 2;
+		assertThat(written).containsOnly(Map.entry(postIds.get(0), likesPerPost), Map.entry(postIds.get(1), likesPerPost));
+	}
+
+	@Test
+	void givenNoLike_whenFlush_thenNoTransaction() {
+		postLikeCounterService.flush();
+
+		verifyNoInteractions(postLikeCounterRepository, transactionManager);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private void recordWrites() {
+		doAnswer(invocation -> {
+			UUID[] postIds = invocation.getArgument(0);
+			Long[] deltas = invocation.getArgument(1);
+			for (int i = 0; i < postIds.length; i++) {
+				written.merge(postIds[i], deltas[i], Long::sum);
+			}
+			return postIds.length;
+		}).when(postLikeCounterRepository).addAll(any(), any());
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.jureg.wheelbase_server.refresh_token.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.refresh_token.model.RefreshToken;
+import com.jureg.wheelbase_server.refresh_token.repository.RefreshTokenRepository;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidRefreshTokenException;
+import com.jureg.wheelbase_server.shared.service.JwtService;
+import com.jureg.wheelbase_server.shared.service.VerifiedToken;
+import com.jureg.wheelbase_server.user.dto.UserAuthResponseDto;
+import com.jureg.wheelbase_server.user.mapper.UserMapper;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.service.RequestUserLoader;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+	@Mock
+	private RefreshTokenRepository refreshTokenRepository;
+	@Mock
+	private TokenRevocationService tokenRevocationService;
+	@Mock
+	private RequestUserLoader userLoader;
+	@Mock
+	private JwtService jwtService;
+	@Mock
+	private UserMapper userMapper;
+	@Mock
+	private FollowCounterService followCounterService;
+
+	private RefreshTokenService refreshTokenService;
+
+	private UUID userId;
+	private User user;
+
+	@BeforeEach
+	void setup() {
+		refreshTokenService = new RefreshTokenService(refreshTokenRepository, tokenRevocationService, userLoader, jwtService, userMapper, followCounterService, Duration.ofDays(30));
+		userId = UUID.randomUUID();
+		user = new User();
+		user.setId(userId);
+	}
+
+	// -------------------------------------------------------------
+	// Issue
+	// -------------------------------------------------------------
+	@Test
+	void givenUserId_whenIssueToken_thenOnlyHashStored() {
+		String token = refreshTokenService.issueToken(userId);
+
+		ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+		verify(refreshTokenRepository).save(captor.capture());
+		RefreshToken stored = captor.getValue();
+		assertThat(stored.getUserId()).isEqualTo(userId);
+		assertThat(stored.getTokenHash()).hasSize(64).isNotEqualTo(token);
+		assertThat(stored.getExpiresAt()).isAfter(Instant.now().plus(Duration.ofDays(29)));
+	}
+
+	// -------------------------------------------------------------
+	// Refresh
+	// -------------------------------------------------------------
+	@Test
+	void givenActiveToken_whenRefresh_thenTokenRotated() {
+		RefreshToken stored = storedToken(Instant.now().plus(Duration.ofDays(1)), null);
+		when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+		when(refreshTokenRepository.revokeIfActive(eq(stored.getId()), any(Instant.class))).thenReturn(1);
+		when(userLoader.findById(userId)).thenReturn(Optional.of(user));
+		when(jwtService.generateToken(user)).thenReturn("jwt-token");
+
+		UserAuthResponseDto response = refreshTokenService.refresh("refresh-token");
+
+		assertThat(response.jwt()).isEqualTo("jwt-token");
+		assertThat(response.refreshToken()).isNotBlank().isNotEqualTo("refresh-token");
+		verify(refreshTokenRepository).save(any(RefreshToken.class));
+	}
+
+	@Test
+	void givenRevokedToken_whenRefresh_thenEverySessionRevoked() {
+		RefreshToken stored = storedToken(Instant.now().plus(Duration.ofDays(1)), Instant.now().minusSeconds(60));
+		when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+
+		// A rotated token used again has leaked
+		InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refresh-token"));
+
+		assertEquals("Invalid refresh token", exception.getMessage());
+		verify(refreshTokenRepository).revokeAllByUserId(eq(userId), any(Instant.class));
+		verifyNoInteractions(jwtService);
+	}
+
+	@Test
+	void givenExpiredToken_whenRefresh_thenException() {
+		RefreshToken stored = storedToken(Instant.now().minusSeconds(1), null);
+		when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+
+		assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refresh-token"));
+
+		verify(refreshTokenRepository, never()).revokeIfActive(any(UUID.class), any(Instant.class));
+		verifyNoInteractions(jwtService);
+	}
+
+	@Test
+	void givenTokenRotatedConcurrently_whenRefresh_thenException() {
+		RefreshToken stored = storedToken(Instant.now().plus(Duration.ofDays(1)), null);
+		when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(stored));
+		when(refreshTokenRepository.revokeIfActive(eq(stored.getId()), any(Instant.class))).thenReturn(0);
+
+		assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refresh-token"));
+
+		verifyNoInteractions(jwtService);
+	}
+
+	@Test
+	void givenUnknownToken_whenRefresh_thenException() {
+		when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+
+		assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refresh-token"));
+		// A logged out token is deleted, the other sessions of the user stay open
+		verify(refreshTokenRepository, never()).revokeAllByUserId(any(), any());
+	}
+
+	@Test
+	void givenNoToken_whenRefresh_thenException() {
+		assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh(null));
+
+		verifyNoInteractions(refreshTokenRepository);
+	}
+
+	// -------------------------------------------------------------
+	// Logout
+	// -------------------------------------------------------------
+	@Test
+	void givenBothTokens_whenLogout_thenBothRevoked() {
+		Instant expiresAt = Instant.now().plus(Duration.ofMinutes(10));
+		when(jwtService.verifyToken("header.payload.signature")).thenReturn(Optional.of(new VerifiedToken(userId, expiresAt)));
+
+		refreshTokenService.logout("refresh-token", "header.payload.signature");
+
+		verify(refreshTokenRepository).deleteActiveByTokenHash(anyString());
+		verify(tokenRevocationService).revokeAccessToken("signature", expiresAt);
+	}
+
+	@Test
+	void givenInvalidAccessToken_whenLogout_thenNothingRevoked() {
+		when(jwtService.verifyToken("an-invalid-jwt")).thenReturn(Optional.empty());
+
+		refreshTokenService.logout(null, "an-invalid-jwt");
+
+		verifyNoInteractions(tokenRevocationService, refreshTokenRepository);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private RefreshToken storedToken(Instant expiresAt, Instant revokedAt) {
+		return new RefreshToken(UUID.randomUUID(), userId, "hash", Instant.now().minus(Duration.ofDays(1)), expiresAt, revokedAt);
+	}
+
+}
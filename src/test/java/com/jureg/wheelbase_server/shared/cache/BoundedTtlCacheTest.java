@@ -0,0 +1,64 @@
+package com.jureg.wheelbase_server.shared.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BoundedTtlCacheTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	// -------------------------------------------------------------
+	// Eviction
+	// -------------------------------------------------------------
+	@Test
+	void givenFullCache_whenPut_thenOldestEvicted() {
+		BoundedTtlCache<String, String> cache = new BoundedTtlCache<>("test", 3, Duration.ofMinutes(1), meterRegistry);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.put("c", "3");
+		// Rewritten: now the newest
+		cache.put("a", "4");
+
+		cache.put("d", "5");
+
+		assertThat(cache.size()).isEqualTo(3);
+		assertThat(cache.peek("b")).isNull();
+		assertThat(cache.peek("a")).isEqualTo("4");
+		assertThat(cache.peek("c")).isEqualTo("3");
+		assertThat(cache.peek("d")).isEqualTo("5");
+		assertThat(meterRegistry.get("cache.evictions").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenInvalidatedEntry_whenPutAtCapacity_thenNothingLiveEvicted() {
+		BoundedTtlCache<String, String> cache = new BoundedTtlCache<>("test", 2, Duration.ofMinutes(1), meterRegistry);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.invalidate("a");
+
+		cache.put("c", "3");
+
+		assertThat(cache.peek("b")).isEqualTo("2");
+		assertThat(cache.peek("c")).isEqualTo("3");
+		assertThat(meterRegistry.get("cache.evictions").counter().count()).isZero();
+	}
+
+	@Test
+	void givenExpiredEntries_whenPut_thenDropped() {
+		BoundedTtlCache<String, String> cache = new BoundedTtlCache<>("test", 10, Duration.ZERO, meterRegistry);
+		cache.put("a", "1");
+		cache.put("b", "2");
+
+		cache.put("c", "3");
+
+		// Only the entry just written is left, expired too
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.peek("c")).isNull();
+	}
+
+}
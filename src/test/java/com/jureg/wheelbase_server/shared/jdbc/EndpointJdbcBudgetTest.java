@@ -0,0 +1,439 @@
+package com.jureg.wheelbase_server.shared.jdbc;
+
+import static java.util.Map.entry;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+import org.springframework.test.web.servlet.assertj.MockMvcTester.MockMvcRequestBuilder;
+import org.springframework.test.web.servlet.assertj.MvcTestResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jayway.jsonpath.JsonPath;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+// Holds every end point to a budget of JDBC work, measured on fan-out data: a change going over it fails the build
+// The budgets are for the scenario of each test below, with the caches cold (the worst case of a request)
+// Every mapped end point must have a budget: a new one fails givenMappedEndpoints_whenListingBudgets_thenEveryEndpointHasOne
+@SpringBootTest(properties = {
+		"jwt.secret=mysupersecretkeymysupersecretkey123456",
+		"spring.jpa.open-in-view=false",
+		// Keep the revocation synchronization job and the username index build out of the database
+		"jwt.revocation.sync-interval=1h",
+		"user.search.index.enabled=false",
+		// Cold caches: every request pays its full lookups
+		"user.search.cache.ttl=0s",
+		"security.authorization-cache.ttl=0s",
+		// Keep the timeline jobs out of the database too
+		"timeline.fanout.interval=1h",
+		"timeline.trim-interval=1h",
+		// And the flushes of the like counters
+		"post.likes.counters.flush-interval=1h"
+})
+@Testcontainers
+@AutoConfigureMockMvc(addFilters = true)
+@Import(JdbcUsageConfig.class)
+class EndpointJdbcBudgetTest {
+
+	private static final int FANS = 300;
+	private static final int BATCH = 30;
+
+	// Statements, rows read, round-trips (commits included)
+	private static final Map<String, JdbcUsage> BUDGETS = Map.ofEntries(
+			// Insert of the user, then of its community
+			entry("POST /api/users/register", new JdbcUsage(2, 0, 3)),
+			// User and its communities, insert of the refresh token, follow counts: three short transactions, none held
+			// while the password is checked
+			entry("POST /api/users/login", new JdbcUsage(4, 3, 7)),
+			// Token, conditional revocation, user, insert of the new token, follow counts
+			entry("POST /api/users/refresh", new JdbcUsage(5, 3, 6)),
+			// Delete of the refresh token, insert of the access token revocation
+			entry("POST /api/users/logout", new JdbcUsage(2, 0, 3)),
+			// User, follow check, follow counts
+			entry("GET /api/users/{id}", new JdbcUsage(3, 3, 4)),
+			// User, follow counts, update
+			entry("PUT /api/users/{id}", new JdbcUsage(3, 2, 4)),
+			// User, then the conditional update once the new password is hashed, each in its own transaction
+			entry("PUT /api/users/{id}/password", new JdbcUsage(2, 1, 4)),
+			// One query, read up to the cache cap (200 matches and one more)
+			entry("GET /api/users", new JdbcUsage(1, 201, 2)),
+			// Insert returning the new follow, counters of both sides in one upsert
+			entry("POST /api/users/follow", new JdbcUsage(2, 1, 3)),
+			// Delete returning the removed follow, counters of both sides in one upsert
+			entry("POST /api/users/unfollow", new JdbcUsage(2, 1, 3)),
+			// Follower and targets in one IN query, multi-row insert returning the new follows, counters in one upsert
+			entry("POST /api/users/follow/batch", new JdbcUsage(3, 2 * BATCH + 1, 4)),
+			// Multi-row delete returning the removed follows, counters in one upsert (every target was followed: no lookup)
+			entry("POST /api/users/unfollow/batch", new JdbcUsage(2, BATCH, 3)),
+			// User, then the page and one more row in a single join
+			entry("GET /api/users/{id}/followers", new JdbcUsage(2, 22, 3)),
+			entry("GET /api/users/{id}/following", new JdbcUsage(2, 22, 3)),
+			// IDs of the page and one more post from the timeline, the page in a single join, its images,
+			// then the likers of its posts for the liked-by-me index (none liked here)
+			entry("GET /api/feed", new JdbcUsage(4, 21 + 20 + 20, 5)),
+			// IDs of the page and one more post of the community, the page in a single join, its images, then its likers
+			entry("GET /api/feed/explore", new JdbcUsage(4, 21 + 20 + 20, 5)),
+			// Delete of the timeline, then a single insert from the posts of the followed authors
+			entry("POST /api/feed/rebuild", new JdbcUsage(2, 0, 3)),
+			// Community of the vehicle, user, insert of the post then of each of its 2 images (the fan-out is left to the worker)
+			entry("POST /api/posts", new JdbcUsage(5, 2, 6)),
+			// Insert returning the new like (the count is written later by the flush)
+			entry("POST /api/posts/{id}/like", new JdbcUsage(1, 1, 2)),
+			// Delete returning the removed like
+			entry("POST /api/posts/{id}/unlike", new JdbcUsage(1, 1, 2)));
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@Autowired
+	private MockMvcTester mockMvcTester;
+	@Autowired
+	@Qualifier("requestMappingHandlerMapping")
+	private RequestMappingHandlerMapping handlerMapping;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+	@Autowired
+	private UserRepository userRepository;
+
+	private User celebrity;
+	private User viewer;
+	private User recluse;
+	private UUID fanId;
+
+	@BeforeEach
+	void seed() {
+		// Clean DB
+		jdbcTemplate.execute("TRUNCATE follows, refresh_tokens, revoked_access_tokens, user_communities, users, timeline_entries, timeline_celebrities CASCADE");
+		// A public user followed by every fan, and following every fan back
+		celebrity = saveUser("Celebrity", AccountType.PUBLIC, "hashed-password");
+		viewer = saveUser("Viewer", AccountType.FOLLOWERS_ONLY, passwordEncoder.encode("viewer-password"));
+		recluse = saveUser("Recluse", AccountType.FOLLOWERS_ONLY, "hashed-password");
+		jdbcTemplate.update("""
+			INSERT INTO users (id, account_type, email, email_normalized, password, username, username_normalized, profile_version)
+			SELECT gen_random_uuid(), 'PUBLIC', 'Fan' || i || '@test.com', 'fan' || i || '@test.com', 'hashed-password', 'Fan' || i, 'fan' || i, 0
+			FROM generate_series(1, ?) i
+			""", FANS);
+		jdbcTemplate.update("""
+			INSERT INTO user_communities (user_id, community)
+			SELECT id, 'CAR' FROM users WHERE username_normalized LIKE 'fan%'
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO follows (follower_id, followed_id, created_at)
+			SELECT id, ?, now() - row_number() OVER (ORDER BY id) * interval '1 minute' FROM users WHERE username_normalized LIKE 'fan%'
+			""", celebrity.getId());
+		jdbcTemplate.update("""
+			INSERT INTO follows (follower_id, followed_id, created_at)
+			SELECT ?, id, now() - row_number() OVER (ORDER BY id) * interval '1 minute' FROM users WHERE username_normalized LIKE 'fan%'
+			""", celebrity.getId());
+		// The viewer follows a private profile
+		jdbcTemplate.update("INSERT INTO follows (follower_id, followed_id, created_at) VALUES (?, ?, now())", viewer.getId(), recluse.getId());
+		// Every fan has a vehicle, and posted twice with an image
+		jdbcTemplate.update("""
+			INSERT INTO vehicles (id, owner_id, community, model)
+			SELECT gen_random_uuid(), id, 'CAR', 'Clio' FROM users WHERE username_normalized LIKE 'fan%'
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO posts (id, author_id, vehicle_id, community, content, created_at, fanout_pending)
+			SELECT gen_random_uuid(), owner_id, id, 'CAR', 'My car', now() - k * interval '1 minute', false FROM vehicles
+			CROSS JOIN generate_series(1, 2) k
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO post_images (id, post_id, image_url)
+			SELECT gen_random_uuid(), id, 'https://images.test/' || id || '.jpg' FROM posts
+			""");
+		// Already pushed to the timelines of their followers (the celebrity)
+		jdbcTemplate.update("""
+			INSERT INTO timeline_entries (user_id, post_id, author_id, community, created_at)
+			SELECT f.follower_id, p.id, p.author_id, p.community, p.created_at FROM follows f JOIN posts p ON p.author_id = f.followed_id
+			""");
+		fanId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username_normalized = 'fan1'", UUID.class);
+	}
+
+	// -------------------------------------------------------------
+	// Budgets
+	// -------------------------------------------------------------
+	@Test
+	void givenMappedEndpoints_whenListingBudgets_thenEveryEndpointHasOne() {
+		Set<String> endpoints = new TreeSet<>();
+		for (RequestMappingInfo info : handlerMapping.getHandlerMethods().keySet()) {
+			for (String pattern : info.getPatternValues()) {
+				if (pattern.startsWith("/api/")) {
+					info.getMethodsCondition().getMethods().forEach(method -> endpoints.add(method.name() + " " + pattern));
+				}
+			}
+		}
+
+		// No end point without a budget, and no budget left behind by a removed end point
+		assertThat(new TreeSet<>(BUDGETS.keySet())).isEqualTo(endpoints);
+	}
+
+	// -------------------------------------------------------------
+	// Authentication
+	// -------------------------------------------------------------
+	@Test
+	void givenNewUser_whenRegistering_thenWithinBudget() {
+		assertWithinBudget("POST /api/users/register", HttpStatus.OK, mockMvcTester.post().uri("/api/users/register")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+					{ "username": "Newcomer", "email": "Newcomer@test.com", "password": "password", "accountType": "PUBLIC", "communities": [ "CAR" ] }
+				"""));
+	}
+
+	@Test
+	void givenExistingUser_whenLoggingIn_thenWithinBudget() {
+		assertWithinBudget("POST /api/users/login", HttpStatus.OK, mockMvcTester.post().uri("/api/users/login")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"usernameOrEmail\": \"Viewer\", \"password\": \"viewer-password\" }"));
+	}
+
+	@Test
+	void givenRefreshToken_whenRefreshing_thenWithinBudget() throws Exception {
+		String refreshToken = JsonPath.read(login(), "$.refreshToken");
+
+		assertWithinBudget("POST /api/users/refresh", HttpStatus.OK, mockMvcTester.post().uri("/api/users/refresh")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"refreshToken\": \"" + refreshToken + "\" }"));
+	}
+
+	@Test
+	void givenBothTokens_whenLoggingOut_thenWithinBudget() throws Exception {
+		String response = login();
+		String jwt = JsonPath.read(response, "$.jwt");
+		String refreshToken = JsonPath.read(response, "$.refreshToken");
+
+		assertWithinBudget("POST /api/users/logout", HttpStatus.NO_CONTENT, mockMvcTester.post().uri("/api/users/logout")
+				.header("Authorization", "Bearer " + jwt)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"refreshToken\": \"" + refreshToken + "\" }"));
+	}
+
+	// -------------------------------------------------------------
+	// Profile
+	// -------------------------------------------------------------
+	@Test
+	void givenFollowedPrivateProfile_whenFetchingProfile_thenWithinBudget() {
+		assertWithinBudget("GET /api/users/{id}", HttpStatus.OK, mockMvcTester.get().uri("/api/users/{id}", recluse.getId())
+				.with(authenticatedAs(viewer)));
+	}
+
+	@Test
+	void givenOwner_whenUpdatingBio_thenWithinBudget() {
+		assertWithinBudget("PUT /api/users/{id}", HttpStatus.OK, mockMvcTester.put().uri("/api/users/{id}", viewer.getId())
+				.with(authenticatedAs(viewer))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"bio\": \"A new bio\" }"));
+	}
+
+	@Test
+	void givenOwner_whenChangingPassword_thenWithinBudget() {
+		assertWithinBudget("PUT /api/users/{id}/password", HttpStatus.NO_CONTENT, mockMvcTester.put().uri("/api/users/{id}/password", viewer.getId())
+				.with(authenticatedAs(viewer))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"oldPassword\": \"viewer-password\", \"newPassword\": \"new-viewer-password\" }"));
+	}
+
+	// -------------------------------------------------------------
+	// Search
+	// -------------------------------------------------------------
+	@Test
+	void givenManyMatches_whenSearching_thenWithinBudget() {
+		assertWithinBudget("GET /api/users", HttpStatus.OK, mockMvcTester.get().uri("/api/users?username={username}", "fan")
+				.with(authenticatedAs(viewer)));
+	}
+
+	// -------------------------------------------------------------
+	// Follow / Unfollow
+	// -------------------------------------------------------------
+	@Test
+	void givenNotFollowing_whenFollowing_thenWithinBudget() {
+		assertWithinBudget("POST /api/users/follow", HttpStatus.NO_CONTENT, mockMvcTester.post().uri("/api/users/follow")
+				.with(authenticatedAs(viewer))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"followedId\": \"" + celebrity.getId() + "\" }"));
+	}
+
+	@Test
+	void givenFollowing_whenUnfollowing_thenWithinBudget() {
+		assertWithinBudget("POST /api/users/unfollow", HttpStatus.NO_CONTENT, mockMvcTester.post().uri("/api/users/unfollow")
+				.with(authenticatedAs(celebrity))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"followedId\": \"" + fanId + "\" }"));
+	}
+
+	@Test
+	void givenNotFollowing_whenFollowingInBatch_thenWithinBudget() {
+		assertWithinBudget("POST /api/users/follow/batch", HttpStatus.OK, mockMvcTester.post().uri("/api/users/follow/batch")
+				.with(authenticatedAs(viewer))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(batchOfFans()));
+	}
+
+	@Test
+	void givenFollowing_whenUnfollowingInBatch_thenWithinBudget() {
+		assertWithinBudget("POST /api/users/unfollow/batch", HttpStatus.OK, mockMvcTester.post().uri("/api/users/unfollow/batch")
+				.with(authenticatedAs(celebrity))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(batchOfFans()));
+	}
+
+	// -------------------------------------------------------------
+	// Followers / following
+	// -------------------------------------------------------------
+	@Test
+	void givenManyFollowers_whenFetchingFollowers_thenWithinBudget() {
+		assertWithinBudget("GET /api/users/{id}/followers", HttpStatus.OK, mockMvcTester.get().uri("/api/users/{id}/followers", celebrity.getId())
+				.with(authenticatedAs(viewer)));
+	}
+
+	@Test
+	void givenManyFollowing_whenFetchingFollowing_thenWithinBudget() {
+		assertWithinBudget("GET /api/users/{id}/following", HttpStatus.OK, mockMvcTester.get().uri("/api/users/{id}/following", celebrity.getId())
+				.with(authenticatedAs(viewer)));
+	}
+
+	// -------------------------------------------------------------
+	// Home feed
+	// -------------------------------------------------------------
+	@Test
+	void givenManyFollowedAuthors_whenFetchingFeed_thenWithinBudget() {
+		assertWithinBudget("GET /api/feed", HttpStatus.OK, mockMvcTester.get().uri("/api/feed")
+				.with(authenticatedAs(celebrity)));
+	}
+
+	@Test
+	void givenManyPublicPosts_whenFetchingExploreFeed_thenWithinBudget() {
+		assertWithinBudget("GET /api/feed/explore", HttpStatus.OK, mockMvcTester.get().uri("/api/feed/explore?community={community}", "CAR")
+				.with(authenticatedAs(viewer)));
+	}
+
+	@Test
+	void givenManyFollowedAuthors_whenRebuildingFeed_thenWithinBudget() {
+		assertWithinBudget("POST /api/feed/rebuild", HttpStatus.NO_CONTENT, mockMvcTester.post().uri("/api/feed/rebuild")
+				.with(authenticatedAs(celebrity)));
+	}
+
+	// -------------------------------------------------------------
+	// Posts
+	// -------------------------------------------------------------
+	@Test
+	void givenOwnVehicle_whenCreatingPost_thenWithinBudget() {
+		UUID vehicleId = jdbcTemplate.queryForObject(
+				"INSERT INTO vehicles (id, owner_id, community, model) VALUES (gen_random_uuid(), ?, 'CAR', 'Clio') RETURNING id",
+				UUID.class, viewer.getId());
+		assertWithinBudget("POST /api/posts", HttpStatus.OK, mockMvcTester.post().uri("/api/posts")
+				.with(authenticatedAs(viewer))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"vehicleId\": \"" + vehicleId + "\", \"content\": \"My car\", "
+						+ "\"imageUrls\": [\"https://images.test/1.jpg\", \"https://images.test/2.jpg\"] }"));
+	}
+
+	@Test
+	void givenPublicPost_whenLikingPost_thenWithinBudget() {
+		assertWithinBudget("POST /api/posts/{id}/like", HttpStatus.NO_CONTENT, mockMvcTester.post().uri("/api/posts/{id}/like", fanPostId())
+				.with(authenticatedAs(viewer)));
+	}
+
+	@Test
+	void givenLikedPost_whenUnlikingPost_thenWithinBudget() {
+		UUID postId = fanPostId();
+		jdbcTemplate.update("INSERT INTO post_likes (post_id, user_id, created_at) VALUES (?, ?, now())", postId, viewer.getId());
+
+		assertWithinBudget("POST /api/posts/{id}/unlike", HttpStatus.NO_CONTENT, mockMvcTester.post().uri("/api/posts/{id}/unlike", postId)
+				.with(authenticatedAs(viewer)));
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private void assertWithinBudget(String endpoint, HttpStatus expectedStatus, MockMvcRequestBuilder request) {
+		JdbcUsage budget = BUDGETS.get(endpoint);
+		assertThat(budget).as("Budget of %s", endpoint).isNotNull();
+
+		JdbcUsageRecorder.start();
+		MvcTestResult result;
+		try {
+			result = request.exchange();
+		} finally {
+			JdbcUsage usage = JdbcUsageRecorder.stop();
+			assertThat(usage.exceeds(budget)).as("%s used %s, over its budget of %s", endpoint, usage, budget).isFalse();
+		}
+		assertThat(result).hasStatus(expectedStatus);
+	}
+
+	private String login() throws Exception {
+		return mockMvcTester.post().uri("/api/users/login")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"usernameOrEmail\": \"Viewer\", \"password\": \"viewer-password\" }")
+				.exchange()
+				.getResponse()
+				.getContentAsString();
+	}
+
+	private static RequestPostProcessor authenticatedAs(User user) {
+		return authentication(new UsernamePasswordAuthenticationToken(user.getId(), null, List.of()));
+	}
+
+	private UUID fanPostId() {
+		return jdbcTemplate.queryForObject("SELECT id FROM posts WHERE author_id = ? LIMIT 1", UUID.class, fanId);
+	}
+
+	// A batch request body with the first fans
+	private String batchOfFans() {
+		List<UUID> fanIds = jdbcTemplate.queryForList("SELECT id FROM users WHERE username_normalized LIKE 'fan%' ORDER BY id LIMIT ?", UUID.class, BATCH);
+		return fanIds.stream()
+				.map(id -> "\"" + id + "\"")
+				.collect(Collectors.joining(", ", "{ \"followedIds\": [", "] }"));
+	}
+
+	private User saveUser(String username, AccountType accountType, String password) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword(password);
+		user.setAccountType(accountType);
+		return userRepository.save(user);
+	}
+
+}
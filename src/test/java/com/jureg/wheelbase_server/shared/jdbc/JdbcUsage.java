@@ -0,0 +1,21 @@
+package com.jureg.wheelbase_server.shared.jdbc;
+
+// JDBC work done by a request: statements prepared, rows read from the result sets, round-trips to the database
+// Also used as a budget: the most a request may do
+public record JdbcUsage(long statements, long rows, long roundTrips) {
+
+	/**
+	 * Check if this usage is over a budget
+	 * @param The budget
+	 * @return true if any of the counts is over the one of the budget
+	 */
+	public boolean exceeds(JdbcUsage budget) {
+		return statements > budget.statements() || rows > budget.rows() || roundTrips > budget.roundTrips();
+	}
+
+	@Override
+	public String toString() {
+		return statements + " statements, " + rows + " rows, " + roundTrips + " round-trips";
+	}
+
+}
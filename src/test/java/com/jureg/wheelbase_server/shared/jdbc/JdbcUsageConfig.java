@@ -0,0 +1,16 @@
+package com.jureg.wheelbase_server.shared.jdbc;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+// Import it in a test to count the JDBC work with JdbcUsageRecorder
+@TestConfiguration(proxyBeanMethods = false)
+public class JdbcUsageConfig {
+
+	// Static: a post processor must not wait for its configuration class to be created
+	@Bean
+	static JdbcUsageRecorder jdbcUsageRecorder() {
+		return new JdbcUsageRecorder();
+	}
+
+}
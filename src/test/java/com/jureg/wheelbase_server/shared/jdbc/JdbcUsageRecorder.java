@@ -0,0 +1,129 @@
+package com.jureg.wheelbase_server.shared.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+// Counts the JDBC work of the current thread between start() and stop(), through a proxy of the data source
+// (below Hibernate, so the queries of Spring Data, Hibernate and JdbcTemplate are all counted):
+// - statements: the statements prepared or created on a connection
+// - rows: the rows read from the result sets
+// - round-trips: the executions (a batch is one), commits and rollbacks
+// A result set fetched in several chunks counts as one round-trip, the repository queries are bounded anyway
+// Only the recording thread is counted: the scheduled jobs running meanwhile are left out
+public class JdbcUsageRecorder implements BeanPostProcessor {
+
+	private static final int STATEMENTS = 0;
+	private static final int ROWS = 1;
+	private static final int ROUND_TRIPS = 2;
+
+	private static final Set<String> STATEMENT_METHODS = Set.of("createStatement", "prepareStatement", "prepareCall");
+	private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+			"executeBatch", "executeLargeBatch");
+
+	// Counts of the recording thread, null when it is not recording
+	private static final ThreadLocal<long[]> COUNTS = new ThreadLocal<>();
+
+	/**
+	 * Start counting the JDBC work of the current thread (from zero)
+	 */
+	public static void start() {
+		COUNTS.set(new long[3]);
+	}
+
+	/**
+	 * Stop counting the JDBC work of the current thread
+	 * @return The work done since start()
+	 */
+	public static JdbcUsage stop() {
+		long[] counts = COUNTS.get();
+		if (counts == null) {
+			throw new IllegalStateException("Not recording");
+		}
+		COUNTS.remove();
+		return new JdbcUsage(counts[STATEMENTS], counts[ROWS], counts[ROUND_TRIPS]);
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource dataSource) {
+			return wrap(DataSource.class, dataSource, null);
+		}
+		return bean;
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static void count(int counter) {
+		long[] counts = COUNTS.get();
+		if (counts != null) {
+			counts[counter]++;
+		}
+	}
+
+	private static Object wrap(Class<?> type, Object target, Object owner) {
+		return Proxy.newProxyInstance(JdbcUsageRecorder.class.getClassLoader(), new Class<?>[] { type }, new CountingHandler(target, owner));
+	}
+
+	// The connections, statements and result sets handed out are counting proxies too
+	private static boolean isWrapped(Class<?> type) {
+		return type == Connection.class || type == ResultSet.class || (type.isInterface() && Statement.class.isAssignableFrom(type));
+	}
+
+	private static final class CountingHandler implements InvocationHandler {
+
+		private final Object target;
+		// Proxy of the object which created the target (returned by getConnection() and getStatement()), null for the data source
+		private final Object owner;
+
+		private CountingHandler(Object target, Object owner) {
+			this.target = target;
+			this.owner = owner;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			// Hibernate keeps the statements in hash maps: a proxy is only equal to itself
+			if (name.equals("equals") && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && args == null) {
+				return System.identityHashCode(proxy);
+			}
+			if (owner != null && args == null && (name.equals("getConnection") || name.equals("getStatement"))) {
+				return owner;
+			}
+
+			if ((target instanceof Statement && EXECUTE_METHODS.contains(name))
+					|| (target instanceof Connection && (name.equals("commit") || name.equals("rollback")))) {
+				count(ROUND_TRIPS);
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			if (target instanceof Connection && STATEMENT_METHODS.contains(name)) {
+				count(STATEMENTS);
+			}
+			if (target instanceof ResultSet && name.equals("next") && Boolean.TRUE.equals(result)) {
+				count(ROWS);
+			}
+			return result != null && isWrapped(method.getReturnType()) ? wrap(method.getReturnType(), result, proxy) : result;
+		}
+
+	}
+
+}
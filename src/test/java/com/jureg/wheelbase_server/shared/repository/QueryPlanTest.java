@@ -0,0 +1,468 @@
+package com.jureg.wheelbase_server.shared.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.repository.FollowCounterRepository;
+import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.post.repository.PostRepository;
+import com.jureg.wheelbase_server.post_image.repository.PostImageRepository;
+import com.jureg.wheelbase_server.post_like.repository.PostLikeCounterRepository;
+import com.jureg.wheelbase_server.post_like.repository.PostLikeRepository;
+import com.jureg.wheelbase_server.refresh_token.repository.RefreshTokenRepository;
+import com.jureg.wheelbase_server.timeline.repository.TimelineRepository;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserPurgeRepository;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import jakarta.persistence.EntityManager;
+
+// Runs EXPLAIN on the statements of each repository query, on the schema built by the Flyway migrations
+// The dataset is large enough for the planner to prefer an index whenever one matches: a sequential scan means a missing index
+@DataJpaTest(properties = {
+		"spring.flyway.enabled=true",
+		"spring.jpa.hibernate.ddl-auto=none",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.jureg.wheelbase_server.shared.repository.RecordingStatementInspector"
+})
+@Testcontainers
+class QueryPlanTest {
+
+	private static final int USERS = 5000;
+	private static final int FOLLOWS_PER_USER = 10;
+	private static final int POSTS_PER_USER = 5;
+
+	// The migrations assign the tables to the "postgres" role
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("postgres")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private FollowRepository followRepository;
+	@Autowired
+	private FollowCounterRepository followCounterRepository;
+	@Autowired
+	private UserPurgeRepository userPurgeRepository;
+	@Autowired
+	private RefreshTokenRepository refreshTokenRepository;
+	@Autowired
+	private PostRepository postRepository;
+	@Autowired
+	private PostImageRepository postImageRepository;
+	@Autowired
+	private TimelineRepository timelineRepository;
+	@Autowired
+	private PostLikeRepository postLikeRepository;
+	@Autowired
+	private PostLikeCounterRepository postLikeCounterRepository;
+
+	private User user;
+	private User otherUser;
+
+	@BeforeEach
+	void seed() {
+		jdbcTemplate.update("""
+			INSERT INTO public.users (id, account_type, email, email_normalized, password, username, username_normalized, profile_version)
+			SELECT gen_random_uuid(), 'PUBLIC', 'User' || i || '@test.com', 'user' || i || '@test.com', 'hashed-password', 'User' || i, 'user' || i, 0
+			FROM generate_series(1, ?) i
+			""", USERS);
+		jdbcTemplate.update("""
+			INSERT INTO public.user_communities (user_id, community)
+			SELECT id, 'CAR' FROM public.users
+			""");
+		// Each user follows the next users, by creation order of the rows
+		jdbcTemplate.update("""
+			WITH numbered AS (SELECT id, row_number() OVER (ORDER BY id) AS rn FROM public.users)
+			INSERT INTO public.follows (follower_id, followed_id, created_at)
+			SELECT a.id, b.id, now() - k * interval '1 minute'
+			FROM numbered a
+			CROSS JOIN generate_series(1, ?) k
+			JOIN numbered b ON b.rn = (a.rn + k - 1) % ? + 1
+			""", FOLLOWS_PER_USER, USERS);
+		// One vehicle and a few posts per user, a minute apart, with an image each
+		jdbcTemplate.update("""
+			INSERT INTO public.vehicles (id, owner_id, community, model)
+			SELECT gen_random_uuid(), id, 'CAR', 'Clio' FROM public.users
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO public.posts (id, author_id, vehicle_id, community, content, created_at)
+			SELECT gen_random_uuid(), v.owner_id, v.id, 'CAR', 'My car', now() - k * interval '1 minute'
+			FROM public.vehicles v
+			CROSS JOIN generate_series(1, ?) k
+			""", POSTS_PER_USER);
+		jdbcTemplate.update("""
+			INSERT INTO public.post_images (id, post_id, image_url)
+			SELECT gen_random_uuid(), id, 'https://images.test/' || id || '.jpg' FROM public.posts
+			""");
+		// Every post pushed to the followers of its author, one user in ten turned celebrity
+		jdbcTemplate.update("""
+			INSERT INTO public.timeline_entries (user_id, post_id, author_id, community, created_at)
+			SELECT f.follower_id, p.id, p.author_id, p.community, p.created_at
+			FROM public.follows f JOIN public.posts p ON p.author_id = f.followed_id
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO public.timeline_celebrities (user_id)
+			SELECT id FROM public.users WHERE username_normalized LIKE '%5'
+			""");
+		// Each user likes the newest post of the users it follows, counted as the flush job would
+		jdbcTemplate.update("""
+			INSERT INTO public.post_likes (post_id, user_id, created_at)
+			SELECT p.id, f.follower_id, now()
+			FROM public.follows f JOIN public.posts p ON p.author_id = f.followed_id
+			WHERE p.created_at > now() - interval '90 seconds'
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO public.post_like_counters (post_id, likes)
+			SELECT post_id, count(*) FROM public.post_likes GROUP BY post_id
+			""");
+		jdbcTemplate.update("""
+			INSERT INTO public.refresh_tokens (id, user_id, token_hash, created_at, expires_at)
+			SELECT gen_random_uuid(), id, md5(id::text) || md5(username), now(), now() + interval '30 days'
+			FROM public.users
+			""");
+		jdbcTemplate.execute("ANALYZE");
+
+		List<UUID> ids = jdbcTemplate.queryForList("SELECT id FROM public.users ORDER BY id LIMIT 2", UUID.class);
+		user = entityManager.getReference(User.class, ids.get(0));
+		otherUser = entityManager.getReference(User.class, ids.get(1));
+	}
+
+	// -------------------------------------------------------------
+	// Users
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededUsers_whenFindById_thenIndexScan() {
+		UUID id = user.getId();
+		entityManager.clear();
+		assertNoSequentialScan(() -> userRepository.findById(id));
+	}
+
+	@Test
+	void givenSeededUsers_whenFindByUsernameIgnoreCaseOrEmailIgnoreCase_thenIndexScan() {
+		assertNoSequentialScan(() -> userRepository.findByUsernameIgnoreCaseOrEmailIgnoreCase("USER42", "USER42"));
+	}
+
+	@Test
+	void givenSeededUsers_whenExistsByUsernameIgnoreCase_thenIndexScan() {
+		assertNoSequentialScan(() -> userRepository.existsByUsernameIgnoreCase("User42"));
+	}
+
+	@Test
+	void givenSeededUsers_whenExistsByEmailIgnoreCase_thenIndexScan() {
+		assertNoSequentialScan(() -> userRepository.existsByEmailIgnoreCase("User42@test.com"));
+	}
+
+	@Test
+	void givenSeededUsers_whenSearchByUsername_thenIndexScan() {
+		assertNoSequentialScan(() -> userRepository.searchByUsername("user42", "%user42%", "user42%", -1, "", Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededUsers_whenSearchByShortUsername_thenIndexScan() {
+		assertNoSequentialScan(() -> userRepository.searchByUsername("us", "us%", "us%", -1, "", Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededUsers_whenFindExistingIds_thenIndexScan() {
+		assertNoSequentialScan(() -> userRepository.findExistingIds(List.of(user.getId(), otherUser.getId(), UUID.randomUUID())));
+	}
+
+	// -------------------------------------------------------------
+	// Follows
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededFollows_whenExistsByFollowerIdAndFollowedId_thenIndexScan() {
+		assertNoSequentialScan(() -> followRepository.existsByFollowerIdAndFollowedId(user.getId(), otherUser.getId()));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindByFollower_thenIndexScan() {
+		assertNoSequentialScan(() -> followRepository.findByFollower(user));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindByFollowed_thenIndexScan() {
+		assertNoSequentialScan(() -> followRepository.findByFollowed(user));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindFollowersFirstPage_thenIndexOrder() {
+		assertServedInIndexOrder(() -> followRepository.findFollowers(user.getId(), Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindFollowersAfter_thenIndexOrder() {
+		assertServedInIndexOrder(() -> followRepository.findFollowersAfter(user.getId(), Instant.now(), otherUser.getId(), Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindFollowingFirstPage_thenIndexOrder() {
+		assertServedInIndexOrder(() -> followRepository.findFollowing(user.getId(), Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindFollowingAfter_thenIndexOrder() {
+		assertServedInIndexOrder(() -> followRepository.findFollowingAfter(user.getId(), Instant.now(), otherUser.getId(), Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededFollows_whenDeleteIfPresent_thenIndexScan() {
+		assertNoSequentialScan(() -> followRepository.deleteIfPresent(user.getId(), otherUser.getId()));
+	}
+
+	@Test
+	void givenSeededFollows_whenInsertAllIfAbsent_thenIndexScan() {
+		assertNoSequentialScan(() -> followRepository.insertAllIfAbsent(user.getId(), List.of(otherUser.getId(), UUID.randomUUID()), Instant.now()));
+	}
+
+	@Test
+	void givenSeededFollows_whenDeleteAllIfPresent_thenIndexScan() {
+		assertNoSequentialScan(() -> followRepository.deleteAllIfPresent(user.getId(), List.of(otherUser.getId(), UUID.randomUUID())));
+	}
+
+	// -------------------------------------------------------------
+	// Deleted users
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededUsers_whenFindDeletedUserIds_thenIndexScan() {
+		assertNoSequentialScan(() -> userPurgeRepository.findDeletedUserIds(100));
+	}
+
+	@Test
+	void givenSeededUsers_whenLockDeletionStage_thenIndexScan() {
+		assertNoSequentialScan(() -> userPurgeRepository.lockDeletionStage(user.getId()));
+	}
+
+	@Test
+	void givenSeededFollows_whenPurgeFollowing_thenIndexScan() {
+		assertNoSequentialScan(() -> followCounterRepository.purgeFollowing(user.getId(), 0, 1000));
+	}
+
+	@Test
+	void givenSeededFollows_whenPurgeFollowers_thenIndexScan() {
+		assertNoSequentialScan(() -> followCounterRepository.purgeFollowers(user.getId(), 0, 1000));
+	}
+
+	// -------------------------------------------------------------
+	// Home feed
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededTimelines_whenFindPostRefs_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.findPostRefs(user.getId(), 21));
+	}
+
+	@Test
+	void givenSeededTimelines_whenFindPostRefsAfter_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.findPostRefsAfter(user.getId(), Instant.now(), UUID.randomUUID(), 21));
+	}
+
+	@Test
+	void givenSeededTimelines_whenFindPostRefsInCommunity_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.findPostRefsInCommunity(user.getId(), "CAR", 21));
+	}
+
+	@Test
+	void givenSeededTimelines_whenFindPostRefsInCommunityAfter_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.findPostRefsInCommunityAfter(user.getId(), "CAR", Instant.now(), UUID.randomUUID(), 21));
+	}
+
+	@Test
+	void givenSeededPosts_whenFindExplorePostRefsFirstPage_thenIndexOrder() {
+		assertServedInIndexOrder(() -> postRepository.findExplorePostRefs(CommunityType.CAR, Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededPosts_whenFindExplorePostRefsAfter_thenIndexOrder() {
+		assertServedInIndexOrder(() -> postRepository.findExplorePostRefsAfter(CommunityType.CAR, Instant.now(), UUID.randomUUID(), Limit.of(21)));
+	}
+
+	@Test
+	void givenSeededPosts_whenFindFeedPosts_thenIndexScan() {
+		assertNoSequentialScan(() -> postRepository.findFeedPosts(List.of(UUID.randomUUID(), UUID.randomUUID())));
+	}
+
+	@Test
+	void givenSeededPosts_whenFindUrlsByPostIds_thenIndexScan() {
+		assertNoSequentialScan(() -> postImageRepository.findUrlsByPostIds(List.of(UUID.randomUUID(), UUID.randomUUID())));
+	}
+
+	// -------------------------------------------------------------
+	// Timelines
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededPosts_whenLockNextPendingFanout_thenIndexScan() {
+		assertNoSequentialScan(() -> postRepository.lockNextPendingFanout());
+	}
+
+	@Test
+	void givenSeededPosts_whenMarkFannedOut_thenIndexScan() {
+		assertNoSequentialScan(() -> postRepository.markFannedOut(UUID.randomUUID()));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindFollowerRefsFirstPage_thenIndexOrder() {
+		assertServedInIndexOrder(() -> followRepository.findFollowerRefs(user.getId(), Limit.of(1000)));
+	}
+
+	@Test
+	void givenSeededFollows_whenFindFollowerRefsAfter_thenIndexOrder() {
+		assertServedInIndexOrder(() -> followRepository.findFollowerRefsAfter(user.getId(), Instant.now(), otherUser.getId(), Limit.of(1000)));
+	}
+
+	@Test
+	void givenSeededTimelines_whenInsertAll_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.insertAll(List.of(user.getId(), otherUser.getId()), UUID.randomUUID(), otherUser.getId(), "CAR", Instant.now()));
+	}
+
+	@Test
+	void givenSeededTimelines_whenRebuild_thenIndexScan() {
+		assertNoSequentialScan(() -> {
+			timelineRepository.deleteAllByUserId(user.getId());
+			timelineRepository.rebuild(user.getId(), 800);
+		});
+	}
+
+	@Test
+	void givenSeededTimelines_whenIsCelebrity_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.isCelebrity(user.getId()));
+	}
+
+	@Test
+	void givenSeededTimelines_whenFindUserIdsAfter_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.findUserIdsAfter(user.getId(), 1000));
+	}
+
+	@Test
+	void givenSeededTimelines_whenTrim_thenIndexScan() {
+		assertNoSequentialScan(() -> timelineRepository.trim(List.of(user.getId(), otherUser.getId()), 20));
+	}
+
+	// -------------------------------------------------------------
+	// Likes
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededLikes_whenInsertIfAbsent_thenIndexScan() {
+		assertNoSequentialScan(() -> postLikeRepository.insertIfAbsent(UUID.randomUUID(), user.getId(), Instant.now()));
+	}
+
+	@Test
+	void givenSeededLikes_whenDeleteIfPresent_thenIndexScan() {
+		assertNoSequentialScan(() -> postLikeRepository.deleteIfPresent(UUID.randomUUID(), user.getId()));
+	}
+
+	@Test
+	void givenSeededLikes_whenExistsByPostIdAndUserId_thenIndexScan() {
+		assertNoSequentialScan(() -> postLikeRepository.existsByPostIdAndUserId(UUID.randomUUID(), user.getId()));
+	}
+
+	@Test
+	void givenSeededLikes_whenFindLikers_thenIndexScan() {
+		assertNoSequentialScan(() -> postLikeRepository.findLikers(List.of(UUID.randomUUID(), UUID.randomUUID())));
+	}
+
+	@Test
+	void givenSeededLikes_whenFindLikedPostIds_thenIndexScan() {
+		assertNoSequentialScan(() -> postLikeRepository.findLikedPostIds(user.getId(), List.of(UUID.randomUUID(), UUID.randomUUID())));
+	}
+
+	@Test
+	void givenSeededCounters_whenAddAll_thenIndexScan() {
+		assertNoSequentialScan(() -> postLikeCounterRepository.addAll(new UUID[] { UUID.randomUUID(), UUID.randomUUID() }, new Long[] { 1L, -1L }));
+	}
+
+	// -------------------------------------------------------------
+	// Refresh tokens
+	// -------------------------------------------------------------
+	@Test
+	void givenSeededTokens_whenFindByTokenHash_thenIndexScan() {
+		assertNoSequentialScan(() -> refreshTokenRepository.findByTokenHash("unknown-hash"));
+	}
+
+	@Test
+	void givenSeededTokens_whenRevokeAllByUserId_thenIndexScan() {
+		assertNoSequentialScan(() -> refreshTokenRepository.revokeAllByUserId(user.getId(), Instant.now()));
+	}
+
+	@Test
+	void givenSeededTokens_whenDeleteAllByUserId_thenIndexScan() {
+		assertNoSequentialScan(() -> refreshTokenRepository.deleteAllByUserId(user.getId()));
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// Records the statements of the call, then explains each of them as a generic plan (no parameter values needed)
+	private void assertNoSequentialScan(Runnable repositoryCall) {
+		RecordingStatementInspector.clear();
+		repositoryCall.run();
+		List<String> statements = RecordingStatementInspector.getStatements();
+		assertThat(statements).isNotEmpty();
+
+		for (String sql : statements) {
+			String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN (GENERIC_PLAN) " + toPositionalParameters(sql), String.class));
+			assertThat(plan).as("Plan of: %s", sql).doesNotContain("Seq Scan");
+		}
+	}
+
+	// Keyset pages: the first statement must read the rows in index order, a sort would have to read every row of the user first
+	private void assertServedInIndexOrder(Runnable repositoryCall) {
+		assertNoSequentialScan(repositoryCall);
+		String sql = RecordingStatementInspector.getStatements().get(0);
+		String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN (GENERIC_PLAN) " + toPositionalParameters(sql), String.class));
+		assertThat(plan).as("Plan of: %s", sql).doesNotContain("Sort");
+	}
+
+	// JDBC placeholders (?) become numbered parameters ($1, $2...), as EXPLAIN expects them
+	private static String toPositionalParameters(String sql) {
+		StringBuilder builder = new StringBuilder(sql.length() + 8);
+		int index = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '?') {
+				builder.append('$').append(++index);
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.jureg.wheelbase_server.shared.repository;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Records the SQL sent by Hibernate, so tests can look at the plans of the statements a repository method really runs
+// Hibernate instantiates it from the configuration, hence the static list
+public class RecordingStatementInspector implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+	@Override
+	public String inspect(String sql) {
+		STATEMENTS.add(sql);
+		return sql;
+	}
+
+	public static void clear() {
+		STATEMENTS.clear();
+	}
+
+	public static List<String> getStatements() {
+		return List.copyOf(STATEMENTS);
+	}
+
+}
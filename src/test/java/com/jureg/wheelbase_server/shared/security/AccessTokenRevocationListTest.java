@@ -0,0 +1,85 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AccessTokenRevocationListTest {
+
+	private SimpleMeterRegistry meterRegistry;
+	private AccessTokenRevocationList revocationList;
+
+	@BeforeEach
+	void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+		revocationList = new AccessTokenRevocationList(1000, Duration.ofSeconds(30), Duration.ofMinutes(15), meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Check
+	// -------------------------------------------------------------
+	@Test
+	void givenRevokedToken_whenIsRevoked_thenTrue() {
+		revocationList.revoke("token-id", Instant.now().plus(Duration.ofMinutes(10)));
+
+		assertThat(revocationList.isRevoked("token-id")).isTrue();
+	}
+
+	@Test
+	void givenManyRevokedTokens_whenIsRevokedOnOtherTokens_thenNeverTrue() {
+		Instant expiresAt = Instant.now().plus(Duration.ofMinutes(10));
+		for (int i = 0; i < 1000; i++) {
+			revocationList.revoke("revoked-" + i, expiresAt);
+		}
+
+		// The filter may hesitate, but the exact set has the last word
+		for (int i = 0; i < 10_000; i++) {
+			assertThat(revocationList.isRevoked("valid-" + i)).isFalse();
+		}
+		double positives = meterRegistry.get("jwt.revocation.filter.positives").counter().count();
+		assertThat(meterRegistry.get("jwt.revocation.filter.false-positives").counter().count()).isEqualTo(positives);
+		// About 1% expected at the sized capacity, leave some margin
+		assertThat(positives).isLessThan(300);
+	}
+
+	@Test
+	void givenExpiredToken_whenRevoke_thenIgnored() {
+		revocationList.revoke("token-id", Instant.now().minusSeconds(1));
+
+		assertThat(revocationList.size()).isZero();
+		assertThat(revocationList.isRevoked("token-id")).isFalse();
+	}
+
+	// -------------------------------------------------------------
+	// Expiration
+	// -------------------------------------------------------------
+	@Test
+	void givenTokenExpired_whenAdvance_thenDropped() {
+		Instant expiresAt = Instant.now().plus(Duration.ofMinutes(5));
+		revocationList.revoke("expiring", expiresAt);
+		revocationList.revoke("still-valid", expiresAt.plus(Duration.ofMinutes(5)));
+
+		revocationList.advance(expiresAt.plus(Duration.ofMinutes(1)));
+
+		assertThat(revocationList.size()).isEqualTo(1);
+		assertThat(revocationList.isRevoked("expiring")).isFalse();
+		assertThat(revocationList.isRevoked("still-valid")).isTrue();
+	}
+
+	@Test
+	void givenTokenNotExpired_whenAdvance_thenKept() {
+		Instant expiresAt = Instant.now().plus(Duration.ofMinutes(10));
+		revocationList.revoke("token-id", expiresAt);
+
+		revocationList.advance(Instant.now().plus(Duration.ofMinutes(5)));
+
+		assertThat(revocationList.isRevoked("token-id")).isTrue();
+	}
+
+}
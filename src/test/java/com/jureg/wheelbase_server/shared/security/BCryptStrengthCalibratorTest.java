@@ -0,0 +1,49 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class BCryptStrengthCalibratorTest {
+
+	// -------------------------------------------------------------
+	// Calibration
+	// -------------------------------------------------------------
+	@Test
+	void givenLargeBudget_whenCalibrate_thenReturnMaxStrength() {
+		int strength = BCryptStrengthCalibrator.calibrate(Duration.ofMinutes(1), 4, 6);
+		assertThat(strength).isEqualTo(6);
+	}
+
+	@Test
+	void givenNoBudget_whenCalibrate_thenReturnMinStrength() {
+		int strength = BCryptStrengthCalibrator.calibrate(Duration.ZERO, 4, 6);
+		assertThat(strength).isEqualTo(4);
+	}
+
+	@Test
+	void givenNextStrengthOverBudget_whenCalibrate_thenReturnPreviousStrength() {
+		// Strength 5 should take twice as long as 4, but takes four times longer
+		int strength = BCryptStrengthCalibrator.calibrate(Duration.ofNanos(200), 4, 6, rounds -> rounds == 4 ? 100 : 400);
+		assertThat(strength).isEqualTo(4);
+	}
+
+	@Test
+	void givenTwoOutliersPerStrength_whenCalibrate_thenMedianKept() {
+		// The warm-up hash, then two pauses among the five timings of each strength
+		long[] outliers = { 1_000_000, 10_000, 0, 0, 10_000, 0, 10_000, 0, 0, 0, 10_000 };
+		int[] calls = { 0 };
+		int strength = BCryptStrengthCalibrator.calibrate(Duration.ofNanos(200), 4, 5,
+				rounds -> (rounds == 4 ? 80 : 150) + outliers[calls[0]++]);
+		assertThat(strength).isEqualTo(5);
+	}
+
+	@Test
+	void givenNextStrengthWithinBudget_whenCalibrate_thenReturnIt() {
+		int strength = BCryptStrengthCalibrator.calibrate(Duration.ofNanos(200), 4, 6, rounds -> 100L << (rounds - 4));
+		assertThat(strength).isEqualTo(5);
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.jureg.wheelbase_server.shared.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.jureg.wheelbase_server.shared.api.exception.PasswordHashingBusyException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BoundedPasswordEncoderTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final ExecutorService callers = Executors.newFixedThreadPool(4);
+	private BoundedPasswordEncoder encoder;
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		callers.shutdownNow();
+		if (encoder != null) {
+			encoder.close();
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Delegation
+	// -------------------------------------------------------------
+	@Test
+	void givenPassword_whenEncodeAndMatch_thenDelegateUsedAndTimed() {
+		encoder = new BoundedPasswordEncoder(new PrefixPasswordEncoder(), 1, 1, Duration.ofSeconds(1), 1, meterRegistry);
+
+		String encoded = encoder.encode("password");
+
+		assertThat(encoded).isEqualTo("hashed:password");
+		assertThat(encoder.matches("password", encoded)).isTrue();
+		assertThat(encoder.matches("wrong-password", encoded)).isFalse();
+		assertThat(meterRegistry.get("password.hashing.duration").tag("operation", "encode").timer().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("password.hashing.queue.wait").tag("operation", "matches").timer().count()).isEqualTo(2);
+	}
+
+	// -------------------------------------------------------------
+	// Admission control
+	// -------------------------------------------------------------
+	@Test
+	void givenSaturatedPool_whenEncode_thenFailFast() throws Exception {
+		encoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(release), 1, 1, Duration.ofSeconds(5), 3, meterRegistry);
+
+		// One hash running, one hash waiting in the queue
+		callers.submit(() -> encoder.encode("first"));
+		callers.submit(() -> encoder.encode("second"));
+		waitUntil(() -> meterRegistry.get("password.hashing.queue.size").gauge().value() == 1);
+
+		PasswordHashingBusyException exception = assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("third"));
+
+		// Check we got the right error message and retry delay
+		assertEquals("Server is busy, please retry later", exception.getMessage());
+		assertThat(exception.getRetryAfterSeconds()).isEqualTo(3);
+		assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenBusyWorker_whenMaxWaitExceeded_thenFailFastAndHashSkipped() throws Exception {
+		encoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(release), 1, 1, Duration.ofMillis(50), 1, meterRegistry);
+		callers.submit(() -> encoder.encode("first"));
+		waitUntil(() -> meterRegistry.get("password.hashing.queue.wait").tag("operation", "encode").timer().count() == 1);
+
+		assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("second"));
+		assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("password.hashing.queue.size").gauge().value()).isZero();
+
+		// Only the first hash is ever computed
+		release.countDown();
+		waitUntil(() -> meterRegistry.get("password.hashing.duration").tag("operation", "encode").timer().count() == 1);
+		assertThat(meterRegistry.get("password.hashing.queue.wait").tag("operation", "encode").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenStartedHashSlowerThanMaxWait_whenEncode_thenResultReturned() throws Exception {
+		encoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(release), 1, 1, Duration.ofMillis(50), 1, meterRegistry);
+
+		Future<String> encoded = callers.submit(() -> encoder.encode("password"));
+		waitUntil(() -> meterRegistry.get("password.hashing.queue.wait").tag("operation", "encode").timer().count() == 1);
+		Thread.sleep(100);
+		release.countDown();
+
+		// Started within the wait: the hash is waited for however long it takes
+		assertThat(encoded.get(5, TimeUnit.SECONDS)).isEqualTo("hashed:password");
+		assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isZero();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	private static class PrefixPasswordEncoder implements PasswordEncoder {
+
+		@Override
+		public String encode(CharSequence rawPassword) {
+			return "hashed:" + rawPassword;
+		}
+
+		@Override
+		public boolean matches(CharSequence rawPassword, String encodedPassword) {
+			return encode(rawPassword).equals(encodedPassword);
+		}
+
+	}
+
+	// Never finishes until the latch is released
+	private static class BlockingPasswordEncoder extends PrefixPasswordEncoder {
+
+		private final CountDownLatch release;
+
+		BlockingPasswordEncoder(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public String encode(CharSequence rawPassword) {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.encode(rawPassword);
+		}
+
+	}
+
+}
@@ -6,6 +6,8 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Instant;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.junit.jupiter.api.AfterEach;
@@ -19,6 +21,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.jureg.wheelbase_server.shared.service.JwtService;
+import com.jureg.wheelbase_server.shared.service.VerifiedToken;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
@@ -58,8 +61,7 @@ class JwtAuthenticationFilterTest {
 		
 		// Mock HttpServletRequest and JwtService
 		when(request.getHeader("Authorization")).thenReturn("Bearer " + validJwt);
-		when(jwtService.validateToken(validJwt)).thenReturn(true);
-		when(jwtService.getUserIdFromToken(validJwt)).thenReturn(userId);
+		when(jwtService.verifyToken(validJwt)).thenReturn(Optional.of(new VerifiedToken(userId, Instant.now().plusSeconds(60))));
 		
 		// Trigger authentication
 		filter.doFilter(request, response, filterChain);
@@ -70,6 +72,9 @@ class JwtAuthenticationFilterTest {
 		// Make sure it's there
 		assertThat(auth).isNotNull();
 		assertThat(UUID.fromString(auth.getPrincipal().toString())).isEqualTo(userId);
+		// Make sure the token has been parsed only once
+		verify(jwtService, never()).validateToken(any());
+		verify(jwtService, never()).getUserIdFromToken(any());
 		// Make sure the "doFilter" function has been called
 		verify(filterChain).doFilter(request, response);
 	}
@@ -90,7 +95,7 @@ class JwtAuthenticationFilterTest {
 		// Make sure authenticated is null
 		assertThat(auth).isNull();
 		// Make sure the token has not been validated
-		verify(jwtService, never()).validateToken(validJwt);
+		verify(jwtService, never()).verifyToken(validJwt);
 		// Make sure the "doFilter" function has been called
 		verify(filterChain).doFilter(request, response);
 	}
@@ -109,7 +114,7 @@ class JwtAuthenticationFilterTest {
 		// Make sure authenticated is null
 		assertThat(auth).isNull();
 		// Make sure the token has not been validated
-		verify(jwtService, never()).validateToken(any());
+		verify(jwtService, never()).verifyToken(any());
 		// Make sure the "doFilter" function has been called
 		verify(filterChain).doFilter(request, response);
 	}
@@ -120,7 +125,7 @@ class JwtAuthenticationFilterTest {
 		
 		// Mock HttpServletRequest and JwtService
 		when(request.getHeader("Authorization")).thenReturn("Bearer " + invalidJwt);
-		when(jwtService.validateToken(invalidJwt)).thenReturn(false);
+		when(jwtService.verifyToken(invalidJwt)).thenReturn(Optional.empty());
 		
 		// Trigger authentication
 		filter.doFilter(request, response, filterChain);
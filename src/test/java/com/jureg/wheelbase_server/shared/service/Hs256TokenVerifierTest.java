@@ -0,0 +1,187 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.UUID;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+class Hs256TokenVerifierTest {
+
+	private static final String SECRET = "mysupersecretkeymysupersecretkey123456";
+
+	private SecretKey key;
+	private Hs256TokenVerifier verifier;
+	private UUID userId;
+
+	@BeforeEach
+	void setup() {
+		key = Keys.hmacShaKeyFor(SECRET.getBytes());
+		String probe = Jwts.builder().subject("probe").signWith(key, Jwts.SIG.HS256).compact();
+		verifier = new Hs256TokenVerifier(key, probe.substring(0, probe.indexOf('.')));
+		userId = UUID.randomUUID();
+	}
+
+	// -------------------------------------------------------------
+	// Supported tokens
+	// -------------------------------------------------------------
+	@Test
+	void givenIssuedToken_whenVerify_thenReturnUserIdAndExpiration() {
+		Date expiration = new Date(System.currentTimeMillis() + 60_000);
+		String jwt = token(userId.toString(), expiration, key);
+
+		Hs256TokenVerifier.Result result = verifier.verify(jwt);
+
+		assertThat(result.supported()).isTrue();
+		assertThat(result.token().userId()).isEqualTo(userId);
+		assertThat(result.token().expiresAt().getEpochSecond()).isEqualTo(expiration.getTime() / 1000);
+	}
+
+	@Test
+	void givenTokenWithAuthorizationClaims_whenVerify_thenReturnClaims() {
+		String jwt = Jwts.builder()
+				.subject(userId.toString())
+				.issuedAt(new Date())
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.claim(AuthorizationClaims.ACCOUNT_TYPE_CLAIM, "F")
+				.claim(AuthorizationClaims.PROFILE_VERSION_CLAIM, 12)
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+
+		Hs256TokenVerifier.Result result = verifier.verify(jwt);
+
+		assertThat(result.supported()).isTrue();
+		assertThat(result.token().claims()).isEqualTo(new AuthorizationClaims(AccountType.FOLLOWERS_ONLY, 12));
+	}
+
+	@Test
+	void givenTokenWithoutAuthorizationClaims_whenVerify_thenNoClaims() {
+		String jwt = token(userId.toString(), new Date(System.currentTimeMillis() + 60_000), key);
+
+		assertThat(verifier.verify(jwt).token().claims()).isNull();
+	}
+
+	@Test
+	void givenTamperedSignature_whenVerify_thenRejected() {
+		String jwt = token(userId.toString(), new Date(System.currentTimeMillis() + 60_000), key);
+		char last = jwt.charAt(jwt.length() - 2);
+		String tampered = jwt.substring(0, jwt.length() - 2) + (last == 'A' ? 'B' : 'A') + jwt.charAt(jwt.length() - 1);
+
+		assertThat(verifier.verify(tampered)).isEqualTo(Hs256TokenVerifier.Result.REJECTED);
+	}
+
+	@Test
+	void givenTokenSignedWithAnotherKey_whenVerify_thenRejected() {
+		SecretKey otherKey = Keys.hmacShaKeyFor("anothersecretkeyanothersecretkey123456".getBytes());
+		String jwt = token(userId.toString(), new Date(System.currentTimeMillis() + 60_000), otherKey);
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.REJECTED);
+	}
+
+	@Test
+	void givenExpiredToken_whenVerify_thenRejected() {
+		String jwt = token(userId.toString(), new Date(System.currentTimeMillis() - 60_000), key);
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.REJECTED);
+	}
+
+	// -------------------------------------------------------------
+	// Unsupported tokens (left to JJWT)
+	// -------------------------------------------------------------
+	@Test
+	void givenTokenWithExtraClaim_whenVerify_thenUnsupported() {
+		String jwt = Jwts.builder()
+				.subject(userId.toString())
+				.issuedAt(new Date())
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.claim("role", "admin")
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	@Test
+	void givenTokenWithPartialAuthorizationClaims_whenVerify_thenUnsupported() {
+		String jwt = Jwts.builder()
+				.subject(userId.toString())
+				.issuedAt(new Date())
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.claim(AuthorizationClaims.ACCOUNT_TYPE_CLAIM, "P")
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	@Test
+	void givenTokenWithUnknownAccountTypeCode_whenVerify_thenUnsupported() {
+		String jwt = Jwts.builder()
+				.subject(userId.toString())
+				.issuedAt(new Date())
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.claim(AuthorizationClaims.ACCOUNT_TYPE_CLAIM, "X")
+				.claim(AuthorizationClaims.PROFILE_VERSION_CLAIM, 0)
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	@Test
+	void givenTokenWithNonUuidSubject_whenVerify_thenUnsupported() {
+		String jwt = token("not-a-uuid", new Date(System.currentTimeMillis() + 60_000), key);
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	@Test
+	void givenTokenWithAnotherHeader_whenVerify_thenUnsupported() {
+		String jwt = Jwts.builder()
+				.header().type("JWT").and()
+				.subject(userId.toString())
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+
+		assertThat(verifier.verify(jwt)).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	@Test
+	void givenSignatureWithUnusedBitsSet_whenVerify_thenUnsupported() {
+		String jwt = token(userId.toString(), new Date(System.currentTimeMillis() + 60_000), key);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		// The last of the 43 characters carries 2 unused bits
+		int last = alphabet.indexOf(jwt.charAt(jwt.length() - 1));
+		String variant = jwt.substring(0, jwt.length() - 1) + alphabet.charAt(last | 1);
+
+		assertThat(verifier.verify(variant)).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	@Test
+	void givenGarbage_whenVerify_thenUnsupported() {
+		assertThat(verifier.verify("an-invalid-jwt")).isEqualTo(Hs256TokenVerifier.Result.UNSUPPORTED);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private String token(String subject, Date expiration, SecretKey signingKey) {
+		return Jwts.builder()
+				.subject(subject)
+				.issuedAt(new Date())
+				.expiration(expiration)
+				.signWith(signingKey, Jwts.SIG.HS256)
+				.compact();
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.jureg.wheelbase_server.shared.security.AccessTokenRevocationList;
+import com.jureg.wheelbase_server.user.model.User;
+
+// Compares the JJWT verification with the allocation-light HS256 fast path, both without cache
+// The GC profiler reports the allocations per operation (gc.alloc.rate.norm) next to the throughput
+// Run it with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.jureg.wheelbase_server.shared.service.JwtFastPathBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFastPathBenchmark {
+
+	private static final String SECRET = "mysupersecretkeymysupersecretkey123456";
+
+	private JwtService jwtService;
+	private String token;
+
+	@Setup
+	public void setup() {
+		jwtService = new JwtService(SECRET, new VerifiedTokenCache(new SimpleMeterRegistry(), 0), new AccessTokenRevocationList(1000, Duration.ofSeconds(30), Duration.ofMinutes(15), new SimpleMeterRegistry()), true, Duration.ofMinutes(15));
+		User user = new User();
+		user.setId(UUID.randomUUID());
+		token = jwtService.generateToken(user);
+	}
+
+	@Benchmark
+	public UUID jjwt() {
+		return jwtService.verifyWithJjwt(token).orElseThrow().userId();
+	}
+
+	@Benchmark
+	public UUID fastPath() {
+		return jwtService.verifyWithFastPath(token).token().userId();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(JwtFastPathBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+}
@@ -4,23 +4,38 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
+import com.jureg.wheelbase_server.shared.security.AccessTokenRevocationList;
+import com.jureg.wheelbase_server.user.model.AccountType;
 import com.jureg.wheelbase_server.user.model.User;
 
 class JwtServiceTest {
 
+	private static final String SECRET = "mysupersecretkeymysupersecretkey123456";
+	
 	private JwtService jwtService;
+	private VerifiedTokenCache tokenCache;
+	private AccessTokenRevocationList revocationList;
 	private User user;
 	
 	@BeforeEach
 	void setup() {
-		jwtService = new JwtService("mysupersecretkeymysupersecretkey123456");
+		tokenCache = new VerifiedTokenCache(new SimpleMeterRegistry(), 100);
+		revocationList = new AccessTokenRevocationList(1000, Duration.ofSeconds(30), Duration.ofMinutes(15), new SimpleMeterRegistry());
+		jwtService = new JwtService(SECRET, tokenCache, revocationList, true, Duration.ofMinutes(15));
 		user = new User();
 		user.setId(UUID.randomUUID());
 		user.setUsername("John");
@@ -37,6 +52,103 @@ class JwtServiceTest {
 		assertThat(jwt).isNotNull();
 	}
 	
+	@Test
+	void givenUser_whenGenerateToken_thenAuthorizationClaimsEmbedded() {
+		user.setAccountType(AccountType.PUBLIC);
+		user.setProfileVersion(3);
+		String jwt = jwtService.generateToken(user);
+		
+		// Both verification paths read the same claims
+		AuthorizationClaims expected = new AuthorizationClaims(AccountType.PUBLIC, 3);
+		assertThat(jwtService.verifyWithFastPath(jwt).token().claims()).isEqualTo(expected);
+		assertThat(jwtService.verifyWithJjwt(jwt).get().claims()).isEqualTo(expected);
+	}
+	
+	@Test
+	void givenClaimsDisabled_whenGenerateToken_thenNoAuthorizationClaims() {
+		jwtService = new JwtService(SECRET, tokenCache, revocationList, false, Duration.ofMinutes(15));
+		String jwt = jwtService.generateToken(user);
+		
+		Optional<VerifiedToken> verified = jwtService.verifyToken(jwt);
+		assertThat(verified).isPresent();
+		assertThat(verified.get().claims()).isNull();
+	}
+	
+	// -------------------------------------------------------------
+	// Verify token
+	// -------------------------------------------------------------
+	@Test
+	void givenValidJwt_whenVerifyToken_thenReturnUserIdAndExpiration() {
+		String jwt = jwtService.generateToken(user);
+		Optional<VerifiedToken> verified = jwtService.verifyToken(jwt);
+		assertThat(verified).isPresent();
+		assertThat(verified.get().userId()).isEqualTo(user.getId());
+		assertThat(verified.get().expiresAt()).isAfter(Instant.now());
+	}
+	
+	@Test
+	void givenValidJwt_whenVerifyTokenTwice_thenServedFromCache() {
+		String jwt = jwtService.generateToken(user);
+		jwtService.verifyToken(jwt);
+		assertThat(tokenCache.size()).isEqualTo(1);
+		// A second verification returns the same cached result
+		assertThat(jwtService.verifyToken(jwt)).isEqualTo(tokenCache.get(jwt));
+		assertThat(tokenCache.size()).isEqualTo(1);
+	}
+	
+	@Test
+	void givenInvalidJwt_whenVerifyToken_thenReturnEmptyAndNotCached() {
+		assertThat(jwtService.verifyToken("an-invalid-jwt")).isEmpty();
+		assertThat(tokenCache.size()).isEqualTo(0);
+	}
+	
+	@Test
+	void givenJwtUnknownToFastPath_whenVerifyToken_thenVerifiedByJjwt() {
+		String jwt = Jwts.builder()
+				.subject(user.getId().toString())
+				.expiration(new Date(System.currentTimeMillis() + 60_000))
+				.claim("role", "admin")
+				.signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), Jwts.SIG.HS256)
+				.compact();
+		Optional<VerifiedToken> verified = jwtService.verifyToken(jwt);
+		assertThat(verified).isPresent();
+		assertThat(verified.get().userId()).isEqualTo(user.getId());
+	}
+	
+	@Test
+	void givenJwtWithoutExpiration_whenVerifyToken_thenReturnEmpty() {
+		String jwt = Jwts.builder()
+				.subject(user.getId().toString())
+				.signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), Jwts.SIG.HS256)
+				.compact();
+		assertThat(jwtService.verifyToken(jwt)).isEmpty();
+	}
+	
+	@Test
+	void givenRevokedJwt_whenVerifyToken_thenReturnEmpty() {
+		String jwt = jwtService.generateToken(user);
+		Instant expiresAt = jwtService.verifyToken(jwt).get().expiresAt();
+		revocationList.revoke(JwtService.getTokenId(jwt), expiresAt);
+		
+		// Rejected even though the verification is cached
+		assertThat(jwtService.verifyToken(jwt)).isEmpty();
+	}
+	
+	@Test
+	void givenRevokedJwt_whenVerifyCopyWithUnusedSignatureBitsSet_thenReturnEmpty() {
+		String jwt = jwtService.generateToken(user);
+		revocationList.revoke(JwtService.getTokenId(jwt), jwtService.verifyToken(jwt).get().expiresAt());
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		int last = alphabet.indexOf(jwt.charAt(jwt.length() - 1));
+		
+		// Every value of the 2 unused bits of the last character decodes to the same signature
+		for (int unusedBits = 1; unusedBits < 4; unusedBits++) {
+			String copy = jwt.substring(0, jwt.length() - 1) + alphabet.charAt(last | unusedBits);
+			assertThat(JwtService.getTokenId(copy)).isEqualTo(JwtService.getTokenId(jwt));
+			assertThat(jwtService.verifyToken(copy)).isEmpty();
+		}
+	}
+	
 	// -------------------------------------------------------------
 	// Validate token
 	// -------------------------------------------------------------
@@ -0,0 +1,85 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.jureg.wheelbase_server.shared.security.AccessTokenRevocationList;
+import com.jureg.wheelbase_server.user.model.User;
+
+// Compares the cost of authenticating one request:
+// - doubleParse: what the security filter used to do (validateToken + getUserIdFromToken, a new parser each time)
+// - singleParse: one verification with a shared parser, without cache
+// - cachedVerify: one verification served by the verified token cache (the usual case for a mobile session)
+// Run it with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.jureg.wheelbase_server.shared.service.JwtVerificationBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+	private static final String SECRET = "mysupersecretkeymysupersecretkey123456";
+
+	private SecretKey key;
+	private JwtService uncachedJwtService;
+	private JwtService cachedJwtService;
+	private String token;
+
+	@Setup
+	public void setup() {
+		key = Keys.hmacShaKeyFor(SECRET.getBytes());
+		// A cache of size 0 never stores anything: every call goes through the parser
+		uncachedJwtService = new JwtService(SECRET, new VerifiedTokenCache(new SimpleMeterRegistry(), 0), new AccessTokenRevocationList(1000, Duration.ofSeconds(30), Duration.ofMinutes(15), new SimpleMeterRegistry()), true, Duration.ofMinutes(15));
+		cachedJwtService = new JwtService(SECRET, new VerifiedTokenCache(new SimpleMeterRegistry(), 10_000), new AccessTokenRevocationList(1000, Duration.ofSeconds(30), Duration.ofMinutes(15), new SimpleMeterRegistry()), true, Duration.ofMinutes(15));
+		User user = new User();
+		user.setId(UUID.randomUUID());
+		token = cachedJwtService.generateToken(user);
+	}
+
+	@Benchmark
+	public UUID doubleParse() {
+		Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+		Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+		return UUID.fromString(claims.getSubject());
+	}
+
+	@Benchmark
+	public UUID singleParse() {
+		return uncachedJwtService.verifyToken(token).orElseThrow().userId();
+	}
+
+	@Benchmark
+	public UUID cachedVerify() {
+		return cachedJwtService.verifyToken(token).orElseThrow().userId();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(JwtVerificationBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
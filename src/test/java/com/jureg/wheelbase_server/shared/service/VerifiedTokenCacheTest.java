@@ -0,0 +1,102 @@
+package com.jureg.wheelbase_server.shared.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VerifiedTokenCacheTest {
+
+	private SimpleMeterRegistry meterRegistry;
+	private VerifiedTokenCache tokenCache;
+
+	@BeforeEach
+	void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+		tokenCache = new VerifiedTokenCache(meterRegistry, 2);
+	}
+
+	// -------------------------------------------------------------
+	// Lookup
+	// -------------------------------------------------------------
+	@Test
+	void givenCachedToken_whenGet_thenReturnTokenAndCountHit() {
+		VerifiedToken verified = new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60));
+		tokenCache.put("a.valid.token", verified);
+
+		assertThat(tokenCache.get("a.valid.token")).contains(verified);
+		assertThat(meterRegistry.get("jwt.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenUnknownToken_whenGet_thenReturnEmptyAndCountMiss() {
+		assertThat(tokenCache.get("an.unknown.token")).isEmpty();
+		assertThat(meterRegistry.get("jwt.cache.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+	}
+
+	// -------------------------------------------------------------
+	// Expiration
+	// -------------------------------------------------------------
+	@Test
+	void givenExpiredToken_whenPut_thenNotCached() {
+		tokenCache.put("an.expired.token", new VerifiedToken(UUID.randomUUID(), Instant.now().minusSeconds(1)));
+		assertThat(tokenCache.size()).isEqualTo(0);
+	}
+
+	@Test
+	void givenCacheFullOfExpiredTokens_whenPut_thenExpiredTokensEvicted() throws Exception {
+		tokenCache.put("first.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusMillis(20)));
+		tokenCache.put("second.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusMillis(20)));
+		Thread.sleep(50);
+
+		VerifiedToken verified = new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60));
+		tokenCache.put("third.token", verified);
+
+		assertThat(tokenCache.size()).isEqualTo(1);
+		assertThat(tokenCache.get("third.token")).contains(verified);
+		assertThat(meterRegistry.get("jwt.cache.evictions").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void givenExpiredTokenBehindLiveOne_whenPut_thenOnlyExpiredEvicted() throws Exception {
+		tokenCache.put("long.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60)));
+		tokenCache.put("short.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusMillis(20)));
+		Thread.sleep(50);
+
+		tokenCache.put("third.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60)));
+
+		assertThat(tokenCache.size()).isEqualTo(2);
+		assertThat(tokenCache.get("long.token")).isPresent();
+		assertThat(tokenCache.get("third.token")).isPresent();
+		assertThat(meterRegistry.get("jwt.cache.evictions").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenExpiredCachedToken_whenGet_thenReturnEmptyAndEvict() throws Exception {
+		tokenCache.put("a.short.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusMillis(20)));
+		Thread.sleep(50);
+
+		assertThat(tokenCache.get("a.short.token")).isEmpty();
+		assertThat(tokenCache.size()).isEqualTo(0);
+		assertThat(meterRegistry.get("jwt.cache.evictions").counter().count()).isEqualTo(1);
+	}
+
+	// -------------------------------------------------------------
+	// Bounded size
+	// -------------------------------------------------------------
+	@Test
+	void givenCacheFull_whenPut_thenTokenNotCached() {
+		tokenCache.put("first.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60)));
+		tokenCache.put("second.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60)));
+		tokenCache.put("third.token", new VerifiedToken(UUID.randomUUID(), Instant.now().plusSeconds(60)));
+
+		assertThat(tokenCache.size()).isEqualTo(2);
+		assertThat(tokenCache.get("third.token")).isEmpty();
+	}
+
+}
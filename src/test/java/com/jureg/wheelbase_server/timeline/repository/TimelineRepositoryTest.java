@@ -0,0 +1,291 @@
+package com.jureg.wheelbase_server.timeline.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.timeline.dto.TimelinePostRefDto;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@Testcontainers
+class TimelineRepositoryTest {
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private TimelineRepository timelineRepository;
+	@Autowired
+	private EntityManager entityManager;
+
+	private final Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+	private User john;
+	private User alice;
+	private User mark;
+	private User patrick;
+
+	@BeforeEach
+	void setup() {
+		john = createUser("John");
+		alice = createUser("Alice");
+		mark = createUser("Mark");
+		patrick = createUser("Patrick");
+		// John follows Alice and Mark, not Patrick
+		entityManager.persist(new Follow(john, alice, now));
+		entityManager.persist(new Follow(john, mark, now));
+		entityManager.flush();
+	}
+
+	// -------------------------------------------------------------
+	// Read
+	// -------------------------------------------------------------
+	@Test
+	void givenPushedPosts_whenFindPostRefs_thenNewestFirst() {
+		Post alice1 = createPushedPost(alice, 5);
+		Post mark1 = createPushedPost(mark, 4);
+		Post alice2 = createPushedPost(alice, 3);
+		Post mark2 = createPushedPost(mark, 2);
+		createPost(john, 1);
+
+		// Neither the user's own posts, nor the posts not pushed to it
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(mark2.getId(), alice2.getId(), mark1.getId(), alice1.getId());
+		assertThat(timelineRepository.findPostRefs(john.getId(), 2)).extracting(TimelinePostRefDto::getId).containsExactly(mark2.getId(), alice2.getId());
+		// With their position, for the cursor of the next page
+		assertThat(timelineRepository.findPostRefs(john.getId(), 2)).extracting(TimelinePostRefDto::getCreatedAt)
+				.containsExactly(mark2.getCreatedAt(), alice2.getCreatedAt());
+	}
+
+	@Test
+	void givenCursor_whenFindPostRefsAfter_thenNextPage() {
+		Post alice1 = createPushedPost(alice, 4);
+		Post alice2 = createPushedPost(alice, 3);
+		Post mark1 = createPushedPost(mark, 2);
+		// Same time as Mark's post: the tie is broken by the post ID (in the byte order of the database)
+		Post alice3 = createPushedPost(alice, 2);
+		Post[] tied = alice3.getId().toString().compareTo(mark1.getId().toString()) > 0 ? new Post[] { alice3, mark1 } : new Post[] { mark1, alice3 };
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 1)).extracting(TimelinePostRefDto::getId).containsExactly(tied[0].getId());
+		assertThat(timelineRepository.findPostRefsAfter(john.getId(), tied[0].getCreatedAt(), tied[0].getId(), 2)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(tied[1].getId(), alice2.getId());
+		assertThat(timelineRepository.findPostRefsAfter(john.getId(), alice2.getCreatedAt(), alice2.getId(), 2)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(alice1.getId());
+	}
+
+	@Test
+	void givenStaleEntries_whenFindPostRefs_thenSkipped() {
+		Post alicePost = createPushedPost(alice, 3);
+		createPushedPost(mark, 2);
+		// Pushed while John still followed Patrick
+		Post patrickPost = createPost(patrick, 1);
+		push(john, patrickPost);
+		// Mark is deleted, the rows are not purged yet
+		mark.setDeletedAt(now);
+		mark.setDeletionStage(DeletionStage.FOLLOWING);
+		entityManager.flush();
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId).containsExactly(alicePost.getId());
+	}
+
+	@Test
+	void givenFollowedCelebrity_whenFindPostRefs_thenItsPostsMergedOnce() {
+		Post alicePost = createPushedPost(alice, 4);
+		// Pushed before Mark became a celebrity, then one more post only read from the posts
+		Post markOld = createPushedPost(mark, 3);
+		timelineRepository.addCelebrity(mark.getId());
+		Post markNew = createPost(mark, 1);
+		// Patrick is a celebrity John does not follow
+		timelineRepository.addCelebrity(patrick.getId());
+		createPost(patrick, 1);
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(markNew.getId(), markOld.getId(), alicePost.getId());
+		assertThat(timelineRepository.findPostRefsAfter(john.getId(), markNew.getCreatedAt(), markNew.getId(), 10)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(markOld.getId(), alicePost.getId());
+	}
+
+	@Test
+	void givenSeveralCommunities_whenFindPostRefsInCommunity_thenOnlyItsPosts() {
+		Post car1 = createPushedPost(alice, 5);
+		Post bike1 = createPushedPost(alice, 4, CommunityType.MOTORBIKE);
+		Post car2 = createPushedPost(mark, 3);
+		// Mark turned celebrity: the next posts of Mark are read from the posts table
+		timelineRepository.addCelebrity(mark.getId());
+		Post bike2 = createPost(mark, 2, CommunityType.MOTORBIKE);
+		Post car3 = createPost(mark, 1);
+
+		assertThat(timelineRepository.findPostRefsInCommunity(john.getId(), "MOTORBIKE", 10)).extracting(TimelinePostRefDto::getId).containsExactly(bike2.getId(), bike1.getId());
+		assertThat(timelineRepository.findPostRefsInCommunity(john.getId(), "CAR", 2)).extracting(TimelinePostRefDto::getId).containsExactly(car3.getId(), car2.getId());
+		assertThat(timelineRepository.findPostRefsInCommunityAfter(john.getId(), "CAR", car2.getCreatedAt(), car2.getId(), 10)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(car1.getId());
+	}
+
+	@Test
+	void givenNoFollow_whenFindPostRefs_thenEmpty() {
+		createPushedPost(alice, 1);
+
+		assertThat(timelineRepository.findPostRefs(patrick.getId(), 10)).extracting(TimelinePostRefDto::getId).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Fan-out
+	// -------------------------------------------------------------
+	@Test
+	void givenFollowers_whenInsertAll_thenDeletedOnesSkippedAndRerunIgnored() {
+		Post post = createPost(alice, 1);
+		patrick.setDeletedAt(now);
+		patrick.setDeletionStage(DeletionStage.FOLLOWING);
+		entityManager.flush();
+
+		assertThat(timelineRepository.insertAll(List.of(john.getId(), mark.getId(), patrick.getId()), post.getId(), alice.getId(), "CAR", post.getCreatedAt()))
+				.isEqualTo(2);
+		// Run again (after a crash): the entries are already there
+		assertThat(timelineRepository.insertAll(List.of(john.getId(), mark.getId()), post.getId(), alice.getId(), "CAR", post.getCreatedAt()))
+				.isZero();
+	}
+
+	// -------------------------------------------------------------
+	// Rebuild
+	// -------------------------------------------------------------
+	@Test
+	void givenFollowedAuthors_whenRebuild_thenNewestPostsExceptCelebrities() {
+		Post alice1 = createPost(alice, 4);
+		Post alice2 = createPost(alice, 3);
+		Post alice3 = createPost(alice, 2);
+		timelineRepository.addCelebrity(mark.getId());
+		Post markPost = createPost(mark, 1);
+		createPost(patrick, 1);
+
+		assertThat(timelineRepository.deleteAllByUserId(john.getId())).isZero();
+		// Two entries at most: the oldest post is left out
+		assertThat(timelineRepository.rebuild(john.getId(), 2)).isEqualTo(2);
+		// Mark's posts are still merged at read
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(markPost.getId(), alice3.getId(), alice2.getId())
+				.doesNotContain(alice1.getId());
+	}
+
+	@Test
+	void givenEntriesAlreadyThere_whenRebuild_thenKeptAndOthersAdded() {
+		Post alice1 = createPost(alice, 3);
+		Post alice2 = createPost(alice, 2);
+		Post markPost = createPost(mark, 1);
+
+		assertThat(timelineRepository.deleteAllByUserId(john.getId())).isZero();
+		// A fan-out committed in between the delete and the insert
+		push(john, markPost);
+		assertThat(timelineRepository.rebuild(john.getId(), 10)).isEqualTo(2);
+		// A second rebuild (double submit) finding the entries of the first one
+		assertThat(timelineRepository.rebuild(john.getId(), 10)).isZero();
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId)
+				.containsExactly(markPost.getId(), alice2.getId(), alice1.getId());
+	}
+
+	// -------------------------------------------------------------
+	// Trim
+	// -------------------------------------------------------------
+	@Test
+	void givenTimelinesOverCapacity_whenTrim_thenNewestKept() {
+		Post alice1 = createPushedPost(alice, 4);
+		Post alice2 = createPushedPost(alice, 3);
+		Post mark1 = createPushedPost(mark, 2);
+		Post mark2 = createPushedPost(mark, 1);
+		// Mark's timeline is under capacity
+		push(mark, alice1);
+
+		assertThat(timelineRepository.findUserIdsAfter(new UUID(0, 0), 10))
+				.containsExactlyInAnyOrder(john.getId(), mark.getId());
+		assertThat(timelineRepository.trim(List.of(john.getId(), mark.getId()), 2)).isEqualTo(2);
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId).containsExactly(mark2.getId(), mark1.getId())
+				.doesNotContain(alice2.getId());
+		assertThat(timelineRepository.count()).isEqualTo(3);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// A post written the given number of minutes ago, pushed to John's timeline
+	private Post createPushedPost(User author, int minutesAgo) {
+		return createPushedPost(author, minutesAgo, CommunityType.CAR);
+	}
+
+	private Post createPushedPost(User author, int minutesAgo, CommunityType community) {
+		Post post = createPost(author, minutesAgo, community);
+		push(john, post);
+		return post;
+	}
+
+	private void push(User user, Post post) {
+		timelineRepository.insertAll(List.of(user.getId()), post.getId(), post.getAuthor().getId(), post.getCommunity().name(), post.getCreatedAt());
+	}
+
+	private Post createPost(User author, int minutesAgo) {
+		return createPost(author, minutesAgo, CommunityType.CAR);
+	}
+
+	private Post createPost(User author, int minutesAgo, CommunityType community) {
+		Vehicle vehicle = Vehicle.builder().owner(author).community(community).model("Clio").build();
+		entityManager.persist(vehicle);
+		Post post = Post.builder()
+				.author(author)
+				.vehicle(vehicle)
+				.community(community)
+				.content("My car")
+				.createdAt(now.minus(minutesAgo, ChronoUnit.MINUTES))
+				.build();
+		entityManager.persist(post);
+		entityManager.flush();
+		return post;
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		entityManager.persist(user);
+		return user;
+	}
+
+}
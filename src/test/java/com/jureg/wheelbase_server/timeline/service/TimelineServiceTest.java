@@ -0,0 +1,249 @@
+package com.jureg.wheelbase_server.timeline.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.follow.repository.FollowCounterRepository;
+import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post.repository.PostRepository;
+import com.jureg.wheelbase_server.shared.api.exception.TimelineRebuildThrottledException;
+import com.jureg.wheelbase_server.timeline.dto.TimelinePostRefDto;
+import com.jureg.wheelbase_server.timeline.repository.TimelineRepository;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@Testcontainers
+class TimelineServiceTest {
+
+	// Pages of 2 followers, so that pushing to Alice's 3 followers takes two
+	private static final int BATCH_SIZE = 2;
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private TimelineRepository timelineRepository;
+	@Autowired
+	private PostRepository postRepository;
+	@Autowired
+	private FollowRepository followRepository;
+	@Autowired
+	private FollowCounterRepository followCounterRepository;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private EntityManager entityManager;
+
+	private final Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+	private User john;
+	private User alice;
+	private User mark;
+	private User patrick;
+
+	@BeforeEach
+	void setup() {
+		john = createUser("John");
+		alice = createUser("Alice");
+		mark = createUser("Mark");
+		patrick = createUser("Patrick");
+		// Alice has 3 followers, Mark has 1
+		follow(john, alice);
+		follow(mark, alice);
+		follow(patrick, alice);
+		follow(john, mark);
+		entityManager.flush();
+	}
+
+	// -------------------------------------------------------------
+	// Fan-out
+	// -------------------------------------------------------------
+	@Test
+	void givenPendingPosts_whenFanOutNextPost_thenOldestPushedToEveryFollower() {
+		Post older = createPost(alice, 2);
+		Post newer = createPost(mark, 1);
+		TimelineService timelineService = createTimelineService(10);
+
+		assertThat(timelineService.fanOutNextPost()).isTrue();
+
+		// Alice's post, in two pages of followers
+		assertThat(timelineEntries(older)).containsExactlyInAnyOrder(john.getId(), mark.getId(), patrick.getId());
+		assertThat(timelineEntries(newer)).isEmpty();
+		assertThat(isFanoutPending(older)).isFalse();
+		assertThat(isFanoutPending(newer)).isTrue();
+	}
+
+	@Test
+	void givenPendingPosts_whenFanOutPendingPosts_thenAllPushed() {
+		Post alicePost = createPost(alice, 2);
+		Post markPost = createPost(mark, 1);
+		TimelineService timelineService = createTimelineService(10);
+
+		timelineService.fanOutPendingPosts();
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId).containsExactly(markPost.getId(), alicePost.getId());
+		assertThat(timelineService.fanOutNextPost()).isFalse();
+	}
+
+	@Test
+	void givenAuthorOverThreshold_whenFanOutNextPost_thenNotPushedButMergedAtRead() {
+		Post alicePost = createPost(alice, 1);
+		TimelineService timelineService = createTimelineService(3);
+
+		assertThat(timelineService.fanOutNextPost()).isTrue();
+
+		assertThat(timelineEntries(alicePost)).isEmpty();
+		assertThat(isFanoutPending(alicePost)).isFalse();
+		assertThat(timelineRepository.isCelebrity(alice.getId())).isTrue();
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId).containsExactly(alicePost.getId());
+		// Mark stays under the threshold
+		assertThat(timelineRepository.isCelebrity(mark.getId())).isFalse();
+	}
+
+	// -------------------------------------------------------------
+	// Rebuild / trim
+	// -------------------------------------------------------------
+	@Test
+	void givenLostTimeline_whenRebuildTimeline_thenSamePosts() {
+		createPost(alice, 3);
+		createPost(mark, 2);
+		createPost(patrick, 1);
+		TimelineService timelineService = createTimelineService(10);
+		timelineService.fanOutPendingPosts();
+		List<UUID> pushed = timelineRepository.findPostRefs(john.getId(), 10).stream()
+				.map(TimelinePostRefDto::getId)
+				.toList();
+		timelineRepository.deleteAllByUserId(john.getId());
+
+		assertThat(timelineService.rebuildTimeline(john.getId())).isEqualTo(2);
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId).containsExactlyElementsOf(pushed);
+	}
+
+	@Test
+	void givenRecentRebuild_whenRebuildTimeline_thenThrottled() {
+		createPost(alice, 1);
+		TimelineService timelineService = createTimelineService(10);
+		timelineService.rebuildTimeline(john.getId());
+
+		assertThatThrownBy(() -> timelineService.rebuildTimeline(john.getId()))
+				.isInstanceOf(TimelineRebuildThrottledException.class);
+		// The cooldown is per user
+		assertThat(timelineService.rebuildTimeline(mark.getId())).isEqualTo(1);
+	}
+
+	@Test
+	void givenTimelinesOverCapacity_whenTrimTimelines_thenCutBack() {
+		createPost(alice, 3);
+		Post newest = createPost(mark, 2);
+		TimelineService timelineService = new TimelineService(timelineRepository, postRepository, followRepository,
+				createFollowCounterService(), transactionManager, 1, BATCH_SIZE, 10, Duration.ofMinutes(10), new SimpleMeterRegistry());
+		timelineService.fanOutPendingPosts();
+
+		timelineService.trimTimelines();
+
+		assertThat(timelineRepository.findPostRefs(john.getId(), 10)).extracting(TimelinePostRefDto::getId).containsExactly(newest.getId());
+		// One entry each for John, Mark and Patrick
+		assertThat(timelineRepository.count()).isEqualTo(3);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private TimelineService createTimelineService(long celebrityThreshold) {
+		return new TimelineService(timelineRepository, postRepository, followRepository,
+				createFollowCounterService(), transactionManager, 800, BATCH_SIZE, celebrityThreshold, Duration.ofMinutes(10),
+				new SimpleMeterRegistry());
+	}
+
+	private FollowCounterService createFollowCounterService() {
+		return new FollowCounterService(followCounterRepository, transactionManager, 4, 1000, new SimpleMeterRegistry());
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<UUID> timelineEntries(Post post) {
+		return entityManager.createNativeQuery("SELECT user_id FROM timeline_entries WHERE post_id = :id", UUID.class)
+				.setParameter("id", post.getId())
+				.getResultList();
+	}
+
+	private boolean isFanoutPending(Post post) {
+		return (Boolean) entityManager.createNativeQuery("SELECT fanout_pending FROM posts WHERE id = :id")
+				.setParameter("id", post.getId())
+				.getSingleResult();
+	}
+
+	private void follow(User follower, User followed) {
+		entityManager.persist(new Follow(follower, followed, now));
+		followCounterRepository.addFollow(follower.getId(), 0, followed.getId(), 0, 1);
+	}
+
+	// A post just created (waiting for its fan-out), written the given number of minutes ago
+	private Post createPost(User author, int minutesAgo) {
+		Vehicle vehicle = Vehicle.builder().owner(author).community(CommunityType.CAR).model("Clio").build();
+		entityManager.persist(vehicle);
+		Post post = Post.builder()
+				.author(author)
+				.vehicle(vehicle)
+				.community(CommunityType.CAR)
+				.content("My car")
+				.createdAt(now.minus(minutesAgo, ChronoUnit.MINUTES))
+				.fanoutPending(true)
+				.build();
+		entityManager.persist(post);
+		entityManager.flush();
+		return post;
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		entityManager.persist(user);
+		return user;
+	}
+
+}
@@ -6,6 +6,8 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.assertj.core.api.InstanceOfAssertFactories;
 import org.junit.jupiter.api.BeforeEach;
@@ -20,19 +22,28 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.assertj.MockMvcTester;
+import org.springframework.test.web.servlet.assertj.MvcTestResult;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import com.jayway.jsonpath.JsonPath;
 import com.jureg.wheelbase_server.community_type.model.CommunityType;
 import com.jureg.wheelbase_server.follow.model.Follow;
 import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
 import com.jureg.wheelbase_server.user.model.AccountType;
 import com.jureg.wheelbase_server.user.model.User;
 import com.jureg.wheelbase_server.user.repository.UserRepository;
 
 
-@SpringBootTest(properties = {"jwt.secret=mysupersecretkeymysupersecretkey123456"})
+@SpringBootTest(properties = {
+		"jwt.secret=mysupersecretkeymysupersecretkey123456",
+		// The users are seeded through the repository, out of the reach of the index and cache events: search the database
+		"user.search.index.enabled=false",
+		"user.search.cache.ttl=0s"
+})
 @Testcontainers
 @AutoConfigureMockMvc(addFilters = true)
 class UserControllerTest {
@@ -199,6 +210,21 @@ class UserControllerTest {
 		        .hasPathSatisfying("$.error", value -> assertThat(value).isIn("Email already exists"));
 	}
 	
+	@Test
+	void givenAlreadyExistingUsernameInOtherCase_whenRegistering_thenReturnError() {
+		String dto = String.format("""
+			{ "username": "ALICE", "email": "another-alice@test.com", "bio": "A bio", "password": "password", "accountType": "%s", "communities": [ "%s" ] }
+		""", AccountType.FOLLOWERS_ONLY, CommunityType.CAR);
+
+		// The unique index on the normalized username rejects the insert
+		assertThat(mockMvcTester.post().uri("/api/users/register")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(dto))
+		        .hasStatus(HttpStatus.CONFLICT)
+		        .bodyJson()
+		        .hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("Username already exists"));
+	}
+	
 	@Test
 	void givenInvalidEmail_whenRegistering_thenReturnError() {
 		String dto = String.format("""
@@ -290,6 +316,7 @@ class UserControllerTest {
 		        .hasStatus(HttpStatus.OK)
 		        .bodyJson()
 		        .hasPath("$.jwt")
+		        .hasPath("$.refreshToken")
 				.hasPath("$.user");
 	}
 	@Test
@@ -338,6 +365,67 @@ class UserControllerTest {
 		        .hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("User not found"));
 	}
 	
+	// -------------------------------------------------------------
+	// Refresh / logout
+	// -------------------------------------------------------------
+	@Test
+	void givenRefreshToken_whenRefresh_thenReturnNewTokens() throws Exception {
+		String refreshToken = JsonPath.read(login("Alice", "password"), "$.refreshToken");
+
+		// Simulate a HTTP call to refresh the access token
+		assertThat(mockMvcTester.post().uri("/api/users/refresh")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"refreshToken\": \"" + refreshToken + "\" }"))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPath("$.jwt")
+		        .hasPathSatisfying("$.refreshToken", value -> assertThat(value).isNotEqualTo(refreshToken));
+	}
+	
+	@Test
+	void givenRotatedRefreshToken_whenRefresh_thenReturnError() throws Exception {
+		String refreshToken = JsonPath.read(login("Alice", "password"), "$.refreshToken");
+		String body = "{ \"refreshToken\": \"" + refreshToken + "\" }";
+		assertThat(mockMvcTester.post().uri("/api/users/refresh")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(body))
+		        .hasStatus(HttpStatus.OK);
+
+		// The same refresh token cannot be used twice
+		assertThat(mockMvcTester.post().uri("/api/users/refresh")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(body))
+		        .hasStatus(HttpStatus.UNAUTHORIZED)
+		        .bodyJson()
+		        .hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("Invalid refresh token"));
+	}
+	
+	@Test
+	void givenLoggedOutUser_whenUsingTokens_thenReturnUnauthorized() throws Exception {
+		String response = login("Alice", "password");
+		String jwt = JsonPath.read(response, "$.jwt");
+		String refreshToken = JsonPath.read(response, "$.refreshToken");
+		String body = "{ \"refreshToken\": \"" + refreshToken + "\" }";
+
+		// Simulate a HTTP call to log out
+		assertThat(mockMvcTester.post().uri("/api/users/logout")
+				.header("Authorization", "Bearer " + jwt)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(body))
+		        .hasStatus(HttpStatus.NO_CONTENT);
+
+		// Both tokens are rejected from now on
+		assertThat(mockMvcTester.put().uri("/api/users/{id}", user1.getId())
+				.header("Authorization", "Bearer " + jwt)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"bio\": \"A new bio\" }"))
+		        .hasStatus(HttpStatus.UNAUTHORIZED);
+		assertThat(mockMvcTester.post().uri("/api/users/refresh")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(body))
+		        .hasStatus(HttpStatus.UNAUTHORIZED);
+	}
+	
 	// -------------------------------------------------------------
 	// Fetch user profile
 	// -------------------------------------------------------------
@@ -459,6 +547,36 @@ class UserControllerTest {
 				.hasPathSatisfying("$.length()", value -> assertThat(value).isEqualTo(2));
 	}
 	
+	@Test
+	void givenLimit_whenSearchingUsers_thenReturnPagesWithCursor() {
+		// First page, the cursor of the next one is in a header
+		MvcTestResult firstPage = mockMvcTester.get().uri("/api/users?username={username}&limit={limit}", "Pat", 1).exchange();
+		assertThat(firstPage)
+				.hasStatus(HttpStatus.OK)
+				.bodyJson()
+				.hasPathSatisfying("$.length()", value -> assertThat(value).isEqualTo(1))
+				.hasPathSatisfying("$[0].username", value -> assertThat(value).isEqualTo("Patricia"));
+		String cursor = firstPage.getResponse().getHeader(CursorPage.NEXT_CURSOR_HEADER);
+		assertThat(cursor).isNotNull();
+		
+		// Last page, no cursor
+		assertThat(mockMvcTester.get().uri("/api/users?username={username}&limit={limit}&cursor={cursor}", "Pat", 1, cursor))
+				.hasStatus(HttpStatus.OK)
+				.doesNotContainHeader(CursorPage.NEXT_CURSOR_HEADER)
+				.bodyJson()
+				.hasPathSatisfying("$.length()", value -> assertThat(value).isEqualTo(1))
+				.hasPathSatisfying("$[0].username", value -> assertThat(value).isEqualTo("Patrick"));
+	}
+	
+	@Test
+	void givenInvalidCursor_whenSearchingUsers_thenReturnError() {
+		// Simulate a HTTP call to search user(s)
+		assertThat(mockMvcTester.get().uri("/api/users?username={username}&cursor={cursor}", "Pat", "not-a-cursor"))
+				.hasStatus(HttpStatus.BAD_REQUEST)
+				.bodyJson()
+				.hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("Invalid cursor"));
+	}
+	
 	@Test
 	void givenEmptyUsername_whenSearchingUsers_thenReturnEmptyList() {
 		// Simulate a HTTP call to search user(s)
@@ -707,7 +825,44 @@ class UserControllerTest {
 				.content(dto))
 		        .hasStatus(HttpStatus.NO_CONTENT);
 	}
-	
+
+	@Test
+	void givenFollowThenUnfollow_whenFetchingProfiles_thenCountsFollowTheEdge() {
+		String dto = String.format("""
+			{ "followedId": "%s" }
+		""", user5.getId());
+
+		// User1 follows User5
+		assertThat(mockMvcTester.post().uri("/api/users/follow")
+				.with(authentication(new UsernamePasswordAuthenticationToken(user1.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(dto))
+		        .hasStatus(HttpStatus.NO_CONTENT);
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", user5.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(user1.getId(), null, List.of()))))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPathSatisfying("$.followersCount", value -> assertThat(value).isEqualTo(1))
+		        .hasPathSatisfying("$.followingCount", value -> assertThat(value).isEqualTo(0));
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", user1.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(user1.getId(), null, List.of()))))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPathSatisfying("$.followingCount", value -> assertThat(value).isEqualTo(1));
+
+		// User1 unfollows User5
+		assertThat(mockMvcTester.post().uri("/api/users/unfollow")
+				.with(authentication(new UsernamePasswordAuthenticationToken(user1.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(dto))
+		        .hasStatus(HttpStatus.NO_CONTENT);
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", user1.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(user1.getId(), null, List.of()))))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPathSatisfying("$.followingCount", value -> assertThat(value).isEqualTo(0));
+	}
+
 	@Test
 	void givenMyOwnUserId_whenFollow_thenReturnError() {
 		String dto = String.format("""
@@ -853,6 +1008,97 @@ class UserControllerTest {
 		        .hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("Follower user not found"));
 	}
 	
+	// -------------------------------------------------------------
+	// Follow / Un-follow (batch)
+	// -------------------------------------------------------------
+	@Test
+	void givenMixedUserIds_whenFollowBatch_thenReturnOutcomePerUser() {
+		UUID unknownId = UUID.randomUUID();
+		String dto = String.format("""
+			{ "followedIds": ["%s", "%s", "%s", "%s"] }
+		""", user1.getId(), user2.getId(), user4.getId(), unknownId);
+		
+		// Simulate a HTTP call to follow several users
+		assertThat(mockMvcTester.post().uri("/api/users/follow/batch")
+				.with(authentication(new UsernamePasswordAuthenticationToken(user4.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(dto))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPathSatisfying("$[*].followedId", value -> assertThat(value).asInstanceOf(InstanceOfAssertFactories.list(String.class))
+		        		.containsExactly(user1.getId().toString(), user2.getId().toString(), user4.getId().toString(), unknownId.toString()))
+		        .hasPathSatisfying("$[*].outcome", value -> assertThat(value).asInstanceOf(InstanceOfAssertFactories.list(String.class))
+		        		.containsExactly("FOLLOWED", "ALREADY_FOLLOWING", "CANNOT_FOLLOW_YOURSELF", "USER_NOT_FOUND"));
+		
+		// The new follow is stored and counted
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(user4.getId(), user1.getId())).isTrue();
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", user1.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(user1.getId(), null, List.of()))))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPathSatisfying("$.followersCount", value -> assertThat(value).isEqualTo(1));
+	}
+	
+	@Test
+	void givenMixedUserIds_whenUnfollowBatch_thenReturnOutcomePerUser() {
+		UUID unknownId = UUID.randomUUID();
+		String dto = String.format("""
+			{ "followedIds": ["%s", "%s", "%s"] }
+		""", user2.getId(), user1.getId(), unknownId);
+		
+		// Simulate a HTTP call to un-follow several users
+		assertThat(mockMvcTester.post().uri("/api/users/unfollow/batch")
+				.with(authentication(new UsernamePasswordAuthenticationToken(user4.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(dto))
+		        .hasStatus(HttpStatus.OK)
+		        .bodyJson()
+		        .hasPathSatisfying("$[*].outcome", value -> assertThat(value).asInstanceOf(InstanceOfAssertFactories.list(String.class))
+		        		.containsExactly("UNFOLLOWED", "NOT_FOLLOWING", "USER_NOT_FOUND"));
+		
+		// Only the batch target is un-followed
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(user4.getId(), user2.getId())).isFalse();
+		assertThat(followRepository.existsByFollowerIdAndFollowedId(user4.getId(), user3.getId())).isTrue();
+	}
+	
+	@Test
+	void givenEmptyUserIds_whenFollowBatch_thenReturnError() {
+		// Simulate a HTTP call to follow nobody
+		assertThat(mockMvcTester.post().uri("/api/users/follow/batch")
+				.with(authentication(new UsernamePasswordAuthenticationToken(user4.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"followedIds\": [] }"))
+		        .hasStatus(HttpStatus.BAD_REQUEST);
+	}
+	
+	@Test
+	void givenTooManyUserIds_whenFollowBatch_thenReturnError() {
+		String ids = Stream.generate(() -> "\"" + UUID.randomUUID() + "\"").limit(101).collect(Collectors.joining(", "));
+		
+		// Simulate a HTTP call to follow more users than a batch accepts
+		assertThat(mockMvcTester.post().uri("/api/users/follow/batch")
+				.with(authentication(new UsernamePasswordAuthenticationToken(user4.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"followedIds\": [" + ids + "] }"))
+		        .hasStatus(HttpStatus.BAD_REQUEST);
+	}
+	
+	@Test
+	void givenUnknownFollowerId_whenFollowBatch_thenReturnError() {
+		String dto = String.format("""
+			{ "followedIds": ["%s"] }
+		""", user2.getId());
+		
+		// Simulate a HTTP call to follow several users, from a user that does not exist
+		assertThat(mockMvcTester.post().uri("/api/users/follow/batch")
+				.with(authentication(new UsernamePasswordAuthenticationToken(UUID.randomUUID(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(dto))
+		        .hasStatus(HttpStatus.NOT_FOUND)
+		        .bodyJson()
+		        .hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("Follower user not found"));
+	}
+	
 	// -------------------------------------------------------------
 	// Get followers / following user(s)
 	// -------------------------------------------------------------
@@ -868,6 +1114,38 @@ class UserControllerTest {
 					.containsExactlyInAnyOrder(user3.getId().toString(), user4.getId().toString(), user5.getId().toString()));
 	}
 	
+	@Test
+	void givenLimit_whenGetFollowers_thenReturnPagesWithCursor() throws Exception {
+		// First page, the cursor of the next one is in a header
+		MvcTestResult firstPage = mockMvcTester.get().uri("/api/users/{id}/followers?limit={limit}", user2.getId(), 2).exchange();
+		assertThat(firstPage)
+				.hasStatus(HttpStatus.OK)
+				.bodyJson()
+				.hasPathSatisfying("$.length()", value -> assertThat(value).isEqualTo(2));
+		String cursor = firstPage.getResponse().getHeader(CursorPage.NEXT_CURSOR_HEADER);
+		assertThat(cursor).isNotNull();
+		
+		// Last page, no cursor, and no follower seen twice
+		List<String> firstIds = JsonPath.read(firstPage.getResponse().getContentAsString(), "$[*].id");
+		MvcTestResult lastPage = mockMvcTester.get().uri("/api/users/{id}/followers?limit={limit}&cursor={cursor}", user2.getId(), 2, cursor).exchange();
+		assertThat(lastPage)
+				.hasStatus(HttpStatus.OK)
+				.doesNotContainHeader(CursorPage.NEXT_CURSOR_HEADER)
+				.bodyJson()
+				.hasPathSatisfying("$.length()", value -> assertThat(value).isEqualTo(1));
+		List<String> lastIds = JsonPath.read(lastPage.getResponse().getContentAsString(), "$[*].id");
+		assertThat(Stream.concat(firstIds.stream(), lastIds.stream()))
+				.containsExactlyInAnyOrder(user3.getId().toString(), user4.getId().toString(), user5.getId().toString());
+	}
+	
+	@Test
+	void givenInvalidCursor_whenGetFollowers_thenReturnError() {
+		assertThat(mockMvcTester.get().uri("/api/users/{id}/followers?cursor={cursor}", user2.getId(), CursorCodec.encode("yesterday", "someone")))
+				.hasStatus(HttpStatus.BAD_REQUEST)
+				.bodyJson()
+				.hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("Invalid cursor"));
+	}
+	
 	@Test
 	void givenNotFollowedId_whenGetFollowers_thenReturnEmptyList() {
 		// Simulate a HTTP call to fetch a user's list of followers
@@ -916,4 +1194,16 @@ class UserControllerTest {
 		        .hasPathSatisfying("$.error", value -> assertThat(value).isEqualTo("User not found"));
 	}
 	
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private String login(String usernameOrEmail, String password) throws Exception {
+		return mockMvcTester.post().uri("/api/users/login")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{ \"usernameOrEmail\": \"" + usernameOrEmail + "\", \"password\": \"" + password + "\" }")
+				.exchange()
+				.getResponse()
+				.getContentAsString();
+	}
+	
 }
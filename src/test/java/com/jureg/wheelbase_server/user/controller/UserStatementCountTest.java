@@ -0,0 +1,209 @@
+package com.jureg.wheelbase_server.user.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.assertj.MockMvcTester;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Counts the SQL statements run by each endpoint, with the production settings (no open session in view)
+@SpringBootTest(properties = {
+		"jwt.secret=mysupersecretkeymysupersecretkey123456",
+		"spring.jpa.open-in-view=false",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		// Keep the revocation synchronization job and the username index build out of the counts
+		"jwt.revocation.sync-interval=1h",
+		"user.search.index.enabled=false"
+})
+@Testcontainers
+@AutoConfigureMockMvc(addFilters = true)
+class UserStatementCountTest {
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@Autowired
+	private MockMvcTester mockMvcTester;
+
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private FollowRepository followRepository;
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private User privateUser;
+	private User publicUser;
+	private User follower;
+
+	@BeforeEach
+	void setup() {
+		// Clean DB
+		followRepository.deleteAll();
+		userRepository.deleteAll();
+		// Create users
+		privateUser = saveUser("Alice", AccountType.FOLLOWERS_ONLY);
+		publicUser = saveUser("Mark", AccountType.PUBLIC);
+		follower = saveUser("Patrick", AccountType.FOLLOWERS_ONLY);
+		// Follower is following the private user
+		followRepository.save(new Follow(follower, privateUser, Instant.now()));
+	}
+
+	// -------------------------------------------------------------
+	// Fetch user profile
+	// -------------------------------------------------------------
+	@Test
+	void givenPublicUserId_whenFetchingProfile_thenTwoStatements() {
+		Statistics statistics = resetStatistics();
+
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", publicUser.getId()))
+				.hasStatus(HttpStatus.OK);
+
+		// Before the request loader: 2 (user loaded by UserSecurity, then again by UserService)
+		// Then the follow counts, summed over their slots
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	void givenOwnerUserId_whenFetchingProfile_thenTwoStatements() {
+		Statistics statistics = resetStatistics();
+
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", privateUser.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(privateUser.getId(), null, List.of()))))
+				.hasStatus(HttpStatus.OK);
+
+		// UserSecurity decides from the token only, the users table is read once by UserService, then the follow counts
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	void givenPrivateUserIdButFollowing_whenFetchingProfile_thenThreeStatements() {
+		Statistics statistics = resetStatistics();
+
+		assertThat(mockMvcTester.get().uri("/api/users/{id}", privateUser.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(follower.getId(), null, List.of()))))
+				.hasStatus(HttpStatus.OK);
+
+		// Before the request loader: 3 (user, follow check, user again), plus the follow counts
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
+	// -------------------------------------------------------------
+	// Update user
+	// -------------------------------------------------------------
+	@Test
+	void givenOwnerUserId_whenUpdatingBio_thenThreeStatements() {
+		Statistics statistics = resetStatistics();
+
+		assertThat(mockMvcTester.put().uri("/api/users/{id}", privateUser.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(privateUser.getId(), null, List.of())))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+					{ "bio": "A new bio" }
+				"""))
+				.hasStatus(HttpStatus.OK);
+
+		// Before the request loader: 3 (user loaded by UserSecurity, then again by UserService, update), plus the follow counts
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
+	// -------------------------------------------------------------
+	// Followers / following
+	// -------------------------------------------------------------
+	@Test
+	void givenAnyNumberOfFollowers_whenFetchingFollowers_thenTwoStatements() {
+		// One follower for the private user, thirty for the public one
+		for (int i = 0; i < 30; i++) {
+			followRepository.save(new Follow(saveUser("Fan" + i, AccountType.PUBLIC), publicUser, Instant.now()));
+		}
+
+		Statistics statistics = resetStatistics();
+		assertThat(mockMvcTester.get().uri("/api/users/{id}/followers", privateUser.getId())
+				.with(authentication(new UsernamePasswordAuthenticationToken(privateUser.getId(), null, List.of()))))
+				.hasStatus(HttpStatus.OK);
+		long oneFollowerCount = statistics.getPrepareStatementCount();
+
+		statistics = resetStatistics();
+		assertThat(mockMvcTester.get().uri("/api/users/{id}/followers?limit={limit}", publicUser.getId(), 30))
+				.hasStatus(HttpStatus.OK);
+
+		// Before the projection: 1 + 2N (the follows, then the EAGER follower and its communities for each row)
+		// Now: the user (not found check), then the page in a single join
+		assertThat(oneFollowerCount).isEqualTo(2);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(oneFollowerCount);
+	}
+
+	@Test
+	void givenAnyNumberOfFollowing_whenFetchingFollowing_thenTwoStatements() {
+		for (int i = 0; i < 30; i++) {
+			followRepository.save(new Follow(publicUser, saveUser("Idol" + i, AccountType.PUBLIC), Instant.now()));
+		}
+
+		Statistics statistics = resetStatistics();
+		assertThat(mockMvcTester.get().uri("/api/users/{id}/following", follower.getId()))
+				.hasStatus(HttpStatus.OK);
+		long oneFollowingCount = statistics.getPrepareStatementCount();
+
+		statistics = resetStatistics();
+		assertThat(mockMvcTester.get().uri("/api/users/{id}/following?limit={limit}", publicUser.getId(), 30))
+				.hasStatus(HttpStatus.OK);
+
+		assertThat(oneFollowingCount).isEqualTo(2);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(oneFollowingCount);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private User saveUser(String username, AccountType accountType) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("hashed-password");
+		user.setAccountType(accountType);
+		return userRepository.save(user);
+	}
+
+	private Statistics resetStatistics() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		return statistics;
+	}
+
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -17,6 +18,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.junit.jupiter.Container;
 
 import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
 import com.jureg.wheelbase_server.user.model.User;
 
 @DataJpaTest
@@ -125,26 +127,40 @@ class UserRepositoryTest {
 	}
 	
 	@Test
-	void givenPartUsername_whenFindByUsernameContaining_thenReturnListUsers() {
+	void givenPartUsername_whenSearchByUsername_thenReturnRankedUsers() {
+		userRepository.saveAndFlush(createUser("Old_John"));
+		userRepository.saveAndFlush(createUser("Johnny"));
+		userRepository.saveAndFlush(createUser("Alice"));
 		userRepository.saveAndFlush(createUser("John"));
-		List<User> foundUser = userRepository.findByUsernameContainingIgnoreCase("john");
-		assertThat(foundUser).hasSize(1);
-		
 		userRepository.saveAndFlush(createUser("Johny"));
-		foundUser = userRepository.findByUsernameContainingIgnoreCase("john");
-		assertThat(foundUser).hasSize(2);
 		
+		List<UserSummaryDto> foundUsers = userRepository.searchByUsername("john", "%john%", "john%", -1, "", Limit.of(10));
+		
+		// Exact match, then prefix matches, then the others, by name within a rank
+		assertThat(foundUsers).extracting(UserSummaryDto::username).containsExactly("John", "Johnny", "Johny", "Old_John");
+	}
+	
+	@Test
+	void givenKeysetPosition_whenSearchByUsername_thenReturnFollowingUsers() {
+		userRepository.saveAndFlush(createUser("Old_John"));
 		userRepository.saveAndFlush(createUser("Johnny"));
-		foundUser = userRepository.findByUsernameContainingIgnoreCase("john");
-		assertThat(foundUser).hasSize(3);
+		userRepository.saveAndFlush(createUser("John"));
+		userRepository.saveAndFlush(createUser("Johny"));
 		
-		userRepository.saveAndFlush(createUser("Alice"));
-		foundUser = userRepository.findByUsernameContainingIgnoreCase("john");
-		assertThat(foundUser).hasSize(3);
+		// Start after "johnny", among the prefix matches (rank 1)
+		List<UserSummaryDto> foundUsers = userRepository.searchByUsername("john", "%john%", "john%", 1, "johnny", Limit.of(2));
 		
+		assertThat(foundUsers).extracting(UserSummaryDto::username).containsExactly("Johny", "Old_John");
+	}
+	
+	@Test
+	void givenEscapedWildcard_whenSearchByUsername_thenMatchedLiterally() {
 		userRepository.saveAndFlush(createUser("Old_John"));
-		foundUser = userRepository.findByUsernameContainingIgnoreCase("john");
-		assertThat(foundUser).hasSize(4);
+		userRepository.saveAndFlush(createUser("OldXJohn"));
+		
+		List<UserSummaryDto> foundUsers = userRepository.searchByUsername("d_j", "%d\\_j%", "d\\_j%", -1, "", Limit.of(10));
+		
+		assertThat(foundUsers).extracting(UserSummaryDto::username).containsExactly("Old_John");
 	}
 	
 	@Test
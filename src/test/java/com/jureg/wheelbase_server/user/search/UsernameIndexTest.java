@@ -0,0 +1,127 @@
+package com.jureg.wheelbase_server.user.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+class UsernameIndexTest {
+
+	private UsernameIndex index;
+	private UserSummaryDto john;
+
+	@BeforeEach
+	void setupIndex() {
+		index = new UsernameIndex();
+		john = summary("John");
+		index.put(summary("Old_John"));
+		index.put(summary("Johnny"));
+		index.put(john);
+		index.put(summary("Alice"));
+		index.put(summary("Big_Johnson"));
+	}
+
+	// -------------------------------------------------------------
+	// Search
+	// -------------------------------------------------------------
+	@Test
+	void givenUsername_whenSearch_thenExactThenPrefixThenContains() {
+		assertThat(index.search("john", -1, "", 10)).extracting(UserSummaryDto::username)
+				.containsExactly("John", "Johnny", "Big_Johnson", "Old_John");
+	}
+
+	@Test
+	void givenShortUsername_whenSearch_thenPrefixOnly() {
+		assertThat(index.search("jo", -1, "", 10)).extracting(UserSummaryDto::username)
+				.containsExactly("John", "Johnny");
+	}
+
+	@Test
+	void givenPosition_whenSearch_thenPageStartsAfterIt() {
+		assertThat(index.search("john", -1, "", 2)).extracting(UserSummaryDto::username).containsExactly("John", "Johnny");
+		assertThat(index.search("john", UsernameRanking.RANK_PREFIX, "johnny", 2)).extracting(UserSummaryDto::username)
+				.containsExactly("Big_Johnson", "Old_John");
+		assertThat(index.search("john", UsernameRanking.RANK_CONTAINS, "big_johnson", 2)).extracting(UserSummaryDto::username)
+				.containsExactly("Old_John");
+	}
+
+	@Test
+	void givenMoreContainsMatchesThanLimit_whenSearch_thenFirstOnesInNameOrder() {
+		index.put(summary("Zed_John"));
+		index.put(summary("A_John"));
+		index.put(summary("Mr_John"));
+
+		assertThat(index.search("john", UsernameRanking.RANK_PREFIX, "johnny", 3)).extracting(UserSummaryDto::username)
+				.containsExactly("A_John", "Big_Johnson", "Mr_John");
+	}
+
+	@Test
+	void givenUnknownTrigram_whenSearch_thenEmpty() {
+		assertThat(index.search("xyz", -1, "", 10)).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Write
+	// -------------------------------------------------------------
+	@Test
+	void givenRenamedUser_whenSearch_thenOnlyNewNameMatches() {
+		index.put(new UserSummaryDto(john.id(), "Jack", null, AccountType.PUBLIC));
+
+		assertThat(index.search("john", -1, "", 10)).extracting(UserSummaryDto::username)
+				.containsExactly("Johnny", "Big_Johnson", "Old_John");
+		assertThat(index.search("jack", -1, "", 10)).extracting(UserSummaryDto::username).containsExactly("Jack");
+		assertThat(index.size()).isEqualTo(5);
+	}
+
+	@Test
+	void givenRemovedUser_whenSearch_thenNotReturned() {
+		index.remove(john.id());
+
+		assertThat(index.search("john", -1, "", 10)).extracting(UserSummaryDto::username)
+				.containsExactly("Johnny", "Big_Johnson", "Old_John");
+		assertThat(index.size()).isEqualTo(4);
+	}
+
+	@Test
+	void givenReusedSlot_whenSearch_thenReturnedOnce() {
+		index.remove(john.id());
+		// Takes the freed slot, still listed under the trigrams of the old name
+		index.put(summary("Johnjohn"));
+
+		assertThat(index.search("ohn", -1, "", 10)).extracting(UserSummaryDto::username)
+				.containsExactly("Big_Johnson", "Johnjohn", "Johnny", "Old_John");
+	}
+
+	@Test
+	void givenNameOfAnotherIndexedUser_whenPut_thenPreviousOwnerDropped() {
+		// John was renamed on another instance, the index missed it
+		UserSummaryDto newJohn = summary("JOHN");
+		index.put(newJohn);
+
+		assertThat(index.search("john", -1, "", 10)).extracting(UserSummaryDto::id).startsWith(newJohn.id()).doesNotContain(john.id());
+		assertThat(index.size()).isEqualTo(5);
+
+		index.remove(john.id());
+		assertThat(index.search("john", -1, "", 1)).extracting(UserSummaryDto::id).containsExactly(newJohn.id());
+	}
+
+	@Test
+	void givenNewAvatar_whenPut_thenSummaryReplaced() {
+		index.put(new UserSummaryDto(john.id(), "John", "avatar", AccountType.PUBLIC));
+
+		assertThat(index.search("john", -1, "", 1)).extracting(UserSummaryDto::avatarUrl).containsExactly("avatar");
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static UserSummaryDto summary(String username) {
+		return new UserSummaryDto(UUID.randomUUID(), username, null, AccountType.PUBLIC);
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.jureg.wheelbase_server.user.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.event.UserDeletedEvent;
+import com.jureg.wheelbase_server.user.model.AccountType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UsernameSearchCacheTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private UsernameSearchCache searchCache;
+
+	@BeforeEach
+	void setupCache() {
+		searchCache = new UsernameSearchCache(10, 100, Duration.ofMinutes(1), meterRegistry);
+	}
+
+	// -------------------------------------------------------------
+	// Same query
+	// -------------------------------------------------------------
+	@Test
+	void givenCachedQuery_whenGet_thenHit() {
+		searchCache.put("john", summaries("John", "Johnny", "Old_John"), true);
+
+		assertThat(searchCache.get("john", -1, "", 2)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("John", "Johnny"));
+		assertThat(searchCache.get("john", UsernameRanking.RANK_PREFIX, "johnny", 2)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("Old_John"));
+		assertThat(meterRegistry.get("cache.gets").tag("cache", "user.search").tag("result", "hit").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void givenIncompleteEntry_whenGetPageBeyondIt_thenMiss() {
+		searchCache.put("john", summaries("John", "Johnny"), false);
+
+		assertThat(searchCache.get("john", UsernameRanking.RANK_PREFIX, "johnny", 2)).isEmpty();
+		assertThat(meterRegistry.get("cache.gets").tag("cache", "user.search").tag("result", "miss").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenTooManyMatches_whenPut_thenCachedIncomplete() {
+		searchCache = new UsernameSearchCache(2, 100, Duration.ofMinutes(1), meterRegistry);
+		searchCache.put("joh", summaries("John", "Johnny", "Old_John"), true);
+
+		// Only two matches kept: the third one may exist, the longer query cannot be answered
+		assertThat(searchCache.get("john", -1, "", 5)).isEmpty();
+		assertThat(searchCache.heldMatches()).isEqualTo(2);
+	}
+
+	@Test
+	void givenExpiredEntry_whenGet_thenMiss() {
+		searchCache = new UsernameSearchCache(10, 100, Duration.ZERO, meterRegistry);
+		searchCache.put("john", summaries("John"), true);
+
+		assertThat(searchCache.get("john", -1, "", 5)).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Shorter query
+	// -------------------------------------------------------------
+	@Test
+	void givenCompleteShorterQuery_whenGet_thenFilteredAndReranked() {
+		searchCache.put("joh", summaries("John", "Johnny", "Big_Johnson", "Old_John", "Ojoh"), true);
+
+		assertThat(searchCache.get("john", -1, "", 10)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("John", "Johnny", "Big_Johnson", "Old_John"));
+		assertThat(meterRegistry.get("user.search.cache.prefix-hits").counter().count()).isEqualTo(1);
+		// Cached as well, for the next keystroke
+		assertThat(searchCache.get("johnn", -1, "", 10)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("Johnny"));
+	}
+
+	@Test
+	void givenShortPrefixes_whenGet_thenNarrowed() {
+		searchCache.put("m", summaries("Mark", "Mustang"), true);
+
+		assertThat(searchCache.get("mu", -1, "", 10)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("Mustang"));
+	}
+
+	@Test
+	void givenShortPrefixAndContainsQuery_whenGet_thenMiss() {
+		// "jo" only matched the start of the names, "Old_Joh" was never among its matches
+		searchCache.put("jo", summaries("John"), true);
+
+		assertThat(searchCache.get("joh", -1, "", 10)).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Eviction
+	// -------------------------------------------------------------
+	@Test
+	void givenTooManyHeldMatches_whenPut_thenOldestEvicted() {
+		searchCache = new UsernameSearchCache(10, 3, Duration.ofMinutes(1), meterRegistry);
+		searchCache.put("mark", summaries("Mark", "Marko"), true);
+		searchCache.put("john", summaries("John", "Johnny"), true);
+
+		assertThat(searchCache.get("mark", -1, "", 10)).isEmpty();
+		assertThat(searchCache.get("john", -1, "", 10)).isPresent();
+		assertThat(searchCache.heldMatches()).isEqualTo(2);
+	}
+
+	@Test
+	void givenUserEvent_whenGet_thenMiss() {
+		searchCache.put("john", summaries("John"), true);
+
+		searchCache.onUserDeleted(new UserDeletedEvent(UUID.randomUUID()));
+
+		assertThat(searchCache.get("john", -1, "", 10)).isEmpty();
+		assertThat(searchCache.heldMatches()).isZero();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static List<UserSummaryDto> summaries(String... usernames) {
+		return List.of(usernames).stream()
+				.map(username -> new UserSummaryDto(UUID.randomUUID(), username, null, AccountType.PUBLIC))
+				.toList();
+	}
+
+}
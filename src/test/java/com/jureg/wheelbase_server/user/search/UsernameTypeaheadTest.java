@@ -0,0 +1,117 @@
+package com.jureg.wheelbase_server.user.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.event.UserDeletedEvent;
+import com.jureg.wheelbase_server.user.event.UserSavedEvent;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class UsernameTypeaheadTest {
+
+	@Mock
+	private UserRepository userRepository;
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private final UserSummaryDto john = summary("John");
+
+	// -------------------------------------------------------------
+	// Build
+	// -------------------------------------------------------------
+	@Test
+	void givenIndexNotBuilt_whenSearch_thenEmpty() {
+		UsernameTypeahead typeahead = typeahead(true, DataSize.ofMegabytes(1));
+
+		// The database has to answer
+		assertThat(typeahead.search("john", -1, "", 10)).isEmpty();
+	}
+
+	@Test
+	void givenRebuiltIndex_whenSearch_thenAnsweredFromIndex() {
+		UsernameTypeahead typeahead = typeahead(true, DataSize.ofMegabytes(1));
+		when(userRepository.streamAllSummaries()).thenReturn(Stream.of(john, summary("Johnny")));
+
+		typeahead.rebuild();
+
+		assertThat(typeahead.search("john", -1, "", 10)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("John", "Johnny"));
+	}
+
+	@Test
+	void givenIndexOverCeiling_whenRebuild_thenDatabaseAnswers() {
+		UsernameTypeahead typeahead = typeahead(true, DataSize.ofBytes(100));
+		when(userRepository.streamAllSummaries()).thenReturn(Stream.of(john, summary("Johnny")));
+
+		typeahead.rebuild();
+
+		assertThat(typeahead.search("john", -1, "", 10)).isEmpty();
+	}
+
+	@Test
+	void givenDisabledIndex_whenRebuild_thenUsersNotStreamed() {
+		UsernameTypeahead typeahead = typeahead(false, DataSize.ofMegabytes(1));
+
+		typeahead.rebuild();
+
+		assertThat(typeahead.search("john", -1, "", 10)).isEmpty();
+		verifyNoInteractions(userRepository);
+	}
+
+	// -------------------------------------------------------------
+	// User events
+	// -------------------------------------------------------------
+	@Test
+	void givenUserEvents_whenSearch_thenIndexKeptCurrent() {
+		UsernameTypeahead typeahead = typeahead(true, DataSize.ofMegabytes(1));
+		when(userRepository.streamAllSummaries()).thenReturn(Stream.of(john));
+		typeahead.rebuild();
+
+		typeahead.onUserSaved(new UserSavedEvent(summary("Johnny")));
+		typeahead.onUserDeleted(new UserDeletedEvent(john.id()));
+
+		assertThat(typeahead.search("john", -1, "", 10)).hasValueSatisfying(users ->
+				assertThat(users).extracting(UserSummaryDto::username).containsExactly("Johnny"));
+	}
+
+	@Test
+	void givenUserEventOverCeiling_whenSearch_thenDatabaseAnswers() {
+		UsernameTypeahead typeahead = typeahead(true, DataSize.ofBytes(300));
+		when(userRepository.streamAllSummaries()).thenReturn(Stream.of(john));
+		typeahead.rebuild();
+		assertThat(typeahead.search("john", -1, "", 10)).isPresent();
+
+		typeahead.onUserSaved(new UserSavedEvent(summary("Johnny")));
+
+		assertThat(typeahead.search("john", -1, "", 10)).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	// The mocked transaction manager runs the callback without any transaction
+	private UsernameTypeahead typeahead(boolean enabled, DataSize maxMemory) {
+		return new UsernameTypeahead(userRepository, transactionManager, enabled, maxMemory, new SimpleMeterRegistry());
+	}
+
+	private static UserSummaryDto summary(String username) {
+		return new UserSummaryDto(UUID.randomUUID(), username, null, AccountType.PUBLIC);
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.jureg.wheelbase_server.user.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.shared.service.AuthorizationClaims;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.service.RequestUserLoader;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class AuthorizationCacheTest {
+
+	@Mock
+	private RequestUserLoader userLoader;
+	@Mock
+	private FollowRepository followRepository;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private AuthorizationCache authorizationCache;
+
+	private final UUID followerId = UUID.randomUUID();
+	private final UUID followedId = UUID.randomUUID();
+
+	@BeforeEach
+	void setupCache() {
+		authorizationCache = new AuthorizationCache(userLoader, followRepository, meterRegistry, 100, Duration.ofMinutes(1));
+	}
+
+	// -------------------------------------------------------------
+	// Account type
+	// -------------------------------------------------------------
+	@Test
+	void givenWarmCache_whenGetAccountType_thenNoQuery() {
+		when(userLoader.findById(followedId)).thenReturn(Optional.of(userWithAccountType(AccountType.FOLLOWERS_ONLY)));
+
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.FOLLOWERS_ONLY);
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.FOLLOWERS_ONLY);
+
+		// Make sure the database has been queried once only
+		verify(userLoader, times(1)).findById(followedId);
+		assertThat(meterRegistry.get("cache.gets").tag("cache", "authorization.account-types").tag("result", "hit").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void givenUnknownUser_whenGetAccountType_thenEmptyAndNotCached() {
+		when(userLoader.findById(followedId)).thenReturn(Optional.empty());
+
+		assertThat(authorizationCache.getAccountType(followedId)).isEmpty();
+		assertThat(authorizationCache.getAccountType(followedId)).isEmpty();
+
+		// A user created later must be found, so misses are not cached
+		verify(userLoader, times(2)).findById(followedId);
+	}
+
+	@Test
+	void givenInvalidatedAccountType_whenGetAccountType_thenReloaded() {
+		when(userLoader.findById(followedId))
+				.thenReturn(Optional.of(userWithAccountType(AccountType.FOLLOWERS_ONLY)))
+				.thenReturn(Optional.of(userWithAccountType(AccountType.PUBLIC)));
+
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.FOLLOWERS_ONLY);
+		authorizationCache.invalidateAccountType(followedId);
+
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.PUBLIC);
+	}
+
+	@Test
+	void givenExpiredEntry_whenGetAccountType_thenReloaded() {
+		authorizationCache = new AuthorizationCache(userLoader, followRepository, meterRegistry, 100, Duration.ZERO);
+		when(userLoader.findById(followedId)).thenReturn(Optional.of(userWithAccountType(AccountType.PUBLIC)));
+
+		authorizationCache.getAccountType(followedId);
+		authorizationCache.getAccountType(followedId);
+
+		verify(userLoader, times(2)).findById(followedId);
+	}
+
+	// -------------------------------------------------------------
+	// Token claims
+	// -------------------------------------------------------------
+	@Test
+	void givenNewerTokenStamp_whenObserveClaims_thenCachedProfileReplaced() {
+		when(userLoader.findById(followedId)).thenReturn(Optional.of(userWithAccountType(AccountType.FOLLOWERS_ONLY)));
+		authorizationCache.getAccountType(followedId);
+
+		// The user became public on another instance, and got a new token
+		authorizationCache.observeClaims(followedId, new AuthorizationClaims(AccountType.PUBLIC, 1));
+
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.PUBLIC);
+		verify(userLoader, times(1)).findById(followedId);
+	}
+
+	@Test
+	void givenStaleTokenStamp_whenObserveClaims_thenCachedProfileKept() {
+		User user = userWithAccountType(AccountType.FOLLOWERS_ONLY);
+		user.setProfileVersion(2);
+		when(userLoader.findById(followedId)).thenReturn(Optional.of(user));
+		authorizationCache.getAccountType(followedId);
+
+		authorizationCache.observeClaims(followedId, new AuthorizationClaims(AccountType.PUBLIC, 1));
+
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.FOLLOWERS_ONLY);
+	}
+
+	@Test
+	void givenNothingCached_whenObserveClaims_thenClaimsNotTrusted() {
+		when(userLoader.findById(followedId)).thenReturn(Optional.of(userWithAccountType(AccountType.FOLLOWERS_ONLY)));
+
+		authorizationCache.observeClaims(followedId, new AuthorizationClaims(AccountType.PUBLIC, 5));
+
+		// Without a cached stamp to compare with, the database decides
+		assertThat(authorizationCache.getAccountType(followedId)).contains(AccountType.FOLLOWERS_ONLY);
+	}
+
+	// -------------------------------------------------------------
+	// Follow edges
+	// -------------------------------------------------------------
+	@Test
+	void givenWarmCache_whenIsFollowing_thenNoQuery() {
+		when(followRepository.existsByFollowerIdAndFollowedId(followerId, followedId)).thenReturn(false);
+
+		assertThat(authorizationCache.isFollowing(followerId, followedId)).isFalse();
+		assertThat(authorizationCache.isFollowing(followerId, followedId)).isFalse();
+
+		// Negative answers are cached as well
+		verify(followRepository, times(1)).existsByFollowerIdAndFollowedId(followerId, followedId);
+	}
+
+	@Test
+	void givenNewFollow_whenInvalidateFollow_thenNewDecision() {
+		when(followRepository.existsByFollowerIdAndFollowedId(followerId, followedId))
+				.thenReturn(false)
+				.thenReturn(true);
+
+		assertThat(authorizationCache.isFollowing(followerId, followedId)).isFalse();
+		authorizationCache.invalidateFollow(followerId, followedId);
+
+		assertThat(authorizationCache.isFollowing(followerId, followedId)).isTrue();
+	}
+
+	@Test
+	void givenDeletedUser_whenInvalidateUser_thenEdgesDropped() {
+		when(followRepository.existsByFollowerIdAndFollowedId(followerId, followedId))
+				.thenReturn(true)
+				.thenReturn(false);
+
+		assertThat(authorizationCache.isFollowing(followerId, followedId)).isTrue();
+		authorizationCache.invalidateUser(followerId);
+
+		assertThat(authorizationCache.isFollowing(followerId, followedId)).isFalse();
+	}
+
+	// -------------------------------------------------------------
+	// Bounds
+	// -------------------------------------------------------------
+	@Test
+	void givenFullCache_whenLoadingNewEntries_thenSizeStaysBounded() {
+		// Fresh registry, the gauge of the default cache is already registered under the same name
+		SimpleMeterRegistry boundedRegistry = new SimpleMeterRegistry();
+		authorizationCache = new AuthorizationCache(userLoader, followRepository, boundedRegistry, 10, Duration.ofMinutes(1));
+
+		for (int i = 0; i < 50; i++) {
+			authorizationCache.isFollowing(UUID.randomUUID(), followedId);
+		}
+
+		assertThat(boundedRegistry.get("cache.size").tag("cache", "authorization.follow-edges").gauge().value()).isLessThanOrEqualTo(10);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private User userWithAccountType(AccountType accountType) {
+		User user = new User();
+		user.setId(followedId);
+		user.setAccountType(accountType);
+		return user;
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.jureg.wheelbase_server.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.shared.security.BoundedPasswordEncoder;
+import com.jureg.wheelbase_server.user.dto.UserAuthDto;
+import com.jureg.wheelbase_server.user.dto.UserAuthResponseDto;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// A login storm saturating the password hashing pool: the logins waiting for a worker hold no database connection
+@SpringBootTest(properties = {
+		"jwt.secret=mysupersecretkeymysupersecretkey123456",
+		"spring.jpa.open-in-view=false",
+		"jwt.revocation.sync-interval=1h",
+		"user.search.index.enabled=false",
+		// Fewer connections than waiting logins, and a request without one fails fast
+		"spring.datasource.hikari.maximum-pool-size=2",
+		"spring.datasource.hikari.connection-timeout=1000"
+})
+@Testcontainers
+@Import(PasswordHashingConnectionTest.BlockedHashingConfig.class)
+class PasswordHashingConnectionTest {
+
+	private static final int LOGINS = 6;
+
+	// The single hashing worker is stuck on the first login until released
+	private static final CountDownLatch HASH_STARTED = new CountDownLatch(1);
+	private static final CountDownLatch RELEASE_HASH = new CountDownLatch(1);
+	private static final MeterRegistry HASHING_METERS = new SimpleMeterRegistry();
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@TestConfiguration(proxyBeanMethods = false)
+	static class BlockedHashingConfig {
+
+		@Bean
+		@Primary
+		static PasswordEncoder blockedPasswordEncoder() {
+			PasswordEncoder blocked = new PasswordEncoder() {
+				@Override
+				public String encode(CharSequence rawPassword) {
+					return rawPassword.toString();
+				}
+
+				@Override
+				public boolean matches(CharSequence rawPassword, String encodedPassword) {
+					HASH_STARTED.countDown();
+					try {
+						RELEASE_HASH.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return rawPassword.toString().equals(encodedPassword);
+				}
+			};
+			return new BoundedPasswordEncoder(blocked, 1, LOGINS, Duration.ofSeconds(30), 1, HASHING_METERS);
+		}
+
+	}
+
+	@Autowired
+	private UserService userService;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private DataSource dataSource;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setup() {
+		// Clean DB
+		jdbcTemplate.execute("TRUNCATE refresh_tokens, user_communities, users CASCADE");
+		// Create user
+		User user = new User();
+		user.setUsername("John");
+		user.setEmail("John@test.com");
+		user.setPassword("password");
+		userRepository.save(user);
+	}
+
+	// -------------------------------------------------------------
+	// Login storm
+	// -------------------------------------------------------------
+	@Test
+	void givenHashingPoolSaturated_whenLoggingIn_thenNoConnectionHeld() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(LOGINS);
+		try {
+			List<Future<UserAuthResponseDto>> logins = new ArrayList<>();
+			for (int i = 0; i < LOGINS; i++) {
+				logins.add(executor.submit(() -> userService.authUser(new UserAuthDto("John", "password"))));
+			}
+			// One login hashing, every other one waiting for the worker
+			assertThat(HASH_STARTED.await(10, TimeUnit.SECONDS)).isTrue();
+			awaitQueuedHashes(LOGINS - 1);
+
+			assertThat(dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections()).isZero();
+			// A cheap request still gets a connection right away
+			assertThat(userRepository.count()).isEqualTo(1);
+
+			RELEASE_HASH.countDown();
+			for (Future<UserAuthResponseDto> login : logins) {
+				assertThat(login.get(30, TimeUnit.SECONDS).jwt()).isNotBlank();
+			}
+		} finally {
+			RELEASE_HASH.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static void awaitQueuedHashes(int expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (HASHING_METERS.get("password.hashing.queue.size").gauge().value() < expected) {
+			assertThat(System.nanoTime()).isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+}
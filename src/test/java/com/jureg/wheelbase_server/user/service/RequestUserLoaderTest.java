@@ -0,0 +1,103 @@
+package com.jureg.wheelbase_server.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+
+import jakarta.persistence.EntityManager;
+
+@ExtendWith(MockitoExtension.class)
+class RequestUserLoaderTest {
+
+	@Mock
+	private UserRepository userRepository;
+	@Mock
+	private EntityManager entityManager;
+
+	@InjectMocks
+	private RequestUserLoader userLoader;
+
+	private UUID userId;
+	private User user;
+
+	@BeforeEach
+	void setupUser() {
+		userId = UUID.randomUUID();
+		user = new User();
+		user.setId(userId);
+	}
+
+	@AfterEach
+	void clearRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	// -------------------------------------------------------------
+	// Inside a request
+	// -------------------------------------------------------------
+	@Test
+	void givenSameRequest_whenFindByIdTwice_thenLoadedOnce() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		assertThat(userLoader.findById(userId)).containsSame(user);
+		assertThat(userLoader.findById(userId)).containsSame(user);
+
+		verify(userRepository, times(1)).findById(userId);
+	}
+
+	@Test
+	void givenTwoRequests_whenFindById_thenLoadedOncePerRequest() {
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		userLoader.findById(userId);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		userLoader.findById(userId);
+
+		verify(userRepository, times(2)).findById(userId);
+	}
+
+	@Test
+	void givenEvictedUser_whenFindById_thenReloaded() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user)).thenReturn(Optional.empty());
+
+		userLoader.findById(userId);
+		userLoader.evict(userId);
+
+		assertThat(userLoader.findById(userId)).isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// Outside of a request
+	// -------------------------------------------------------------
+	@Test
+	void givenNoRequest_whenFindByIdTwice_thenLoadedEachTime() {
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		userLoader.findById(userId);
+		userLoader.findById(userId);
+
+		verify(userRepository, times(2)).findById(userId);
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.jureg.wheelbase_server.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.community_type.model.CommunityType;
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.follow.repository.FollowCounterRepository;
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.post.model.Post;
+import com.jureg.wheelbase_server.post_comment.model.PostComment;
+import com.jureg.wheelbase_server.post_image.model.PostImage;
+import com.jureg.wheelbase_server.post_like.model.PostLike;
+import com.jureg.wheelbase_server.post_like.model.PostLikeCounter;
+import com.jureg.wheelbase_server.timeline.model.TimelineCelebrity;
+import com.jureg.wheelbase_server.timeline.model.TimelineEntry;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
+import com.jureg.wheelbase_server.user.model.User;
+import com.jureg.wheelbase_server.user.repository.UserPurgeRepository;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.vehicle.model.Vehicle;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@Testcontainers
+class UserPurgeServiceTest {
+
+	// Small chunks, so that every stage takes more than one
+	private static final int CHUNK_SIZE = 2;
+
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("test")
+		.withPassword("test");
+
+	@DynamicPropertySource
+	static void overrideDatasource(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	@Autowired
+	private UserPurgeRepository userPurgeRepository;
+	@Autowired
+	private FollowCounterRepository followCounterRepository;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private EntityManager entityManager;
+
+	private User john;
+	private User alice;
+	private User mark;
+
+	@BeforeEach
+	void setup() {
+		john = createUser("John");
+		alice = createUser("Alice");
+		mark = createUser("Mark");
+		// John follows Alice and Mark, Alice follows John
+		follow(john, alice);
+		follow(john, mark);
+		follow(alice, john);
+		// John and Alice both post, like and comment each other's post (and their own)
+		Post johnPost = createPost(john);
+		Post alicePost = createPost(alice);
+		for (Post post : new Post[] { johnPost, alicePost }) {
+			for (User user : new User[] { john, alice }) {
+				entityManager.persist(PostLike.builder().post(post).user(user).build());
+				entityManager.persist(PostComment.builder().post(post).author(user).content("Nice").build());
+			}
+			entityManager.persist(new PostLikeCounter(post.getId(), 2));
+		}
+		entityManager.persist(PostImage.builder().post(johnPost).imageUrl("https://images.test/1.jpg").build());
+		entityManager.persist(PostImage.builder().post(johnPost).imageUrl("https://images.test/2.jpg").build());
+		entityManager.persist(PostImage.builder().post(johnPost).imageUrl("https://images.test/3.jpg").build());
+		// John's timeline, and John turned celebrity
+		entityManager.persist(new TimelineEntry(john.getId(), alicePost.getId(), alice.getId(), CommunityType.CAR, Instant.now()));
+		entityManager.persist(new TimelineCelebrity(john.getId()));
+		// What UserService does on deletion
+		john.setDeletedAt(Instant.now());
+		john.setDeletionStage(DeletionStage.FOLLOWING);
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	// -------------------------------------------------------------
+	// Purge
+	// -------------------------------------------------------------
+	@Test
+	void givenDeletedUser_whenFindById_thenHidden() {
+		assertThat(userRepository.findById(john.getId())).isEmpty();
+		assertThat(userRepository.findById(alice.getId())).isPresent();
+	}
+
+	@Test
+	void givenDeletedUser_whenPurgeDeletedUsers_thenEveryRowRemoved() {
+		createPurgeService().purgeDeletedUsers();
+
+		assertUserPurged();
+		// What belongs to Alice stays, without John's like and comment
+		assertThat(count("SELECT count(*) FROM posts WHERE author_id = :id", alice.getId())).isEqualTo(1);
+		assertThat(count("SELECT count(*) FROM post_likes WHERE user_id = :id", alice.getId())).isEqualTo(1);
+		assertThat(count("SELECT count(*) FROM comments WHERE author_id = :id", alice.getId())).isEqualTo(1);
+		// John's like is uncounted from Alice's post
+		assertThat(count("SELECT c.likes FROM post_like_counters c JOIN posts p ON p.id = c.post_id WHERE p.author_id = :id", alice.getId())).isEqualTo(1);
+	}
+
+	@Test
+	void givenPurgeCutShort_whenPurgeDeletedUsers_thenGoesOnFromSavedStage() {
+		UserPurgeService purgeService = createPurgeService();
+		// Two follows then none (following), one follow (followers): John is on the likes now
+		assertThat(purgeService.purgeNextChunk(john.getId())).isTrue();
+		assertThat(purgeService.purgeNextChunk(john.getId())).isTrue();
+		assertThat(purgeService.purgeNextChunk(john.getId())).isTrue();
+		assertThat(deletionStage(john.getId())).isEqualTo(DeletionStage.LIKES.name());
+		assertThat(count("SELECT count(*) FROM follows WHERE follower_id = :id OR followed_id = :id", john.getId())).isZero();
+
+		// A new instance (after a restart) takes it from there
+		createPurgeService().purgeDeletedUsers();
+
+		assertUserPurged();
+	}
+
+	@Test
+	void givenUserNotDeleted_whenPurgeNextChunk_thenNothingRemoved() {
+		assertThat(createPurgeService().purgeNextChunk(alice.getId())).isFalse();
+
+		assertThat(count("SELECT count(*) FROM posts WHERE author_id = :id", alice.getId())).isEqualTo(1);
+		assertThat(count("SELECT count(*) FROM follows WHERE follower_id = :id", alice.getId())).isEqualTo(1);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private UserPurgeService createPurgeService() {
+		FollowCounterService followCounterService = new FollowCounterService(followCounterRepository, transactionManager, 4, 1000, new SimpleMeterRegistry());
+		return new UserPurgeService(userPurgeRepository, followCounterService, transactionManager, CHUNK_SIZE, 10);
+	}
+
+	private void assertUserPurged() {
+		UUID id = john.getId();
+		assertThat(count("SELECT count(*) FROM users WHERE id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM follows WHERE follower_id = :id OR followed_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM post_likes l JOIN posts p ON p.id = l.post_id WHERE l.user_id = :id OR p.author_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM comments c JOIN posts p ON p.id = c.post_id WHERE c.author_id = :id OR p.author_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM post_images")).isZero();
+		assertThat(count("SELECT count(*) FROM posts WHERE author_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM vehicles WHERE owner_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM user_communities WHERE user_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM timeline_entries WHERE user_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM timeline_celebrities WHERE user_id = :id", id)).isZero();
+		assertThat(count("SELECT count(*) FROM user_follow_counters WHERE user_id = :id", id)).isZero();
+		// John's follows are uncounted on the other side
+		assertThat(followCounterRepository.sumByUserId(alice.getId())).isEqualTo(FollowCounts.ZERO);
+		assertThat(followCounterRepository.sumByUserId(mark.getId())).isEqualTo(FollowCounts.ZERO);
+	}
+
+	private long count(String sql) {
+		return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+	}
+
+	private long count(String sql, UUID id) {
+		return ((Number) entityManager.createNativeQuery(sql).setParameter("id", id).getSingleResult()).longValue();
+	}
+
+	private String deletionStage(UUID id) {
+		return (String) entityManager.createNativeQuery("SELECT deletion_stage FROM users WHERE id = :id")
+				.setParameter("id", id)
+				.getSingleResult();
+	}
+
+	private void follow(User follower, User followed) {
+		entityManager.persist(new Follow(follower, followed, Instant.now()));
+		followCounterRepository.addFollow(follower.getId(), 0, followed.getId(), 0, 1);
+	}
+
+	private Post createPost(User author) {
+		Vehicle vehicle = Vehicle.builder().owner(author).community(CommunityType.CAR).model("Clio").build();
+		entityManager.persist(vehicle);
+		Post post = Post.builder().author(author).vehicle(vehicle).community(CommunityType.CAR).content("My car").build();
+		entityManager.persist(post);
+		return post;
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(username + "@test.com");
+		user.setPassword("password");
+		user.setCommunities(Set.of(CommunityType.CAR));
+		return userRepository.saveAndFlush(user);
+	}
+
+}
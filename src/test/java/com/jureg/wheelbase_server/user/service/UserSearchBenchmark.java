@@ -0,0 +1,181 @@
+package com.jureg.wheelbase_server.user.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import com.jureg.wheelbase_server.WheelbaseServerApplication;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.search.UsernameIndex;
+import com.jureg.wheelbase_server.user.search.UsernameRanking;
+
+// Compares the username search on 1M users, schema built by the Flyway migrations:
+// - containsUnbounded: what findByUsernameContainingIgnoreCase ran (upper(x) LIKE upper('%q%'), every match returned)
+//   the EAGER communities it then loaded, one query per user, are not even counted here
+// - rankedPage: the ranked, trigram-indexed first page, run through UserRepository.searchByUsername itself (a context with
+//   only the JPA infrastructure and that repository), so the figure follows the production query, DTO projection included
+// - indexPage: the same page answered by the in-memory UsernameIndex, no round trip at all
+// Queries: a short prefix, a common name (many matches to rank) and a rare fragment
+// Needs Docker. Run it with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.jureg.wheelbase_server.user.service.UserSearchBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSearchBenchmark {
+
+	private static final int USERS = 1_000_000;
+	private static final int PAGE_SIZE = 20;
+
+	private static final String CONTAINS_UNBOUNDED_SQL = """
+		SELECT u.id, u.account_type, u.avatar_url, u.bio, u.email, u.password, u.username
+		FROM public.users u
+		WHERE upper(u.username) LIKE upper(?) ESCAPE '\\'
+		""";
+
+	@Param({ "jo", "john", "3fa9" })
+	private String query;
+
+	private PostgreSQLContainer<?> postgres;
+	private Connection connection;
+	private PreparedStatement containsUnbounded;
+	private ConfigurableApplicationContext context;
+	private UserRepository userRepository;
+	private UsernameIndex index;
+
+	@SuppressWarnings("resource")
+	@Setup
+	public void setup() throws SQLException {
+		// The migrations assign the tables to the "postgres" role
+		postgres = new PostgreSQLContainer<>("postgres:18")
+				.withDatabaseName("wheelbase")
+				.withUsername("postgres")
+				.withPassword("test");
+		postgres.start();
+		Flyway.configure().dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()).load().migrate();
+
+		connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+		try (Statement statement = connection.createStatement()) {
+			// A few common first names followed by a random suffix, the row number keeps them unique
+			statement.execute("""
+				INSERT INTO public.users (id, account_type, email, email_normalized, password, username, username_normalized, profile_version)
+				SELECT gen_random_uuid(), 'PUBLIC', name || '@test.com', lower(name) || '@test.com', 'hashed-password', name, lower(name), 0
+				FROM (
+					SELECT (ARRAY['John', 'Mark', 'Alice', 'Patrick', 'Sara', 'Lucas', 'Emma', 'Noah'])[1 + i % 8] || '_' || substr(md5(i::text), 1, 6) || i AS name
+					FROM generate_series(1, %d) i
+				) names
+				""".formatted(USERS));
+			statement.execute("ANALYZE public.users");
+		}
+		containsUnbounded = connection.prepareStatement(CONTAINS_UNBOUNDED_SQL);
+		// The schema is already migrated and seeded: Hibernate only runs the queries
+		// Passed as arguments, so they override application.properties
+		context = new SpringApplicationBuilder(RepositoryContext.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=" + postgres.getJdbcUrl(),
+						"--spring.datasource.username=" + postgres.getUsername(),
+						"--spring.datasource.password=" + postgres.getPassword(),
+						"--spring.flyway.enabled=false",
+						"--spring.jpa.hibernate.ddl-auto=none",
+						"--spring.jpa.show-sql=false",
+						"--spring.devtools.restart.enabled=false");
+		userRepository = context.getBean(UserRepository.class);
+
+		index = new UsernameIndex();
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT id, username, avatar_url, account_type FROM public.users")) {
+			while (resultSet.next()) {
+				index.put(new UserSummaryDto(resultSet.getObject(1, UUID.class), resultSet.getString(2), resultSet.getString(3),
+						AccountType.valueOf(resultSet.getString(4))));
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		context.close();
+		connection.close();
+		postgres.stop();
+	}
+
+	@Benchmark
+	public int containsUnbounded() throws SQLException {
+		containsUnbounded.setString(1, "%" + query + "%");
+		return count(containsUnbounded);
+	}
+
+	@Benchmark
+	public int rankedPage() {
+		// The arguments UserSearchService passes for a first page
+		String prefix = query + "%";
+		String pattern = query.length() < UsernameRanking.MIN_CONTAINS_LENGTH ? prefix : "%" + prefix;
+		return userRepository.searchByUsername(query, pattern, prefix, -1, "", Limit.of(PAGE_SIZE + 1)).size();
+	}
+
+	@Benchmark
+	public int indexPage() {
+		return index.search(query, -1, "", PAGE_SIZE + 1).size();
+	}
+
+	private static int count(PreparedStatement statement) throws SQLException {
+		int rows = 0;
+		try (ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				rows++;
+			}
+		}
+		return rows;
+	}
+
+	// The entities of the application, and no repository but the user one: no service, no scheduled job
+	@SpringBootConfiguration
+	@EnableAutoConfiguration
+	@AutoConfigurationPackage(basePackageClasses = WheelbaseServerApplication.class)
+	@EnableJpaRepositories(basePackageClasses = UserRepository.class,
+			includeFilters = @Filter(type = FilterType.ASSIGNABLE_TYPE, classes = UserRepository.class))
+	static class RepositoryContext {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(UserSearchBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
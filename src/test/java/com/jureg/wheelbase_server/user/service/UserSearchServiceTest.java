@@ -0,0 +1,167 @@
+package com.jureg.wheelbase_server.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
+import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
+import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.search.UsernameSearchCache;
+import com.jureg.wheelbase_server.user.search.UsernameTypeahead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class UserSearchServiceTest {
+
+	@Mock
+	private UserRepository userRepository;
+	@Mock
+	private UsernameTypeahead usernameTypeahead;
+
+	private UserSearchService userSearchService;
+
+	@BeforeEach
+	void setup() {
+		userSearchService = new UserSearchService(userRepository, usernameTypeahead,
+				new UsernameSearchCache(2, 100, Duration.ofMinutes(1), new SimpleMeterRegistry()), 2, 3);
+	}
+
+	// -------------------------------------------------------------
+	// Search users by name
+	// -------------------------------------------------------------
+	// Without an index answer (not built, over its ceiling), the mock returns an empty Optional: the database is searched
+	@Test
+	void givenIndexReady_whenSearchUsers_thenDatabaseNotQueried() {
+		when(usernameTypeahead.search("john", -1, "", 3)).thenReturn(Optional.of(List.of(summary("John"), summary("Johnny"), summary("Old_John"))));
+
+		CursorPage<UserSummaryDto> users = userSearchService.searchUsersByUsername("John", null, null);
+
+		assertThat(users.items()).extracting(UserSummaryDto::username).containsExactly("John", "Johnny");
+		assertThat(CursorCodec.decode(users.nextCursor(), 2)).containsExactly("1", "johnny");
+		verifyNoInteractions(userRepository);
+	}
+
+	@Test
+	void givenUsername_whenSearchUsers_thenContainsPatternAndNoNextPage() {
+		when(userRepository.searchByUsername("john", "%john%", "john%", -1, "", Limit.of(3))).thenReturn(List.of(summary("John")));
+
+		CursorPage<UserSummaryDto> users = userSearchService.searchUsersByUsername(" John ", null, null);
+
+		assertThat(users.items()).extracting(UserSummaryDto::username).containsExactly("John");
+		assertThat(users.nextCursor()).isNull();
+	}
+
+	@Test
+	void givenShortUsername_whenSearchUsers_thenPrefixPatternOnly() {
+		when(userRepository.searchByUsername("jo", "jo%", "jo%", -1, "", Limit.of(3))).thenReturn(List.of());
+
+		assertThat(userSearchService.searchUsersByUsername("Jo", null, null).items()).isEmpty();
+	}
+
+	@Test
+	void givenWildcardsInUsername_whenSearchUsers_thenWildcardsEscaped() {
+		// Long enough for the contains pattern, escaped too
+		when(userRepository.searchByUsername("a_%", "%a\\_\\%%", "a\\_\\%%", -1, "", Limit.of(3))).thenReturn(List.of());
+
+		assertThat(userSearchService.searchUsersByUsername("a_%", null, null).items()).isEmpty();
+	}
+
+	@Test
+	void givenMoreResultsThanPageSize_whenSearchUsers_thenCursorOfLastRow() {
+		when(userRepository.searchByUsername(eq("john"), anyString(), anyString(), eq(-1), eq(""), eq(Limit.of(3))))
+				.thenReturn(List.of(summary("John"), summary("Johnny"), summary("Old_John")));
+
+		CursorPage<UserSummaryDto> users = userSearchService.searchUsersByUsername("john", null, null);
+
+		// Exact match and prefix match returned, the cursor points after the prefix match
+		assertThat(users.items()).extracting(UserSummaryDto::username).containsExactly("John", "Johnny");
+		assertThat(CursorCodec.decode(users.nextCursor(), 2)).containsExactly("1", "johnny");
+	}
+
+	@Test
+	void givenCursor_whenSearchUsers_thenPageStartsAfterIt() {
+		when(userRepository.searchByUsername(eq("john"), anyString(), anyString(), eq(1), eq("johnny"), any(Limit.class))).thenReturn(List.of(summary("Old_John")));
+
+		CursorPage<UserSummaryDto> users = userSearchService.searchUsersByUsername("john", CursorCodec.encode("1", "johnny"), null);
+
+		assertThat(users.items()).extracting(UserSummaryDto::username).containsExactly("Old_John");
+	}
+
+	@Test
+	void givenCompleteShorterQuery_whenSearchUsers_thenAnsweredFromCache() {
+		when(userRepository.searchByUsername(eq("joh"), anyString(), anyString(), eq(-1), eq(""), eq(Limit.of(3)))).thenReturn(List.of(summary("John")));
+
+		userSearchService.searchUsersByUsername("joh", null, null);
+		CursorPage<UserSummaryDto> users = userSearchService.searchUsersByUsername("john", null, null);
+
+		// "joh" had a single match: "john" is filtered from it
+		assertThat(users.items()).extracting(UserSummaryDto::username).containsExactly("John");
+		verify(userRepository, times(1)).searchByUsername(anyString(), anyString(), anyString(), anyInt(), anyString(), any(Limit.class));
+	}
+
+	@Test
+	void givenTooLargeLimit_whenSearchUsers_thenCapped() {
+		when(userRepository.searchByUsername(anyString(), anyString(), anyString(), anyInt(), anyString(), any(Limit.class))).thenReturn(List.of());
+
+		userSearchService.searchUsersByUsername("john", null, 1000);
+
+		// Max page size (3) plus one row to detect the next page
+		verify(userRepository).searchByUsername(anyString(), anyString(), anyString(), anyInt(), anyString(), eq(Limit.of(4)));
+	}
+
+	@Test
+	void givenInvalidCursor_whenSearchUsers_thenException() {
+		InvalidCursorException exception = assertThrows(InvalidCursorException.class,
+				() -> userSearchService.searchUsersByUsername("john", CursorCodec.encode("7", "johnny"), null));
+
+		assertEquals("Invalid cursor", exception.getMessage());
+		verifyNoInteractions(userRepository);
+	}
+
+	@Test
+	void givenEmptyUsername_whenSearchUsers_thenReturnEmptyList() {
+		assertThat(userSearchService.searchUsersByUsername("", null, null).items()).isEmpty();
+		// Make sure the userRepository was never used
+		verifyNoInteractions(userRepository);
+	}
+
+	@Test
+	void givenNullUsername_whenSearchUsers_thenReturnEmptyList() {
+		assertThat(userSearchService.searchUsersByUsername(null, null, null).items()).isEmpty();
+		// Make sure the userRepository was never used
+		verifyNoInteractions(userRepository);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private static UserSummaryDto summary(String username) {
+		return new UserSummaryDto(UUID.randomUUID(), username, null, AccountType.PUBLIC);
+	}
+
+}
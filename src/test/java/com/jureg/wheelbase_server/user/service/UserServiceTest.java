@@ -2,32 +2,46 @@ package com.jureg.wheelbase_server.user.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.jureg.wheelbase_server.community_type.model.CommunityType;
-import com.jureg.wheelbase_server.follow.model.Follow;
+import com.jureg.wheelbase_server.follow.dto.FollowCounts;
+import com.jureg.wheelbase_server.follow.dto.FollowUserDto;
 import com.jureg.wheelbase_server.follow.repository.FollowRepository;
+import com.jureg.wheelbase_server.follow.service.FollowCounterService;
+import com.jureg.wheelbase_server.refresh_token.service.RefreshTokenService;
+import com.jureg.wheelbase_server.shared.api.CursorCodec;
+import com.jureg.wheelbase_server.shared.api.dto.CursorPage;
 import com.jureg.wheelbase_server.shared.api.exception.FieldAlreadyExistsException;
 import com.jureg.wheelbase_server.shared.api.exception.InvalidCredentialsException;
+import com.jureg.wheelbase_server.shared.api.exception.InvalidCursorException;
 import com.jureg.wheelbase_server.shared.api.exception.UserNotFoundException;
 import com.jureg.wheelbase_server.shared.service.JwtService;
 import com.jureg.wheelbase_server.user.dto.UserAuthDto;
@@ -37,10 +51,14 @@ import com.jureg.wheelbase_server.user.dto.UserPasswordUpdateDto;
 import com.jureg.wheelbase_server.user.dto.UserResponseDto;
 import com.jureg.wheelbase_server.user.dto.UserSummaryDto;
 import com.jureg.wheelbase_server.user.dto.UserUpdateDto;
+import com.jureg.wheelbase_server.user.event.UserDeletedEvent;
+import com.jureg.wheelbase_server.user.event.UserSavedEvent;
 import com.jureg.wheelbase_server.user.mapper.UserMapper;
 import com.jureg.wheelbase_server.user.model.AccountType;
+import com.jureg.wheelbase_server.user.model.DeletionStage;
 import com.jureg.wheelbase_server.user.model.User;
 import com.jureg.wheelbase_server.user.repository.UserRepository;
+import com.jureg.wheelbase_server.user.security.AuthorizationCache;
 
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
@@ -50,13 +68,24 @@ class UserServiceTest {
 	@Mock
 	private FollowRepository followRepository;
 	@Mock
+	private FollowCounterService followCounterService;
+	@Mock
 	private UserMapper userMapper;
 	@Mock
 	private PasswordEncoder passwordEncoder;
 	@Mock
 	private JwtService jwtService;
+	@Mock
+	private AuthorizationCache authorizationCache;
+	@Mock
+	private RequestUserLoader userLoader;
+	@Mock
+	private RefreshTokenService refreshTokenService;
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+	@Mock
+	private PlatformTransactionManager transactionManager;
 	
-	@InjectMocks
 	private UserService userService;
 	
 	private User currentUser;
@@ -64,6 +93,8 @@ class UserServiceTest {
 	
 	@BeforeEach
 	void setupUser() {
+		userService = new UserService(userRepository, userMapper, passwordEncoder, jwtService, followRepository, followCounterService,
+				authorizationCache, userLoader, refreshTokenService, eventPublisher, transactionManager, 2, 3);
 		currentUserId = UUID.randomUUID();
 		currentUser = new User();
 		currentUser.setId(currentUserId);
@@ -81,11 +112,9 @@ class UserServiceTest {
 		UserCreateDto dto = new UserCreateDto("John", "John@test.com", "A bio", "password", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR));
 		
 		// Mock the repositories
-		when(userRepository.existsByEmailIgnoreCase(dto.email())).thenReturn(false);
-		when(userRepository.existsByUsernameIgnoreCase(dto.username())).thenReturn(false);
 		when(userMapper.toEntity(dto)).thenReturn(currentUser);
 		when(passwordEncoder.encode(dto.password())).thenReturn("hashed-password");
-		when(userMapper.toResponseDto(currentUser)).thenReturn(new UserResponseDto(currentUserId, "John", "John@test.com", "", "A bio", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR)));
+		when(userMapper.toResponseDto(currentUser, FollowCounts.ZERO)).thenReturn(new UserResponseDto(currentUserId, "John", "John@test.com", "", "A bio", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR), 0, 0));
 		
 		// Check the create user action works
 		UserResponseDto createdUser = userService.createUser(dto);
@@ -96,13 +125,17 @@ class UserServiceTest {
 		assertThat(createdUser.bio()).isEqualTo("A bio");
 		assertThat(createdUser.communities()).isEqualTo(Set.of(CommunityType.CAR));
 		
-		// Make sure the functions from userRepository have been called correctly
-		verify(userRepository).existsByEmailIgnoreCase(any(String.class));
-		verify(userRepository).existsByUsernameIgnoreCase(any(String.class));
+		// Make sure the user is inserted without any pre-check query
+		verify(userRepository, never()).existsByEmailIgnoreCase(any(String.class));
+		verify(userRepository, never()).existsByUsernameIgnoreCase(any(String.class));
 		verify(userMapper).toEntity(any(UserCreateDto.class));
 		verify(passwordEncoder).encode(any(String.class));
-		verify(userMapper).toResponseDto(any(User.class));
-		verify(userRepository).save(any(User.class));
+		verify(userMapper).toResponseDto(any(User.class), any(FollowCounts.class));
+		// Make sure the counts of a new user are not read
+		verifyNoInteractions(followCounterService);
+		verify(userRepository).saveAndFlush(any(User.class));
+		// Make sure the search index hears about the new user
+		verify(eventPublisher).publishEvent(any(UserSavedEvent.class));
 	}
 	
 	@Test
@@ -110,17 +143,16 @@ class UserServiceTest {
 		UserCreateDto dto = new UserCreateDto("John", "John@test.com", "A bio", "password", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR));
 		
 		// Mock the repositories
-		when(userRepository.existsByEmailIgnoreCase(dto.email())).thenReturn(true);
+		when(userMapper.toEntity(dto)).thenReturn(currentUser);
+		when(userRepository.saveAndFlush(currentUser)).thenThrow(uniqueViolation(User.EMAIL_UNIQUE_CONSTRAINT));
 
-		// Make sure creating a user with an existing username fails
+		// Make sure creating a user with an existing email fails
 		FieldAlreadyExistsException exception = assertThrows(FieldAlreadyExistsException.class, () -> userService.createUser(dto));
 
 		// Check we got the right error message
 		assertEquals("Email already exists", exception.getMessage());
-		// Make sure the userMapper and passwordEncoder was never used
-		verifyNoInteractions(userMapper, passwordEncoder);
-		// Make sure the "save" function from userRepository has been never called
-		verify(userRepository, never()).save(any());
+		// Make sure no response was built
+		verify(userMapper, never()).toResponseDto(any(User.class), any(FollowCounts.class));
 	}
 	
 	@Test
@@ -128,18 +160,28 @@ class UserServiceTest {
 		UserCreateDto dto = new UserCreateDto("John", "John@test.com", "A bio", "password", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR));
 		
 		// Mock the repositories
-		when(userRepository.existsByEmailIgnoreCase(dto.email())).thenReturn(false);
-		when(userRepository.existsByUsernameIgnoreCase(dto.username())).thenReturn(true);
+		when(userMapper.toEntity(dto)).thenReturn(currentUser);
+		when(userRepository.saveAndFlush(currentUser)).thenThrow(uniqueViolation(User.USERNAME_UNIQUE_CONSTRAINT));
 
 		// Make sure creating a user with an existing username fails
 		FieldAlreadyExistsException exception = assertThrows(FieldAlreadyExistsException.class, () -> userService.createUser(dto));
 
 		// Check we got the right error message
 		assertEquals("Username already exists", exception.getMessage());
-		// Make sure the userMapper and passwordEncoder were never used
-		verifyNoInteractions(userMapper, passwordEncoder);
-		// Make sure the "save" function from userRepository has been never called
-		verify(userRepository, never()).save(any());
+		// Make sure no response was built
+		verify(userMapper, never()).toResponseDto(any(User.class), any(FollowCounts.class));
+	}
+	
+	@Test
+	void givenOtherConstraintViolation_whenCreateUser_thenExceptionPropagated() {
+		UserCreateDto dto = new UserCreateDto("John", "John@test.com", "A bio", "password", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR));
+		
+		// Mock the repositories
+		when(userMapper.toEntity(dto)).thenReturn(currentUser);
+		when(userRepository.saveAndFlush(currentUser)).thenThrow(uniqueViolation("users_pkey"));
+
+		// Only the username and email constraints are client errors
+		assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(dto));
 	}
 	
 	// -------------------------------------------------------------
@@ -148,8 +190,9 @@ class UserServiceTest {
 	@Test
 	void givenUserId_whenFindUser_thenReturnUser() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(userMapper.toResponseDto(currentUser)).thenReturn(new UserResponseDto(currentUserId, "John", "John@test.com", "avatar", "A bio", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR)));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followCounterService.getCounts(currentUserId)).thenReturn(new FollowCounts(12, 3));
+		when(userMapper.toResponseDto(currentUser, new FollowCounts(12, 3))).thenReturn(new UserResponseDto(currentUserId, "John", "John@test.com", "avatar", "A bio", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR), 12, 3));
 		
 		UserResponseDto foundUser = userService.getUserById(currentUserId);
 		
@@ -158,12 +201,14 @@ class UserServiceTest {
 		assertThat(foundUser.avatarUrl()).isEqualTo("avatar");
 		assertThat(foundUser.bio()).isEqualTo("A bio");
 		assertThat(foundUser.communities()).isEqualTo(Set.of(CommunityType.CAR));
+		assertThat(foundUser.followersCount()).isEqualTo(12);
+		assertThat(foundUser.followingCount()).isEqualTo(3);
 	}
 	
 	@Test
 	void givenUnknownUserId_whenFindUser_thenException() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.empty());
 		
 		// Make sure getting a user with unknown ID fails
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.getUserById(currentUserId));
@@ -172,52 +217,8 @@ class UserServiceTest {
 		assertEquals("User not found", exception.getMessage());
 		// Make sure the userMapper was never used
 		verifyNoInteractions(userMapper);
-		// Make sure the "findById" function from userRepository has been called once
-		verify(userRepository).findById(currentUserId);
-	}
-	
-	@Test
-	void givenUsername_whenFindUsersByUsername_thenReturnListUsers() {
-		// Mock the repositories
-		when(userRepository.findByUsernameContainingIgnoreCase("Jo")).thenReturn(List.of(currentUser));
-		when(userMapper.toSummaryDto(currentUser)).thenReturn(new UserSummaryDto(currentUserId, "John", "avatar", AccountType.FOLLOWERS_ONLY));
-		
-		// Make sure searching users work
-		List<UserSummaryDto> foundUsers = userService.searchUsersByUsername("Jo");
-		
-		assertThat(foundUsers).hasSize(1);
-		assertThat(foundUsers.get(0).id()).isEqualTo(currentUserId);
-		assertThat(foundUsers.get(0).username()).isEqualTo("John");
-		assertThat(foundUsers.get(0).avatarUrl()).isEqualTo("avatar");
-	}
-	
-	@Test
-	void givenUsername_whenFindUsersByUsernameNothingFound_thenReturnEmptyList() {
-		// Mock the repositories
-		when(userRepository.findByUsernameContainingIgnoreCase("Jo")).thenReturn(List.of());
-		
-		// Make sure searching users work
-		List<UserSummaryDto> foundUsers = userService.searchUsersByUsername("Jo");
-		
-		assertThat(foundUsers).hasSize(0);
-	}
-	
-	@Test
-	void givenEmptyUsername_whenFindUsers_thenReturnEmptyList() {
-		// Make sure searching users work
-		List<UserSummaryDto> foundUsers = userService.searchUsersByUsername("");
-		assertThat(foundUsers).hasSize(0);
-		// Make sure the userRepository was never used
-		verifyNoInteractions(userRepository);
-	}
-	
-	@Test
-	void givenNullUsername_whenFindUsers_thenReturnEmptyList() {
-		// Make sure searching users work
-		List<UserSummaryDto> foundUsers = userService.searchUsersByUsername(null);
-		assertThat(foundUsers).hasSize(0);
-		// Make sure the userRepository was never used
-		verifyNoInteractions(userRepository);
+		// Make sure the "findById" function from userLoader has been called once
+		verify(userLoader).findById(currentUserId);
 	}
 	
 	// -------------------------------------------------------------
@@ -228,8 +229,9 @@ class UserServiceTest {
 		UserUpdateDto dto = new UserUpdateDto("New John", "New avatar", "New bio", AccountType.PUBLIC, Set.of(CommunityType.MOTORBIKE, CommunityType.CAR));
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(userMapper.toResponseDto(currentUser)).thenReturn(new UserResponseDto(currentUserId, "New John", "John@test.com", "New avatar", "New bio", AccountType.PUBLIC, Set.of(CommunityType.MOTORBIKE, CommunityType.CAR)));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followCounterService.getCounts(currentUserId)).thenReturn(FollowCounts.ZERO);
+		when(userMapper.toResponseDto(currentUser, FollowCounts.ZERO)).thenReturn(new UserResponseDto(currentUserId, "New John", "John@test.com", "New avatar", "New bio", AccountType.PUBLIC, Set.of(CommunityType.MOTORBIKE, CommunityType.CAR), 0, 0));
 		
 		// Update the user
 		UserResponseDto updatedUser = userService.updateUser(currentUserId, dto);
@@ -244,6 +246,10 @@ class UserServiceTest {
 		assertThat(currentUser.getAccountType()).isEqualTo(AccountType.PUBLIC);
 		assertThat(updatedUser.communities()).isEqualTo(Set.of(CommunityType.MOTORBIKE, CommunityType.CAR));
 		assertThat(currentUser.getCommunities()).isEqualTo(Set.of(CommunityType.MOTORBIKE, CommunityType.CAR));
+		// Make sure the profile version has been bumped and the cached account type dropped
+		assertThat(currentUser.getProfileVersion()).isEqualTo(1);
+		verify(authorizationCache).invalidateAccountType(currentUserId);
+		verify(eventPublisher).publishEvent(any(UserSavedEvent.class));
 	}
 	
 	@Test
@@ -251,8 +257,9 @@ class UserServiceTest {
 		UserUpdateDto dto = new UserUpdateDto(null, null, null, null, null);
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(userMapper.toResponseDto(currentUser)).thenReturn(new UserResponseDto(currentUserId, "John", "John@test.com", null, null, AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR)));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followCounterService.getCounts(currentUserId)).thenReturn(FollowCounts.ZERO);
+		when(userMapper.toResponseDto(currentUser, FollowCounts.ZERO)).thenReturn(new UserResponseDto(currentUserId, "John", "John@test.com", null, null, AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR), 0, 0));
 		
 		// Update the user
 		UserResponseDto updatedUser = userService.updateUser(currentUserId, dto);
@@ -267,6 +274,27 @@ class UserServiceTest {
 		assertThat(currentUser.getAccountType()).isEqualTo(AccountType.FOLLOWERS_ONLY);
 		assertThat(updatedUser.communities()).isEqualTo(Set.of(CommunityType.CAR));
 		assertThat(currentUser.getCommunities()).isEqualTo(Set.of(CommunityType.CAR));
+		// The account type did not change, the cache must be kept
+		verifyNoInteractions(authorizationCache);
+		// Nothing the search index holds changed
+		verifyNoInteractions(eventPublisher);
+	}
+	
+	@Test
+	void givenUsernameAlreadyExists_whenUpdateUser_thenException() {
+		UserUpdateDto dto = new UserUpdateDto("Alice", null, null, null, null);
+		
+		// Mock the repositories (the name can belong to a deleted user not purged yet, hidden from the queries)
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(userRepository.saveAndFlush(currentUser)).thenThrow(uniqueViolation(User.USERNAME_UNIQUE_CONSTRAINT));
+		
+		// Make sure renaming to a taken username fails
+		FieldAlreadyExistsException exception = assertThrows(FieldAlreadyExistsException.class, () -> userService.updateUser(currentUserId, dto));
+		
+		// Check we got the right error message
+		assertEquals("Username already exists", exception.getMessage());
+		// The search index must not see the rejected name
+		verifyNoInteractions(eventPublisher);
 	}
 	
 	@Test
@@ -274,7 +302,7 @@ class UserServiceTest {
 		UserUpdateDto dto = new UserUpdateDto("John", "avatar", "bio", AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.MOTORBIKE));
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.empty());
 		
 		// Make sure updating a non-existent user fails
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.updateUser(currentUserId, dto));
@@ -290,14 +318,29 @@ class UserServiceTest {
 		UserPasswordUpdateDto dto = new UserPasswordUpdateDto("password", "new-password");
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
 		when(passwordEncoder.matches("password", "hashed-password")).thenReturn(true);
 		when(passwordEncoder.encode("new-password")).thenReturn("new-hashed-password");
+		when(userRepository.updatePassword(currentUserId, "hashed-password", "new-hashed-password")).thenReturn(1);
 		
 		// Make sure the changePassword function works
 		userService.changePassword(currentUserId, dto);
 		
-		assertThat(currentUser.getPassword()).isEqualTo("new-hashed-password");
+		verify(userRepository).updatePassword(currentUserId, "hashed-password", "new-hashed-password");
+	}
+	
+	@Test
+	void givenPasswordChangedMeanwhile_whenChangePassword_thenException() {
+		UserPasswordUpdateDto dto = new UserPasswordUpdateDto("password", "new-password");
+		
+		// Mock the repositories (another request changed the password after it was checked)
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(passwordEncoder.matches("password", "hashed-password")).thenReturn(true);
+		when(passwordEncoder.encode("new-password")).thenReturn("new-hashed-password");
+		when(userRepository.updatePassword(currentUserId, "hashed-password", "new-hashed-password")).thenReturn(0);
+		
+		// Make sure the old password checked against a stale hash is not accepted
+		assertThrows(InvalidCredentialsException.class, () -> userService.changePassword(currentUserId, dto));
 	}
 	
 	@Test
@@ -305,7 +348,7 @@ class UserServiceTest {
 		UserPasswordUpdateDto dto = new UserPasswordUpdateDto("password", "new-password");
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
 		when(passwordEncoder.matches("password", "hashed-password")).thenReturn(false);
 		
 		// Make sure the changePassword function with non-matching passwords fails
@@ -313,7 +356,7 @@ class UserServiceTest {
 		
 		// Check we got the right error message
 		assertEquals("Invalid credentials", exception.getMessage());
-		verify(userRepository).findById(any(UUID.class));
+		verify(userLoader).findById(any(UUID.class));
 		verify(passwordEncoder).matches("password", "hashed-password");
 		verify(passwordEncoder, never()).encode(any(String.class));
 	}
@@ -323,7 +366,7 @@ class UserServiceTest {
 		UserPasswordUpdateDto dto = new UserPasswordUpdateDto("password", "new-password");
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.empty());
 
 		// Make sure the changePassword function with unknown user fails
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.changePassword(currentUserId, dto));
@@ -340,26 +383,33 @@ class UserServiceTest {
 	@Test
 	void givenUserId_whenDeleteUser_thenSuccess() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
 		
 		// Make sure the deleteUser function works
 		userService.deleteUser(currentUserId);
 		
-		verify(userRepository).findById(currentUserId);
-		verify(userRepository).delete(currentUser);
+		verify(userLoader).findById(currentUserId);
+		// Marked deleted, the purge removes the rows later
+		assertNotNull(currentUser.getDeletedAt());
+		assertEquals(DeletionStage.FOLLOWING, currentUser.getDeletionStage());
+		verify(userRepository, never()).delete(any(User.class));
+		verifyNoInteractions(followCounterService);
+		verify(refreshTokenService).deleteTokensOfUser(currentUserId);
+		verify(authorizationCache).invalidateUser(currentUserId);
+		verify(eventPublisher).publishEvent(new UserDeletedEvent(currentUserId));
 	}
 	
 	@Test
 	void givenUnknownUserId_whenDeleteUser_thenException() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.empty());
 		
 		// Make sure the deleteUser function fails with an unknown user
 		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.deleteUser(currentUserId));
 		
 		// Check we got the right error message
 		assertEquals("User not found", exception.getMessage());
-		verify(userRepository).findById(currentUserId);
+		verify(userLoader).findById(currentUserId);
 		verify(userRepository, never()).delete(any(User.class));
 	}
 	
@@ -374,18 +424,62 @@ class UserServiceTest {
 		when(userRepository.findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail())).thenReturn(Optional.of(currentUser));
 		when(passwordEncoder.matches(dto.password(), currentUser.getPassword())).thenReturn(true);
 		when(jwtService.generateToken(currentUser)).thenReturn("jwt-token");
-		when(userMapper.toResponseDto(currentUser)).thenReturn(
-			new UserResponseDto(currentUserId, currentUser.getUsername(), currentUser.getEmail(), currentUser.getAvatarUrl(), currentUser.getBio(), AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR))
+		when(refreshTokenService.issueToken(currentUserId)).thenReturn("refresh-token");
+		when(followCounterService.getCounts(currentUserId)).thenReturn(FollowCounts.ZERO);
+		when(userMapper.toResponseDto(currentUser, FollowCounts.ZERO)).thenReturn(
+			new UserResponseDto(currentUserId, currentUser.getUsername(), currentUser.getEmail(), currentUser.getAvatarUrl(), currentUser.getBio(), AccountType.FOLLOWERS_ONLY, Set.of(CommunityType.CAR), 0, 0)
 		);
 		
 		// Make sure the authUser function works correctly
 		UserAuthResponseDto response = userService.authUser(dto);
 		
 		assertThat(response.jwt()).isEqualTo("jwt-token");
+		assertThat(response.refreshToken()).isEqualTo("refresh-token");
 		assertThat(response.user().id()).isEqualTo(currentUserId);
 		assertThat(response.user().username()).isEqualTo("John");
 	}
 	
+	@Test
+	void givenOutdatedPasswordHash_whenAuthUser_thenPasswordRehashed() {
+		UserAuthDto dto = new UserAuthDto("John@test.com", "password");
+		
+		// Mock the repositories
+		when(userRepository.findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail())).thenReturn(Optional.of(currentUser));
+		when(passwordEncoder.matches(dto.password(), "hashed-password")).thenReturn(true);
+		when(passwordEncoder.upgradeEncoding("hashed-password")).thenReturn(true);
+		when(passwordEncoder.encode(dto.password())).thenReturn("{bcrypt}new-hashed-password");
+		when(jwtService.generateToken(currentUser)).thenReturn("jwt-token");
+		
+		// Make sure the authUser function upgrades the stored hash
+		userService.authUser(dto);
+		
+		// Both hashes run between the transactions: a login waiting for the hashing pool holds no connection
+		InOrder inOrder = inOrder(transactionManager, userRepository, passwordEncoder);
+		inOrder.verify(transactionManager).getTransaction(any());
+		inOrder.verify(userRepository).findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail());
+		inOrder.verify(transactionManager).commit(any());
+		inOrder.verify(passwordEncoder).matches(dto.password(), "hashed-password");
+		inOrder.verify(passwordEncoder).encode(dto.password());
+		inOrder.verify(transactionManager).getTransaction(any());
+		inOrder.verify(userRepository).updatePassword(currentUserId, "hashed-password", "{bcrypt}new-hashed-password");
+		inOrder.verify(transactionManager).commit(any());
+	}
+	
+	@Test
+	void givenUpToDatePasswordHash_whenAuthUser_thenPasswordNotRehashed() {
+		UserAuthDto dto = new UserAuthDto("John@test.com", "password");
+		
+		// Mock the repositories
+		when(userRepository.findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail())).thenReturn(Optional.of(currentUser));
+		when(passwordEncoder.matches(dto.password(), "hashed-password")).thenReturn(true);
+		when(passwordEncoder.upgradeEncoding("hashed-password")).thenReturn(false);
+		
+		userService.authUser(dto);
+		
+		verify(passwordEncoder, never()).encode(any(String.class));
+		verify(userRepository, never()).updatePassword(any(), any(), any());
+	}
+	
 	@Test
 	void givenWrongPassword_whenAuthUser_thenException() {
 		UserAuthDto dto = new UserAuthDto("John@test.com", "password");
@@ -401,7 +495,7 @@ class UserServiceTest {
 		assertEquals("Invalid credentials", exception.getMessage());
 		verify(userRepository).findByUsernameIgnoreCaseOrEmailIgnoreCase(dto.usernameOrEmail(), dto.usernameOrEmail());
 		verify(passwordEncoder).matches(any(String.class), any(String.class));
-		verifyNoInteractions(jwtService, userMapper);
+		verifyNoInteractions(jwtService, userMapper, refreshTokenService);
 	}
 	
 	@Test
@@ -426,119 +520,170 @@ class UserServiceTest {
 	@Test
 	void givenUser_whenGetFollowers_thenReturnListUsers() {
 		UUID follower1Id = UUID.randomUUID();
-		User follower1 = createUser(follower1Id, "Alice");
 		UUID follower2Id = UUID.randomUUID();
-		User follower2 = createUser(follower2Id, "Frank");
-		
-		Follow follow1 = new Follow(follower1, currentUser, Instant.now());
-		Follow follow2 = new Follow(follower2, currentUser, Instant.now());
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(followRepository.findByFollowed(currentUser)).thenReturn(List.of(follow1, follow2));
-		when(userMapper.toSummaryDto(follower1)).thenReturn(new UserSummaryDto(follower1Id, "Alice", null, AccountType.FOLLOWERS_ONLY));
-		when(userMapper.toSummaryDto(follower2)).thenReturn(new UserSummaryDto(follower2Id, "Frank", null, AccountType.FOLLOWERS_ONLY));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowers(currentUserId, Limit.of(3))).thenReturn(List.of(
+				followUser(follower1Id, "Alice", Instant.now()),
+				followUser(follower2Id, "Frank", Instant.now())));
 		
 		// Make sure we get all the followers
-		List<UserSummaryDto> followers = userService.getFollowers(currentUserId);
+		CursorPage<UserSummaryDto> followers = userService.getFollowers(currentUserId, null, null);
+		
+		assertThat(followers.items()).hasSize(2);
+		assertThat(followers.items().get(0).id()).isEqualTo(follower1Id);
+		assertThat(followers.items().get(0).username()).isEqualTo("Alice");
+		assertThat(followers.items().get(1).id()).isEqualTo(follower2Id);
+		assertThat(followers.items().get(1).username()).isEqualTo("Frank");
+		assertThat(followers.nextCursor()).isNull();
+		// Projected by the query, no entity to map
+		verifyNoInteractions(userMapper);
+	}
+	
+	@Test
+	void givenMoreFollowersThanPageSize_whenGetFollowers_thenCursorOfLastRow() {
+		Instant followedAt = Instant.parse("2026-01-01T10:00:00Z");
+		UUID follower2Id = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowers(currentUserId, Limit.of(3))).thenReturn(List.of(
+				followUser(UUID.randomUUID(), "Alice", followedAt.plusSeconds(2)),
+				followUser(follower2Id, "Frank", followedAt.plusSeconds(1)),
+				followUser(UUID.randomUUID(), "Mark", followedAt)));
+		
+		CursorPage<UserSummaryDto> followers = userService.getFollowers(currentUserId, null, null);
 		
-		assertThat(followers).hasSize(2);
-		assertThat(followers.get(0).id()).isEqualTo(follower1Id);
-		assertThat(followers.get(0).username()).isEqualTo("Alice");
-		assertThat(followers.get(1).id()).isEqualTo(follower2Id);
-		assertThat(followers.get(1).username()).isEqualTo("Frank");
+		// Page size (2) followers returned, the cursor points after the second one
+		assertThat(followers.items()).extracting(UserSummaryDto::username).containsExactly("Alice", "Frank");
+		assertThat(CursorCodec.decode(followers.nextCursor(), 2)).containsExactly(followedAt.plusSeconds(1).toString(), follower2Id.toString());
+	}
+	
+	@Test
+	void givenCursor_whenGetFollowers_thenPageStartsAfterIt() {
+		Instant followedAt = Instant.parse("2026-01-01T10:00:00Z");
+		UUID lastFollowerId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowersAfter(currentUserId, followedAt, lastFollowerId, Limit.of(4))).thenReturn(List.of());
+		
+		CursorPage<UserSummaryDto> followers = userService.getFollowers(currentUserId, CursorCodec.encode(followedAt.toString(), lastFollowerId.toString()), 1000);
+		
+		// Max page size (3) plus one row to detect the next page
+		assertThat(followers.items()).isEmpty();
+		assertThat(followers.nextCursor()).isNull();
+	}
+	
+	@Test
+	void givenInvalidCursor_whenGetFollowers_thenException() {
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		
+		InvalidCursorException exception = assertThrows(InvalidCursorException.class,
+				() -> userService.getFollowers(currentUserId, CursorCodec.encode("yesterday", "someone"), null));
+		
+		assertEquals("Invalid cursor", exception.getMessage());
+		verifyNoInteractions(followRepository);
 	}
 	
 	@Test
 	void givenUserWithoutFollowers_whenGetFollowers_thenReturnEmptyList() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(followRepository.findByFollowed(currentUser)).thenReturn(List.of());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowers(currentUserId, Limit.of(3))).thenReturn(List.of());
 		
 		// Make sure we get all the followers
-		List<UserSummaryDto> followers = userService.getFollowers(currentUserId);
+		CursorPage<UserSummaryDto> followers = userService.getFollowers(currentUserId, null, null);
 		
-		assertThat(followers).hasSize(0);
+		assertThat(followers.items()).hasSize(0);
 		verifyNoInteractions(userMapper);
 	}
 	
 	@Test
 	void givenUnknowUser_whenGetFollowers_thenException() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.empty());
 
 		// Make sure we detect the user is unknown
-		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.getFollowers(currentUserId));
+		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.getFollowers(currentUserId, null, null));
 		
 		// Check we got the right error message
 		assertEquals("User not found", exception.getMessage());
-		verify(userRepository).findById(any(UUID.class));
+		verify(userLoader).findById(any(UUID.class));
 		verifyNoInteractions(userMapper, followRepository);
 	}
 	
 	@Test
 	void givenUser_whenGetFollowing_thenReturnListUsers() {
 		UUID followed1Id = UUID.randomUUID();
-		User followed1 = createUser(followed1Id, "Alice");
 		UUID followed2Id = UUID.randomUUID();
-		User followed2 = createUser(followed2Id, "Frank");
-		
-		Follow follow1 = new Follow(currentUser, followed1, Instant.now());
-		Follow follow2 = new Follow(currentUser, followed2, Instant.now());
 		
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(followRepository.findByFollower(currentUser)).thenReturn(List.of(follow1, follow2));
-		when(userMapper.toSummaryDto(followed1)).thenReturn(new UserSummaryDto(followed1Id, "Alice", null, AccountType.FOLLOWERS_ONLY));
-		when(userMapper.toSummaryDto(followed2)).thenReturn(new UserSummaryDto(followed2Id, "Frank", null, AccountType.FOLLOWERS_ONLY));
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowing(currentUserId, Limit.of(3))).thenReturn(List.of(
+				followUser(followed1Id, "Alice", Instant.now()),
+				followUser(followed2Id, "Frank", Instant.now())));
 		
 		// Make sure we get all the followers
-		List<UserSummaryDto> followers = userService.getFollowing(currentUserId);
+		CursorPage<UserSummaryDto> followers = userService.getFollowing(currentUserId, null, null);
+		
+		assertThat(followers.items()).hasSize(2);
+		assertThat(followers.items().get(0).id()).isEqualTo(followed1Id);
+		assertThat(followers.items().get(0).username()).isEqualTo("Alice");
+		assertThat(followers.items().get(1).id()).isEqualTo(followed2Id);
+		assertThat(followers.items().get(1).username()).isEqualTo("Frank");
+	}
+	
+	@Test
+	void givenCursor_whenGetFollowing_thenPageStartsAfterIt() {
+		Instant followedAt = Instant.parse("2026-01-01T10:00:00Z");
+		UUID lastFollowedId = UUID.randomUUID();
+		
+		// Mock the repositories
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowingAfter(currentUserId, followedAt, lastFollowedId, Limit.of(3))).thenReturn(List.of());
 		
-		assertThat(followers).hasSize(2);
-		assertThat(followers.get(0).id()).isEqualTo(followed1Id);
-		assertThat(followers.get(0).username()).isEqualTo("Alice");
-		assertThat(followers.get(1).id()).isEqualTo(followed2Id);
-		assertThat(followers.get(1).username()).isEqualTo("Frank");
+		assertThat(userService.getFollowing(currentUserId, CursorCodec.encode(followedAt.toString(), lastFollowedId.toString()), null).items()).isEmpty();
 	}
 	
 	@Test
 	void givenUserWithoutFollowing_whenGetFollowing_thenReturnEmptyList() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-		when(followRepository.findByFollower(currentUser)).thenReturn(List.of());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.of(currentUser));
+		when(followRepository.findFollowing(currentUserId, Limit.of(3))).thenReturn(List.of());
 		
 		// Make sure we get all the followers
-		List<UserSummaryDto> followers = userService.getFollowing(currentUserId);
+		CursorPage<UserSummaryDto> followers = userService.getFollowing(currentUserId, null, null);
 		
-		assertThat(followers).hasSize(0);
+		assertThat(followers.items()).hasSize(0);
 		verifyNoInteractions(userMapper);
 	}
 	
 	@Test
 	void givenUnknowUser_whenGetFollowing_thenException() {
 		// Mock the repositories
-		when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
+		when(userLoader.findById(currentUserId)).thenReturn(Optional.empty());
 
 		// Make sure we detect the user is unknown
-		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.getFollowing(currentUserId));
+		UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> userService.getFollowing(currentUserId, null, null));
 		
 		// Check we got the right error message
 		assertEquals("User not found", exception.getMessage());
-		verify(userRepository).findById(any(UUID.class));
+		verify(userLoader).findById(any(UUID.class));
 		verifyNoInteractions(userMapper, followRepository);
 	}
 	
 	// -------------------------------------------------------------
 	// Helper method(s)
 	// -------------------------------------------------------------
-	private User createUser(UUID id, String username) {
-		User newUser = new User();
-		newUser.setId(id);
-		newUser.setUsername(username);
-		newUser.setEmail(username + "@test.com");
-		newUser.setPassword("password");
-		return newUser;
+	private static FollowUserDto followUser(UUID id, String username, Instant followedAt) {
+		return new FollowUserDto(id, username, null, AccountType.FOLLOWERS_ONLY, followedAt);
+	}
+	
+	private static DataIntegrityViolationException uniqueViolation(String constraint) {
+		return new DataIntegrityViolationException("duplicate key value violates unique constraint",
+				new ConstraintViolationException("duplicate key value violates unique constraint", new SQLException(), constraint));
 	}
 	
 }
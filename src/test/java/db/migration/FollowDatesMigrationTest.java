@@ -0,0 +1,92 @@
+package db.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+// Runs V15 on follows made before it: the ones without a date get the epoch, and the column no longer takes a null
+@Testcontainers
+class FollowDatesMigrationTest {
+
+	// The migrations assign the tables to the "postgres" role
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("postgres")
+		.withPassword("test");
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setup() {
+		jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+		// Schema as it stood before V15
+		Flyway beforeV15 = flyway("14");
+		beforeV15.clean();
+		beforeV15.migrate();
+	}
+
+	@Test
+	void givenFollowsWithoutDate_whenMigrate_thenDatedAtEpochAndRequired() {
+		UUID john = insertUser("John");
+		UUID alice = insertUser("Alice");
+		UUID mark = insertUser("Mark");
+		Instant followedAt = Instant.parse("2026-01-01T10:00:00Z");
+		jdbcTemplate.update("INSERT INTO follows (follower_id, followed_id, created_at) VALUES (?, ?, NULL)", john, alice);
+		jdbcTemplate.update("INSERT INTO follows (follower_id, followed_id, created_at) VALUES (?, ?, ?)", john, mark, Timestamp.from(followedAt));
+
+		flyway("15").migrate();
+
+		assertThat(followedAt(john, alice)).isEqualTo(Instant.EPOCH);
+		// The dated ones are left as they were
+		assertThat(followedAt(john, mark)).isEqualTo(followedAt);
+		assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO follows (follower_id, followed_id, created_at) VALUES (?, ?, NULL)", alice, mark))
+			.isInstanceOf(DataIntegrityViolationException.class);
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private Flyway flyway(String target) {
+		return Flyway.configure()
+			.dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+			.cleanDisabled(false)
+			.target(target)
+			.load();
+	}
+
+	private UUID insertUser(String username) {
+		UUID id = UUID.randomUUID();
+		jdbcTemplate.update("""
+			INSERT INTO users (id, account_type, email, email_normalized, password, username, username_normalized, profile_version)
+			VALUES (?, 'PUBLIC', ?, ?, 'password', ?, ?, 0)
+			""", id, username + "@test.com", username.toLowerCase() + "@test.com", username, username.toLowerCase());
+		return id;
+	}
+
+	private Instant followedAt(UUID followerId, UUID followedId) {
+		return jdbcTemplate.queryForObject("SELECT created_at FROM follows WHERE follower_id = ? AND followed_id = ?",
+				Timestamp.class, followerId, followedId).toInstant();
+	}
+
+}
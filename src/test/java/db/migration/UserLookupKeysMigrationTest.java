@@ -0,0 +1,99 @@
+package db.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.jureg.wheelbase_server.user.model.User;
+
+// Runs V5 on users registered before it: the lookup keys it writes are the ones the application computes
+@Testcontainers
+class UserLookupKeysMigrationTest {
+
+	// The migrations assign the tables to the "postgres" role
+	@SuppressWarnings("resource")
+	@Container
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")
+		.withDatabaseName("wheelbase")
+		.withUsername("postgres")
+		.withPassword("test");
+
+	@AfterAll
+	static void tearDown() {
+		postgres.close();
+	}
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setup() {
+		jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+		// Schema as it stood before V5
+		Flyway beforeV5 = flyway("4");
+		beforeV5.clean();
+		beforeV5.migrate();
+	}
+
+	// -------------------------------------------------------------
+	// Backfill
+	// -------------------------------------------------------------
+	@Test
+	void givenNonAsciiUsers_whenMigrate_thenKeysMatchApplication() {
+		insertUser("ÉMILE", "Émile@Test.com");
+		insertUser("İSTANBUL", "İstanbul@Test.com");
+		insertUser("Straße", "STRASSE@test.com");
+
+		flyway("5").migrate();
+
+		jdbcTemplate.query("SELECT username, username_normalized, email, email_normalized FROM users", row -> {
+			assertThat(row.getString("username_normalized")).isEqualTo(User.normalize(row.getString("username")));
+			assertThat(row.getString("email_normalized")).isEqualTo(User.normalize(row.getString("email")));
+		});
+	}
+
+	// -------------------------------------------------------------
+	// Duplicates
+	// -------------------------------------------------------------
+	@Test
+	void givenUsernamesEqualButForCase_whenMigrate_thenFailsNamingThem() {
+		insertUser("Alice", "alice@test.com");
+		insertUser("alice", "alice2@test.com");
+
+		assertThatThrownBy(() -> flyway("5").migrate())
+			.isInstanceOf(FlywayException.class)
+			.hasMessageContaining("same username but for the case")
+			.hasMessageContaining("[Alice, alice]");
+		// Nothing applied: the migration is retried once the users are renamed
+		assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM information_schema.columns"
+				+ " WHERE table_name = 'users' AND column_name = 'username_normalized'", Integer.class)).isZero();
+	}
+
+	// -------------------------------------------------------------
+	// Helper method(s)
+	// -------------------------------------------------------------
+	private Flyway flyway(String target) {
+		return Flyway.configure()
+			.dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+			.cleanDisabled(false)
+			.target(target)
+			.load();
+	}
+
+	private void insertUser(String username, String email) {
+		jdbcTemplate.update("INSERT INTO users (id, account_type, email, password, username) VALUES (?, 'PUBLIC', ?, 'password', ?)",
+				UUID.randomUUID(), email, username);
+	}
+
+}